@@ -0,0 +1,694 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map.Entry;
+
+/**
+ * This provides static methods to encode a JSONObject, JSONArray or other JSON
+ * value as CBOR, the Concise Binary Object Representation of RFC 8949, and to
+ * decode CBOR into them. Strings are not escaped and numbers are not formatted
+ * or parsed, so CBOR is smaller and faster than the JSON text for traffic
+ * between services and for caches.
+ * <p>
+ * Values are encoded as:
+ * <ul>
+ * <li>JSONObject and Map: a map with text string keys, JSONArray, Collection
+ * and Java arrays: an array, both of definite length</li>
+ * <li>String: a text string; Enum: the text string of its name</li>
+ * <li>Integer, Long, Short, Byte and BigInteger: an integer, or a bignum (tags
+ * 2 and 3) if it does not fit in 64 bits</li>
+ * <li>BigDecimal: a decimal fraction (tag 4)</li>
+ * <li>Double and Float: a double or single precision float</li>
+ * <li>Boolean: true or false; JSONObject.NULL and null: null</li>
+ * <li>JSONString: its JSON text, parsed; anything else as {@link JSONObject#wrap(Object)}
+ * makes it</li>
+ * </ul>
+ * Decoding gives back the same kinds of values, with integers as the smallest of
+ * Integer, Long and BigInteger that holds them, as {@link JSONObject#stringToValue(String)}
+ * does. Items with no JSON counterpart follow section 6.1 of the RFC: byte
+ * strings become base64url strings, undefined becomes JSONObject.NULL, numeric
+ * map keys become strings and other tags are ignored.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class CBOR {
+
+    /** Size of the block the encoding is collected in. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Strings longer than this are read in steps, rather than trusting their length. */
+    private static final int MAX_ALLOCATION = 1 << 16;
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1 << 5;
+    private static final int BYTES = 2 << 5;
+    private static final int TEXT = 3 << 5;
+    private static final int ARRAY = 4 << 5;
+    private static final int MAP = 5 << 5;
+    private static final int TAG = 6 << 5;
+    private static final int SIMPLE = 7 << 5;
+
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int UNDEFINED = 0xF7;
+    private static final int HALF = 0xF9;
+    private static final int SINGLE = 0xFA;
+    private static final int DOUBLE = 0xFB;
+    private static final int BREAK = 0xFF;
+
+    /** The additional information of an item of indefinite length. */
+    private static final int INDEFINITE = 31;
+
+    private static final BigInteger MAX_UNSIGNED = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    /** The bytes written so far, or those being read. */
+    private byte[] buffer;
+
+    /** Index of the next byte to write or read. */
+    private int position;
+
+    /** Index after the last byte to read. */
+    private int limit;
+
+    /** Number of bytes read from the stream before those in the buffer. */
+    private long consumed;
+
+    /** The destination or the source, or null for a single array of bytes. */
+    private final OutputStream out;
+    private final InputStream in;
+
+    private CBOR(OutputStream out, InputStream in, byte[] buffer, int limit) {
+        this.out = out;
+        this.in = in;
+        this.buffer = buffer;
+        this.limit = limit;
+    }
+
+    /**
+     * Encode a value as CBOR into a stream. The stream is neither flushed nor
+     * closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param value
+     *            A JSONObject, JSONArray or other JSON value.
+     * @param stream
+     *            Receives the encoding.
+     * @return The stream.
+     * @throws JSONException
+     *             If the value cannot be encoded or the stream cannot be written.
+     */
+    public static OutputStream write(Object value, OutputStream stream) throws JSONException {
+        CBOR cbor = new CBOR(stream, null, new byte[BUFFER_SIZE], 0);
+        try {
+            cbor.encode(value);
+            stream.write(cbor.buffer, 0, cbor.position);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return stream;
+    }
+
+    /**
+     * Encode a value as CBOR.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param value
+     *            A JSONObject, JSONArray or other JSON value.
+     * @return The encoding.
+     * @throws JSONException
+     *             If the value cannot be encoded.
+     */
+    public static byte[] toBytes(Object value) throws JSONException {
+        CBOR cbor = new CBOR(null, null, new byte[BUFFER_SIZE], 0);
+        try {
+            cbor.encode(value);
+        } catch (IOException e) {
+            // not thrown without a stream
+            throw new JSONException(e);
+        }
+        return Arrays.copyOf(cbor.buffer, cbor.position);
+    }
+
+    /**
+     * Decode one CBOR data item from a stream. Only the bytes of the item are
+     * read, so items written one after another can be read one at a time. The
+     * stream is not closed.
+     *
+     * @param stream
+     *            The source of the encoding. It is read in small steps, so it
+     *            should be buffered.
+     * @return A JSONObject, JSONArray, String, Number, Boolean or
+     *         JSONObject.NULL, or null if the stream has ended before the item.
+     * @throws JSONException
+     *             If the encoding is not well formed or the stream cannot be read.
+     */
+    public static Object read(InputStream stream) throws JSONException {
+        CBOR cbor = new CBOR(null, stream, new byte[16], 0);
+        try {
+            int first = stream.read();
+            if (first < 0) {
+                return null;
+            }
+            cbor.consumed = 1;
+            return cbor.decode(first);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Decode a CBOR data item that is all of the bytes.
+     *
+     * @param bytes
+     *            The encoding.
+     * @return A JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL.
+     * @throws JSONException
+     *             If the encoding is not well formed, or is followed by more bytes.
+     */
+    public static Object read(byte[] bytes) throws JSONException {
+        CBOR cbor = new CBOR(null, null, bytes, bytes.length);
+        try {
+            Object value = cbor.decode(cbor.nextByte());
+            if (cbor.position != cbor.limit) {
+                throw cbor.syntaxError("Expected the end of the CBOR data item");
+            }
+            return value;
+        } catch (IOException e) {
+            // not thrown without a stream
+            throw new JSONException(e);
+        }
+    }
+
+    // encoding
+
+    /**
+     * Make room for more bytes, handing on the block if there is a stream.
+     */
+    private void reserve(int n) throws IOException {
+        if (this.buffer.length - this.position >= n) {
+            return;
+        }
+        if (this.out != null) {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+            if (n <= this.buffer.length) {
+                return;
+            }
+        }
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + n));
+    }
+
+    /**
+     * Write the head of an item: its major type and its argument.
+     */
+    private void head(int major, long argument) throws IOException {
+        this.reserve(9);
+        byte[] b = this.buffer;
+        int p = this.position;
+        if (argument >= 0 && argument < 24) {
+            b[p++] = (byte) (major | argument);
+        } else if (argument >= 0 && argument <= 0xFF) {
+            b[p++] = (byte) (major | 24);
+            b[p++] = (byte) argument;
+        } else if (argument >= 0 && argument <= 0xFFFF) {
+            b[p++] = (byte) (major | 25);
+            b[p++] = (byte) (argument >> 8);
+            b[p++] = (byte) argument;
+        } else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+            b[p++] = (byte) (major | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                b[p++] = (byte) (argument >> shift);
+            }
+        } else {
+            // a negative argument is an unsigned 64 bit one
+            b[p++] = (byte) (major | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                b[p++] = (byte) (argument >> shift);
+            }
+        }
+        this.position = p;
+    }
+
+    private void encode(Object value) throws IOException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            this.reserve(1);
+            this.buffer[this.position++] = (byte) NULL;
+        } else if (value instanceof String) {
+            this.encodeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            long n = ((Number) value).longValue();
+            if (n >= 0) {
+                this.head(UNSIGNED, n);
+            } else {
+                this.head(NEGATIVE, -1 - n);
+            }
+        } else if (value instanceof Boolean) {
+            this.reserve(1);
+            this.buffer[this.position++] = (byte) (((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof JSONObject) {
+            JSONObject jsonObject = (JSONObject) value;
+            this.head(MAP, jsonObject.length());
+            for (Entry<String, Object> entry : jsonObject.entrySet()) {
+                this.encodeString(entry.getKey());
+                this.encode(entry.getValue());
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            int length = jsonArray.length();
+            this.head(ARRAY, length);
+            for (int i = 0; i < length; i++) {
+                this.encode(jsonArray.opt(i));
+            }
+        } else if (value instanceof Double) {
+            this.reserve(9);
+            this.buffer[this.position++] = (byte) DOUBLE;
+            this.putBits(Double.doubleToLongBits(((Double) value).doubleValue()), 8);
+        } else if (value instanceof Float) {
+            this.reserve(5);
+            this.buffer[this.position++] = (byte) SINGLE;
+            this.putBits(Float.floatToIntBits(((Float) value).floatValue()), 4);
+        } else if (value instanceof BigInteger) {
+            this.encodeBigInteger((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            this.head(TAG, 4);
+            this.head(ARRAY, 2);
+            this.encode(Long.valueOf(-(long) decimal.scale()));
+            this.encodeBigInteger(decimal.unscaledValue());
+        } else if (value instanceof Enum<?>) {
+            this.encodeString(((Enum<?>) value).name());
+        } else if (value instanceof JSONString) {
+            Object text;
+            try {
+                text = ((JSONString) value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            this.encode(text != null ? new JSONTokener(text.toString()).nextValue() : value.toString());
+        } else if (value instanceof Number) {
+            // a Number of another kind: as its text, like JSONObject.numberToString
+            this.encode(JSONObject.stringToValue(JSONObject.numberToString((Number) value)));
+        } else {
+            Object wrapped = JSONObject.wrap(value);
+            if (wrapped == null || wrapped == value) {
+                this.encodeString(value.toString());
+            } else {
+                this.encode(wrapped);
+            }
+        }
+    }
+
+    private void putBits(long bits, int n) {
+        byte[] b = this.buffer;
+        int p = this.position;
+        for (int shift = (n - 1) * 8; shift >= 0; shift -= 8) {
+            b[p++] = (byte) (bits >> shift);
+        }
+        this.position = p;
+    }
+
+    private void encodeBigInteger(BigInteger n) throws IOException {
+        if (n.bitLength() < 64) {
+            this.encode(Long.valueOf(n.longValue()));
+        } else if (n.signum() > 0 && n.compareTo(MAX_UNSIGNED) <= 0) {
+            this.head(UNSIGNED, n.longValue());
+        } else if (n.signum() < 0 && n.not().compareTo(MAX_UNSIGNED) <= 0) {
+            this.head(NEGATIVE, n.not().longValue());
+        } else {
+            this.head(TAG, n.signum() > 0 ? 2 : 3);
+            byte[] magnitude = (n.signum() > 0 ? n : n.not()).toByteArray();
+            // the two's complement of a positive number may start with a 0 byte
+            int off = magnitude[0] == 0 ? 1 : 0;
+            this.head(BYTES, magnitude.length - off);
+            this.reserve(magnitude.length);
+            System.arraycopy(magnitude, off, this.buffer, this.position, magnitude.length - off);
+            this.position += magnitude.length - off;
+        }
+    }
+
+    /**
+     * Write a text string, encoding the characters straight into the block.
+     * A lone surrogate is written as '?', as String.getBytes does.
+     */
+    private void encodeString(String string) throws IOException {
+        int length = string.length();
+        long size = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                size += c < 0x800 ? 1 : Character.isSurrogate(c) ? 0 : 2;
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    // 4 bytes for the pair
+                    size += 2;
+                    i++;
+                }
+            }
+        }
+        if (size > Integer.MAX_VALUE - 9) {
+            throw new JSONException("The string is too long to encode");
+        }
+        this.head(TEXT, size);
+        this.reserve((int) size);
+        byte[] b = this.buffer;
+        int p = this.position;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                    b[p++] = (byte) (0xF0 | codePoint >> 18);
+                    b[p++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    b[p++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    b[p++] = '?';
+                }
+            } else {
+                b[p++] = (byte) (0xE0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        this.position = p;
+    }
+
+    // decoding
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + this.offset());
+    }
+
+    /** @return the offset of the next byte in the encoding */
+    private long offset() {
+        return this.consumed + this.position;
+    }
+
+    /**
+     * Make sure that the next n bytes are in the buffer. From a stream, exactly
+     * the bytes needed are read.
+     */
+    private void require(int n) throws IOException {
+        if (this.limit - this.position >= n) {
+            return;
+        }
+        if (this.in == null) {
+            throw this.syntaxError("Unexpected end of the CBOR data item");
+        }
+        int kept = this.limit - this.position;
+        if (this.buffer.length < n) {
+            byte[] larger = new byte[Math.max(n, this.buffer.length * 2)];
+            System.arraycopy(this.buffer, this.position, larger, 0, kept);
+            this.buffer = larger;
+        } else {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, kept);
+        }
+        this.consumed += this.position;
+        this.position = 0;
+        this.limit = kept;
+        while (this.limit < n) {
+            int read = this.in.read(this.buffer, this.limit, n - this.limit);
+            if (read < 0) {
+                throw this.syntaxError("Unexpected end of the CBOR data item");
+            }
+            this.limit += read;
+        }
+    }
+
+    private int nextByte() throws IOException {
+        this.require(1);
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Read the argument of an item.
+     * @return the argument, an unsigned 64 bit number, or 0 for an indefinite
+     *  length
+     */
+    private long argument(int initial) throws IOException {
+        int info = initial & 31;
+        if (info < 24) {
+            return info;
+        }
+        if (info == INDEFINITE) {
+            return 0;
+        }
+        if (info > 27) {
+            throw this.syntaxError("Reserved CBOR additional information " + info);
+        }
+        int n = 1 << (info - 24);
+        this.require(n);
+        long argument = 0;
+        for (int i = 0; i < n; i++) {
+            argument = argument << 8 | (this.buffer[this.position++] & 0xFF);
+        }
+        return argument;
+    }
+
+    /**
+     * @return the length of a definite string, array or map, which must fit
+     *  in an int
+     */
+    private int length(long argument) {
+        if (argument < 0 || argument > Integer.MAX_VALUE) {
+            throw this.syntaxError("CBOR length too large");
+        }
+        return (int) argument;
+    }
+
+    private Object decode(int initial) throws IOException {
+        int major = initial & 0xE0;
+        if (major == SIMPLE) {
+            return this.decodeSimple(initial);
+        }
+        long argument = this.argument(initial);
+        boolean indefinite = (initial & 31) == INDEFINITE;
+        if (indefinite && (major == UNSIGNED || major == NEGATIVE || major == TAG)) {
+            throw this.syntaxError("Indefinite length CBOR integer or tag");
+        }
+        switch (major) {
+        case UNSIGNED:
+            return integer(argument, false);
+        case NEGATIVE:
+            return integer(argument, true);
+        case BYTES:
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(this.readString(BYTES, argument, indefinite));
+        case TEXT:
+            return new String(this.readString(TEXT, argument, indefinite), StandardCharsets.UTF_8);
+        case ARRAY: {
+            JSONArray jsonArray = new JSONArray();
+            if (indefinite) {
+                for (int b = this.nextByte(); b != BREAK; b = this.nextByte()) {
+                    jsonArray.put(this.decode(b));
+                }
+            } else {
+                for (int i = this.length(argument); i > 0; i--) {
+                    jsonArray.put(this.decode(this.nextByte()));
+                }
+            }
+            return jsonArray;
+        }
+        case MAP: {
+            JSONObject jsonObject = new JSONObject();
+            if (indefinite) {
+                for (int b = this.nextByte(); b != BREAK; b = this.nextByte()) {
+                    this.decodeMember(jsonObject, b);
+                }
+            } else {
+                for (int i = this.length(argument); i > 0; i--) {
+                    this.decodeMember(jsonObject, this.nextByte());
+                }
+            }
+            return jsonObject;
+        }
+        default:
+            return this.decodeTag(argument);
+        }
+    }
+
+    private void decodeMember(JSONObject jsonObject, int initial) throws IOException {
+        long offset = this.offset();
+        Object key = this.decode(initial);
+        if (!(key instanceof String) && !(key instanceof Number)) {
+            throw new JSONException("CBOR map keys must be strings or numbers at " + offset);
+        }
+        jsonObject.put(key.toString(), this.decode(this.nextByte()));
+    }
+
+    private static Object integer(long argument, boolean negative) {
+        if (argument >= 0) {
+            long n = negative ? -1 - argument : argument;
+            if (n == (int) n) {
+                return Integer.valueOf((int) n);
+            }
+            return Long.valueOf(n);
+        }
+        // an unsigned 64 bit argument beyond Long.MAX_VALUE
+        BigInteger n = new BigInteger(Long.toUnsignedString(argument));
+        return negative ? n.not() : n;
+    }
+
+    private Object decodeTag(long tag) throws IOException {
+        long offset = this.offset();
+        int initial = this.nextByte();
+        if (tag == 2 || tag == 3) {
+            if ((initial & 0xE0) != BYTES) {
+                throw new JSONException("Expected a byte string in a CBOR bignum at " + offset);
+            }
+            BigInteger n = new BigInteger(1,
+                    this.readString(BYTES, this.argument(initial), (initial & 31) == INDEFINITE));
+            if (tag == 3) {
+                n = n.not();
+            }
+            if (n.bitLength() >= 64) {
+                return n;
+            }
+            long value = n.longValue();
+            return value == (int) value ? (Object) Integer.valueOf((int) value) : Long.valueOf(value);
+        }
+        Object content = this.decode(initial);
+        if (tag == 4) {
+            if (!(content instanceof JSONArray) || ((JSONArray) content).length() != 2) {
+                throw new JSONException("Expected an array of 2 in a CBOR decimal fraction at " + offset);
+            }
+            JSONArray pair = (JSONArray) content;
+            Object exponent = pair.opt(0);
+            Object mantissa = pair.opt(1);
+            if (!(exponent instanceof Integer) || !(mantissa instanceof Integer
+                    || mantissa instanceof Long || mantissa instanceof BigInteger)) {
+                throw new JSONException("Expected integers in a CBOR decimal fraction at " + offset);
+            }
+            BigInteger unscaled = mantissa instanceof BigInteger ? (BigInteger) mantissa
+                    : BigInteger.valueOf(((Number) mantissa).longValue());
+            return new BigDecimal(unscaled, -((Integer) exponent).intValue());
+        }
+        // other tags only describe their content
+        return content;
+    }
+
+    private Object decodeSimple(int initial) throws IOException {
+        switch (initial) {
+        case FALSE:
+            return Boolean.FALSE;
+        case TRUE:
+            return Boolean.TRUE;
+        case NULL:
+        case UNDEFINED:
+            return JSONObject.NULL;
+        case HALF:
+            return Double.valueOf(halfToDouble((int) this.argument(initial)));
+        case SINGLE:
+            return Float.valueOf(Float.intBitsToFloat((int) this.argument(initial)));
+        case DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(this.argument(initial)));
+        default:
+            throw new JSONException("Unsupported CBOR simple value " + (initial & 31) + " at " + (this.offset() - 1));
+        }
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        double value;
+        if (exponent == 0) {
+            value = Math.scalb((double) mantissa, -24);
+        } else if (exponent != 31) {
+            value = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    /**
+     * Read the bytes of a byte or text string, joining the chunks of an
+     * indefinite length one.
+     */
+    private byte[] readString(int major, long argument, boolean indefinite) throws IOException {
+        if (!indefinite) {
+            return this.readBytes(this.length(argument));
+        }
+        byte[] bytes = new byte[0];
+        for (int b = this.nextByte(); b != BREAK; b = this.nextByte()) {
+            if ((b & 0xE0) != major || (b & 31) == INDEFINITE) {
+                throw this.syntaxError("Expected a definite length chunk of a CBOR string");
+            }
+            byte[] chunk = this.readBytes(this.length(this.argument(b)));
+            int size = bytes.length;
+            bytes = Arrays.copyOf(bytes, size + chunk.length);
+            System.arraycopy(chunk, 0, bytes, size, chunk.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Read bytes. A long length is not trusted to allocate for before the bytes
+     * have been read.
+     */
+    private byte[] readBytes(int length) throws IOException {
+        if (length <= MAX_ALLOCATION || this.in == null) {
+            this.require(length);
+            byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+            this.position += length;
+            return bytes;
+        }
+        byte[] bytes = new byte[MAX_ALLOCATION];
+        int size = 0;
+        while (size < length) {
+            int n = Math.min(length - size, MAX_ALLOCATION);
+            this.require(n);
+            if (bytes.length < size + n) {
+                bytes = Arrays.copyOf(bytes, Math.min(length, bytes.length * 2));
+            }
+            System.arraycopy(this.buffer, this.position, bytes, size, n);
+            this.position += n;
+            size += n;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,73 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.List;
+
+/**
+ * The list of a JSONArray frozen by {@link JSONArray#freeze()}: an array of
+ * exactly its length.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class CompactList extends FrozenList {
+
+    private final Object[] elements;
+
+    /** The same elements as a persistent vector, made the first time it is asked for. */
+    private PersistentVector persistent;
+
+    /**
+     * @param list the elements, which must be frozen already
+     */
+    CompactList(List<Object> list) {
+        this.elements = list.toArray();
+    }
+
+    @Override
+    public Object get(int index) {
+        return this.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return this.elements.length;
+    }
+
+    @Override
+    PersistentVector toPersistent() {
+        PersistentVector vector = this.persistent;
+        if (vector == null) {
+            vector = PersistentVector.EMPTY;
+            for (Object element : this.elements) {
+                vector = vector.with(element);
+            }
+            // a race makes the same vector twice at worst, and its fields are final
+            this.persistent = vector;
+        }
+        return vector;
+    }
+}
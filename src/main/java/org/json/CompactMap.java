@@ -0,0 +1,167 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map of a JSONObject frozen by {@link JSONObject#freeze()}. The keys and
+ * values are kept in two arrays, in the order of the map they were copied from,
+ * and found through an open addressing table of indexes, which takes less space
+ * than the entries of a HashMap and is read without following a reference per
+ * entry.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class CompactMap extends FrozenMap {
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    /** Index + 1 of the key that hashes to each slot, or 0 for an empty slot. */
+    private final int[] table;
+
+    /** The same entries as a persistent map, made the first time it is asked for. */
+    private PersistentMap persistent;
+
+    /**
+     * @param map the keys and values, which must be frozen already
+     */
+    CompactMap(Map<String, Object> map) {
+        int size = map.size();
+        this.keys = new String[size];
+        this.values = new Object[size];
+        int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        this.table = new int[capacity];
+        int i = 0;
+        for (Entry<String, Object> entry : map.entrySet()) {
+            String key = entry.getKey();
+            this.keys[i] = key;
+            this.values[i] = entry.getValue();
+            int slot = hash(key) & (capacity - 1);
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            this.table[slot] = ++i;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the index of the key, or -1 if it is not in the map
+     */
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int mask = this.table.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            int index = this.table[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (key.equals(this.keys[index])) {
+                return index;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = this.indexOf(key);
+        return index < 0 ? null : this.values[index];
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < CompactMap.this.keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = this.next++;
+                        return new SimpleImmutableEntry<String, Object>(CompactMap.this.keys[i],
+                                CompactMap.this.values[i]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw frozen();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactMap.this.keys.length;
+            }
+        };
+    }
+
+    @Override
+    PersistentMap toPersistent() {
+        PersistentMap map = this.persistent;
+        if (map == null) {
+            map = PersistentMap.EMPTY;
+            for (int i = 0; i < this.keys.length; i++) {
+                map = map.with(this.keys[i], this.values[i]);
+            }
+            // a race makes the same map twice at worst, and its fields are final
+            this.persistent = map;
+        }
+        return map;
+    }
+}
@@ -0,0 +1,75 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The list of a frozen {@link JSONArray}, which refuses every change. A frozen
+ * list is fully built before it is published through the final field of its
+ * JSONArray, so it may be read by any thread without synchronization.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+abstract class FrozenList extends AbstractList<Object> implements RandomAccess {
+
+    /**
+     * The text of the JSONArray, made the first time it is asked for. A race
+     * makes the same String twice at worst.
+     */
+    String text;
+
+    /**
+     * Get the list as a persistent vector, to make changed copies of.
+     * @return the persistent vector
+     */
+    abstract PersistentVector toPersistent();
+
+    static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("The JSONArray is frozen");
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        throw frozen();
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        throw frozen();
+    }
+
+    @Override
+    public Object remove(int index) {
+        throw frozen();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        throw frozen();
+    }
+}
@@ -25,11 +25,16 @@ package org.json;
  */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -86,7 +91,7 @@ public class JSONArray implements Iterable<Object> {
     /**
      * The arrayList where the JSONArray's properties are kept.
      */
-    private final ArrayList<Object> myArrayList;
+    private final List<Object> myArrayList;
 
     /**
      * Construct an empty JSONArray.
@@ -244,6 +249,192 @@ public class JSONArray implements Iterable<Object> {
     	this.myArrayList = new ArrayList<Object>(initialCapacity);
     }
 
+    /**
+     * Construct a frozen JSONArray.
+     *
+     * @param list the frozen elements
+     */
+    private JSONArray(FrozenList list) {
+        this.myArrayList = list;
+    }
+
+    /**
+     * Get a frozen copy of this JSONArray: one that can not be changed, so it
+     * can be cached and shared between threads without copying or
+     * synchronization. Its elements are frozen as {@link JSONObject#freeze()}
+     * freezes values, they are kept in an array of exactly their number, and
+     * the text of {@link #toString()} is made once and kept.
+     * <p>
+     * Every method that would change a frozen JSONArray throws an
+     * UnsupportedOperationException. {@link #with(Object)} and
+     * {@link #with(int, Object)} make frozen copies with a change, and
+     * {@link #JSONArray(JSONArray)} makes a copy that can be changed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @return this if it is frozen already, or else a frozen copy.
+     */
+    public JSONArray freeze() {
+        if (this.myArrayList instanceof FrozenList) {
+            return this;
+        }
+        List<Object> frozen = new ArrayList<Object>(this.myArrayList.size());
+        for (Object element : this.myArrayList) {
+            frozen.add(JSONObject.freeze(element));
+        }
+        return new JSONArray(new CompactList(frozen));
+    }
+
+    /**
+     * Get a frozen copy of this JSONArray with a value appended. The copy is
+     * kept in a trie of arrays of 32 elements that shares all but the last
+     * array with this JSONArray, when this one was made by with() too, so
+     * appending costs O(1) rather than a copy of every element. The value is
+     * frozen as {@link JSONObject#freeze()} freezes values.
+     * <p>
+     * Only JSONArrays that are frozen already are updated cheaply. On one made
+     * by {@link #freeze()}, the first call builds the trie, in O(n), and keeps
+     * it for the calls that follow. A JSONArray that can be changed is copied
+     * with freeze() and built into a trie on every call, so each call costs
+     * O(n), as a deep copy does: call freeze() once, and call with() on the
+     * frozen copy.
+     *
+     * @param value
+     *            An object value. The value should be a Boolean, Double,
+     *            Integer, JSONArray, JSONObject, Long, or String, or the
+     *            JSONObject.NULL object.
+     * @return a frozen copy with the value appended.
+     * @throws JSONException
+     *            If the value is non-finite number.
+     */
+    public JSONArray with(Object value) throws JSONException {
+        JSONObject.testValidity(value);
+        return new JSONArray(this.freeze().toPersistent().with(JSONObject.freeze(value)));
+    }
+
+    /**
+     * Get a frozen copy of this JSONArray with a value at an index, sharing
+     * structure as {@link #with(Object)} does, so the change costs O(log n) on
+     * a JSONArray that is frozen already, with the same costs as with(Object)
+     * otherwise.
+     * If the index is greater than the length of the JSONArray, then null
+     * elements will be added as necessary to pad it out.
+     *
+     * @param index
+     *            The subscript.
+     * @param value
+     *            The value to put into the array. The value should be a
+     *            Boolean, Double, Integer, JSONArray, JSONObject, Long, or
+     *            String, or the JSONObject.NULL object.
+     * @return a frozen copy with the value at the index.
+     * @throws JSONException
+     *             If the index is negative or if the value is non-finite.
+     */
+    public JSONArray with(int index, Object value) throws JSONException {
+        if (index < 0) {
+            throw new JSONException("JSONArray[" + index + "] not found.");
+        }
+        JSONObject.testValidity(value);
+        PersistentVector persistent = this.freeze().toPersistent();
+        if (index < persistent.size()) {
+            PersistentVector changed = persistent.with(index, JSONObject.freeze(value));
+            return changed == this.myArrayList ? this : new JSONArray(changed);
+        }
+        while (index != persistent.size()) {
+            persistent = persistent.with(JSONObject.NULL);
+        }
+        return new JSONArray(persistent.with(JSONObject.freeze(value)));
+    }
+
+    /**
+     * Get the list of this frozen JSONArray as a persistent vector.
+     *
+     * @return the persistent vector
+     */
+    private PersistentVector toPersistent() {
+        return ((FrozenList) this.myArrayList).toPersistent();
+    }
+
+    /**
+     * Determine if this JSONArray is frozen.
+     *
+     * @return true if it was made by {@link #freeze()}, {@link #with(Object)}
+     *            or {@link #with(int, Object)}.
+     */
+    public boolean isFrozen() {
+        return this.myArrayList instanceof FrozenList;
+    }
+
+    /**
+     * Parse a UTF-8 encoded JSON array text, from the position of the buffer to
+     * its limit, parsing its elements in parallel on the common ForkJoinPool.
+     * The text is split into chunks, the commas between the elements are found
+     * by speculating on whether each chunk starts inside a string, and the
+     * elements are parsed by separate JSONTokeners and put in order. Texts for
+     * which the speculation does not hold, such as those with single quoted
+     * strings or missing elements, and small texts, are parsed sequentially, so
+     * the result and any syntax error are those of
+     * {@link #JSONArray(JSONTokener)}. The position of the buffer is not changed.
+     *
+     * @param buffer
+     *            The UTF-8 encoded text, which may be memory mapped.
+     * @return a new JSONArray
+     * @throws JSONException
+     *             If there is a syntax error.
+     */
+    public static JSONArray parseParallel(ByteBuffer buffer) throws JSONException {
+        if (buffer.remaining() >= ParallelArrayParser.MIN_PARALLEL) {
+            List<Object> values = ParallelArrayParser.parse(buffer);
+            if (values != null) {
+                JSONArray jsonArray = new JSONArray(values.size());
+                jsonArray.myArrayList.addAll(values);
+                return jsonArray;
+            }
+        }
+        return parseWhole(new JSONTokener(buffer));
+    }
+
+    /**
+     * Parse a JSONArray that must be all of the text.
+     */
+    private static JSONArray parseWhole(JSONTokener x) throws JSONException {
+        JSONArray jsonArray = new JSONArray(x);
+        if (x.nextClean() != 0) {
+            throw x.syntaxError("Expected the end of the JSONArray text");
+        }
+        return jsonArray;
+    }
+
+    /**
+     * Parse a UTF-8 encoded JSON array file, parsing its elements in parallel as
+     * {@link #parseParallel(ByteBuffer)} does. The file is memory mapped in
+     * windows, so files larger than 2 GB are parsed in parallel too.
+     *
+     * @param path
+     *            The source file.
+     * @return a new JSONArray
+     * @throws JSONException
+     *             If the file cannot be read or there is a syntax error.
+     */
+    public static JSONArray parseParallel(Path path) throws JSONException {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        if (size >= ParallelArrayParser.MIN_PARALLEL) {
+            List<Object> values = ParallelArrayParser.parse(path);
+            if (values != null) {
+                JSONArray jsonArray = new JSONArray(values.size());
+                jsonArray.myArrayList.addAll(values);
+                return jsonArray;
+            }
+        }
+        return parseWhole(new JSONTokener(path));
+    }
+
     @Override
     public Iterator<Object> iterator() {
         return this.myArrayList.iterator();
@@ -1198,7 +1389,7 @@ public class JSONArray implements Iterable<Object> {
         }
         // if we are inserting past the length, we want to grow the array all at once
         // instead of incrementally.
-        this.myArrayList.ensureCapacity(index + 1);
+        this.ensureCapacity(index + 1);
         while (index != this.length()) {
             // we don't need to test validity of NULL objects
             this.myArrayList.add(JSONObject.NULL);
@@ -1276,13 +1467,15 @@ public class JSONArray implements Iterable<Object> {
      * "/0/b"
      * </pre>
      * Then this method will return the String "c"
+     * The parsed pointer is cached, so querying with the same string again does
+     * not parse it again.
      * A JSONPointerException may be thrown from code called by this method.
      *
      * @param jsonPointer string that can be used to create a JSONPointer
      * @return the item matched by the JSONPointer, otherwise null
      */
     public Object query(String jsonPointer) {
-        return query(new JSONPointer(jsonPointer));
+        return query(JSONPointer.forString(jsonPointer));
     }
     
     /**
@@ -1317,7 +1510,7 @@ public class JSONArray implements Iterable<Object> {
      * @throws IllegalArgumentException if {@code jsonPointer} has invalid syntax
      */
     public Object optQuery(String jsonPointer) {
-    	return optQuery(new JSONPointer(jsonPointer));
+    	return optQuery(JSONPointer.forString(jsonPointer));
     }
     
     /**
@@ -1336,6 +1529,25 @@ public class JSONArray implements Iterable<Object> {
         }
     }
 
+    /**
+     * Insert a value in the JSONArray, moving the value at the index and any
+     * following values up by one.
+     *
+     * @param index
+     *            The index at which to insert, from 0 up to and including the length.
+     * @param value
+     *            The value to insert.
+     * @throws JSONException
+     *             If the index is out of range or the value is an invalid number.
+     */
+    void insert(int index, Object value) throws JSONException {
+        if (index < 0 || index > this.length()) {
+            throw new JSONException("JSONArray[" + index + "] not found.");
+        }
+        JSONObject.testValidity(value);
+        this.myArrayList.add(index, value);
+    }
+
     /**
      * Remove an index and close the hole.
      *
@@ -1429,6 +1641,15 @@ public class JSONArray implements Iterable<Object> {
     @Override
     public String toString() {
         try {
+            if (this.myArrayList instanceof FrozenList) {
+                FrozenList frozen = (FrozenList) this.myArrayList;
+                String text = frozen.text;
+                if (text == null) {
+                    text = this.toString(0);
+                    frozen.text = text;
+                }
+                return text;
+            }
             return this.toString(0);
         } catch (Exception e) {
             return null;
@@ -1513,6 +1734,21 @@ public class JSONArray implements Iterable<Object> {
      */
     public Writer write(Writer writer, int indentFactor, int indent)
             throws JSONException {
+        if (!(writer instanceof JSONOutput)) {
+            JSONOutput output = JSONOutput.acquire(writer);
+            try {
+                try {
+                    this.write(output, indentFactor, indent);
+                } catch (RuntimeException e) {
+                    output.drainAfter(e);
+                    throw e;
+                }
+                output.drain();
+            } finally {
+                output.release();
+            }
+            return writer;
+        }
         try {
             boolean needsComma = false;
             int length = this.length();
@@ -1556,6 +1792,164 @@ public class JSONArray implements Iterable<Object> {
         }
     }
 
+    /**
+     * Write the contents of the JSONArray as UTF-8 encoded JSON text to a stream.
+     * The text is the same as {@link #write(Writer, int, int)} writes; it is
+     * encoded as it is written, a block at a time, without making a String of
+     * it. The stream is neither flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream write(OutputStream stream, int indentFactor, int indent)
+            throws JSONException {
+        JSONOutput output = JSONOutput.acquire(stream);
+        try {
+            try {
+                this.write(output, indentFactor, indent);
+            } catch (RuntimeException e) {
+                output.drainAfter(e);
+                throw e;
+            }
+            output.drain();
+        } finally {
+            output.release();
+        }
+        return stream;
+    }
+
+    /**
+     * Make the UTF-8 encoding of the JSON text of this JSONArray. The bytes are the
+     * same as those of {@link #toString()}; they are encoded into a pooled buffer
+     * as the text is written, without making a String of it.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @return the UTF-8 encoded JSON text
+     * @throws JSONException if a called function has an error
+     */
+    public byte[] toUTF8Bytes() throws JSONException {
+        JSONOutput output = JSONOutput.acquire();
+        try {
+            this.write(output, 0, 0);
+            output.drain();
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Write the UTF-8 encoding of the JSON text of this JSONArray to a stream,
+     * with no whitespace added. The stream is neither flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream writeTo(OutputStream stream) throws JSONException {
+        return this.write(stream, 0, 0);
+    }
+
+    /**
+     * Put the UTF-8 encoding of the JSON text of this JSONArray into a buffer,
+     * with no whitespace added, from the position of the buffer on. The text is
+     * encoded into a pooled buffer first, so if it does not fit nothing is put.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param buffer
+     *            Receives the UTF-8 encoded JSON
+     * @return The buffer, with its position after the text.
+     * @throws JSONException if a called function has an error
+     * @throws BufferOverflowException if the text does not fit in the space
+     *  remaining in the buffer
+     */
+    public ByteBuffer writeTo(ByteBuffer buffer) throws JSONException {
+        JSONOutput output = JSONOutput.acquire();
+        try {
+            this.write(output, 0, 0);
+            output.drain();
+            output.copyTo(buffer);
+            return buffer;
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Write the JSON text of this JSONArray to a writer, writing parts of large
+     * trees on the threads of the common ForkJoinPool. Runs of members are
+     * written into buffers of their own in parallel and copied into the writer
+     * in order, so the text is that of {@link #write(Writer, int, int)}, which
+     * is used for trees of fewer than about 65,000 values.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical and is
+     * not modified while it is written.
+     * </b>
+     *
+     * @param writer
+     *            Writes the serialized JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The writer.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public Writer writeParallel(Writer writer, int indentFactor, int indent)
+            throws JSONException {
+        if (!ParallelWriter.write(this, writer, null, indentFactor, indent)) {
+            this.write(writer, indentFactor, indent);
+        }
+        return writer;
+    }
+
+    /**
+     * Write the UTF-8 encoding of the JSON text of this JSONArray to a stream, as
+     * {@link #writeParallel(Writer, int, int)} does. The stream is neither
+     * flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical and is
+     * not modified while it is written.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream writeParallel(OutputStream stream, int indentFactor, int indent)
+            throws JSONException {
+        if (!ParallelWriter.write(this, null, stream, indentFactor, indent)) {
+            this.write(stream, indentFactor, indent);
+        }
+        return stream;
+    }
+
     /**
      * Returns a java.util.List containing all of the elements in this array.
      * If an element in the array is a JSONArray or JSONObject it will also
@@ -1590,6 +1984,15 @@ public class JSONArray implements Iterable<Object> {
         return this.myArrayList.isEmpty();
     }
 
+    /**
+     * Make room for elements, unless the JSONArray is frozen.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (this.myArrayList instanceof ArrayList) {
+            ((ArrayList<Object>) this.myArrayList).ensureCapacity(minCapacity);
+        }
+    }
+
     /**
      * Add a collection's elements to the JSONArray.
      *
@@ -1601,7 +2004,7 @@ public class JSONArray implements Iterable<Object> {
      *            
      */
     private void addAll(Collection<?> collection, boolean wrap) {
-        this.myArrayList.ensureCapacity(this.myArrayList.size() + collection.size());
+        this.ensureCapacity(this.myArrayList.size() + collection.size());
         if (wrap) {
             for (Object o: collection){
                 this.put(JSONObject.wrap(o));
@@ -1653,7 +2056,7 @@ public class JSONArray implements Iterable<Object> {
     private void addAll(Object array, boolean wrap) throws JSONException {
         if (array.getClass().isArray()) {
             int length = Array.getLength(array);
-            this.myArrayList.ensureCapacity(this.myArrayList.size() + length);
+            this.ensureCapacity(this.myArrayList.size() + length);
             if (wrap) {
                 for (int i = 0; i < length; i += 1) {
                     this.put(JSONObject.wrap(Array.get(array, i)));
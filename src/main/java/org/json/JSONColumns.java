@@ -0,0 +1,675 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * A columnar copy of a JSONArray of JSONObject records: the values of each key
+ * are kept together in a {@link Column}, in arrays of primitives where they
+ * allow it, so that scanning one field of every record reads one array rather
+ * than one HashMap per record.
+ * <pre>{@code
+ * JSONColumns columns = new JSONColumns(CDL.toJSONArray(text));
+ * double total = columns.getColumn("price").sum();
+ * }</pre>
+ * The records may have different keys; a key missing from a record is told
+ * apart from one whose value is JSONObject.NULL. The records are copied, so
+ * later changes to them are not seen, and {@link #getRow(int)} makes a new
+ * JSONObject of the record on demand.
+ * <p>
+ * A JSONColumns is not changed once made, so it may be shared between threads.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class JSONColumns {
+
+    /** The columns by key, in the order the keys were first seen. */
+    private final Map<String, Column> columns;
+
+    /** Number of records. */
+    private final int length;
+
+    /**
+     * Make a columnar copy of records.
+     *
+     * @param rows
+     *            A JSONArray of JSONObjects.
+     * @throws JSONException
+     *             If an element is not a JSONObject.
+     */
+    public JSONColumns(JSONArray rows) throws JSONException {
+        this.length = rows.length();
+        Map<String, Object[]> values = new LinkedHashMap<String, Object[]>();
+        for (int i = 0; i < this.length; i++) {
+            Object row = rows.opt(i);
+            if (!(row instanceof JSONObject)) {
+                throw new JSONException("JSONArray[" + i + "] is not a JSONObject.");
+            }
+            for (Entry<String, Object> entry : ((JSONObject) row).entrySet()) {
+                Object[] column = values.get(entry.getKey());
+                if (column == null) {
+                    column = new Object[this.length];
+                    values.put(entry.getKey(), column);
+                }
+                column[i] = entry.getValue();
+            }
+        }
+        Map<String, Column> columns = new LinkedHashMap<String, Column>();
+        for (Entry<String, Object[]> entry : values.entrySet()) {
+            columns.put(entry.getKey(), new Column(entry.getKey(), entry.getValue()));
+            // let the values go as soon as they have been copied
+            entry.setValue(null);
+        }
+        this.columns = columns;
+    }
+
+    /**
+     * Get the number of records.
+     *
+     * @return The number of records.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Get the keys of the records, in the order they were first seen.
+     *
+     * @return An unmodifiable set of the keys.
+     */
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(this.columns.keySet());
+    }
+
+    /**
+     * Get the column of a key.
+     *
+     * @param key
+     *            A key of the records.
+     * @return The column.
+     * @throws JSONException
+     *             If no record has the key.
+     */
+    public Column getColumn(String key) throws JSONException {
+        Column column = this.columns.get(key);
+        if (column == null) {
+            throw new JSONException("JSONColumns[" + JSONObject.quote(key) + "] not found.");
+        }
+        return column;
+    }
+
+    /**
+     * Get the column of a key, if there is one.
+     *
+     * @param key
+     *            A key of the records.
+     * @return The column, or null if no record has the key.
+     */
+    public Column optColumn(String key) {
+        return this.columns.get(key);
+    }
+
+    /**
+     * Make a record back into a JSONObject.
+     *
+     * @param index
+     *            The index of the record.
+     * @return A new JSONObject with the values of the record.
+     * @throws JSONException
+     *             If the index is out of range.
+     */
+    public JSONObject getRow(int index) throws JSONException {
+        if (index < 0 || index >= this.length) {
+            throw new JSONException("JSONColumns[" + index + "] not found.");
+        }
+        JSONObject row = new JSONObject(this.columns.size());
+        for (Column column : this.columns.values()) {
+            Object value = column.opt(index);
+            if (value != null) {
+                row.put(column.name, value);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Make all of the records back into JSONObjects.
+     *
+     * @return A new JSONArray of new JSONObjects.
+     */
+    public JSONArray toJSONArray() {
+        JSONArray rows = new JSONArray(this.length);
+        for (int i = 0; i < this.length; i++) {
+            rows.put(this.getRow(i));
+        }
+        return rows;
+    }
+
+    /**
+     * The values of one key in all of the records. The values are kept as:
+     * <ul>
+     * <li>a long[] if they are all Integers, Longs, Shorts or Bytes</li>
+     * <li>a double[] if they are Doubles, or integers that a double holds exactly</li>
+     * <li>the unscaled longs and scales of BigDecimals, as parsed from text,
+     * with integers among them, and a double[] of them for scans</li>
+     * <li>a BitSet if they are all Booleans</li>
+     * <li>indexes into a dictionary of the distinct strings if they are all Strings</li>
+     * <li>an Object[] otherwise</li>
+     * </ul>
+     * Integers are given back as Integers if an int holds them and as Longs
+     * otherwise, as {@link JSONObject#stringToValue(String)} makes them.
+     */
+    public static final class Column {
+
+        private static final int LONG = 0;
+        private static final int DOUBLE = 1;
+        private static final int DECIMAL = 2;
+        private static final int BOOLEAN = 3;
+        private static final int STRING = 4;
+        private static final int OBJECT = 5;
+
+        /** The scale of a decimal column entry that was an integer. */
+        private static final int INTEGER_SCALE = Integer.MIN_VALUE;
+
+        /** The largest magnitude of an integer a double holds exactly. */
+        private static final long MAX_EXACT = 1L << 53;
+
+        private final String name;
+        private final int kind;
+        private final int length;
+
+        /** The records without the key. */
+        private final BitSet missing = new BitSet();
+
+        /** The records where the value is JSONObject.NULL. */
+        private final BitSet nulls = new BitSet();
+
+        /** LONG values, or DECIMAL unscaled values. */
+        private long[] longs;
+
+        /** DOUBLE values, or DECIMAL values for scans. */
+        private double[] doubles;
+
+        /** DECIMAL scales. */
+        private int[] scales;
+
+        /** DOUBLE entries that were integers, or BOOLEAN true values. */
+        private BitSet bits;
+
+        /** STRING indexes into the dictionary. */
+        private int[] codes;
+
+        /** STRING distinct values. */
+        private String[] dictionary;
+
+        /** OBJECT values. */
+        private Object[] objects;
+
+        Column(String name, Object[] values) {
+            this.name = name;
+            this.length = values.length;
+            this.kind = kindOf(values);
+            switch (this.kind) {
+            case LONG:
+                this.longs = new long[this.length];
+                break;
+            case DOUBLE:
+                this.doubles = new double[this.length];
+                this.bits = new BitSet();
+                break;
+            case DECIMAL:
+                this.longs = new long[this.length];
+                this.doubles = new double[this.length];
+                this.scales = new int[this.length];
+                break;
+            case BOOLEAN:
+                this.bits = new BitSet();
+                break;
+            case STRING:
+                this.codes = new int[this.length];
+                break;
+            default:
+                this.objects = new Object[this.length];
+            }
+            Map<String, Integer> dictionary = this.kind == STRING ? new HashMap<String, Integer>() : null;
+            for (int i = 0; i < this.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    this.missing.set(i);
+                } else if (JSONObject.NULL.equals(value)) {
+                    this.nulls.set(i);
+                } else {
+                    this.set(i, value, dictionary);
+                }
+            }
+            if (dictionary != null) {
+                this.dictionary = new String[dictionary.size()];
+                for (Entry<String, Integer> entry : dictionary.entrySet()) {
+                    this.dictionary[entry.getValue().intValue()] = entry.getKey();
+                }
+            }
+        }
+
+        private static boolean isInteger(Object value) {
+            return value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte;
+        }
+
+        /**
+         * @return the kind of column that holds all of the values
+         */
+        private static int kindOf(Object[] values) {
+            boolean integers = false, exactIntegers = true, doubles = false, decimals = false,
+                    booleans = false, strings = false;
+            for (Object value : values) {
+                if (value == null || JSONObject.NULL.equals(value)) {
+                    continue;
+                }
+                if (isInteger(value)) {
+                    long n = ((Number) value).longValue();
+                    integers = true;
+                    exactIntegers &= n >= -MAX_EXACT && n <= MAX_EXACT;
+                } else if (value instanceof Double) {
+                    doubles = true;
+                } else if (value instanceof BigDecimal
+                        && ((BigDecimal) value).unscaledValue().bitLength() < 64) {
+                    decimals = true;
+                } else if (value instanceof Boolean) {
+                    booleans = true;
+                } else if (value instanceof String) {
+                    strings = true;
+                } else {
+                    return OBJECT;
+                }
+            }
+            boolean numbers = integers || doubles || decimals;
+            if (numbers && (booleans || strings) || booleans && strings || doubles && decimals) {
+                return OBJECT;
+            }
+            if (doubles) {
+                return exactIntegers ? DOUBLE : OBJECT;
+            }
+            return decimals ? DECIMAL : integers ? LONG : booleans ? BOOLEAN : strings ? STRING : OBJECT;
+        }
+
+        private void set(int i, Object value, Map<String, Integer> dictionary) {
+            switch (this.kind) {
+            case LONG:
+                this.longs[i] = ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                this.doubles[i] = ((Number) value).doubleValue();
+                if (isInteger(value)) {
+                    this.bits.set(i);
+                }
+                break;
+            case DECIMAL:
+                if (isInteger(value)) {
+                    this.longs[i] = ((Number) value).longValue();
+                    this.scales[i] = INTEGER_SCALE;
+                } else {
+                    BigDecimal decimal = (BigDecimal) value;
+                    this.longs[i] = decimal.unscaledValue().longValue();
+                    this.scales[i] = decimal.scale();
+                }
+                this.doubles[i] = ((Number) value).doubleValue();
+                break;
+            case BOOLEAN:
+                this.bits.set(i, ((Boolean) value).booleanValue());
+                break;
+            case STRING:
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = Integer.valueOf(dictionary.size());
+                    dictionary.put((String) value, code);
+                }
+                this.codes[i] = code.intValue();
+                break;
+            default:
+                this.objects[i] = value;
+            }
+        }
+
+        /**
+         * Get the key of the column.
+         *
+         * @return The key.
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Get the number of records.
+         *
+         * @return The number of records.
+         */
+        public int length() {
+            return this.length;
+        }
+
+        /**
+         * Determine if a record has the key.
+         *
+         * @param index
+         *            The index of the record.
+         * @return true if the record has the key, even with a JSONObject.NULL value.
+         */
+        public boolean has(int index) {
+            return index >= 0 && index < this.length && !this.missing.get(index);
+        }
+
+        /**
+         * Determine if a record has no value for the key.
+         *
+         * @param index
+         *            The index of the record.
+         * @return true if the record does not have the key, or its value is
+         *         JSONObject.NULL.
+         */
+        public boolean isNull(int index) {
+            return !this.has(index) || this.nulls.get(index);
+        }
+
+        /**
+         * Get the value of a record, as it was in the JSONObject.
+         *
+         * @param index
+         *            The index of the record.
+         * @return The value, or null if the record does not have the key.
+         */
+        public Object opt(int index) {
+            if (!this.has(index)) {
+                return null;
+            }
+            if (this.nulls.get(index)) {
+                return JSONObject.NULL;
+            }
+            switch (this.kind) {
+            case LONG:
+                return integer(this.longs[index]);
+            case DOUBLE:
+                double d = this.doubles[index];
+                return this.bits.get(index) ? integer((long) d) : Double.valueOf(d);
+            case DECIMAL:
+                int scale = this.scales[index];
+                return scale == INTEGER_SCALE ? integer(this.longs[index])
+                        : BigDecimal.valueOf(this.longs[index], scale);
+            case BOOLEAN:
+                return Boolean.valueOf(this.bits.get(index));
+            case STRING:
+                return this.dictionary[this.codes[index]];
+            default:
+                return this.objects[index];
+            }
+        }
+
+        private static Object integer(long n) {
+            return n == (int) n ? (Object) Integer.valueOf((int) n) : Long.valueOf(n);
+        }
+
+        /**
+         * Get the value of a record as a double.
+         *
+         * @param index
+         *            The index of the record.
+         * @return The value.
+         * @throws JSONException
+         *             If the value is missing or not a number.
+         */
+        public double getDouble(int index) throws JSONException {
+            if (this.isNull(index)) {
+                throw this.wrongValueFormatException(index, "double");
+            }
+            switch (this.kind) {
+            case LONG:
+                return this.longs[index];
+            case DOUBLE:
+            case DECIMAL:
+                return this.doubles[index];
+            default:
+                Object value = this.opt(index);
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                throw this.wrongValueFormatException(index, "double");
+            }
+        }
+
+        /**
+         * Get the value of a record as a long.
+         *
+         * @param index
+         *            The index of the record.
+         * @return The value.
+         * @throws JSONException
+         *             If the value is missing or not a number.
+         */
+        public long getLong(int index) throws JSONException {
+            if (this.kind == LONG && !this.isNull(index)) {
+                return this.longs[index];
+            }
+            return (long) this.getDouble(index);
+        }
+
+        /**
+         * Get the value of a record as a String.
+         *
+         * @param index
+         *            The index of the record.
+         * @return The value.
+         * @throws JSONException
+         *             If the value is missing or not a String.
+         */
+        public String getString(int index) throws JSONException {
+            Object value = this.isNull(index) ? null : this.opt(index);
+            if (value instanceof String) {
+                return (String) value;
+            }
+            throw this.wrongValueFormatException(index, "string");
+        }
+
+        /**
+         * Get the value of a record as a boolean.
+         *
+         * @param index
+         *            The index of the record.
+         * @return The value.
+         * @throws JSONException
+         *             If the value is missing or not a Boolean.
+         */
+        public boolean getBoolean(int index) throws JSONException {
+            Object value = this.isNull(index) ? null : this.opt(index);
+            if (value instanceof Boolean) {
+                return ((Boolean) value).booleanValue();
+            }
+            throw this.wrongValueFormatException(index, "boolean");
+        }
+
+        private JSONException wrongValueFormatException(int index, String valueType) {
+            return new JSONException("JSONColumns[" + JSONObject.quote(this.name) + "][" + index
+                    + "] is not a " + valueType + ".");
+        }
+
+        /**
+         * @return the indexes of the records that have a value
+         */
+        private IntStream present() {
+            return IntStream.range(0, this.length)
+                    .filter(i -> !this.missing.get(i) && !this.nulls.get(i));
+        }
+
+        /**
+         * Get the number of records that have a value.
+         *
+         * @return The number of records that have the key with a value other
+         *         than JSONObject.NULL.
+         */
+        public int count() {
+            return this.length - this.missing.cardinality() - this.nulls.cardinality();
+        }
+
+        /**
+         * Determine if the values of the column are all numbers.
+         *
+         * @return true if there are values and they are all numbers.
+         */
+        public boolean isNumeric() {
+            if (this.kind == LONG || this.kind == DOUBLE || this.kind == DECIMAL) {
+                return true;
+            }
+            return this.kind == OBJECT && this.count() > 0
+                    && this.present().allMatch(i -> this.objects[i] instanceof Number);
+        }
+
+        /**
+         * Stream the values of a numeric column as doubles, skipping records
+         * without a value.
+         *
+         * @return The values, in the order of the records.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public DoubleStream doubles() throws JSONException {
+            if (this.kind == DOUBLE || this.kind == DECIMAL) {
+                if (this.count() == this.length) {
+                    return DoubleStream.of(this.doubles);
+                }
+                return this.present().mapToDouble(i -> this.doubles[i]);
+            }
+            if (this.kind == LONG) {
+                return this.longs().asDoubleStream();
+            }
+            return this.present().mapToDouble(this::getDouble);
+        }
+
+        /**
+         * Stream the values of a numeric column as longs, skipping records
+         * without a value. Fractions are truncated.
+         *
+         * @return The values, in the order of the records.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public LongStream longs() throws JSONException {
+            if (this.kind == LONG) {
+                if (this.count() == this.length) {
+                    return LongStream.of(this.longs);
+                }
+                return this.present().mapToLong(i -> this.longs[i]);
+            }
+            return this.present().mapToLong(this::getLong);
+        }
+
+        /**
+         * Get the sum of the values of a numeric column.
+         *
+         * @return The sum, or 0 if there are no values.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public double sum() throws JSONException {
+            if (this.kind == LONG || this.kind == DOUBLE || this.kind == DECIMAL) {
+                double sum = 0;
+                boolean all = this.count() == this.length;
+                for (int i = 0; i < this.length; i++) {
+                    if (all || !this.isNull(i)) {
+                        sum += this.kind == LONG ? this.longs[i] : this.doubles[i];
+                    }
+                }
+                return sum;
+            }
+            return this.doubles().sum();
+        }
+
+        /**
+         * Get the least of the values of a numeric column.
+         *
+         * @return The least value, or NaN if there are no values.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public double min() throws JSONException {
+            return this.doubles().min().orElse(Double.NaN);
+        }
+
+        /**
+         * Get the greatest of the values of a numeric column.
+         *
+         * @return The greatest value, or NaN if there are no values.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public double max() throws JSONException {
+            return this.doubles().max().orElse(Double.NaN);
+        }
+
+        /**
+         * Get the average of the values of a numeric column.
+         *
+         * @return The average, or NaN if there are no values.
+         * @throws JSONException
+         *             If a value is not a number.
+         */
+        public double average() throws JSONException {
+            int count = this.count();
+            return count == 0 ? Double.NaN : this.sum() / count;
+        }
+
+        /**
+         * Count the records with each value.
+         *
+         * @return A map from each distinct value to the number of records
+         *         that have it. Records without a value are not counted.
+         */
+        public Map<Object, Integer> valueCounts() {
+            Map<Object, Integer> counts = new HashMap<Object, Integer>();
+            if (this.kind == STRING) {
+                int[] byCode = new int[this.dictionary.length];
+                this.present().forEach(i -> byCode[this.codes[i]]++);
+                for (int code = 0; code < byCode.length; code++) {
+                    if (byCode[code] > 0) {
+                        counts.put(this.dictionary[code], Integer.valueOf(byCode[code]));
+                    }
+                }
+                return counts;
+            }
+            this.present().forEach(i -> counts.merge(this.opt(i), Integer.valueOf(1), Integer::sum));
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads JSON Lines, also known as newline delimited JSON or NDJSON: a text with
+ * one JSONObject on each line. Blank lines are skipped. See
+ * {@link JSONLinesWriter} to write them.
+ * <p>
+ * The streams are read lazily as they are consumed; syntax errors are thrown as
+ * JSONExceptions from the stream operation that reaches them.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class JSONLines {
+
+    /** Size of the windows a file is mapped in for parallel reading. */
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    /** Parts of a file smaller than this are not split further. */
+    private static final long MIN_SPLIT = 1L << 16;
+
+    /**
+     * Stream the JSONObjects of a JSON Lines text. All of the lines are read
+     * through one JSONTokener. The caller must close the Reader.
+     * <p>
+     * Syntax errors give the number of the line, counted from 1.
+     *
+     * @param reader
+     *            The source reader
+     * @return a sequential, ordered stream of the JSONObjects
+     */
+    public static Stream<JSONObject> stream(Reader reader) {
+        return stream(new JSONTokener(reader));
+    }
+
+    /**
+     * Stream the JSONObjects of a UTF-8 encoded JSON Lines file. The file is
+     * memory mapped a window at a time, as {@link JSONTokener#JSONTokener(Path)}
+     * does.
+     *
+     * @param path
+     *            The source file
+     * @return a sequential, ordered stream of the JSONObjects
+     * @throws JSONException if the file cannot be opened
+     */
+    public static Stream<JSONObject> stream(Path path) {
+        return stream(new JSONTokener(path));
+    }
+
+    private static Stream<JSONObject> stream(final JSONTokener x) {
+        Spliterator<JSONObject> spliterator = new Spliterators.AbstractSpliterator<JSONObject>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            /** Number of the next line. */
+            private long line = 1;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super JSONObject> action) {
+                StringBuilder sb = new StringBuilder();
+                while (!x.end()) {
+                    // a record never crosses a line break, as in parallelStream
+                    sb.setLength(0);
+                    for (char c = x.next(); c != '\n' && !(c == 0 && x.end()); c = x.next()) {
+                        sb.append(c);
+                    }
+                    JSONObject jsonObject;
+                    try {
+                        jsonObject = parseLine(new JSONTokener(sb.toString()));
+                    } catch (JSONException e) {
+                        throw new JSONException(e.getMessage() + " in line " + this.line, e);
+                    }
+                    this.line++;
+                    if (jsonObject != null) {
+                        action.accept(jsonObject);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Stream the JSONObjects of a UTF-8 encoded JSON Lines file, parsing parts
+     * of it in parallel. The file is memory mapped and split on line breaks into
+     * parts that are parsed by the tasks of the common ForkJoinPool. The stream
+     * is ordered, so operations such as <code>collect</code> and
+     * <code>forEachOrdered</code> see the JSONObjects in the order of the lines.
+     * <p>
+     * Syntax errors give the offset of the line in the file, as the number of the
+     * line is not known when parts are parsed out of order.
+     *
+     * @param path
+     *            The source file
+     * @return a parallel, ordered stream of the JSONObjects
+     * @throws JSONException if the file cannot be mapped
+     */
+    public static Stream<JSONObject> parallelStream(Path path) {
+        ByteBuffer[] windows;
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                windows = new ByteBuffer[(int) ((size + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+                for (int i = 0; i < windows.length; i++) {
+                    long offset = i * WINDOW_SIZE;
+                    windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(WINDOW_SIZE, size - offset));
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        long end = windows.length == 0 ? 0
+                : (windows.length - 1) * WINDOW_SIZE + windows[windows.length - 1].limit();
+        return StreamSupport.stream(new LineSpliterator(windows, 0, end), true);
+    }
+
+    /**
+     * Parse the JSONObject on one line, without its line break.
+     *
+     * @param x the tokener of the line
+     * @return the JSONObject, or null if the line is blank
+     * @throws JSONException if the line holds anything but one JSONObject
+     */
+    private static JSONObject parseLine(JSONTokener x) throws JSONException {
+        if (x.nextClean() == 0) {
+            return null;
+        }
+        x.back();
+        JSONObject jsonObject = new JSONObject(x);
+        if (x.nextClean() != 0) {
+            throw x.syntaxError("Expected a new line after a JSONObject");
+        }
+        return jsonObject;
+    }
+
+    /**
+     * The lines of a part of a mapped file. A mapping stays valid once its
+     * channel is closed, and is only read with absolute gets, so it is shared by
+     * all of the parts.
+     */
+    private static final class LineSpliterator implements Spliterator<JSONObject> {
+        private final ByteBuffer[] windows;
+        /** Offset of the next line. */
+        private long position;
+        /** Offset after the last line. */
+        private final long end;
+
+        LineSpliterator(ByteBuffer[] windows, long position, long end) {
+            this.windows = windows;
+            this.position = position;
+            this.end = end;
+        }
+
+        private byte get(long offset) {
+            return this.windows[(int) (offset / WINDOW_SIZE)].get((int) (offset % WINDOW_SIZE));
+        }
+
+        /**
+         * @return the offset of the next line break at or after the offset, or
+         *  the end of the part if there is none
+         */
+        private long lineBreak(long offset) {
+            while (offset < this.end) {
+                ByteBuffer window = this.windows[(int) (offset / WINDOW_SIZE)];
+                int limit = (int) Math.min(window.limit(), this.end - offset + offset % WINDOW_SIZE);
+                for (int i = (int) (offset % WINDOW_SIZE); i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        return offset - offset % WINDOW_SIZE + i;
+                    }
+                }
+                offset += limit - offset % WINDOW_SIZE;
+            }
+            return this.end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super JSONObject> action) {
+            while (this.position < this.end) {
+                long start = this.position;
+                long lineEnd = this.lineBreak(start);
+                this.position = lineEnd + 1;
+                JSONObject jsonObject;
+                try {
+                    jsonObject = parseLine(new JSONTokener(this.line(start, lineEnd)));
+                } catch (JSONException e) {
+                    throw new JSONException(e.getMessage() + " in the line at offset " + start, e);
+                }
+                if (jsonObject != null) {
+                    action.accept(jsonObject);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the bytes of a line, copied only if it spans two windows
+         */
+        private ByteBuffer line(long start, long lineEnd) {
+            int window = (int) (start / WINDOW_SIZE);
+            if (lineEnd == start || (lineEnd - 1) / WINDOW_SIZE == window) {
+                ByteBuffer line = this.windows[window].duplicate();
+                int offset = (int) (start % WINDOW_SIZE);
+                line.limit(offset + (int) (lineEnd - start)).position(offset);
+                return line;
+            }
+            byte[] bytes = new byte[(int) (lineEnd - start)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = this.get(start + i);
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public Spliterator<JSONObject> trySplit() {
+            long remaining = this.end - this.position;
+            if (remaining < MIN_SPLIT) {
+                return null;
+            }
+            long split = this.lineBreak(this.position + remaining / 2) + 1;
+            if (split >= this.end) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(this.windows, this.position, split);
+            this.position = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.end - this.position;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+    }
+}
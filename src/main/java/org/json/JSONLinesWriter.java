@@ -0,0 +1,150 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writes JSON Lines, also known as newline delimited JSON or NDJSON: the compact
+ * text of each value followed by a line break. The text is collected in a block
+ * and handed on a block at a time, encoded as UTF-8 if the destination is an
+ * OutputStream, so the destination does not need to be buffered. Nothing reaches
+ * the destination before {@link #flush()} or {@link #close()} is called, or
+ * before a block has been filled.
+ * <pre>{@code
+ * try (JSONLinesWriter lines = new JSONLinesWriter(Files.newOutputStream(path))) {
+ *     for (JSONObject record : records) {
+ *         lines.write(record);
+ *     }
+ * }
+ * }</pre>
+ * A JSONLinesWriter is not thread safe.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class JSONLinesWriter implements Closeable, Flushable {
+
+    /** The block the text is collected in, or null once closed. */
+    private JSONOutput output;
+
+    /** The destination. */
+    private final Closeable destination;
+
+    /**
+     * Make a writer of JSON Lines.
+     * @param writer the destination of the text
+     */
+    public JSONLinesWriter(Writer writer) {
+        this.output = JSONOutput.acquire(writer);
+        this.destination = writer;
+    }
+
+    /**
+     * Make a writer of UTF-8 encoded JSON Lines.
+     * @param stream the destination of the text
+     */
+    public JSONLinesWriter(OutputStream stream) {
+        this.output = JSONOutput.acquire(stream);
+        this.destination = stream;
+    }
+
+    /**
+     * Write a JSONObject on a line of its own.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     * @param jsonObject the value to write
+     * @return this
+     * @throws JSONException if the value cannot be written, or the writer is closed
+     */
+    public JSONLinesWriter write(JSONObject jsonObject) throws JSONException {
+        jsonObject.write(this.output(), 0, 0);
+        return this.newLine();
+    }
+
+    /**
+     * Write a JSONArray on a line of its own.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     * @param jsonArray the value to write
+     * @return this
+     * @throws JSONException if the value cannot be written, or the writer is closed
+     */
+    public JSONLinesWriter write(JSONArray jsonArray) throws JSONException {
+        jsonArray.write(this.output(), 0, 0);
+        return this.newLine();
+    }
+
+    private JSONOutput output() throws JSONException {
+        if (this.output == null) {
+            throw new JSONException("The JSONLinesWriter is closed");
+        }
+        return this.output;
+    }
+
+    private JSONLinesWriter newLine() throws JSONException {
+        try {
+            this.output.write('\n');
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Hand on the lines written so far, and flush the destination.
+     * @throws IOException if the destination cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+        this.output().flush();
+    }
+
+    /**
+     * Hand on the lines written so far, and close the destination. Closing a
+     * closed writer has no effect.
+     * @throws IOException if the destination cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.output == null) {
+            return;
+        }
+        JSONOutput closing = this.output;
+        this.output = null;
+        try {
+            closing.drain();
+        } finally {
+            closing.release();
+            this.destination.close();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.io.Closeable;
  */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
@@ -36,6 +37,8 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
@@ -157,6 +160,11 @@ public class JSONObject {
      */
     private final Map<String, Object> map;
 
+    /**
+     * True if the map holds LazyValues, which are decoded when asked for.
+     */
+    private boolean lazy;
+
     /**
      * It is sometimes more convenient and less ambiguous to have a
      * <code>NULL</code> object than to use Java's <code>null</code> value.
@@ -209,6 +217,10 @@ public class JSONObject {
      */
     public JSONObject(JSONTokener x) throws JSONException {
         this();
+        this.parse(x);
+    }
+
+    private void parse(JSONTokener x) throws JSONException {
         char c;
         String key;
 
@@ -400,6 +412,58 @@ public class JSONObject {
         this(new JSONTokener(source));
     }
 
+    /**
+     * Construct a JSONObject from a source JSON text string, optionally parsing
+     * it lazily. A lazy parse only finds the keys and where each value begins
+     * and ends; a value is decoded the first time it is asked for, and nested
+     * objects are themselves parsed lazily. Values that are never asked for are
+     * written back out by {@link #toString()} as they appear in the source, as
+     * long as they are strict JSON. This makes reading a few members of a large
+     * object much cheaper.
+     * <p>
+     * A lazy parse reports malformed objects and duplicated keys at the top level
+     * right away, but a syntax error inside a value is only reported when the
+     * value is decoded, by the <code>get</code> or <code>opt</code> method that
+     * asked for it.
+     * <p>
+     * Decoded values are kept apart from the map of keys, so a lazy JSONObject
+     * may be read by several threads at once, as one parsed eagerly may; it
+     * must not be changed while it is read, as for any JSONObject.
+     *
+     * @param source
+     *            A string beginning with <code>{</code>&nbsp;<small>(left
+     *            brace)</small> and ending with <code>}</code>
+     *            &nbsp;<small>(right brace)</small>.
+     * @param lazy
+     *            true to decode values only when they are asked for.
+     * @exception JSONException
+     *                If there is a syntax error in the source string or a
+     *                duplicated key.
+     */
+    public JSONObject(String source, boolean lazy) throws JSONException {
+        this();
+        if (lazy) {
+            this.lazy = true;
+            new JSONScanner(source, 0).scanObject(this.map);
+        } else {
+            this.parse(new JSONTokener(source));
+        }
+    }
+
+    /**
+     * Construct a JSONObject whose values are decoded when asked for.
+     *
+     * @param x
+     *            A JSONScanner positioned at the start of the object.
+     * @throws JSONException
+     *             If the object is not well formed or has a duplicated key.
+     */
+    JSONObject(JSONScanner x) throws JSONException {
+        this();
+        this.lazy = true;
+        x.scanObject(this.map);
+    }
+
     /**
      * Construct a JSONObject from a ResourceBundle.
      *
@@ -454,6 +518,147 @@ public class JSONObject {
         this.map = new HashMap<String, Object>(initialCapacity);
     }
 
+    /**
+     * Construct a frozen JSONObject.
+     *
+     * @param map the frozen keys and values
+     */
+    private JSONObject(FrozenMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Get a frozen copy of this JSONObject: one that can not be changed, so it
+     * can be cached and shared between threads without copying or
+     * synchronization. Its values are frozen too: JSONObjects and JSONArrays
+     * are frozen, and Maps, Collections and arrays are made into frozen
+     * JSONObjects and JSONArrays. Any other value, such as a bean, is shared
+     * as it is. The keys and values are kept in compact arrays, and the text
+     * of {@link #toString()} is made once and kept.
+     * <p>
+     * Every method that would change a frozen JSONObject throws an
+     * UnsupportedOperationException. {@link #with(String, Object)} makes a
+     * frozen copy with a change, and {@link #JSONObject(JSONObject, String[])}
+     * or {@link #JSONObject(Map)} with {@link #toMap()} makes a copy that can be
+     * changed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @return this if it is frozen already, or else a frozen copy.
+     */
+    public JSONObject freeze() {
+        if (this.map instanceof FrozenMap) {
+            return this;
+        }
+        Map<String, Object> frozen = new LinkedHashMap<String, Object>(this.map.size() * 2);
+        for (Entry<String, Object> entry : this.entrySet()) {
+            frozen.put(entry.getKey(), freeze(entry.getValue()));
+        }
+        return new JSONObject(new CompactMap(frozen));
+    }
+
+    /**
+     * Freeze a value of a JSONObject or JSONArray.
+     *
+     * @param value the value
+     * @return the frozen value
+     */
+    static Object freeze(Object value) {
+        if (value instanceof JSONObject) {
+            return ((JSONObject) value).freeze();
+        }
+        if (value instanceof JSONArray) {
+            return ((JSONArray) value).freeze();
+        }
+        if (value instanceof Map) {
+            return new JSONObject((Map<?, ?>) value).freeze();
+        }
+        if (value instanceof Collection) {
+            return new JSONArray((Collection<?>) value).freeze();
+        }
+        if (value != null && value.getClass().isArray()) {
+            return new JSONArray(value).freeze();
+        }
+        return value;
+    }
+
+    /**
+     * Get a frozen copy of this JSONObject with a key set to a value. The copy
+     * is kept in a hash array mapped trie that shares all but the few nodes on
+     * the path to the key with this JSONObject, when this one was made by
+     * with() too, so a change costs O(log n) rather than a copy of every
+     * member, and any number of versions can be kept cheaply. The value is
+     * frozen as {@link #freeze()} freezes values.
+     * <p>
+     * Only JSONObjects that are frozen already are updated cheaply. On one
+     * made by freeze(), the first call builds the trie, in O(n), and keeps it
+     * for the calls that follow. A JSONObject that can be changed is copied
+     * with freeze() and built into a trie on every call, so each call costs
+     * O(n), as a deep copy does: call freeze() once, and call with() on the
+     * frozen copy.
+     * <p>
+     * A frozen copy made by with() does not keep the order of its keys.
+     *
+     * @param key
+     *            A key string.
+     * @param value
+     *            An object which is the value. It should be of one of these
+     *            types: Boolean, Double, Integer, JSONArray, JSONObject, Long,
+     *            String, or the JSONObject.NULL object. If it is null, the copy
+     *            does not have the key.
+     * @return a frozen copy with the key set to the value.
+     * @throws JSONException
+     *            If the value is non-finite number.
+     * @throws NullPointerException
+     *            If the key is <code>null</code>.
+     */
+    public JSONObject with(String key, Object value) throws JSONException {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        if (value == null) {
+            return this.without(key);
+        }
+        testValidity(value);
+        PersistentMap persistent = this.freeze().toPersistent();
+        PersistentMap changed = persistent.with(key, freeze(value));
+        return changed == this.map ? this : new JSONObject(changed);
+    }
+
+    /**
+     * Get a frozen copy of this JSONObject without a key, sharing structure as
+     * {@link #with(String, Object)} does, at the same cost.
+     *
+     * @param key
+     *            The name to be removed.
+     * @return a frozen copy without the key.
+     */
+    public JSONObject without(String key) {
+        PersistentMap persistent = this.freeze().toPersistent();
+        PersistentMap changed = persistent.without(key);
+        return changed == this.map ? this : new JSONObject(changed);
+    }
+
+    /**
+     * Get the map of this frozen JSONObject as a persistent map.
+     *
+     * @return the persistent map
+     */
+    private PersistentMap toPersistent() {
+        return ((FrozenMap) this.map).toPersistent();
+    }
+
+    /**
+     * Determine if this JSONObject is frozen.
+     *
+     * @return true if it was made by {@link #freeze()}, {@link #with(String, Object)}
+     *            or {@link #without(String)}.
+     */
+    public boolean isFrozen() {
+        return this.map instanceof FrozenMap;
+    }
+
     /**
      * Accumulate values under a key. It is similar to the put method except
      * that if there is already an object stored under the key then a JSONArray
@@ -882,8 +1087,13 @@ public class JSONObject {
      * @throws JSONException
      *             If there is already a property with this name that is not an
      *             Integer, Long, Double, or Float.
+     * @throws UnsupportedOperationException
+     *             If this JSONObject is frozen, whatever the property holds.
      */
     public JSONObject increment(String key) throws JSONException {
+        if (this.isFrozen()) {
+            throw FrozenMap.frozen();
+        }
         Object value = this.opt(key);
         if (value == null) {
             this.put(key, 1);
@@ -955,6 +1165,9 @@ public class JSONObject {
      * @return An Entry Set
      */
     protected Set<Entry<String, Object>> entrySet() {
+        if (this.lazy) {
+            return LazyValue.decoded(this.map.entrySet());
+        }
         return this.map.entrySet();
     }
 
@@ -1036,7 +1249,10 @@ public class JSONObject {
      * @return An object which is the value, or null if there is no value.
      */
     public Object opt(String key) {
-        return key == null ? null : this.map.get(key);
+        if (key == null) {
+            return null;
+        }
+        return LazyValue.decoded(this.map.get(key));
     }
 
     /**
@@ -1886,13 +2102,15 @@ public class JSONObject {
      * "/a/b"
      * </pre>
      * Then this method will return the String "c".
+     * The parsed pointer is cached, so querying with the same string again does
+     * not parse it again.
      * A JSONPointerException may be thrown from code called by this method.
      *   
      * @param jsonPointer string that can be used to create a JSONPointer
      * @return the item matched by the JSONPointer, otherwise null
      */
     public Object query(String jsonPointer) {
-        return query(new JSONPointer(jsonPointer));
+        return query(JSONPointer.forString(jsonPointer));
     }
     /**
      * Uses a user initialized JSONPointer  and tries to 
@@ -1926,7 +2144,7 @@ public class JSONObject {
      * @throws IllegalArgumentException if {@code jsonPointer} has invalid syntax
      */
     public Object optQuery(String jsonPointer) {
-    	return optQuery(new JSONPointer(jsonPointer));
+    	return optQuery(JSONPointer.forString(jsonPointer));
     }
     
     /**
@@ -2036,7 +2254,7 @@ public class JSONObject {
      *         no value.
      */
     public Object remove(String key) {
-        return this.map.remove(key);
+        return LazyValue.decoded(this.map.remove(key));
     }
 
     /**
@@ -2310,6 +2528,15 @@ public class JSONObject {
     @Override
     public String toString() {
         try {
+            if (this.map instanceof FrozenMap) {
+                FrozenMap frozen = (FrozenMap) this.map;
+                String text = frozen.text;
+                if (text == null) {
+                    text = this.toString(0);
+                    frozen.text = text;
+                }
+                return text;
+            }
             return this.toString(0);
         } catch (Exception e) {
             return null;
@@ -2460,6 +2687,8 @@ public class JSONObject {
                 throw new JSONException(e);
             }
             writer.write(o != null ? o.toString() : quote(value.toString()));
+        } else if (value instanceof LazyValue) {
+            ((LazyValue) value).write(writer, indentFactor, indent);
         } else if (value instanceof Number) {
             // not all Numbers may match actual JSON Numbers. i.e. fractions or Imaginary
             final String numberAsString = numberToString((Number) value);
@@ -2493,6 +2722,10 @@ public class JSONObject {
     }
 
     static final void indent(Writer writer, int indent) throws IOException {
+        if (writer instanceof JSONOutput) {
+            ((JSONOutput) writer).indent(indent);
+            return;
+        }
         for (int i = 0; i < indent; i += 1) {
             writer.write(' ');
         }
@@ -2527,13 +2760,28 @@ public class JSONObject {
      */
     public Writer write(Writer writer, int indentFactor, int indent)
             throws JSONException {
+        if (!(writer instanceof JSONOutput)) {
+            JSONOutput output = JSONOutput.acquire(writer);
+            try {
+                try {
+                    this.write(output, indentFactor, indent);
+                } catch (RuntimeException e) {
+                    output.drainAfter(e);
+                    throw e;
+                }
+                output.drain();
+            } finally {
+                output.release();
+            }
+            return writer;
+        }
         try {
             boolean needsComma = false;
             final int length = this.length();
             writer.write('{');
 
             if (length == 1) {
-            	final Entry<String,?> entry = this.entrySet().iterator().next();
+            	final Entry<String,?> entry = this.map.entrySet().iterator().next();
                 final String key = entry.getKey();
                 writer.write(quote(key));
                 writer.write(':');
@@ -2547,7 +2795,7 @@ public class JSONObject {
                 }
             } else if (length != 0) {
                 final int newIndent = indent + indentFactor;
-                for (final Entry<String,?> entry : this.entrySet()) {
+                for (final Entry<String,?> entry : this.map.entrySet()) {
                     if (needsComma) {
                         writer.write(',');
                     }
@@ -2580,6 +2828,164 @@ public class JSONObject {
         }
     }
 
+    /**
+     * Write the contents of the JSONObject as UTF-8 encoded JSON text to a stream.
+     * The text is the same as {@link #write(Writer, int, int)} writes; it is
+     * encoded as it is written, a block at a time, without making a String of
+     * it. The stream is neither flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream write(OutputStream stream, int indentFactor, int indent)
+            throws JSONException {
+        JSONOutput output = JSONOutput.acquire(stream);
+        try {
+            try {
+                this.write(output, indentFactor, indent);
+            } catch (RuntimeException e) {
+                output.drainAfter(e);
+                throw e;
+            }
+            output.drain();
+        } finally {
+            output.release();
+        }
+        return stream;
+    }
+
+    /**
+     * Make the UTF-8 encoding of the JSON text of this JSONObject. The bytes are the
+     * same as those of {@link #toString()}; they are encoded into a pooled buffer
+     * as the text is written, without making a String of it.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @return the UTF-8 encoded JSON text
+     * @throws JSONException if a called function has an error
+     */
+    public byte[] toUTF8Bytes() throws JSONException {
+        JSONOutput output = JSONOutput.acquire();
+        try {
+            this.write(output, 0, 0);
+            output.drain();
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Write the UTF-8 encoding of the JSON text of this JSONObject to a stream,
+     * with no whitespace added. The stream is neither flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream writeTo(OutputStream stream) throws JSONException {
+        return this.write(stream, 0, 0);
+    }
+
+    /**
+     * Put the UTF-8 encoding of the JSON text of this JSONObject into a buffer,
+     * with no whitespace added, from the position of the buffer on. The text is
+     * encoded into a pooled buffer first, so if it does not fit nothing is put.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical.
+     * </b>
+     *
+     * @param buffer
+     *            Receives the UTF-8 encoded JSON
+     * @return The buffer, with its position after the text.
+     * @throws JSONException if a called function has an error
+     * @throws BufferOverflowException if the text does not fit in the space
+     *  remaining in the buffer
+     */
+    public ByteBuffer writeTo(ByteBuffer buffer) throws JSONException {
+        JSONOutput output = JSONOutput.acquire();
+        try {
+            this.write(output, 0, 0);
+            output.drain();
+            output.copyTo(buffer);
+            return buffer;
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Write the JSON text of this JSONObject to a writer, writing parts of large
+     * trees on the threads of the common ForkJoinPool. Runs of members are
+     * written into buffers of their own in parallel and copied into the writer
+     * in order, so the text is that of {@link #write(Writer, int, int)}, which
+     * is used for trees of fewer than about 65,000 values.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical and is
+     * not modified while it is written.
+     * </b>
+     *
+     * @param writer
+     *            Writes the serialized JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The writer.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public Writer writeParallel(Writer writer, int indentFactor, int indent)
+            throws JSONException {
+        if (!ParallelWriter.write(this, writer, null, indentFactor, indent)) {
+            this.write(writer, indentFactor, indent);
+        }
+        return writer;
+    }
+
+    /**
+     * Write the UTF-8 encoding of the JSON text of this JSONObject to a stream, as
+     * {@link #writeParallel(Writer, int, int)} does. The stream is neither
+     * flushed nor closed.
+     * <p><b>
+     * Warning: This method assumes that the data structure is acyclical and is
+     * not modified while it is written.
+     * </b>
+     *
+     * @param stream
+     *            Receives the UTF-8 encoded JSON
+     * @param indentFactor
+     *            The number of spaces to add to each level of indentation.
+     * @param indent
+     *            The indentation of the top level.
+     * @return The stream.
+     * @throws JSONException if a called function has an error or a write error
+     * occurs
+     */
+    public OutputStream writeParallel(OutputStream stream, int indentFactor, int indent)
+            throws JSONException {
+        if (!ParallelWriter.write(this, null, stream, indentFactor, indent)) {
+            this.write(stream, indentFactor, indent);
+        }
+        return stream;
+    }
+
     /**
      * Returns a java.util.Map containing all of the entries in this object.
      * If an entry in the object is a JSONArray or JSONObject it will also
@@ -0,0 +1,353 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The buffer that JSONObject and JSONArray write their text through. Characters
+ * are collected in a block and handed on a block at a time, either to a Writer
+ * or, encoded as UTF-8, to an OutputStream, so that writing a value costs no
+ * more than an array store however the destination is made. Indentation is
+ * copied from a block of spaces rather than written a space at a time. With
+ * no destination, the UTF-8 bytes are kept, to be copied out at the end.
+ * <p>
+ * Nothing reaches the destination until {@link #drain()} is called; the
+ * destination itself is not flushed or closed.
+ * <p>
+ * Outputs are pooled, so that their buffers are reused: {@link #acquire()}
+ * takes one from the pool, or makes one if there is none to spare, and
+ * {@link #release()} gives it back.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class JSONOutput extends Writer {
+
+    /** Size of the block of characters. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Kept bytes larger than this are not pooled. */
+    private static final int MAX_POOLED_BYTES = 1 << 20;
+
+    /** Idle outputs. A thread takes from and returns to the slot its id picks. */
+    private static final AtomicReferenceArray<JSONOutput> POOL = new AtomicReferenceArray<JSONOutput>(16);
+
+    /** Spaces to copy indentation from. */
+    private static final char[] SPACES = new char[256];
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    /** The block of characters that have not been handed on yet. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** Number of characters in the buffer. */
+    private int count;
+
+    /** The destination, if it is a Writer. */
+    private Writer writer;
+
+    /** The destination, if it is an OutputStream. */
+    private OutputStream stream;
+
+    /**
+     * The UTF-8 encoding of a block for an OutputStream or, with no destination,
+     * all of the bytes so far.
+     */
+    private byte[] bytes;
+
+    /** Number of bytes kept, with no destination. */
+    private int size;
+
+    /** A high surrogate at the end of the last block, or 0. */
+    private char pendingHigh;
+
+    /**
+     * Make an output with no destination; use {@link #acquire()} instead.
+     */
+    private JSONOutput() {
+    }
+
+    /**
+     * Take an output from the pool, with no destination.
+     * @return the output, to be given back with {@link #release()}
+     */
+    static JSONOutput acquire() {
+        JSONOutput output = POOL.getAndSet(slot(), null);
+        return output != null ? output : new JSONOutput();
+    }
+
+    /**
+     * Take an output from the pool.
+     * @param writer the destination of the characters
+     * @return the output, to be given back with {@link #release()}
+     */
+    static JSONOutput acquire(Writer writer) {
+        JSONOutput output = acquire();
+        output.writer = writer;
+        return output;
+    }
+
+    /**
+     * Take an output from the pool.
+     * @param stream the destination of the UTF-8 encoded characters
+     * @return the output, to be given back with {@link #release()}
+     */
+    static JSONOutput acquire(OutputStream stream) {
+        JSONOutput output = acquire();
+        output.stream = stream;
+        return output;
+    }
+
+    /**
+     * Forget the destination and anything not handed on, and give the output
+     * back to the pool. It must not be used afterwards.
+     */
+    void release() {
+        this.writer = null;
+        this.stream = null;
+        this.count = 0;
+        this.size = 0;
+        this.pendingHigh = 0;
+        if (this.bytes != null && this.bytes.length > MAX_POOLED_BYTES) {
+            this.bytes = null;
+        }
+        POOL.lazySet(slot(), this);
+    }
+
+    private static int slot() {
+        return (int) Thread.currentThread().getId() & (POOL.length() - 1);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (this.count == BUFFER_SIZE) {
+            this.handOn();
+        }
+        this.buffer[this.count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (len > BUFFER_SIZE - this.count) {
+            this.handOn();
+            if (len >= BUFFER_SIZE) {
+                this.handOn(cbuf, off, len);
+                return;
+            }
+        }
+        System.arraycopy(cbuf, off, this.buffer, this.count, len);
+        this.count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.count == BUFFER_SIZE) {
+                this.handOn();
+            }
+            int n = Math.min(len, BUFFER_SIZE - this.count);
+            str.getChars(off, off + n, this.buffer, this.count);
+            this.count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write spaces.
+     * @param n the number of spaces
+     * @throws IOException if the destination cannot be written
+     */
+    void indent(int n) throws IOException {
+        while (n > 0) {
+            int k = Math.min(n, SPACES.length);
+            this.write(SPACES, 0, k);
+            n -= k;
+        }
+    }
+
+    /**
+     * Hand on everything written so far to the destination.
+     * @throws JSONException if the destination cannot be written
+     */
+    void drain() throws JSONException {
+        try {
+            this.handOn();
+            if (this.pendingHigh != 0) {
+                // a lone high surrogate, replaced as String.getBytes does
+                this.pendingHigh = 0;
+                if (this.stream != null) {
+                    this.stream.write('?');
+                } else {
+                    this.bytes[this.size++] = '?';
+                }
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Hand on everything written so far after a write has failed, so that the
+     * destination gets the text up to the failure. An error doing so is added
+     * to the failure as a suppressed exception rather than replacing it.
+     * @param failure the error of the write
+     */
+    void drainAfter(Throwable failure) {
+        try {
+            this.drain();
+        } catch (JSONException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Hand on what is in the buffer and empty it.
+     */
+    private void handOn() throws IOException {
+        if (this.count > 0) {
+            int n = this.count;
+            this.count = 0;
+            this.handOn(this.buffer, 0, n);
+        }
+    }
+
+    private void handOn(char[] chars, int off, int len) throws IOException {
+        if (this.writer != null) {
+            this.writer.write(chars, off, len);
+            return;
+        }
+        // each char takes at most 3 bytes, and a lone surrogate left from the
+        // last block 1 more
+        int b = this.stream != null ? 0 : this.size;
+        if (this.bytes == null || this.bytes.length - b < len * 3 + 1) {
+            int capacity = Math.max(BUFFER_SIZE * 3 + 1, b + len * 3 + 1);
+            this.bytes = this.bytes == null ? new byte[capacity]
+                    : Arrays.copyOf(this.bytes, Math.max(capacity, this.bytes.length * 2));
+        }
+        byte[] bytes = this.bytes;
+        int i = off;
+        int end = off + len;
+        if (this.pendingHigh != 0 && i < end) {
+            char high = this.pendingHigh;
+            this.pendingHigh = 0;
+            if (Character.isLowSurrogate(chars[i])) {
+                b = encode(Character.toCodePoint(high, chars[i++]), bytes, b);
+            } else {
+                bytes[b++] = '?';
+            }
+        }
+        while (i < end) {
+            char c = chars[i++];
+            if (c < 0x80) {
+                bytes[b++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[b++] = (byte) (0xC0 | c >> 6);
+                bytes[b++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)) {
+                if (i == end) {
+                    this.pendingHigh = c;
+                } else if (Character.isLowSurrogate(chars[i])) {
+                    b = encode(Character.toCodePoint(c, chars[i++]), bytes, b);
+                } else {
+                    bytes[b++] = '?';
+                }
+            } else if (Character.isLowSurrogate(c)) {
+                bytes[b++] = '?';
+            } else {
+                bytes[b++] = (byte) (0xE0 | c >> 12);
+                bytes[b++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[b++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        if (this.stream != null) {
+            this.stream.write(bytes, 0, b);
+        } else {
+            this.size = b;
+        }
+    }
+
+    /**
+     * With no destination, copy out the bytes kept. Call {@link #drain()} first.
+     * @return the UTF-8 bytes
+     */
+    byte[] toByteArray() {
+        return this.bytes == null ? new byte[0] : Arrays.copyOf(this.bytes, this.size);
+    }
+
+    /**
+     * With no destination, put the bytes kept into a buffer. Call
+     * {@link #drain()} first.
+     * @param buffer the buffer to put the bytes in, from its position
+     * @throws BufferOverflowException if the buffer does not have room for all
+     *  of the bytes, in which case none are put
+     */
+    void copyTo(ByteBuffer buffer) {
+        if (this.size > 0) {
+            buffer.put(this.bytes, 0, this.size);
+        }
+    }
+
+    /**
+     * Encode a supplementary code point as 4 bytes.
+     * @return the index after the bytes
+     */
+    private static int encode(int codePoint, byte[] bytes, int b) {
+        bytes[b++] = (byte) (0xF0 | codePoint >> 18);
+        bytes[b++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        bytes[b++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        bytes[b++] = (byte) (0x80 | codePoint & 0x3F);
+        return b;
+    }
+
+    /**
+     * Hand on everything written so far, and flush the destination.
+     */
+    @Override
+    public void flush() throws IOException {
+        this.drain();
+        if (this.writer != null) {
+            this.writer.flush();
+        } else if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+    /**
+     * Hand on everything written so far. The destination is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        this.drain();
+    }
+}
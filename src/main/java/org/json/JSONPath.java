@@ -0,0 +1,1112 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A JSONPath expression, which selects any number of values from a JSON document,
+ * in the form described by <a href="https://goessner.net/articles/JsonPath/">Stefan
+ * Goessner</a> and <a href="https://tools.ietf.org/html/rfc9535">RFC 9535</a>. For
+ * example <code>$..book[?(@.price &lt; 10)].title</code> selects the title of every
+ * book cheaper than 10, wherever it is in the document.
+ * <p>
+ * An expression starts with <code>$</code>, followed by any number of segments:
+ * <ul>
+ * <li><code>.name</code> or <code>['name']</code> selects a member of an object,</li>
+ * <li><code>[0]</code> selects an element of an array, counting from the end if negative,</li>
+ * <li><code>['a','b']</code> or <code>[0,2]</code> selects several members or elements,</li>
+ * <li><code>[1:3]</code> selects a slice of an array, with an optional step as in <code>[::2]</code>,</li>
+ * <li><code>.*</code> or <code>[*]</code> selects all members or elements,</li>
+ * <li><code>[?(expression)]</code> selects the members or elements for which the expression
+ *     holds. It can compare values relative to the member or element, written like
+ *     <code>@.price</code>, with literals using <code>== != &lt; &lt;= &gt; &gt;=</code>,
+ *     and combine them with <code>&amp;&amp; || !</code>. A relative value alone
+ *     tests that it exists.</li>
+ * </ul>
+ * and any of these segments can be preceded by <code>..</code> instead of <code>.</code>
+ * to apply it to every descendant as well, as in <code>$..name</code>.
+ * <p>
+ * An expression is parsed once, when it is constructed, and can then be evaluated
+ * against any number of documents, including documents that are read from a
+ * {@link JSONTokener} or from XML without building the whole tree first.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class JSONPath {
+
+    // kinds of selector
+    private static final int MEMBERS = 0;
+    private static final int WILDCARD = 1;
+    private static final int SLICE = 2;
+    private static final int FILTER = 3;
+
+    /** Result of a relative value in a filter that does not exist. */
+    private static final Object MISSING = new Object();
+
+    /** The expression as given. */
+    private final String expression;
+
+    /** The segments of the expression, in order. */
+    private final Segment[] segments;
+
+    /**
+     * Parses a JSONPath expression.
+     *
+     * @param expression the expression, starting with <code>$</code>
+     * @throws NullPointerException if {@code expression} is null
+     * @throws IllegalArgumentException if {@code expression} is not a valid JSONPath
+     */
+    public JSONPath(String expression) {
+        if (expression == null) {
+            throw new NullPointerException("expression cannot be null");
+        }
+        this.expression = expression;
+        this.segments = new Parser(expression).parsePath();
+    }
+
+    /**
+     * Evaluates this expression on the given {@code document}, which is usually a
+     * {@link JSONObject} or a {@link JSONArray}. The values are selected as the
+     * stream is consumed.
+     *
+     * @param document the JSON document to query
+     * @return a stream of the selected values
+     */
+    public Stream<Object> stream(Object document) {
+        return this.evaluate(document, 0);
+    }
+
+    /**
+     * Evaluates this expression on the given {@code document}.
+     *
+     * @param document the JSON document to query
+     * @return the selected values, which may be empty
+     */
+    public JSONArray queryFrom(Object document) {
+        final JSONArray results = new JSONArray();
+        this.stream(document).forEachOrdered(value -> results.put(value));
+        return results;
+    }
+
+    /**
+     * Evaluates this expression on the JSON text read by the given tokener, without
+     * building the whole document first. Values that the expression cannot reach are
+     * skipped; only the values selected, and the containers a filter or a negative
+     * index has to see as a whole, are built. The values are selected in the order
+     * they appear in the text, as the stream is consumed.
+     * <p>
+     * Skipped values are only checked for balanced brackets and quotes, so some
+     * malformed text that the JSONObject constructor would reject is not noticed.
+     *
+     * @param x the tokener positioned at the start of a JSON value
+     * @return a stream of the selected values
+     * @throws JSONException from the stream operation that reaches a syntax error
+     */
+    public Stream<Object> stream(JSONTokener x) {
+        return toStream(new TokenerIterator(x));
+    }
+
+    /**
+     * Evaluates this expression on an XML document as {@link XML#toJSONObject(Reader,
+     * XMLParserConfiguration)} would convert it, without converting the whole document
+     * first. The segments of the expression that name a single child, such as
+     * <code>$.catalog.book</code>, become an element path for
+     * {@link XML#streamElements(Reader, String, XMLParserConfiguration)}, and the rest of
+     * the expression is evaluated on each of those elements as it is read. Each element
+     * is treated as a member of an array, whether or not it repeats, so
+     * <code>$.catalog.book</code> selects every book one by one rather than an array of
+     * them, <code>$.catalog.book[?(@.price &lt; 10)]</code> tests every book, and
+     * <code>$.catalog.book.title</code> selects the title of every book.
+     * <p>
+     * The names are matched against the keys the elements are converted to, so with a
+     * key transformer they are the transformed names. Expressions that do not start
+     * with a name, or that count from the end of the elements, are evaluated on the
+     * fully converted document instead.
+     *
+     * @param reader the XML source reader
+     * @param config configuration options for the parser
+     * @return a stream of the selected values
+     * @throws JSONException from the stream operation that reaches a syntax error
+     */
+    public Stream<Object> streamXML(Reader reader, XMLParserConfiguration config) {
+        int names = 0;
+        while (names < this.segments.length && this.segments[names].isName()) {
+            names++;
+        }
+        final Segment next = names < this.segments.length ? this.segments[names] : null;
+        if (names == 0 || (next != null && next.kind != FILTER && next.needsValue())) {
+            return this.stream(XML.toJSONObject(reader, config));
+        }
+        String[] keys = new String[names];
+        for (int i = 0; i < names; i++) {
+            keys[i] = (String) this.segments[i].members[0];
+        }
+        final XMLElementIterator elements = new XMLElementIterator(new XMLTokener(reader), keys, config);
+        final int rest = names;
+        Iterator<Object> values = new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return elements.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return elements.nextValue();
+            }
+        };
+        Stream<Object> results = toStream(values);
+        if (next == null) {
+            return results;
+        }
+        if (next.descendant || next.kind == MEMBERS && next.members[0] instanceof String) {
+            return results.flatMap(value -> this.evaluate(value, rest));
+        }
+        final int[] counter = new int[1];
+        return results.flatMap(value -> next.selectsElement(value, counter[0]++)
+                ? this.evaluate(value, rest + 1)
+                : Stream.empty());
+    }
+
+    /**
+     * Evaluates this expression on an XML document using the original parser
+     * configuration.
+     *
+     * @param reader the XML source reader
+     * @return a stream of the selected values
+     * @see #streamXML(Reader, XMLParserConfiguration)
+     */
+    public Stream<Object> streamXML(Reader reader) {
+        return this.streamXML(reader, XMLParserConfiguration.ORIGINAL);
+    }
+
+    /**
+     * Returns the expression as given to the constructor.
+     */
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    /**
+     * @param node a value of the document
+     * @param position the index of the first segment left to apply
+     * @return the values the remaining segments select from {@code node}
+     */
+    private Stream<Object> evaluate(Object node, final int position) {
+        if (position == this.segments.length) {
+            return Stream.of(node);
+        }
+        final Segment segment = this.segments[position];
+        Stream<Object> nodes = segment.descendant ? descendantsOrSelf(node) : Stream.of(node);
+        return nodes.flatMap(segment::select).flatMap(child -> this.evaluate(child, position + 1));
+    }
+
+    private static Stream<Object> toStream(Iterator<Object> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @param node a value of the document
+     * @return the values of the members of an object or the elements of an array,
+     *      or an empty stream for any other value
+     */
+    private static Stream<Object> children(Object node) {
+        if (node instanceof JSONObject) {
+            final JSONObject jo = (JSONObject) node;
+            return jo.keySet().stream().map(key -> jo.opt(key));
+        }
+        if (node instanceof JSONArray) {
+            return StreamSupport.stream(((JSONArray) node).spliterator(), false);
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * @param node a value of the document
+     * @return the node followed by all values within it, depth first
+     */
+    private static Stream<Object> descendantsOrSelf(Object node) {
+        return Stream.concat(Stream.of(node), children(node).flatMap(JSONPath::descendantsOrSelf));
+    }
+
+    /**
+     * One step of an expression, selecting children of the values it is applied to.
+     */
+    private static final class Segment {
+        /** True if the selector also applies to every descendant. */
+        final boolean descendant;
+        final int kind;
+        /** Names (String) and indexes (Integer) selected by a MEMBERS selector. */
+        final Object[] members;
+        /** Bounds of a SLICE selector; null for the default. */
+        final Integer start, end;
+        final int step;
+        final Expr filter;
+
+        Segment(boolean descendant, int kind, Object[] members, Integer start, Integer end, int step,
+                Expr filter) {
+            this.descendant = descendant;
+            this.kind = kind;
+            this.members = members;
+            this.start = start;
+            this.end = end;
+            this.step = step;
+            this.filter = filter;
+        }
+
+        /**
+         * @return true if this selects a single member by name and nothing else
+         */
+        boolean isName() {
+            return !this.descendant && this.kind == MEMBERS && this.members.length == 1
+                    && this.members[0] instanceof String;
+        }
+
+        /**
+         * @return true if this needs a whole container to tell which of its children
+         *      it selects, because of a filter or an index counted from the end
+         */
+        boolean needsValue() {
+            if (this.kind == FILTER) {
+                return true;
+            }
+            if (this.kind == SLICE) {
+                return (this.start != null && this.start.intValue() < 0)
+                        || (this.end != null && this.end.intValue() < 0);
+            }
+            if (this.kind == MEMBERS) {
+                for (Object member : this.members) {
+                    if (member instanceof Integer && ((Integer) member).intValue() < 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param key the name of a member of an object
+         * @return true if this selects the member, for selectors that do not
+         *      {@link #needsValue() need the whole object}
+         */
+        boolean selectsKey(String key) {
+            if (this.kind == WILDCARD) {
+                return true;
+            }
+            if (this.kind == MEMBERS) {
+                for (Object member : this.members) {
+                    if (key.equals(member)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param index the index of an element of an array
+         * @return true if this selects the element, for selectors that do not
+         *      {@link #needsValue() need the whole array}
+         */
+        boolean selectsIndex(int index) {
+            if (this.kind == WILDCARD) {
+                return true;
+            }
+            if (this.kind == SLICE) {
+                int from = this.start == null ? 0 : this.start.intValue();
+                return index >= from && (this.end == null || index < this.end.intValue())
+                        && (index - from) % this.step == 0;
+            }
+            if (this.kind == MEMBERS) {
+                for (Object member : this.members) {
+                    if (member instanceof Integer && ((Integer) member).intValue() == index) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param value an element of an array
+         * @param index the index of the element
+         * @return true if this selects the element
+         */
+        boolean selectsElement(Object value, int index) {
+            if (this.kind == FILTER) {
+                return this.filter.test(value);
+            }
+            return this.selectsIndex(index);
+        }
+
+        /**
+         * @param node a value of the document
+         * @return the children of {@code node} that this selects
+         */
+        Stream<Object> select(Object node) {
+            if (this.kind == WILDCARD) {
+                return children(node);
+            }
+            if (this.kind == FILTER) {
+                return children(node).filter(child -> this.filter.test(child));
+            }
+            if (node instanceof JSONObject) {
+                if (this.kind != MEMBERS) {
+                    return Stream.empty();
+                }
+                JSONObject jo = (JSONObject) node;
+                List<Object> selected = new ArrayList<Object>(this.members.length);
+                for (Object member : this.members) {
+                    Object value = member instanceof String ? jo.opt((String) member) : null;
+                    if (value != null) {
+                        selected.add(value);
+                    }
+                }
+                return selected.stream();
+            }
+            if (node instanceof JSONArray) {
+                JSONArray ja = (JSONArray) node;
+                int length = ja.length();
+                List<Object> selected = new ArrayList<Object>();
+                if (this.kind == SLICE) {
+                    int from = this.bound(this.start, 0, length);
+                    int to = this.bound(this.end, length, length);
+                    for (int i = from; i < to; i += this.step) {
+                        selected.add(ja.opt(i));
+                    }
+                    return selected.stream();
+                }
+                for (Object member : this.members) {
+                    if (member instanceof Integer) {
+                        int index = ((Integer) member).intValue();
+                        Object value = ja.opt(index < 0 ? length + index : index);
+                        if (value != null) {
+                            selected.add(value);
+                        }
+                    }
+                }
+                return selected.stream();
+            }
+            return Stream.empty();
+        }
+
+        private int bound(Integer value, int defaultValue, int length) {
+            if (value == null) {
+                return defaultValue;
+            }
+            int bound = value.intValue() < 0 ? length + value.intValue() : value.intValue();
+            return Math.max(0, Math.min(length, bound));
+        }
+    }
+
+    /**
+     * Evaluates the expression on a tokener, one value at a time. Each value is
+     * visited with the positions of the segments still to be matched against it;
+     * a position is kept for the children of a value while a descendant segment
+     * is searching, and advanced for the children its selector picks.
+     */
+    private final class TokenerIterator implements Iterator<Object> {
+        private final JSONTokener x;
+        /** Values selected but not yet returned. */
+        private final Deque<Object> pending = new ArrayDeque<Object>();
+        /** The containers being read, innermost last. */
+        private final List<Frame> frames = new ArrayList<Frame>();
+        private boolean started;
+
+        TokenerIterator(JSONTokener x) {
+            this.x = x;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.pending.isEmpty()) {
+                if (!this.advance()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Object next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.pending.poll();
+        }
+
+        /**
+         * Read the next value, or the end of a container.
+         * @return false at the end of the document
+         */
+        private boolean advance() throws JSONException {
+            if (!this.started) {
+                this.started = true;
+                this.value(new int[] {0});
+                return true;
+            }
+            if (this.frames.isEmpty()) {
+                return false;
+            }
+            Frame frame = this.frames.get(this.frames.size() - 1);
+            char c = this.x.nextClean();
+            if (frame.array) {
+                if (frame.count > 0) {
+                    if (c == ']') {
+                        this.frames.remove(this.frames.size() - 1);
+                        return true;
+                    }
+                    if (c != ',') {
+                        throw this.x.syntaxError("Expected a ',' or ']'");
+                    }
+                    c = this.x.nextClean();
+                }
+                if (c == ']') {
+                    this.frames.remove(this.frames.size() - 1);
+                    return true;
+                }
+                if (c == 0) {
+                    throw this.x.syntaxError("Expected a ',' or ']'");
+                }
+                this.x.back();
+                this.value(this.children(frame.positions, null, frame.count++));
+                return true;
+            }
+            if (frame.count > 0) {
+                if (c == '}') {
+                    this.frames.remove(this.frames.size() - 1);
+                    return true;
+                }
+                if (c != ',' && c != ';') {
+                    throw this.x.syntaxError("Expected a ',' or '}'");
+                }
+                c = this.x.nextClean();
+            }
+            if (c == '}') {
+                this.frames.remove(this.frames.size() - 1);
+                return true;
+            }
+            if (c == 0) {
+                throw this.x.syntaxError("A JSONObject text must end with '}'");
+            }
+            this.x.back();
+            String key = this.x.nextValue().toString();
+            if (this.x.nextClean() != ':') {
+                throw this.x.syntaxError("Expected a ':' after a key");
+            }
+            frame.count++;
+            this.value(this.children(frame.positions, key, -1));
+            return true;
+        }
+
+        /**
+         * Handle the value the tokener is positioned at.
+         * @param positions the segments still to be matched against the value
+         */
+        private void value(int[] positions) throws JSONException {
+            if (positions.length == 0) {
+                this.skip();
+                return;
+            }
+            boolean build = false;
+            for (int position : positions) {
+                if (position == JSONPath.this.segments.length
+                        || JSONPath.this.segments[position].needsValue()) {
+                    build = true;
+                }
+            }
+            char c = this.x.nextClean();
+            if (!build && (c == '{' || c == '[')) {
+                this.frames.add(new Frame(c == '[', positions));
+                return;
+            }
+            this.x.back();
+            Object value = this.x.nextValue();
+            // a completed match comes before any matches within it
+            for (int i = positions.length - 1; i >= 0; i--) {
+                Iterator<Object> results = JSONPath.this.evaluate(value, positions[i]).iterator();
+                while (results.hasNext()) {
+                    this.pending.add(results.next());
+                }
+            }
+        }
+
+        /**
+         * @param positions the segments still to be matched against a container
+         * @param key the name of a member of the container, or null for an array
+         * @param index the index of an element of the container
+         * @return the segments still to be matched against the member or element
+         */
+        private int[] children(int[] positions, String key, int index) {
+            int[] children = new int[positions.length * 2];
+            int count = 0;
+            for (int position : positions) {
+                Segment segment = JSONPath.this.segments[position];
+                if (segment.descendant) {
+                    children[count++] = position;
+                }
+                if (key != null ? segment.selectsKey(key) : segment.selectsIndex(index)) {
+                    children[count++] = position + 1;
+                }
+            }
+            Arrays.sort(children, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || children[unique - 1] != children[i]) {
+                    children[unique++] = children[i];
+                }
+            }
+            return Arrays.copyOf(children, unique);
+        }
+
+        /**
+         * Skip the value the tokener is positioned at without building it.
+         */
+        private void skip() throws JSONException {
+            char c = this.x.nextClean();
+            if (c == '"' || c == '\'') {
+                this.x.nextString(c);
+                return;
+            }
+            if (c != '{' && c != '[') {
+                this.x.back();
+                this.x.nextValue();
+                return;
+            }
+            int depth = 1;
+            while (depth > 0) {
+                c = this.x.next();
+                if (c == 0) {
+                    throw this.x.syntaxError("Unclosed " + (depth > 1 ? "values" : "value"));
+                } else if (c == '"' || c == '\'') {
+                    this.x.nextString(c);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /** A container being read by a TokenerIterator. */
+    private static final class Frame {
+        final boolean array;
+        final int[] positions;
+        /** Number of members or elements read so far. */
+        int count;
+
+        Frame(boolean array, int[] positions) {
+            this.array = array;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     * A filter expression, or a part of one.
+     */
+    private static abstract class Expr {
+        /**
+         * @param node the member or element being filtered
+         * @return the value of the expression, or MISSING
+         */
+        abstract Object evaluate(Object node);
+
+        /**
+         * @param node the member or element being filtered
+         * @return true if the expression holds for {@code node}
+         */
+        boolean test(Object node) {
+            return Boolean.TRUE.equals(this.evaluate(node));
+        }
+    }
+
+    /** A literal value. */
+    private static final class Literal extends Expr {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Object node) {
+            return this.value;
+        }
+    }
+
+    /** A value relative to the node being filtered, such as <code>@.price</code>. */
+    private static final class Relative extends Expr {
+        private final Object[] path;
+
+        Relative(Object[] path) {
+            this.path = path;
+        }
+
+        @Override
+        Object evaluate(Object node) {
+            Object current = node;
+            for (Object step : this.path) {
+                Object next = null;
+                if (step instanceof String && current instanceof JSONObject) {
+                    next = ((JSONObject) current).opt((String) step);
+                } else if (step instanceof Integer && current instanceof JSONArray) {
+                    JSONArray ja = (JSONArray) current;
+                    int index = ((Integer) step).intValue();
+                    next = ja.opt(index < 0 ? ja.length() + index : index);
+                }
+                if (next == null) {
+                    return MISSING;
+                }
+                current = next;
+            }
+            return current;
+        }
+
+        @Override
+        boolean test(Object node) {
+            return this.evaluate(node) != MISSING;
+        }
+    }
+
+    /** A comparison of two values. */
+    private static final class Comparison extends Expr {
+        private final Expr left;
+        private final String operator;
+        private final Expr right;
+
+        Comparison(Expr left, String operator, Expr right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object node) {
+            Object a = this.left.evaluate(node);
+            Object b = this.right.evaluate(node);
+            boolean result;
+            if ("==".equals(this.operator)) {
+                result = isSame(a, b);
+            } else if ("!=".equals(this.operator)) {
+                result = !isSame(a, b);
+            } else if ("<".equals(this.operator)) {
+                result = compare(a, b) < 0;
+            } else if ("<=".equals(this.operator)) {
+                result = compare(a, b) < 0 || isSame(a, b);
+            } else if (">".equals(this.operator)) {
+                result = compare(b, a) < 0;
+            } else {
+                result = compare(b, a) < 0 || isSame(a, b);
+            }
+            return Boolean.valueOf(result);
+        }
+
+        private static boolean isSame(Object a, Object b) {
+            if (a == MISSING || b == MISSING) {
+                return a == b;
+            }
+            if (a instanceof Number && b instanceof Number) {
+                return compare(a, b) == 0;
+            }
+            if (a instanceof JSONObject) {
+                return ((JSONObject) a).similar(b);
+            }
+            if (a instanceof JSONArray) {
+                return ((JSONArray) a).similar(b);
+            }
+            return a.equals(b);
+        }
+
+        /**
+         * @return the order of two numbers or two strings, or 2 if they cannot be ordered
+         */
+        private static int compare(Object a, Object b) {
+            if (a instanceof String && b instanceof String) {
+                return Integer.signum(((String) a).compareTo((String) b));
+            }
+            if (a instanceof Number && b instanceof Number) {
+                BigDecimal x = toBigDecimal((Number) a);
+                BigDecimal y = toBigDecimal((Number) b);
+                if (x != null && y != null) {
+                    return x.compareTo(y);
+                }
+            }
+            return 2;
+        }
+
+        private static BigDecimal toBigDecimal(Number number) {
+            if (number instanceof BigDecimal) {
+                return (BigDecimal) number;
+            }
+            if (number instanceof BigInteger) {
+                return new BigDecimal((BigInteger) number);
+            }
+            if (number instanceof Double || number instanceof Float) {
+                double d = number.doubleValue();
+                return Double.isNaN(d) || Double.isInfinite(d) ? null : new BigDecimal(number.toString());
+            }
+            return BigDecimal.valueOf(number.longValue());
+        }
+    }
+
+    /** <code>&amp;&amp;</code>, <code>||</code> or <code>!</code>. */
+    private static final class Logical extends Expr {
+        private final String operator;
+        private final Expr left;
+        private final Expr right;
+
+        Logical(String operator, Expr left, Expr right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object node) {
+            boolean result;
+            if ("!".equals(this.operator)) {
+                result = !this.left.test(node);
+            } else if ("&&".equals(this.operator)) {
+                result = this.left.test(node) && this.right.test(node);
+            } else {
+                result = this.left.test(node) || this.right.test(node);
+            }
+            return Boolean.valueOf(result);
+        }
+    }
+
+    /**
+     * Parses the text of an expression.
+     */
+    private static final class Parser {
+        private final String text;
+        private int index;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Segment[] parsePath() {
+            this.skipWhitespace();
+            if (!this.consume('$')) {
+                throw this.error("a JSONPath should start with '$'");
+            }
+            List<Segment> segments = new ArrayList<Segment>();
+            while (this.index < this.text.length()) {
+                char c = this.text.charAt(this.index);
+                if (c == '.') {
+                    this.index++;
+                    boolean descendant = this.consume('.');
+                    if (descendant && this.consume('[')) {
+                        segments.add(this.parseBracket(true));
+                    } else if (this.consume('*')) {
+                        segments.add(new Segment(descendant, WILDCARD, null, null, null, 1, null));
+                    } else {
+                        segments.add(new Segment(descendant, MEMBERS, new Object[] {this.parseName()},
+                                null, null, 1, null));
+                    }
+                } else if (c == '[') {
+                    this.index++;
+                    segments.add(this.parseBracket(false));
+                } else if (Character.isWhitespace(c)) {
+                    this.index++;
+                } else {
+                    throw this.error("unexpected '" + c + "'");
+                }
+            }
+            return segments.toArray(new Segment[segments.size()]);
+        }
+
+        /**
+         * Parses what follows a '[' up to the matching ']'.
+         */
+        private Segment parseBracket(boolean descendant) {
+            this.skipWhitespace();
+            Segment segment;
+            if (this.consume('*')) {
+                segment = new Segment(descendant, WILDCARD, null, null, null, 1, null);
+            } else if (this.consume('?')) {
+                segment = new Segment(descendant, FILTER, null, null, null, 1, this.parseOr());
+            } else if (this.peek() == ':' || this.isNumberStart()) {
+                Integer first = this.peek() == ':' ? null : Integer.valueOf(this.parseInt());
+                this.skipWhitespace();
+                if (this.consume(':')) {
+                    segment = this.parseSlice(descendant, first);
+                } else {
+                    segment = new Segment(descendant, MEMBERS, this.parseMembers(first), null, null, 1, null);
+                }
+            } else {
+                segment = new Segment(descendant, MEMBERS, this.parseMembers(null), null, null, 1, null);
+            }
+            this.skipWhitespace();
+            if (!this.consume(']')) {
+                throw this.error("expected ']'");
+            }
+            return segment;
+        }
+
+        private Segment parseSlice(boolean descendant, Integer start) {
+            this.skipWhitespace();
+            Integer end = this.isNumberStart() ? Integer.valueOf(this.parseInt()) : null;
+            int step = 1;
+            this.skipWhitespace();
+            if (this.consume(':')) {
+                this.skipWhitespace();
+                if (this.isNumberStart()) {
+                    step = this.parseInt();
+                    if (step <= 0) {
+                        throw this.error("slice steps should be positive");
+                    }
+                }
+            }
+            return new Segment(descendant, SLICE, null, start, end, step, null);
+        }
+
+        /**
+         * Parses a comma separated list of quoted names and indexes.
+         * @param first the index already read, or null
+         */
+        private Object[] parseMembers(Integer first) {
+            List<Object> members = new ArrayList<Object>();
+            if (first != null) {
+                members.add(first);
+            } else {
+                members.add(this.parseMember());
+            }
+            this.skipWhitespace();
+            while (this.consume(',')) {
+                this.skipWhitespace();
+                members.add(this.parseMember());
+                this.skipWhitespace();
+            }
+            return members.toArray();
+        }
+
+        private Object parseMember() {
+            char c = this.peek();
+            if (c == '\'' || c == '"') {
+                return this.parseString();
+            }
+            if (this.isNumberStart()) {
+                return Integer.valueOf(this.parseInt());
+            }
+            throw this.error("expected a quoted name or an index");
+        }
+
+        private String parseName() {
+            int start = this.index;
+            while (this.index < this.text.length()) {
+                char c = this.text.charAt(this.index);
+                if (c == '.' || c == '[' || c == ']' || c == '(' || c == ')' || c == ',' || c == '\''
+                        || c == '"' || c == '=' || c == '!' || c == '<' || c == '>' || c == '&' || c == '|'
+                        || Character.isWhitespace(c)) {
+                    break;
+                }
+                this.index++;
+            }
+            if (start == this.index) {
+                throw this.error("expected a name");
+            }
+            return this.text.substring(start, this.index);
+        }
+
+        private String parseString() {
+            char quote = this.text.charAt(this.index++);
+            StringBuilder sb = new StringBuilder();
+            while (this.index < this.text.length()) {
+                char c = this.text.charAt(this.index++);
+                if (c == quote) {
+                    return sb.toString();
+                }
+                if (c == '\\' && this.index < this.text.length()) {
+                    c = this.text.charAt(this.index++);
+                }
+                sb.append(c);
+            }
+            throw this.error("unterminated string");
+        }
+
+        private int parseInt() {
+            int start = this.index;
+            if (this.peek() == '-') {
+                this.index++;
+            }
+            while (this.index < this.text.length() && Character.isDigit(this.text.charAt(this.index))) {
+                this.index++;
+            }
+            try {
+                return Integer.parseInt(this.text.substring(start, this.index));
+            } catch (NumberFormatException e) {
+                throw this.error("expected an index");
+            }
+        }
+
+        private Expr parseOr() {
+            Expr expr = this.parseAnd();
+            this.skipWhitespace();
+            while (this.consume("||")) {
+                expr = new Logical("||", expr, this.parseAnd());
+                this.skipWhitespace();
+            }
+            return expr;
+        }
+
+        private Expr parseAnd() {
+            Expr expr = this.parseUnary();
+            this.skipWhitespace();
+            while (this.consume("&&")) {
+                expr = new Logical("&&", expr, this.parseUnary());
+                this.skipWhitespace();
+            }
+            return expr;
+        }
+
+        private Expr parseUnary() {
+            this.skipWhitespace();
+            if (this.peek() == '!' && !this.text.startsWith("!=", this.index)) {
+                this.index++;
+                return new Logical("!", this.parseUnary(), null);
+            }
+            Expr left = this.parsePrimary();
+            this.skipWhitespace();
+            for (String operator : new String[] {"==", "!=", "<=", ">=", "<", ">"}) {
+                if (this.consume(operator)) {
+                    return new Comparison(left, operator, this.parsePrimary());
+                }
+            }
+            return left;
+        }
+
+        private Expr parsePrimary() {
+            this.skipWhitespace();
+            char c = this.peek();
+            if (c == '(') {
+                this.index++;
+                Expr expr = this.parseOr();
+                this.skipWhitespace();
+                if (!this.consume(')')) {
+                    throw this.error("expected ')'");
+                }
+                return expr;
+            }
+            if (c == '@') {
+                this.index++;
+                return this.parseRelative();
+            }
+            if (c == '\'' || c == '"') {
+                return new Literal(this.parseString());
+            }
+            if (this.isNumberStart()) {
+                int start = this.index++;
+                while (this.index < this.text.length()
+                        && "0123456789.eE+-".indexOf(this.text.charAt(this.index)) >= 0) {
+                    this.index++;
+                }
+                try {
+                    return new Literal(JSONObject.stringToNumber(this.text.substring(start, this.index)));
+                } catch (NumberFormatException e) {
+                    throw this.error("invalid number");
+                }
+            }
+            for (String word : new String[] {"true", "false", "null"}) {
+                if (this.consume(word)) {
+                    return new Literal(JSONObject.stringToValue(word));
+                }
+            }
+            throw this.error("expected a value");
+        }
+
+        private Expr parseRelative() {
+            List<Object> path = new ArrayList<Object>();
+            for (;;) {
+                if (this.consume('.')) {
+                    path.add(this.parseName());
+                } else if (this.consume('[')) {
+                    this.skipWhitespace();
+                    path.add(this.parseMember());
+                    this.skipWhitespace();
+                    if (!this.consume(']')) {
+                        throw this.error("expected ']'");
+                    }
+                } else {
+                    return new Relative(path.toArray());
+                }
+            }
+        }
+
+        private char peek() {
+            return this.index < this.text.length() ? this.text.charAt(this.index) : 0;
+        }
+
+        private boolean isNumberStart() {
+            char c = this.peek();
+            return (c >= '0' && c <= '9') || (c == '-' && this.index + 1 < this.text.length()
+                    && Character.isDigit(this.text.charAt(this.index + 1)));
+        }
+
+        private boolean consume(char c) {
+            if (this.peek() == c) {
+                this.index++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean consume(String s) {
+            if (this.text.startsWith(s, this.index)) {
+                this.index += s.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (this.index < this.text.length() && Character.isWhitespace(this.text.charAt(this.index))) {
+                this.index++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + this.index + " in JSONPath " + this.text);
+        }
+    }
+}
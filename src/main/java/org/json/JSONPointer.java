@@ -7,7 +7,9 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -56,6 +58,25 @@ public class JSONPointer {
     // used for URL encoding and decoding
     private static final String ENCODING = "utf-8";
 
+    // maximum number of pointers kept by the cache behind the String query methods
+    private static final int CACHE_SIZE = 256;
+
+    // kinds of change made by update()
+    private static final int ADD = 0;
+    private static final int SET = 1;
+    private static final int REPLACE = 2;
+    private static final int REMOVE = 3;
+
+    // pointers parsed by the String query methods, by pointer string, least recently used first
+    private static final Map<String, JSONPointer> CACHE = new LinkedHashMap<String, JSONPointer>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JSONPointer> eldest) {
+            return this.size() > CACHE_SIZE;
+        }
+    };
+
     /**
      * This class allows the user to build a JSONPointer in steps, using
      * exactly one segment in each step.
@@ -129,6 +150,12 @@ public class JSONPointer {
     // Segments for the JSONPointer string
     private final List<String> refTokens;
 
+    // Object keys of the segments, as looked up by queryFrom
+    private final String[] keys;
+
+    // Array indexes of the segments, or null where a segment is not a number
+    private final Integer[] indexes;
+
     /**
      * Pre-parses and initializes a new {@code JSONPointer} instance. If you want to
      * evaluate the same JSON Pointer on different JSON documents then it is recommended
@@ -138,12 +165,91 @@ public class JSONPointer {
      * @throws IllegalArgumentException if {@code pointer} is not a valid JSON pointer
      */
     public JSONPointer(final String pointer) {
+        this(parse(pointer));
+    }
+
+    public JSONPointer(List<String> refTokens) {
+        this.refTokens = new ArrayList<String>(refTokens);
+        int size = this.refTokens.size();
+        this.keys = new String[size];
+        this.indexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            String token = this.refTokens.get(i);
+            this.keys[i] = unescape(token);
+            this.indexes[i] = toIndex(token);
+        }
+    }
+
+    /**
+     * Parses a reference token as an array index the way {@link Integer#parseInt(String)}
+     * would, without throwing for the tokens that are not numbers, which most are.
+     *
+     * @param token a reference token
+     * @return the index, or null if the token is not a number that fits in an int
+     */
+    private static Integer toIndex(String token) {
+        int length = token.length();
+        int start = length > 0 && (token.charAt(0) == '-' || token.charAt(0) == '+') ? 1 : 0;
+        if (start == length) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return null;
+            }
+        }
+        if (token.charAt(0) == '-') {
+            value = -value;
+        }
+        return value > Integer.MAX_VALUE ? null : Integer.valueOf((int) value);
+    }
+
+    /**
+     * Returns the pointer for a JSON String or URI Fragment representation, reusing an
+     * earlier instance for the same string where possible. Pointers are immutable, so
+     * they can be shared by every caller; the {@value #CACHE_SIZE} most recently used
+     * strings are kept.
+     *
+     * @param pointer the JSON String or URI Fragment representation of the JSON pointer.
+     * @return the parsed pointer
+     * @throws IllegalArgumentException if {@code pointer} is not a valid JSON pointer
+     */
+    static JSONPointer forString(String pointer) {
+        if (pointer == null) {
+            throw new NullPointerException("pointer cannot be null");
+        }
+        JSONPointer jsonPointer;
+        synchronized (CACHE) {
+            jsonPointer = CACHE.get(pointer);
+        }
+        if (jsonPointer == null) {
+            jsonPointer = new JSONPointer(pointer);
+            synchronized (CACHE) {
+                CACHE.put(pointer, jsonPointer);
+            }
+        }
+        return jsonPointer;
+    }
+
+    /**
+     * Splits a JSON String or URI Fragment representation into its reference tokens.
+     *
+     * @param pointer the JSON String or URI Fragment representation of the JSON pointer.
+     * @return the unescaped reference tokens
+     * @throws IllegalArgumentException if {@code pointer} is not a valid JSON pointer
+     */
+    private static List<String> parse(final String pointer) {
         if (pointer == null) {
             throw new NullPointerException("pointer cannot be null");
         }
         if (pointer.isEmpty() || pointer.equals("#")) {
-            this.refTokens = Collections.emptyList();
-            return;
+            return Collections.emptyList();
         }
         String refs;
         if (pointer.startsWith("#/")) {
@@ -158,7 +264,7 @@ public class JSONPointer {
         } else {
             throw new IllegalArgumentException("a JSON pointer should start with '/' or '#/'");
         }
-        this.refTokens = new ArrayList<String>();
+        List<String> refTokens = new ArrayList<String>();
         int slashIdx = -1;
         int prevSlashIdx = 0;
         do {
@@ -167,24 +273,28 @@ public class JSONPointer {
             if(prevSlashIdx == slashIdx || prevSlashIdx == refs.length()) {
                 // found 2 slashes in a row ( obj//next )
                 // or single slash at the end of a string ( obj/test/ )
-                this.refTokens.add("");
+                refTokens.add("");
             } else if (slashIdx >= 0) {
                 final String token = refs.substring(prevSlashIdx, slashIdx);
-                this.refTokens.add(unescape(token));
+                refTokens.add(unescape(token));
             } else {
                 // last item after separator, or no separator at all.
                 final String token = refs.substring(prevSlashIdx);
-                this.refTokens.add(unescape(token));
+                refTokens.add(unescape(token));
             }
         } while (slashIdx >= 0);
         // using split does not take into account consecutive separators or "ending nulls"
         //for (String token : refs.split("/")) {
-        //    this.refTokens.add(unescape(token));
+        //    refTokens.add(unescape(token));
         //}
+        return refTokens;
     }
 
-    public JSONPointer(List<String> refTokens) {
-        this.refTokens = new ArrayList<String>(refTokens);
+    /**
+     * @return the unescaped reference tokens of this pointer, as an unmodifiable list
+     */
+    List<String> getRefTokens() {
+        return Collections.unmodifiableList(this.refTokens);
     }
 
     private static String unescape(String token) {
@@ -208,42 +318,330 @@ public class JSONPointer {
             return document;
         }
         Object current = document;
-        for (String token : this.refTokens) {
-            if (current instanceof JSONObject) {
-                current = ((JSONObject) current).opt(unescape(token));
-            } else if (current instanceof JSONArray) {
-                current = readByIndexToken(current, token);
+        for (int i = 0; i < this.keys.length; i++) {
+            current = this.step(current, i);
+        }
+        return current;
+    }
+
+    /**
+     * Resolves one reference token.
+     * @param current the value the token is applied to
+     * @param i the position of the token
+     * @return the value the token refers to
+     * @throws JSONPointerException if {@code current} is not an array or object, or
+     *      the token is not a valid index of the array
+     */
+    private Object step(Object current, int i) throws JSONPointerException {
+        if (current instanceof JSONObject) {
+            return ((JSONObject) current).opt(this.keys[i]);
+        } else if (current instanceof JSONArray) {
+            return readByIndexToken(current, this.refTokens.get(i), this.indexes[i]);
+        }
+        throw new JSONPointerException(format(
+                "value [%s] is not an array or object therefore its key %s cannot be resolved", current,
+                this.refTokens.get(i)));
+    }
+
+    /**
+     * Adds a value to the given {@code document} at the location of this JSON Pointer,
+     * as the "add" operation of <a href="https://tools.ietf.org/html/rfc6902">RFC 6902</a>
+     * does. If the pointer refers to a member of an object, the member is created or
+     * replaced. If it refers to an element of an array, the value is inserted before
+     * that index, or appended if the last token is {@code "-"} or the length of the array.
+     *
+     * @param document the JSON document to change
+     * @param value the value to add
+     * @throws JSONPointerException if the parent of the location does not exist, or the
+     *      index is out of bounds, or this is the empty pointer
+     */
+    public void add(Object document, Object value) throws JSONPointerException {
+        this.update(this.parentOf(document), ADD, value);
+    }
+
+    /**
+     * Sets the value at the location of this JSON Pointer in the given {@code document}.
+     * A member of an object is created or replaced, while an element of an array is
+     * replaced, or appended if the last token is {@code "-"} or the length of the array.
+     *
+     * @param document the JSON document to change
+     * @param value the new value
+     * @return the value that was replaced, or null if there was none
+     * @throws JSONPointerException if the parent of the location does not exist, or the
+     *      index is out of bounds, or this is the empty pointer
+     */
+    public Object set(Object document, Object value) throws JSONPointerException {
+        return this.update(this.parentOf(document), SET, value);
+    }
+
+    /**
+     * Removes the value at the location of this JSON Pointer from the given
+     * {@code document}. Elements of an array that follow it are moved down by one.
+     *
+     * @param document the JSON document to change
+     * @return the value that was removed
+     * @throws JSONPointerException if there is no value at the location, or this is the
+     *      empty pointer
+     */
+    public Object remove(Object document) throws JSONPointerException {
+        return this.update(this.parentOf(document), REMOVE, null);
+    }
+
+    /**
+     * Applies a <a href="https://tools.ietf.org/html/rfc6902">RFC 6902</a> JSON Patch
+     * to the given {@code document}. The patch is an array of operations such as
+     * <code>{"op":"add","path":"/a/b","value":1}</code>, using the operations "add",
+     * "remove", "replace", "move", "copy" and "test".
+     * <p>
+     * The document is changed in place. Consecutive operations under the same parent
+     * only resolve the part of their path that differs from the previous operation, so
+     * a long list of operations on the same region of a large document does not walk
+     * it from the root each time. Values taken from the patch are copied, so the patch
+     * can be applied to several documents.
+     * <p>
+     * Unlike RFC 6902 requires, the operations are not applied atomically: if an
+     * operation fails, the ones before it stay applied. Apply the patch to a copy of
+     * the document if it must be left unchanged on failure.
+     *
+     * @param document the JSON document to change
+     * @param patch the operations to apply
+     * @throws JSONPointerException if an operation cannot be applied or a "test"
+     *      operation fails
+     * @throws JSONException if an operation is malformed
+     */
+    public static void applyPatch(Object document, JSONArray patch) throws JSONException {
+        Parents parents = new Parents(document);
+        for (int i = 0; i < patch.length(); i++) {
+            JSONObject operation = patch.getJSONObject(i);
+            String op = operation.getString("op");
+            JSONPointer path = new JSONPointer(operation.getString("path"));
+            if ("add".equals(op)) {
+                path.update(parents.of(path), ADD, copyOf(operation.get("value")));
+            } else if ("remove".equals(op)) {
+                path.update(parents.of(path), REMOVE, null);
+            } else if ("replace".equals(op)) {
+                path.update(parents.of(path), REPLACE, copyOf(operation.get("value")));
+            } else if ("move".equals(op)) {
+                JSONPointer from = new JSONPointer(operation.getString("from"));
+                if (path.refTokens.size() > from.refTokens.size()
+                        && path.refTokens.subList(0, from.refTokens.size()).equals(from.refTokens)) {
+                    throw new JSONPointerException(format("cannot move %s into one of its children %s", from, path));
+                }
+                Object value = from.update(parents.of(from), REMOVE, null);
+                path.update(parents.of(path), ADD, value);
+            } else if ("copy".equals(op)) {
+                JSONPointer from = new JSONPointer(operation.getString("from"));
+                Object value = from.keys.length == 0 ? document : from.read(parents.of(from));
+                path.update(parents.of(path), ADD, copyOf(value));
+            } else if ("test".equals(op)) {
+                Object value = path.keys.length == 0 ? document : path.read(parents.of(path));
+                if (!isSimilar(value, operation.get("value"))) {
+                    throw new JSONPointerException(format("test of %s failed: value is [%s]", path, value));
+                }
             } else {
+                throw new JSONPointerException(format("unknown patch operation %s", op));
+            }
+        }
+    }
+
+    /**
+     * Resolves the parents of the locations of a sequence of operations, reusing the
+     * containers found for the previous location where the paths share a prefix. This is
+     * safe because an operation only changes the parent of its own location, which is
+     * the deepest container kept.
+     */
+    private static final class Parents {
+        // the containers along the path of the last parent, starting with the document
+        private final List<Object> containers = new ArrayList<Object>();
+        private JSONPointer last;
+
+        Parents(Object document) {
+            this.containers.add(document);
+        }
+
+        Object of(JSONPointer pointer) throws JSONPointerException {
+            int depth = pointer.keys.length - 1;
+            if (depth < 0) {
+                throw new JSONPointerException("the root of the document cannot be changed");
+            }
+            int common = 0;
+            if (this.last != null) {
+                int max = Math.min(depth, this.containers.size() - 1);
+                while (common < max && this.last.refTokens.get(common).equals(pointer.refTokens.get(common))) {
+                    common++;
+                }
+            }
+            while (this.containers.size() > common + 1) {
+                this.containers.remove(this.containers.size() - 1);
+            }
+            this.last = pointer;
+            Object current = this.containers.get(common);
+            for (int i = common; i < depth; i++) {
+                current = pointer.step(current, i);
+                this.containers.add(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * @param document the JSON document
+     * @return the container holding the location of this pointer
+     * @throws JSONPointerException if the container cannot be resolved, or this is the
+     *      empty pointer
+     */
+    private Object parentOf(Object document) throws JSONPointerException {
+        int depth = this.keys.length - 1;
+        if (depth < 0) {
+            throw new JSONPointerException("the root of the document cannot be changed");
+        }
+        Object current = document;
+        for (int i = 0; i < depth; i++) {
+            current = this.step(current, i);
+        }
+        return current;
+    }
+
+    /**
+     * Reads the value at the location of this pointer, which must exist.
+     * @param parent the container holding the location
+     * @return the value
+     * @throws JSONPointerException if there is no value at the location
+     */
+    private Object read(Object parent) throws JSONPointerException {
+        int last = this.keys.length - 1;
+        if (parent instanceof JSONObject && !((JSONObject) parent).has(this.keys[last])) {
+            throw new JSONPointerException(format("key %s not found", this.refTokens.get(last)));
+        }
+        return this.step(parent, last);
+    }
+
+    /**
+     * Changes the value at the location of this pointer.
+     * @param parent the container holding the location
+     * @param mode one of ADD, SET, REPLACE or REMOVE
+     * @param value the new value, unused for REMOVE
+     * @return the previous value, or null if there was none
+     * @throws JSONPointerException if the location is not valid for the change
+     */
+    private Object update(Object parent, int mode, Object value) throws JSONPointerException {
+        int last = this.keys.length - 1;
+        String token = this.refTokens.get(last);
+        try {
+            if (parent instanceof JSONObject) {
+                JSONObject object = (JSONObject) parent;
+                String key = this.keys[last];
+                if ((mode == REPLACE || mode == REMOVE) && !object.has(key)) {
+                    throw new JSONPointerException(format("key %s not found", token));
+                }
+                if (mode == REMOVE) {
+                    return object.remove(key);
+                }
+                Object previous = object.opt(key);
+                object.put(key, value);
+                return previous;
+            }
+            if (!(parent instanceof JSONArray)) {
                 throw new JSONPointerException(format(
-                        "value [%s] is not an array or object therefore its key %s cannot be resolved", current,
+                        "value [%s] is not an array or object therefore its key %s cannot be resolved", parent,
                         token));
             }
+            JSONArray array = (JSONArray) parent;
+            int length = array.length();
+            int index;
+            if ("-".equals(token)) {
+                index = length;
+            } else if (this.indexes[last] == null) {
+                throw new JSONPointerException(format("%s is not an array index", token));
+            } else {
+                index = this.indexes[last].intValue();
+            }
+            int limit = mode == ADD || mode == SET ? length : length - 1;
+            if (index < 0 || index > limit) {
+                throw new JSONPointerException(format("index %s is out of bounds - the array has %d elements", token,
+                        Integer.valueOf(length)));
+            }
+            if (mode == REMOVE) {
+                return array.remove(index);
+            }
+            if (mode == ADD) {
+                array.insert(index, value);
+                return null;
+            }
+            Object previous = array.opt(index);
+            array.put(index, value);
+            return previous;
+        } catch (JSONPointerException e) {
+            throw e;
+        } catch (JSONException e) {
+            throw new JSONPointerException(format("cannot set the value at %s", this), e);
         }
-        return current;
+    }
+
+    /**
+     * @param value a JSON value
+     * @return a deep copy of the value if it is a JSONObject or JSONArray, otherwise the value
+     */
+    private static Object copyOf(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            JSONObject copy = new JSONObject();
+            for (String key : object.keySet()) {
+                copy.put(key, copyOf(object.opt(key)));
+            }
+            return copy;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            JSONArray copy = new JSONArray(array.length());
+            for (Object element : array) {
+                copy.put(copyOf(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Compares two JSON values the way {@link JSONObject#similar(Object)} compares
+     * the values of its members.
+     */
+    private static boolean isSimilar(Object value, Object other) {
+        if (value instanceof JSONObject) {
+            return ((JSONObject) value).similar(other);
+        }
+        if (value instanceof JSONArray) {
+            return ((JSONArray) value).similar(other);
+        }
+        if (value instanceof Number && other instanceof Number) {
+            return JSONObject.isNumberSimilar((Number) value, (Number) other);
+        }
+        return value != null && value.equals(other);
     }
 
     /**
      * Matches a JSONArray element by ordinal position
      * @param current the JSONArray to be evaluated
      * @param indexToken the array index in string form
+     * @param parsedIndex the array index, or null if the token is not a number
      * @return the matched object. If no matching item is found a
      * @throws JSONPointerException is thrown if the index is out of bounds
      */
-    private static Object readByIndexToken(Object current, String indexToken) throws JSONPointerException {
+    private static Object readByIndexToken(Object current, String indexToken, Integer parsedIndex)
+            throws JSONPointerException {
+        if (parsedIndex == null) {
+            throw new JSONPointerException(format("%s is not an array index", indexToken));
+        }
+        int index = parsedIndex.intValue();
+        JSONArray currentArr = (JSONArray) current;
+        if (index >= currentArr.length()) {
+            throw new JSONPointerException(format("index %s is out of bounds - the array has %d elements", indexToken,
+                    Integer.valueOf(currentArr.length())));
+        }
         try {
-            int index = Integer.parseInt(indexToken);
-            JSONArray currentArr = (JSONArray) current;
-            if (index >= currentArr.length()) {
-                throw new JSONPointerException(format("index %s is out of bounds - the array has %d elements", indexToken,
-                        Integer.valueOf(currentArr.length())));
-            }
-            try {
-				return currentArr.get(index);
-			} catch (JSONException e) {
-				throw new JSONPointerException("Error reading value at index position " + index, e);
-			}
-        } catch (NumberFormatException e) {
-            throw new JSONPointerException(format("%s is not an array index", indexToken), e);
+            return currentArr.get(index);
+        } catch (JSONException e) {
+            throw new JSONPointerException("Error reading value at index position " + index, e);
         }
     }
 
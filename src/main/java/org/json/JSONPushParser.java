@@ -0,0 +1,571 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JSON parser that is pushed its input, rather than pulling it from a Reader.
+ * UTF-8 encoded bytes are given to {@link #feed(ByteBuffer)} in chunks of any
+ * size, as they arrive; each chunk is parsed as far as it goes and the state is
+ * kept for the next one, so feeding never blocks. Call {@link #endOfInput()}
+ * after the last chunk.
+ * <p>
+ * The values are those that {@link JSONTokener#nextValue()} makes from the same
+ * text, with the same leniency: single quoted strings, unquoted text, missing
+ * array elements and so on, and a syntax error has the message and position
+ * nextValue gives it, also when the input ends inside a value. A text may hold
+ * several values, separated by whitespace; each is available from
+ * {@link #nextValue()} as soon as it is complete. A value of unquoted text at
+ * the top level is only complete once the character after it, or the end of
+ * the input, has been seen.
+ * <pre>{@code
+ * JSONPushParser parser = new JSONPushParser();
+ * parser.feed(chunk);            // as often as chunks arrive
+ * Object value;
+ * while ((value = parser.nextValue()) != null) {
+ *     ...
+ * }
+ * parser.endOfInput();           // then take the last values
+ * }</pre>
+ * A JSONPushParser is not thread safe, but it can be fed by different threads
+ * one after another, as an event loop would.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public final class JSONPushParser {
+
+    /** Expecting a value. */
+    private static final int VALUE = 0;
+    /** Expecting a key or the '}' of an object. */
+    private static final int KEY = 1;
+    /** Expecting the ':' after a key. */
+    private static final int COLON = 2;
+    /** Expecting the ',' or '}' after a member of an object. */
+    private static final int AFTER_MEMBER = 3;
+    /** Expecting an element or the ']' of an array. */
+    private static final int ELEMENT = 4;
+    /** Expecting the ',' or ']' after an element of an array. */
+    private static final int AFTER_ELEMENT = 5;
+    /** In a quoted string. */
+    private static final int STRING = 6;
+    /** After a backslash in a quoted string. */
+    private static final int ESCAPE = 7;
+    /** In the hex digits of a \\u escape. */
+    private static final int UNICODE = 8;
+    /** In unquoted text. */
+    private static final int TEXT = 9;
+
+    /** Size of the block a direct buffer is copied through. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** What the next character is expected to be. */
+    private int state = VALUE;
+
+    /** The objects and arrays that have been opened but not closed. */
+    private final List<Object> containers = new ArrayList<Object>();
+
+    /** The key of each open object whose value is being parsed, or null. */
+    private final List<String> keys = new ArrayList<String>();
+
+    /** The characters of the string or text being parsed. */
+    private final StringBuilder sb = new StringBuilder();
+
+    /** The quote of the string being parsed. */
+    private char quote;
+
+    /** The hex digits of a \\u escape so far. */
+    private final char[] hex = new char[4];
+
+    /** Number of hex digits so far. */
+    private int hexCount;
+
+    /** Number of continuation bytes still to come for the current character. */
+    private int pending;
+
+    /** The bits of the current character so far. */
+    private int codePoint;
+
+    /** The smallest code point the current character may encode. */
+    private int min;
+
+    /** Values that are complete, but have not been taken yet. */
+    private final ArrayDeque<Object> values = new ArrayDeque<Object>();
+
+    /** The block a direct buffer is copied through, made when needed. */
+    private byte[] block;
+
+    /** True once the input has ended or failed. */
+    private boolean ended;
+
+    /** The number of characters parsed so far. */
+    private long index;
+
+    /** The number of characters parsed so far on the current line. */
+    private long character = 1;
+
+    /** The number of lines so far. */
+    private long line = 1;
+
+    /** The previous character. */
+    private char previous;
+
+    /**
+     * Parse the next chunk of the input, as far as it goes. The bytes from the
+     * position to the limit of the chunk are all used, and the position is moved
+     * to the limit. A character may be split across chunks.
+     *
+     * @param chunk
+     *            UTF-8 encoded bytes of the JSON text
+     * @throws JSONException
+     *             If the text is not valid, or if the input has ended
+     */
+    public void feed(ByteBuffer chunk) throws JSONException {
+        if (this.ended) {
+            throw new JSONException("The input has already ended");
+        }
+        try {
+            if (chunk.hasArray()) {
+                int offset = chunk.arrayOffset();
+                this.parse(chunk.array(), offset + chunk.position(), offset + chunk.limit());
+                chunk.position(chunk.limit());
+            } else {
+                if (this.block == null) {
+                    this.block = new byte[BUFFER_SIZE];
+                }
+                while (chunk.hasRemaining()) {
+                    int n = Math.min(this.block.length, chunk.remaining());
+                    chunk.get(this.block, 0, n);
+                    this.parse(this.block, 0, n);
+                }
+            }
+        } catch (JSONException e) {
+            this.ended = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Say that there is no more input, and finish the value at the end of it.
+     *
+     * @throws JSONException
+     *             If the input ends inside a value
+     */
+    public void endOfInput() throws JSONException {
+        if (this.ended) {
+            throw new JSONException("The input has already ended");
+        }
+        this.ended = true;
+        if (this.pending > 0) {
+            // the rest of the character is missing
+            this.pending = 0;
+            this.accept((char) 0xFFFD);
+        }
+        if (this.state == TEXT) {
+            this.endText();
+        }
+        if (this.state != VALUE || !this.containers.isEmpty()) {
+            throw this.endError();
+        }
+    }
+
+    /**
+     * @return true if there is a complete value to take
+     */
+    public boolean hasValue() {
+        return !this.values.isEmpty();
+    }
+
+    /**
+     * Take the next complete value.
+     *
+     * @return a JSONObject, JSONArray, String, Boolean, Number or the
+     *         JSONObject.NULL object, or null if no value is complete yet
+     */
+    public Object nextValue() {
+        return this.values.poll();
+    }
+
+    /**
+     * Parse bytes, decoding them as UTF-8 as {@link UTF8Source} does.
+     */
+    private void parse(byte[] bytes, int start, int end) throws JSONException {
+        int i = start;
+        while (i < end) {
+            if (this.state == STRING && this.pending == 0) {
+                // plain ASCII content is appended in one go
+                int run = i;
+                while (run < end) {
+                    byte b = bytes[run];
+                    if (b < ' ' || b == this.quote || b == '\\') {
+                        break;
+                    }
+                    run++;
+                }
+                if (run > i) {
+                    for (int j = i; j < run; j++) {
+                        this.sb.append((char) bytes[j]);
+                    }
+                    this.index += run - i;
+                    this.character += run - i;
+                    this.previous = (char) bytes[run - 1];
+                    i = run;
+                    if (i == end) {
+                        return;
+                    }
+                }
+            }
+            int b = bytes[i] & 0xFF;
+            if (this.pending > 0) {
+                if ((b & 0xC0) != 0x80) {
+                    // not a continuation: the character is malformed, and this
+                    // byte starts the next one
+                    this.pending = 0;
+                    this.accept((char) 0xFFFD);
+                    continue;
+                }
+                i++;
+                this.codePoint = (this.codePoint << 6) | (b & 0x3F);
+                if (--this.pending == 0) {
+                    this.acceptCodePoint();
+                }
+                continue;
+            }
+            i++;
+            if (b < 0x80) {
+                this.accept((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                this.start(1, b & 0x1F, 0x80);
+            } else if ((b & 0xF0) == 0xE0) {
+                this.start(2, b & 0x0F, 0x800);
+            } else if ((b & 0xF8) == 0xF0) {
+                this.start(3, b & 0x07, 0x10000);
+            } else {
+                this.accept((char) 0xFFFD);
+            }
+        }
+    }
+
+    private void start(int count, int bits, int smallest) {
+        this.pending = count;
+        this.codePoint = bits;
+        this.min = smallest;
+    }
+
+    private void acceptCodePoint() throws JSONException {
+        int cp = this.codePoint;
+        if (cp < this.min || cp > Character.MAX_CODE_POINT
+                || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+            this.accept((char) 0xFFFD);
+        } else if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            this.accept(Character.highSurrogate(cp));
+            this.accept(Character.lowSurrogate(cp));
+        } else {
+            this.accept((char) cp);
+        }
+    }
+
+    /**
+     * Parse the next character.
+     */
+    private void accept(char c) throws JSONException {
+        if (c != 0) {
+            this.index++;
+            if (c == '\r') {
+                this.line++;
+                this.character = 0;
+            } else if (c == '\n') {
+                if (this.previous != '\r') {
+                    this.line++;
+                }
+                this.character = 0;
+            } else {
+                this.character++;
+            }
+            this.previous = c;
+        }
+        switch (this.state) {
+        case STRING:
+            if (c == this.quote) {
+                String string = this.sb.toString();
+                this.sb.setLength(0);
+                this.complete(string);
+            } else if (c == '\\') {
+                this.state = ESCAPE;
+            } else if (c == 0 || c == '\n' || c == '\r') {
+                throw this.syntaxError("Unterminated string");
+            } else {
+                this.sb.append(c);
+            }
+            return;
+        case ESCAPE:
+            this.state = STRING;
+            switch (c) {
+            case 'b':
+                this.sb.append('\b');
+                break;
+            case 't':
+                this.sb.append('\t');
+                break;
+            case 'n':
+                this.sb.append('\n');
+                break;
+            case 'f':
+                this.sb.append('\f');
+                break;
+            case 'r':
+                this.sb.append('\r');
+                break;
+            case 'u':
+                this.hexCount = 0;
+                this.state = UNICODE;
+                break;
+            case '"':
+            case '\'':
+            case '\\':
+            case '/':
+                this.sb.append(c);
+                break;
+            default:
+                throw this.syntaxError("Illegal escape.");
+            }
+            return;
+        case UNICODE:
+            if (c == 0) {
+                throw this.syntaxError("Substring bounds error");
+            }
+            this.hex[this.hexCount++] = c;
+            if (this.hexCount == 4) {
+                try {
+                    this.sb.append((char) Integer.parseInt(new String(this.hex), 16));
+                } catch (NumberFormatException e) {
+                    throw this.syntaxError("Illegal escape.", e);
+                }
+                this.state = STRING;
+            }
+            return;
+        case TEXT:
+            if (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                this.sb.append(c);
+                return;
+            }
+            // the character after the text is parsed in the state that follows
+            this.endText();
+            break;
+        default:
+            break;
+        }
+        if (c > 0 && c <= ' ') {
+            return;
+        }
+        switch (this.state) {
+        case KEY:
+            if (c == '}') {
+                this.close();
+            } else if (c == 0) {
+                throw this.endError();
+            } else {
+                this.startValue(c);
+            }
+            break;
+        case COLON:
+            if (c != ':') {
+                throw this.syntaxError("Expected a ':' after a key");
+            }
+            String key = this.keys.get(this.keys.size() - 1);
+            if (((JSONObject) this.containers.get(this.containers.size() - 1)).opt(key) != null) {
+                throw this.syntaxError("Duplicate key \"" + key + "\"");
+            }
+            this.state = VALUE;
+            break;
+        case AFTER_MEMBER:
+            if (c == ',' || c == ';') {
+                this.state = KEY;
+            } else if (c == '}') {
+                this.close();
+            } else {
+                throw this.syntaxError("Expected a ',' or '}'");
+            }
+            break;
+        case ELEMENT:
+            if (c == ']') {
+                this.close();
+            } else if (c == ',') {
+                ((JSONArray) this.containers.get(this.containers.size() - 1)).put(JSONObject.NULL);
+            } else if (c == 0) {
+                throw this.endError();
+            } else {
+                this.startValue(c);
+            }
+            break;
+        case AFTER_ELEMENT:
+            if (c == ',') {
+                this.state = ELEMENT;
+            } else if (c == ']') {
+                this.close();
+            } else {
+                throw this.syntaxError("Expected a ',' or ']'");
+            }
+            break;
+        default:
+            this.startValue(c);
+        }
+    }
+
+    /**
+     * Start parsing a value, as {@link JSONTokener#nextValue()} does.
+     */
+    private void startValue(char c) throws JSONException {
+        switch (c) {
+        case '"':
+        case '\'':
+            this.quote = c;
+            this.state = STRING;
+            return;
+        case '{':
+            this.containers.add(new JSONObject());
+            this.keys.add(null);
+            this.state = KEY;
+            return;
+        case '[':
+            this.containers.add(new JSONArray());
+            this.keys.add(null);
+            this.state = ELEMENT;
+            return;
+        default:
+            if (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                this.sb.append(c);
+                this.state = TEXT;
+                return;
+            }
+            if (c != 0) {
+                // JSONTokener backs up over the character before it complains
+                this.index--;
+                this.character--;
+            }
+            throw this.syntaxError("Missing value");
+        }
+    }
+
+    private void endText() {
+        String string = this.sb.toString().trim();
+        this.sb.setLength(0);
+        this.complete(JSONObject.stringToValue(string));
+    }
+
+    /**
+     * Close the innermost object or array.
+     */
+    private void close() {
+        int top = this.containers.size() - 1;
+        Object container = this.containers.remove(top);
+        this.keys.remove(top);
+        this.complete(container);
+    }
+
+    /**
+     * Put a complete value where it belongs: in the open array or object, as
+     * the key of the open object, or with the values to be taken.
+     */
+    private void complete(Object value) {
+        int top = this.containers.size() - 1;
+        if (top < 0) {
+            this.values.add(value);
+            this.state = VALUE;
+            return;
+        }
+        Object container = this.containers.get(top);
+        if (container instanceof JSONArray) {
+            ((JSONArray) container).put(value);
+            this.state = AFTER_ELEMENT;
+            return;
+        }
+        String key = this.keys.get(top);
+        if (key == null) {
+            this.keys.set(top, value.toString());
+            this.state = COLON;
+        } else {
+            ((JSONObject) container).put(key, value);
+            this.keys.set(top, null);
+            this.state = AFTER_MEMBER;
+        }
+    }
+
+    /**
+     * Make the error for the input ending in the current state, as JSONTokener
+     * makes it when it reads the end of its input.
+     */
+    private JSONException endError() {
+        switch (this.state) {
+        case STRING:
+            return this.syntaxError("Unterminated string");
+        case ESCAPE:
+            return this.syntaxError("Illegal escape.");
+        case UNICODE:
+            return this.syntaxError("Substring bounds error");
+        case KEY:
+            if (this.previous == ',' || this.previous == ';') {
+                // JSONObject backs up over the end of the input, and JSONTokener
+                // then reads the separator again as the start of a key
+                this.index--;
+                this.character--;
+                return this.syntaxError("Missing value");
+            }
+            return this.syntaxError("A JSONObject text must end with '}'");
+        case COLON:
+            return this.syntaxError("Expected a ':' after a key");
+        case AFTER_MEMBER:
+            return this.syntaxError("Expected a ',' or '}'");
+        case ELEMENT:
+        case AFTER_ELEMENT:
+            return this.syntaxError("Expected a ',' or ']'");
+        default:
+            return this.syntaxError("Missing value");
+        }
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + this.toString());
+    }
+
+    private JSONException syntaxError(String message, Throwable causedBy) {
+        return new JSONException(message + this.toString(), causedBy);
+    }
+
+    /**
+     * Make a printable string of this JSONPushParser.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    @Override
+    public String toString() {
+        return " at " + this.index + " [character " + this.character + " line " +
+                this.line + "]";
+    }
+}
@@ -0,0 +1,475 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A scanner over JSON text held in a String. It finds where values begin and
+ * end without decoding them, which is all a lazy {@link JSONObject} needs to
+ * do until a value is asked for. Values are skipped with the same leniency as
+ * {@link JSONTokener#nextValue()}; anything the tokener would reject inside a
+ * value is only reported once that value is decoded.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+class JSONScanner {
+
+    /** Characters that end an unquoted value, as in JSONTokener. */
+    private static final String TOKEN_END = ",:]}/\\\"[{;=#";
+
+    private final String source;
+
+    /** Index of the next character. */
+    private int position;
+
+    /** Index of the character returned by the last call to nextClean. */
+    private int last;
+
+    /** Closing characters of the containers being skipped. */
+    private char[] closers = new char[16];
+
+    /**
+     * @param source the JSON text
+     * @param position index of the first character to scan
+     */
+    JSONScanner(String source, int position) {
+        this.source = source;
+        this.position = position;
+        this.last = position;
+    }
+
+    /**
+     * Get the next character that is not whitespace.
+     * @return the character, or 0 at the end of the text
+     */
+    char nextClean() {
+        String source = this.source;
+        int length = source.length();
+        while (this.position < length) {
+            char c = source.charAt(this.position++);
+            if (c == 0 || c > ' ') {
+                this.last = this.position - 1;
+                return c;
+            }
+        }
+        this.last = length;
+        return 0;
+    }
+
+    /**
+     * Go back to the character returned by the last call to nextClean.
+     */
+    void back() {
+        this.position = this.last;
+    }
+
+    /**
+     * Scan the members of an object, putting a {@link LazyValue} in the map for
+     * each value.
+     * @param map the members of the object
+     * @throws JSONException if the object is not well formed or has a duplicate key
+     */
+    void scanObject(Map<String, Object> map) throws JSONException {
+        if (this.nextClean() != '{') {
+            throw this.syntaxError("A JSONObject text must begin with '{'");
+        }
+        for (;;) {
+            char c = this.nextClean();
+            switch (c) {
+            case 0:
+                throw this.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return;
+            default:
+                this.back();
+            }
+            String key = this.nextKey();
+            if (this.nextClean() != ':') {
+                throw this.syntaxError("Expected a ':' after a key");
+            }
+            if (map.containsKey(key)) {
+                throw this.syntaxError("Duplicate key \"" + key + "\"");
+            }
+            map.put(key, this.nextLazyValue());
+
+            switch (this.nextClean()) {
+            case ';':
+            case ',':
+                if (this.nextClean() == '}') {
+                    return;
+                }
+                this.back();
+                break;
+            case '}':
+                return;
+            default:
+                throw this.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+    /**
+     * Read a key. Quoted keys without escapes are taken straight from the text;
+     * anything else is decoded as a value and converted to a string, as
+     * JSONObject does.
+     */
+    private String nextKey() throws JSONException {
+        char c = this.nextClean();
+        if (c == '"' || c == '\'') {
+            int start = this.position;
+            if (this.skipString(c)) {
+                return this.source.substring(start, this.position - 1);
+            }
+            return new LazyValue(this.source, start - 1, this.position).decode().toString();
+        }
+        this.back();
+        return this.nextLazyValue().decode().toString();
+    }
+
+    /**
+     * Find the next value without decoding it.
+     * @return the span of the value
+     * @throws JSONException if the value is missing or not closed
+     */
+    LazyValue nextLazyValue() throws JSONException {
+        char c = this.nextClean();
+        int start = this.last;
+        switch (c) {
+        case '"':
+        case '\'':
+            this.skipString(c);
+            return new LazyValue(this.source, start, this.position);
+        case '{':
+        case '[':
+            this.skipContainer(c);
+            return new LazyValue(this.source, start, this.position);
+        default:
+            this.back();
+        }
+        String source = this.source;
+        int length = source.length();
+        while (this.position < length) {
+            c = source.charAt(this.position);
+            if (c < ' ' || TOKEN_END.indexOf(c) >= 0) {
+                break;
+            }
+            this.position++;
+        }
+        int end = this.position;
+        while (end > start && source.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end == start) {
+            throw this.syntaxError("Missing value");
+        }
+        return new LazyValue(source, start, end);
+    }
+
+    /**
+     * Skip the rest of a string, up to and including the closing quote.
+     * @return true if the string has no escapes
+     */
+    private boolean skipString(char quote) throws JSONException {
+        String source = this.source;
+        int length = source.length();
+        boolean plain = true;
+        while (this.position < length) {
+            char c = source.charAt(this.position++);
+            if (c == quote) {
+                return plain;
+            }
+            switch (c) {
+            case '\\':
+                this.position++;
+                plain = false;
+                break;
+            case 0:
+            case '\n':
+            case '\r':
+                this.position--;
+                throw this.syntaxError("Unterminated string");
+            default:
+                break;
+            }
+        }
+        throw this.syntaxError("Unterminated string");
+    }
+
+    /**
+     * Skip the rest of an object or array, checking only that strings are closed
+     * and that brackets and braces match.
+     */
+    private void skipContainer(char open) throws JSONException {
+        String source = this.source;
+        int length = source.length();
+        char[] closers = this.closers;
+        int depth = 0;
+        closers[depth++] = open == '{' ? '}' : ']';
+        while (this.position < length) {
+            char c = source.charAt(this.position++);
+            switch (c) {
+            case '"':
+            case '\'':
+                this.skipString(c);
+                break;
+            case '{':
+            case '[':
+                if (depth == closers.length) {
+                    closers = this.closers = Arrays.copyOf(closers, depth * 2);
+                }
+                closers[depth++] = c == '{' ? '}' : ']';
+                break;
+            case '}':
+            case ']':
+                if (c != closers[--depth]) {
+                    this.position--;
+                    throw this.syntaxError(closers[depth] == '}'
+                            ? "Expected a ',' or '}'" : "Expected a ',' or ']'");
+                }
+                if (depth == 0) {
+                    return;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        throw this.syntaxError(closers[depth - 1] == '}'
+                ? "A JSONObject text must end with '}'" : "Expected a ',' or ']'");
+    }
+
+    /**
+     * Check that a span of text is a single value in strict JSON syntax, as
+     * JSONObject would write it, with only whitespace around it. An object with
+     * a duplicate key, or with a key that has an escape, is not taken as strict,
+     * so that it is decoded and checked as the parser checks it.
+     * @param source the text
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return true if the span is strict JSON
+     */
+    static boolean isStrict(String source, int start, int end) {
+        int i = strictValue(source, skipWhitespace(source, start, end), end);
+        return i >= 0 && skipWhitespace(source, i, end) == end;
+    }
+
+    private static int skipWhitespace(String source, int i, int end) {
+        while (i < end) {
+            char c = source.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the value that starts at i, or -1 if it is not strict
+     */
+    private static int strictValue(String source, int i, int end) {
+        if (i >= end) {
+            return -1;
+        }
+        char c = source.charAt(i);
+        switch (c) {
+        case '"':
+            return strictString(source, i, end);
+        case '{':
+            i = skipWhitespace(source, i + 1, end);
+            if (i < end && source.charAt(i) == '}') {
+                return i + 1;
+            }
+            Set<String> keys = new HashSet<String>();
+            for (;;) {
+                if (i >= end || source.charAt(i) != '"') {
+                    return -1;
+                }
+                int keyStart = i + 1;
+                i = strictString(source, i, end);
+                if (i < 0) {
+                    return -1;
+                }
+                String key = source.substring(keyStart, i - 1);
+                // escaped keys are only compared once decoded
+                if (key.indexOf('\\') >= 0 || !keys.add(key)) {
+                    return -1;
+                }
+                i = skipWhitespace(source, i, end);
+                if (i >= end || source.charAt(i) != ':') {
+                    return -1;
+                }
+                i = strictValue(source, skipWhitespace(source, i + 1, end), end);
+                if (i < 0) {
+                    return -1;
+                }
+                i = skipWhitespace(source, i, end);
+                if (i < end && source.charAt(i) == '}') {
+                    return i + 1;
+                }
+                if (i >= end || source.charAt(i) != ',') {
+                    return -1;
+                }
+                i = skipWhitespace(source, i + 1, end);
+            }
+        case '[':
+            i = skipWhitespace(source, i + 1, end);
+            if (i < end && source.charAt(i) == ']') {
+                return i + 1;
+            }
+            for (;;) {
+                i = strictValue(source, i, end);
+                if (i < 0) {
+                    return -1;
+                }
+                i = skipWhitespace(source, i, end);
+                if (i < end && source.charAt(i) == ']') {
+                    return i + 1;
+                }
+                if (i >= end || source.charAt(i) != ',') {
+                    return -1;
+                }
+                i = skipWhitespace(source, i + 1, end);
+            }
+        case 't':
+            return source.startsWith("true", i) && i + 4 <= end ? i + 4 : -1;
+        case 'f':
+            return source.startsWith("false", i) && i + 5 <= end ? i + 5 : -1;
+        case 'n':
+            return source.startsWith("null", i) && i + 4 <= end ? i + 4 : -1;
+        default:
+            return strictNumber(source, i, end);
+        }
+    }
+
+    private static int strictString(String source, int i, int end) {
+        if (i < 0) {
+            return -1;
+        }
+        i++;
+        while (i < end) {
+            char c = source.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c < ' ') {
+                return -1;
+            }
+            if (c == '\\') {
+                if (i >= end) {
+                    return -1;
+                }
+                c = source.charAt(i++);
+                if (c == 'u') {
+                    if (i + 4 > end) {
+                        return -1;
+                    }
+                    for (int j = i; j < i + 4; j++) {
+                        if (Character.digit(source.charAt(j), 16) < 0) {
+                            return -1;
+                        }
+                    }
+                    i += 4;
+                } else if ("\"\\/bfnrt".indexOf(c) < 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Matches JSONObject.NUMBER_PATTERN.
+     */
+    private static int strictNumber(String source, int i, int end) {
+        if (i < end && source.charAt(i) == '-') {
+            i++;
+        }
+        if (i < end && source.charAt(i) == '0') {
+            i++;
+        } else {
+            int digits = skipDigits(source, i, end);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < end && source.charAt(i) == '.') {
+            int digits = skipDigits(source, i + 1, end);
+            if (digits == i + 1) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < end && (source.charAt(i) == 'e' || source.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (source.charAt(i) == '+' || source.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = skipDigits(source, i, end);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        return i;
+    }
+
+    private static int skipDigits(String source, int i, int end) {
+        while (i < end && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Make a JSONException to signal a syntax error at the current position.
+     * @param message the error message
+     * @return a JSONException with the position, in the form JSONTokener uses
+     */
+    JSONException syntaxError(String message) {
+        int position = Math.min(this.position, this.source.length());
+        long line = 1;
+        long character = 1;
+        for (int i = 0; i < position; i++) {
+            char c = this.source.charAt(i);
+            if (c == '\r' || (c == '\n' && (i == 0 || this.source.charAt(i - 1) != '\r'))) {
+                line++;
+                character = 0;
+            } else if (c == '\n') {
+                character = 0;
+            } else {
+                character++;
+            }
+        }
+        return new JSONException(message + " at " + position + " [character " + character
+                + " line " + line + "]");
+    }
+}
@@ -64,6 +64,15 @@ public class JSONStringer extends JSONWriter {
         super(new StringWriter());
     }
 
+    /**
+     * Make a fresh JSONStringer. It can be used to build one JSON text.
+     * @param checkKeys false to skip looking for duplicate keys, and to allow
+     *  objects and arrays to be nested to any depth
+     */
+    public JSONStringer(boolean checkKeys) {
+        super(new StringWriter(), checkKeys);
+    }
+
     /**
      * Return the JSON text. This method is used to obtain the product of the
      * JSONStringer instance. It will return <code>null</code> if there was a
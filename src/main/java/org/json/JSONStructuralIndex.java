@@ -0,0 +1,694 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An index of the structural characters of a UTF-8 encoded JSON text, for
+ * checking and finding parts of large texts without building JSONObjects.
+ * <p>
+ * The index is built in two stages. The first finds the quotes, braces,
+ * brackets, colons and commas that are not inside strings, 64 bytes at a time:
+ * each word of 8 bytes is compared with all of those characters at once, and
+ * the quotes that are escaped and the bytes that are inside strings are worked
+ * out with bit operations on the masks rather than byte by byte. The second
+ * stage pairs each brace and bracket with the one that closes it, so that
+ * {@link #skipValue(int)} can step over an object or array in one move.
+ * <p>
+ * {@link #validate()} checks the text against the strict JSON grammar of
+ * RFC 8259, which is narrower than what {@link JSONTokener} accepts. All
+ * positions are byte offsets in the UTF-8 text.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public class JSONStructuralIndex {
+
+    /** Every byte of a word set to 0x01. */
+    private static final long ONES = 0x0101010101010101L;
+
+    /** Every byte of a word set to 0x7F. */
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    /** Every byte of a word set to 0x80. */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** Moves the bit at 8 * i to 56 + i, for i from 0 to 7. */
+    private static final long GATHER = 0x0102040810204080L;
+
+    /** The JSON text. */
+    private final byte[] bytes;
+
+    /** Offsets of the structural characters, in order. */
+    private final int[] index;
+
+    /** For each brace or bracket in the index, the index of its partner, or -1. */
+    private final int[] partner;
+
+    /** Offset of the first unbalanced character, or -1. */
+    private final int unbalanced;
+
+    /**
+     * Build the index of a JSON text.
+     *
+     * @param bytes
+     *            The text, encoded in UTF-8. The array is not copied and must not
+     *            be changed while the index is used.
+     */
+    public JSONStructuralIndex(byte[] bytes) {
+        this.bytes = bytes;
+        this.index = findStructurals(bytes);
+        this.partner = new int[this.index.length];
+        this.unbalanced = this.pair();
+    }
+
+    /**
+     * Build the index of a JSON text. Positions are offsets in the UTF-8
+     * encoding of the string.
+     *
+     * @param string
+     *            The text.
+     */
+    public JSONStructuralIndex(String string) {
+        this(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stage one: the offsets of the structural characters that are not inside
+     * strings, and of all of the unescaped quotes.
+     */
+    private static int[] findStructurals(byte[] bytes) {
+        int blocks = (bytes.length + 63) >>> 6;
+        long[] masks = new long[blocks];
+        int count = 0;
+        boolean escapeNext = false;
+        long inString = 0;
+        for (int block = 0; block < blocks; block++) {
+            int base = block << 6;
+            long backslashes = 0;
+            long quotes = 0;
+            long operators = 0;
+            for (int w = 0; w < 8; w++) {
+                long word = readWord(bytes, base + (w << 3));
+                int shift = w << 3;
+                backslashes |= gather(equal(word, '\\')) << shift;
+                quotes |= gather(equal(word, '"')) << shift;
+                operators |= gather(equal(word, '{') | equal(word, '}') | equal(word, '[')
+                        | equal(word, ']') | equal(word, ':') | equal(word, ',')) << shift;
+            }
+
+            // A character follows an escaping backslash if it is preceded by a
+            // run of backslashes of odd length. Backslashes are rare, so each one
+            // that is not itself escaped is visited in turn.
+            long escaped = 0;
+            if (escapeNext) {
+                escaped = 1;
+                backslashes &= ~1L;
+            }
+            escapeNext = false;
+            while (backslashes != 0) {
+                long lowest = backslashes & -backslashes;
+                long next = lowest << 1;
+                if (next == 0) {
+                    escapeNext = true;
+                } else {
+                    escaped |= next;
+                    backslashes &= ~next;
+                }
+                backslashes &= ~lowest;
+            }
+            quotes &= ~escaped;
+
+            // The prefix XOR of the quotes sets every bit from an opening quote
+            // up to the closing one.
+            long mask = quotes;
+            mask ^= mask << 1;
+            mask ^= mask << 2;
+            mask ^= mask << 4;
+            mask ^= mask << 8;
+            mask ^= mask << 16;
+            mask ^= mask << 32;
+            mask ^= inString;
+            inString = mask >> 63;
+
+            long structurals = (operators & ~mask) | quotes;
+            masks[block] = structurals;
+            count += Long.bitCount(structurals);
+        }
+
+        int[] index = new int[count];
+        int n = 0;
+        for (int block = 0; block < blocks; block++) {
+            long structurals = masks[block];
+            int base = block << 6;
+            while (structurals != 0) {
+                index[n++] = base + Long.numberOfTrailingZeros(structurals);
+                structurals &= structurals - 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Read 8 bytes, the first in the lowest byte of the word. Bytes after the
+     * end of the array read as spaces.
+     */
+    private static long readWord(byte[] bytes, int offset) {
+        if (offset + 8 <= bytes.length) {
+            return (bytes[offset] & 0xFFL)
+                    | (bytes[offset + 1] & 0xFFL) << 8
+                    | (bytes[offset + 2] & 0xFFL) << 16
+                    | (bytes[offset + 3] & 0xFFL) << 24
+                    | (bytes[offset + 4] & 0xFFL) << 32
+                    | (bytes[offset + 5] & 0xFFL) << 40
+                    | (bytes[offset + 6] & 0xFFL) << 48
+                    | (bytes[offset + 7] & 0xFFL) << 56;
+        }
+        long word = 0;
+        for (int i = 7; i >= 0; i--) {
+            word = word << 8 | (offset + i < bytes.length ? bytes[offset + i] & 0xFFL : ' ');
+        }
+        return word;
+    }
+
+    /**
+     * @return a word with the high bit set in each byte that is equal to c
+     */
+    private static long equal(long word, char c) {
+        long x = word ^ (ONES * c);
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /**
+     * @return the high bits of the 8 bytes of a word, as the low 8 bits
+     */
+    private static long gather(long highBits) {
+        return ((highBits >>> 7) * GATHER) >>> 56;
+    }
+
+    /**
+     * Stage two: pair each brace and bracket with the one that closes it.
+     * @return the offset of the first character that is not balanced, or -1
+     */
+    private int pair() {
+        int[] index = this.index;
+        int[] partner = this.partner;
+        byte[] bytes = this.bytes;
+        int[] open = new int[16];
+        int depth = 0;
+        int unbalanced = -1;
+        for (int k = 0; k < index.length; k++) {
+            byte c = bytes[index[k]];
+            partner[k] = -1;
+            if (c == '{' || c == '[') {
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth * 2);
+                }
+                open[depth++] = k;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0 || bytes[index[open[depth - 1]]] != (c == '}' ? '{' : '[')) {
+                    if (unbalanced < 0) {
+                        unbalanced = index[k];
+                    }
+                    continue;
+                }
+                int o = open[--depth];
+                partner[o] = k;
+                partner[k] = o;
+            }
+        }
+        if (unbalanced < 0 && depth > 0) {
+            unbalanced = index[open[depth - 1]];
+        }
+        return unbalanced;
+    }
+
+    /**
+     * Check that the text is a single JSON value in strict RFC 8259 syntax,
+     * with only whitespace around it, and that it is valid UTF-8.
+     *
+     * @throws JSONException
+     *             If it is not, with the offset of the first error.
+     */
+    public void validate() throws JSONException {
+        new Validator().run();
+    }
+
+    /**
+     * Find the end of the value that starts at an offset. Objects and arrays
+     * are skipped without looking inside them, and the contents of strings and
+     * scalars are not checked.
+     *
+     * @param offset
+     *            The offset of the value, or of whitespace before it.
+     * @return The offset just after the value.
+     * @throws JSONException
+     *             If there is no value at the offset, or it is not closed.
+     */
+    public int skipValue(int offset) throws JSONException {
+        int p = this.skipWhitespace(offset);
+        if (p >= this.bytes.length) {
+            throw this.syntaxError("Missing value", p);
+        }
+        int k = Arrays.binarySearch(this.index, p);
+        return this.valueEnd(p, k);
+    }
+
+    /**
+     * @param p the offset of a value
+     * @param k the result of searching the index for p
+     * @return the offset after the value
+     */
+    private int valueEnd(int p, int k) throws JSONException {
+        if (k < 0) {
+            // a number or literal, which ends at the next structural character
+            k = -k - 1;
+            int end = k < this.index.length ? this.index[k] : this.bytes.length;
+            while (end > p && isWhitespace(this.bytes[end - 1])) {
+                end--;
+            }
+            return end;
+        }
+        switch (this.bytes[p]) {
+        case '{':
+        case '[':
+            if (this.partner[k] < 0) {
+                throw this.syntaxError(this.bytes[p] == '{'
+                        ? "A JSONObject text must end with '}'" : "Expected a ',' or ']'", p);
+            }
+            return this.index[this.partner[k]] + 1;
+        case '"':
+            if (k + 1 >= this.index.length) {
+                throw this.syntaxError("Unterminated string", p);
+            }
+            return this.index[k + 1] + 1;
+        default:
+            throw this.syntaxError("Missing value", p);
+        }
+    }
+
+    /**
+     * Find a member of the object that is the whole text, without looking
+     * inside the values of the other members.
+     *
+     * @param name
+     *            The name of the member.
+     * @return The offset where the value of the member starts, or -1 if the
+     *         object has no such member.
+     * @throws JSONException
+     *             If the text is not an object, or its members are not well
+     *             formed up to the one that is found.
+     */
+    public int findField(String name) throws JSONException {
+        byte[] bytes = this.bytes;
+        int[] index = this.index;
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int p = this.skipWhitespace(0);
+        if (index.length == 0 || index[0] != p || bytes[p] != '{') {
+            throw this.syntaxError("A JSONObject text must begin with '{'", p);
+        }
+        int k = 1;
+        for (;;) {
+            if (k >= index.length) {
+                throw this.syntaxError("A JSONObject text must end with '}'", bytes.length);
+            }
+            p = index[k];
+            if (bytes[p] == '}' && k == 1) {
+                return -1;
+            }
+            if (bytes[p] != '"' || k + 2 >= index.length) {
+                throw this.syntaxError("Expected a key", p);
+            }
+            int keyStart = p + 1;
+            int keyEnd = index[k + 1];
+            int colon = index[k + 2];
+            if (bytes[colon] != ':') {
+                throw this.syntaxError("Expected a ':' after a key", colon);
+            }
+            int value = this.skipWhitespace(colon + 1);
+            if (this.keyEquals(keyStart, keyEnd, key, name)) {
+                return value;
+            }
+            k += 3;
+            int next = k < index.length && index[k] == value ? k : -k - 1;
+            int end = this.valueEnd(value, next);
+            if (next >= 0) {
+                k = bytes[value] == '"' ? k + 2 : this.partner[k] + 1;
+            }
+            if (k >= index.length) {
+                throw this.syntaxError("A JSONObject text must end with '}'", bytes.length);
+            }
+            p = index[k];
+            if (this.skipWhitespace(end) != p) {
+                throw this.syntaxError("Expected a ',' or '}'", this.skipWhitespace(end));
+            }
+            if (bytes[p] == '}') {
+                return -1;
+            }
+            if (bytes[p] != ',') {
+                throw this.syntaxError("Expected a ',' or '}'", p);
+            }
+            k++;
+        }
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key, String name) {
+        for (int i = start; i < end; i++) {
+            if (this.bytes[i] == '\\') {
+                return name.equals(new JSONTokener(ByteBuffer.wrap(this.bytes, start - 1, end - start + 2))
+                        .nextValue());
+            }
+        }
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (this.bytes[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipWhitespace(int p) {
+        while (p < this.bytes.length && isWhitespace(this.bytes[p])) {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private JSONException syntaxError(String message, int offset) {
+        return new JSONException(message + " at " + offset);
+    }
+
+    /**
+     * Walks the index, checking the grammar between the structural characters.
+     */
+    private final class Validator {
+        private final byte[] bytes = JSONStructuralIndex.this.bytes;
+        private final int[] index = JSONStructuralIndex.this.index;
+        /** The next entry of the index. */
+        private int k;
+
+        void run() throws JSONException {
+            if (JSONStructuralIndex.this.unbalanced >= 0) {
+                int p = JSONStructuralIndex.this.unbalanced;
+                throw syntaxError(this.bytes[p] == '{' ? "A JSONObject text must end with '}'"
+                        : this.bytes[p] == '[' ? "Expected a ',' or ']'" : "Unbalanced '" + (char) this.bytes[p] + "'", p);
+            }
+            int end = this.value(skipWhitespace(0));
+            end = skipWhitespace(end);
+            if (end != this.bytes.length) {
+                throw syntaxError("Unexpected text after the value", end);
+            }
+        }
+
+        /**
+         * Check the value at p, and those inside it.
+         * @return the offset after the value
+         */
+        private int value(int p) throws JSONException {
+            if (p >= this.bytes.length) {
+                throw syntaxError("Missing value", p);
+            }
+            if (this.k < this.index.length && this.index[this.k] == p) {
+                switch (this.bytes[p]) {
+                case '"':
+                    return this.string(p);
+                case '{':
+                    return this.object(p);
+                case '[':
+                    return this.array(p);
+                default:
+                    throw syntaxError("Missing value", p);
+                }
+            }
+            int end = this.k < this.index.length ? this.index[this.k] : this.bytes.length;
+            int scalarEnd = scalar(this.bytes, p, end);
+            if (scalarEnd < 0) {
+                throw syntaxError("Invalid value", p);
+            }
+            return scalarEnd;
+        }
+
+        private int object(int p) throws JSONException {
+            int close = this.index[JSONStructuralIndex.this.partner[this.k]];
+            this.k++;
+            p = skipWhitespace(p + 1);
+            if (p == close) {
+                this.k++;
+                return p + 1;
+            }
+            for (;;) {
+                if (this.bytes[p] != '"' || this.index[this.k] != p) {
+                    throw syntaxError("Expected a key", p);
+                }
+                p = skipWhitespace(this.string(p));
+                if (this.bytes[p] != ':' || this.index[this.k] != p) {
+                    throw syntaxError("Expected a ':' after a key", p);
+                }
+                this.k++;
+                p = skipWhitespace(this.value(skipWhitespace(p + 1)));
+                if (p == close) {
+                    this.k++;
+                    return p + 1;
+                }
+                if (this.bytes[p] != ',' || this.index[this.k] != p) {
+                    throw syntaxError("Expected a ',' or '}'", p);
+                }
+                this.k++;
+                p = skipWhitespace(p + 1);
+            }
+        }
+
+        private int array(int p) throws JSONException {
+            int close = this.index[JSONStructuralIndex.this.partner[this.k]];
+            this.k++;
+            p = skipWhitespace(p + 1);
+            if (p == close) {
+                this.k++;
+                return p + 1;
+            }
+            for (;;) {
+                p = skipWhitespace(this.value(p));
+                if (p == close) {
+                    this.k++;
+                    return p + 1;
+                }
+                if (this.bytes[p] != ',' || this.index[this.k] != p) {
+                    throw syntaxError("Expected a ',' or ']'", p);
+                }
+                this.k++;
+                p = skipWhitespace(p + 1);
+            }
+        }
+
+        /**
+         * Check the string that starts at p, whose quotes are the next two
+         * entries of the index.
+         */
+        private int string(int p) throws JSONException {
+            if (this.k + 1 >= this.index.length) {
+                throw syntaxError("Unterminated string", p);
+            }
+            int end = this.index[this.k + 1];
+            this.k += 2;
+            byte[] bytes = this.bytes;
+            int i = p + 1;
+            while (i < end) {
+                // skip plain ASCII a word at a time
+                if (i + 8 <= end) {
+                    long word = readWord(bytes, i);
+                    long controls = (word - ONES * 0x20) & ~word & HIGH_BITS;
+                    if ((word & HIGH_BITS) == 0 && controls == 0 && equal(word, '\\') == 0) {
+                        i += 8;
+                        continue;
+                    }
+                }
+                int b = bytes[i] & 0xFF;
+                if (b < 0x20) {
+                    throw syntaxError("Unescaped control character", i);
+                } else if (b == '\\') {
+                    i = this.escape(i, end);
+                } else if (b >= 0x80) {
+                    i = this.utf8(i, end);
+                } else {
+                    i++;
+                }
+            }
+            return end + 1;
+        }
+
+        private int escape(int i, int end) throws JSONException {
+            if (i + 1 >= end) {
+                throw syntaxError("Illegal escape.", i);
+            }
+            byte c = this.bytes[i + 1];
+            if (c != 'u') {
+                if ("\"\\/bfnrt".indexOf(c) < 0) {
+                    throw syntaxError("Illegal escape.", i);
+                }
+                return i + 2;
+            }
+            if (i + 6 > end) {
+                throw syntaxError("Illegal escape.", i);
+            }
+            for (int j = i + 2; j < i + 6; j++) {
+                if (Character.digit(this.bytes[j], 16) < 0) {
+                    throw syntaxError("Illegal escape.", i);
+                }
+            }
+            return i + 6;
+        }
+
+        private int utf8(int i, int end) throws JSONException {
+            int b = this.bytes[i] & 0xFF;
+            int count;
+            int codePoint;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                count = 1;
+                codePoint = b & 0x1F;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                count = 2;
+                codePoint = b & 0x0F;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                count = 3;
+                codePoint = b & 0x07;
+                min = 0x10000;
+            } else {
+                throw syntaxError("Invalid UTF-8", i);
+            }
+            if (i + count >= end) {
+                throw syntaxError("Invalid UTF-8", i);
+            }
+            for (int j = i + 1; j <= i + count; j++) {
+                int next = this.bytes[j] & 0xFF;
+                if ((next & 0xC0) != 0x80) {
+                    throw syntaxError("Invalid UTF-8", i);
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                throw syntaxError("Invalid UTF-8", i);
+            }
+            return i + count + 1;
+        }
+    }
+
+    /**
+     * Check that a number or literal starts at p, followed only by whitespace
+     * before end.
+     * @return the offset after the scalar, or -1 if it is not valid
+     */
+    private static int scalar(byte[] bytes, int p, int end) {
+        int i;
+        switch (bytes[p]) {
+        case 't':
+            i = literal(bytes, p, end, "true");
+            break;
+        case 'f':
+            i = literal(bytes, p, end, "false");
+            break;
+        case 'n':
+            i = literal(bytes, p, end, "null");
+            break;
+        default:
+            i = number(bytes, p, end);
+        }
+        if (i < 0) {
+            return -1;
+        }
+        for (int j = i; j < end; j++) {
+            if (!isWhitespace(bytes[j])) {
+                return -1;
+            }
+        }
+        return i;
+    }
+
+    private static int literal(byte[] bytes, int p, int end, String literal) {
+        if (p + literal.length() > end) {
+            return -1;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (bytes[p + i] != literal.charAt(i)) {
+                return -1;
+            }
+        }
+        return p + literal.length();
+    }
+
+    private static int number(byte[] bytes, int i, int end) {
+        if (i < end && bytes[i] == '-') {
+            i++;
+        }
+        if (i < end && bytes[i] == '0') {
+            i++;
+        } else {
+            int digits = digits(bytes, i, end);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < end && bytes[i] == '.') {
+            int digits = digits(bytes, i + 1, end);
+            if (digits == i + 1) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            if (i < end && (bytes[i] == '+' || bytes[i] == '-')) {
+                i++;
+            }
+            int digits = digits(bytes, i, end);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        return i;
+    }
+
+    private static int digits(byte[] bytes, int i, int end) {
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -1,11 +1,15 @@
 package org.json;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -49,8 +53,10 @@ public class JSONTokener {
     private long line;
     /** previous character read from the input. */
     private char previous;
-    /** Reader for the input. */
-    private final Reader reader;
+    /** Reader for the input, or null when reading bytes. */
+    private Reader reader;
+    /** UTF-8 encoded input, or null when reading from a Reader. */
+    private UTF8Source bytes;
     /** flag to indicate that a previous character was requested. */
     private boolean usePrevious;
     /** the number of characters read in the previous line. */
@@ -63,9 +69,70 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported()
+        this(reader.markSupported()
                 ? reader
-                        : new BufferedReader(reader);
+                        : new MarkableReader(reader), null);
+    }
+
+    /**
+     * Construct a JSONTokener from UTF-8 encoded bytes, from the position of the
+     * buffer to its limit. The bytes are decoded as they are read, without going
+     * through a Reader. The position of the buffer is not changed.
+     *
+     * @param buffer     The source bytes.
+     */
+    public JSONTokener(ByteBuffer buffer) {
+        this(null, new UTF8Source(buffer));
+    }
+
+    /**
+     * Construct a JSONTokener from UTF-8 encoded bytes.
+     *
+     * @param bytes     The source bytes.
+     */
+    public JSONTokener(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Construct a JSONTokener from a channel of UTF-8 encoded bytes, such as
+     * <code>Channels.newChannel(inputStream)</code> or a socket. The bytes are
+     * decoded as they are read, without going through a Reader. The caller must
+     * close the channel.
+     *
+     * @param channel     The source, which must be in blocking mode.
+     */
+    public JSONTokener(ReadableByteChannel channel) {
+        this(null, new UTF8Source(channel));
+    }
+
+    /**
+     * Construct a JSONTokener from a UTF-8 encoded file. The file is memory mapped
+     * a window at a time rather than read through a stream, so large files are
+     * parsed with little copying and without holding the file in the heap.
+     *
+     * @param path     The source file.
+     * @throws JSONException if the file cannot be opened.
+     */
+    public JSONTokener(Path path) {
+        this(null, mapFile(path));
+    }
+
+    private static UTF8Source mapFile(Path path) throws JSONException {
+        try {
+            return new UTF8Source.MappedFile(path);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * @param reader the source characters, which must support mark, or null
+     * @param bytes the source bytes if there is no reader
+     */
+    JSONTokener(Reader reader, UTF8Source bytes) {
+        this.reader = reader;
+        this.bytes = bytes;
         this.eof = false;
         this.usePrevious = false;
         this.previous = 0;
@@ -78,6 +145,8 @@ public class JSONTokener {
 
     /**
      * Construct a JSONTokener from an InputStream. The caller must close the input stream.
+     * The bytes are decoded with the platform's default charset; use
+     * {@link #JSONTokener(ReadableByteChannel)} to read UTF-8 regardless of the platform.
      * @param inputStream The source.
      */
     public JSONTokener(InputStream inputStream) {
@@ -95,6 +164,71 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Start over with another source, as if this tokener had just been
+     * constructed from it. If the Reader does not support mark, the buffer this
+     * tokener wrapped its last such Reader in is reused, so a tokener can be
+     * pooled and reset for each request without allocating. The caller must
+     * close the old Reader.
+     *
+     * @param reader     A reader.
+     * @return this
+     */
+    public JSONTokener reset(Reader reader) {
+        if (reader.markSupported()) {
+            this.reader = reader;
+        } else if (this.reader instanceof MarkableReader) {
+            ((MarkableReader) this.reader).setSource(reader);
+        } else {
+            this.reader = new MarkableReader(reader);
+        }
+        this.bytes = null;
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.characterPreviousLine = 0;
+        this.line = 1;
+        return this;
+    }
+
+    /**
+     * Iterate over the values that follow one another in the source, such as
+     * a concatenation of JSON texts or a JSON text sequence (RFC 7464), in which
+     * each text starts with a record separator (U+001E). Whitespace and record
+     * separators between the values are skipped. A value that is not an object,
+     * an array or a quoted string must be followed by a line break or a record
+     * separator, as unquoted text may contain spaces.
+     * <p>
+     * The values are read as they are iterated over; syntax errors are thrown
+     * as JSONExceptions from {@link Iterator#next()}, or from
+     * {@link Iterator#hasNext()} if the source cannot be read.
+     *
+     * @return an iterator over the values, each as {@link #nextValue()}
+     *  returns it
+     */
+    public Iterator<Object> values() {
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                if (JSONTokener.this.nextClean() == 0) {
+                    return false;
+                }
+                JSONTokener.this.back();
+                return true;
+            }
+
+            @Override
+            public Object next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return JSONTokener.this.nextValue();
+            }
+        };
+    }
+
     /**
      * Back up one character. This provides a sort of lookahead capability,
      * so that you can test for a digit or letter before attempting to parse
@@ -164,6 +298,17 @@ public class JSONTokener {
         if(this.usePrevious) {
             return true;
         }
+        if (this.bytes != null) {
+            try {
+                if (!this.bytes.more()) {
+                    this.eof = true;
+                    return false;
+                }
+            } catch (IOException e) {
+                throw new JSONException("Unable to read the next character from the stream", e);
+            }
+            return true;
+        }
         try {
             this.reader.mark(1);
         } catch (IOException e) {
@@ -196,7 +341,7 @@ public class JSONTokener {
             c = this.previous;
         } else {
             try {
-                c = this.reader.read();
+                c = this.bytes != null ? this.bytes.read() : this.reader.read();
             } catch (IOException exception) {
                 throw new JSONException(exception);
             }
@@ -312,6 +457,17 @@ public class JSONTokener {
         char c;
         StringBuilder sb = new StringBuilder();
         for (;;) {
+            if (this.bytes != null && !this.usePrevious) {
+                // plain content is decoded in one go
+                String run = this.bytes.readRun(quote);
+                int length = run.length();
+                if (length > 0) {
+                    sb.append(run);
+                    this.index += length;
+                    this.character += length;
+                    this.previous = run.charAt(length - 1);
+                }
+            }
             c = this.next();
             switch (c) {
             case 0:
@@ -475,21 +631,34 @@ public class JSONTokener {
             long startIndex = this.index;
             long startCharacter = this.character;
             long startLine = this.line;
-            this.reader.mark(1000000);
+            if (this.bytes != null) {
+                this.bytes.mark();
+            } else {
+                this.reader.mark(1000000);
+            }
             do {
                 c = this.next();
                 if (c == 0) {
                     // in some readers, reset() may throw an exception if
                     // the remaining portion of the input is greater than
                     // the mark size (1,000,000 above).
-                    this.reader.reset();
+                    if (this.bytes != null) {
+                        this.bytes.reset();
+                        this.bytes.unmark();
+                    } else {
+                        this.reader.reset();
+                    }
                     this.index = startIndex;
                     this.character = startCharacter;
                     this.line = startLine;
                     return 0;
                 }
             } while (c != to);
-            this.reader.mark(1);
+            if (this.bytes != null) {
+                this.bytes.unmark();
+            } else {
+                this.reader.mark(1);
+            }
         } catch (IOException exception) {
             throw new JSONException(exception);
         }
@@ -1,8 +1,13 @@
 package org.json;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /*
 Copyright (c) 2006 JSON.org
@@ -53,6 +58,11 @@ SOFTWARE.
  * There are no methods for adding commas or colons. JSONWriter adds them for
  * you. Objects and arrays can be nested up to 200 levels deep.
  * <p>
+ * A JSONWriter made with <code>checkKeys</code> set to false does not look for
+ * duplicate keys, and objects and arrays can be nested to any depth. This is
+ * for producing large amounts of JSON text from data that is known to be
+ * well formed.
+ * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
  * @author JSON.org
  * @version 2016-08-08
@@ -60,6 +70,12 @@ SOFTWARE.
 public class JSONWriter {
     private static final int maxdepth = 200;
 
+    /**
+     * Key sets larger than this are replaced rather than cleared for reuse,
+     * as clearing a HashSet takes time in proportion to its capacity.
+     */
+    private static final int maxReusedKeys = 64;
+
     /**
      * The comma flag determines if a comma should be output before the next
      * value.
@@ -77,9 +93,25 @@ public class JSONWriter {
     protected char mode;
 
     /**
-     * The object/array stack.
+     * The object/array stack: 'k' for an object and 'a' for an array.
+     */
+    private char stack[];
+
+    /**
+     * The keys of the open objects, by depth, or null if keys are not checked.
+     * A set is reused by the next object opened at the same depth.
+     */
+    private final List<Set<String>> keys;
+
+    /**
+     * Whether duplicate keys and the nesting depth are checked.
      */
-    private final JSONObject stack[];
+    private final boolean checkKeys;
+
+    /**
+     * The digits of a number being written.
+     */
+    private char digits[];
 
     /**
      * The stack top index. A value of 0 indicates that the stack is empty.
@@ -96,9 +128,21 @@ public class JSONWriter {
      * @param w an appendable object
      */
     public JSONWriter(Appendable w) {
+        this(w, true);
+    }
+
+    /**
+     * Make a fresh JSONWriter. It can be used to build one JSON text.
+     * @param w an appendable object
+     * @param checkKeys false to skip looking for duplicate keys, and to allow
+     *  objects and arrays to be nested to any depth
+     */
+    public JSONWriter(Appendable w, boolean checkKeys) {
         this.comma = false;
         this.mode = 'i';
-        this.stack = new JSONObject[maxdepth];
+        this.stack = new char[16];
+        this.keys = checkKeys ? new ArrayList<Set<String>>() : null;
+        this.checkKeys = checkKeys;
         this.top = 0;
         this.writer = w;
     }
@@ -113,27 +157,49 @@ public class JSONWriter {
         if (string == null) {
             throw new JSONException("Null pointer");
         }
+        this.beforeValue();
+        try {
+            this.writer.append(string);
+        } catch (IOException e) {
+        	// Android as of API 25 does not support this exception constructor
+        	// however we won't worry about it. If an exception is happening here
+        	// it will just throw a "Method not found" exception instead.
+            throw new JSONException(e);
+        }
+        return this.afterValue();
+    }
+
+    /**
+     * Check that a value may be written, and write the comma that comes before
+     * it.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private void beforeValue() throws JSONException {
         if (this.mode == 'o' || this.mode == 'a') {
-            try {
-                if (this.comma && this.mode == 'a') {
+            if (this.comma && this.mode == 'a') {
+                try {
                     this.writer.append(',');
+                } catch (IOException e) {
+                    throw new JSONException(e);
                 }
-                this.writer.append(string);
-            } catch (IOException e) {
-            	// Android as of API 25 does not support this exception constructor
-            	// however we won't worry about it. If an exception is happening here
-            	// it will just throw a "Method not found" exception instead.
-                throw new JSONException(e);
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
+            return;
         }
         throw new JSONException("Value out of sequence.");
     }
 
+    /**
+     * Update the mode after a value has been written.
+     * @return this
+     */
+    private JSONWriter afterValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+        return this;
+    }
+
     /**
      * Begin appending a new array. All values until the balancing
      * <code>endArray</code> will be appended to this array. The
@@ -145,7 +211,7 @@ public class JSONWriter {
      */
     public JSONWriter array() throws JSONException {
         if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
-            this.push(null);
+            this.push('a');
             this.append("[");
             this.comma = false;
             return this;
@@ -213,16 +279,13 @@ public class JSONWriter {
         }
         if (this.mode == 'k') {
             try {
-                JSONObject topObject = this.stack[this.top - 1];
-                // don't use the built in putOnce method to maintain Android support
-				if(topObject.has(string)) {
-					throw new JSONException("Duplicate key \"" + string + "\"");
-				}
-                topObject.put(string, true);
+                if (this.checkKeys && !this.keys.get(this.top - 1).add(string)) {
+                    throw new JSONException("Duplicate key \"" + string + "\"");
+                }
                 if (this.comma) {
                     this.writer.append(',');
                 }
-                this.writer.append(JSONObject.quote(string));
+                this.quote(string);
                 this.writer.append(':');
                 this.comma = false;
                 this.mode = 'o';
@@ -253,7 +316,7 @@ public class JSONWriter {
         }
         if (this.mode == 'o' || this.mode == 'a') {
             this.append("{");
-            this.push(new JSONObject());
+            this.push('k');
             this.comma = false;
             return this;
         }
@@ -271,32 +334,92 @@ public class JSONWriter {
         if (this.top <= 0) {
             throw new JSONException("Nesting error.");
         }
-        char m = this.stack[this.top - 1] == null ? 'a' : 'k';
+        char m = this.stack[this.top - 1];
         if (m != c) {
             throw new JSONException("Nesting error.");
         }
         this.top -= 1;
         this.mode = this.top == 0
             ? 'd'
-            : this.stack[this.top - 1] == null
-            ? 'a'
-            : 'k';
+            : this.stack[this.top - 1];
     }
 
     /**
      * Push an array or object scope.
-     * @param jo The scope to open.
+     * @param m The scope to open: 'a' for an array or 'k' for an object.
      * @throws JSONException If nesting is too deep.
      */
-    private void push(JSONObject jo) throws JSONException {
-        if (this.top >= maxdepth) {
-            throw new JSONException("Nesting too deep.");
+    private void push(char m) throws JSONException {
+        if (this.checkKeys) {
+            if (this.top >= maxdepth) {
+                throw new JSONException("Nesting too deep.");
+            }
+            while (this.keys.size() <= this.top) {
+                this.keys.add(null);
+            }
+            if (m == 'k') {
+                Set<String> keySet = this.keys.get(this.top);
+                if (keySet == null || keySet.size() > maxReusedKeys) {
+                    this.keys.set(this.top, new HashSet<String>());
+                } else {
+                    keySet.clear();
+                }
+            }
         }
-        this.stack[this.top] = jo;
-        this.mode = jo == null ? 'a' : 'k';
+        if (this.top == this.stack.length) {
+            char[] stack = new char[this.top * 2];
+            System.arraycopy(this.stack, 0, stack, 0, this.top);
+            this.stack = stack;
+        }
+        this.stack[this.top] = m;
+        this.mode = m;
         this.top += 1;
     }
 
+    /**
+     * Write a quoted string, straight to the writer if it is a Writer.
+     * @param string the string to quote
+     * @throws IOException If the writer fails.
+     */
+    private void quote(String string) throws IOException {
+        if (this.writer instanceof Writer) {
+            JSONObject.quote(string, (Writer) this.writer);
+        } else {
+            this.writer.append(JSONObject.quote(string));
+        }
+    }
+
+    /**
+     * Write the digits of a number without making a String of them.
+     * @param l the number
+     * @throws IOException If the writer fails.
+     */
+    private void writeLong(long l) throws IOException {
+        if (this.digits == null) {
+            this.digits = new char[20];
+        }
+        char[] digits = this.digits;
+        int i = digits.length;
+        // work with the negative value, which can hold Long.MIN_VALUE
+        long n = l < 0 ? l : -l;
+        do {
+            digits[--i] = (char) ('0' - (n % 10));
+            n /= 10;
+        } while (n != 0);
+        if (l < 0) {
+            digits[--i] = '-';
+        }
+        if (this.writer instanceof Writer) {
+            ((Writer) this.writer).write(digits, i, digits.length - i);
+        } else if (this.writer instanceof StringBuilder) {
+            ((StringBuilder) this.writer).append(digits, i, digits.length - i);
+        } else {
+            for (; i < digits.length; i++) {
+                this.writer.append(digits[i]);
+            }
+        }
+    }
+
     /**
      * Make a JSON text of an Object value. If the object has an
      * value.toJSONString() method, then that method will be used to produce the
@@ -387,7 +510,8 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(Double.valueOf(d));
+        // numberToString rejects NaN and infinities, and any other double is a valid JSON number
+        return this.append(JSONObject.numberToString(Double.valueOf(d)));
     }
 
     /**
@@ -397,7 +521,13 @@ public class JSONWriter {
      * @throws JSONException if a called function has an error
      */
     public JSONWriter value(long l) throws JSONException {
-        return this.append(Long.toString(l));
+        this.beforeValue();
+        try {
+            this.writeLong(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
     }
 
 
@@ -409,6 +539,25 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object object) throws JSONException {
+        if (object instanceof String) {
+            this.beforeValue();
+            try {
+                this.quote((String) object);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.afterValue();
+        }
+        if (object instanceof Integer || object instanceof Long
+                || object instanceof Short || object instanceof Byte) {
+            return this.value(((Number) object).longValue());
+        }
+        if (object instanceof Double) {
+            return this.value(((Double) object).doubleValue());
+        }
+        if (object instanceof Boolean) {
+            return this.value(((Boolean) object).booleanValue());
+        }
         return this.append(valueToString(object));
     }
 }
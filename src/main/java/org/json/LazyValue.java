@@ -0,0 +1,218 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * A value of a lazily parsed {@link JSONObject}: the span of the source text
+ * where the value appears. It is decoded the first time it is asked for and
+ * kept here, rather than put back in the map of the JSONObject, so that
+ * readers on several threads do not change the map. Until it is decoded it is
+ * written back out as it appears in the text if it is strict JSON.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class LazyValue {
+
+    private final String source;
+
+    /** Index of the first character of the value. */
+    private final int start;
+
+    /** Index after the last character of the value. */
+    private final int end;
+
+    /** The decoded value, or null until it is asked for. */
+    private volatile Object value;
+
+    /**
+     * @param source the text holding the value
+     * @param start index of the first character of the value
+     * @param end index after the last character of the value
+     */
+    LazyValue(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Get the decoded value, decoding it the first time. Every caller gets the
+     * same value, so changes made to a decoded object or array are kept.
+     * @return the value
+     * @throws JSONException if the value is not well formed
+     */
+    Object get() throws JSONException {
+        Object value = this.value;
+        if (value == null) {
+            synchronized (this) {
+                value = this.value;
+                if (value == null) {
+                    value = this.decode();
+                    this.value = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Decode the value, as {@link JSONTokener#nextValue()} would. An object is
+     * itself parsed lazily.
+     * @return the value
+     * @throws JSONException if the value is not well formed
+     */
+    Object decode() throws JSONException {
+        String source = this.source;
+        char c = source.charAt(this.start);
+        switch (c) {
+        case '{':
+            return new JSONObject(new JSONScanner(source, this.start));
+        case '"':
+        case '\'':
+            for (int i = this.start + 1; i < this.end - 1; i++) {
+                if (source.charAt(i) == '\\') {
+                    return this.decodeWithTokener();
+                }
+            }
+            return source.substring(this.start + 1, this.end - 1);
+        case '[':
+            return this.decodeWithTokener();
+        default:
+            return JSONObject.stringToValue(source.substring(this.start, this.end));
+        }
+    }
+
+    private Object decodeWithTokener() throws JSONException {
+        StringReader reader = new StringReader(this.source);
+        try {
+            reader.skip(this.start);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return new JSONTokener(reader).nextValue();
+    }
+
+    /**
+     * Write the value. The text is copied as it is if the value has not been
+     * decoded, if it is strict JSON, and if it is not an object or array that
+     * should be indented; otherwise the value is decoded and written as
+     * JSONObject writes it.
+     * @param writer the destination
+     * @param indentFactor the number of spaces to add to each level of indentation
+     * @param indent the indentation of the value
+     * @throws JSONException if the value is not well formed
+     * @throws IOException if the writer fails
+     */
+    void write(Writer writer, int indentFactor, int indent) throws JSONException, IOException {
+        char c = this.source.charAt(this.start);
+        boolean container = c == '{' || c == '[';
+        if (this.value == null && (indentFactor == 0 || !container)
+                && JSONScanner.isStrict(this.source, this.start, this.end)) {
+            writer.write(this.source, this.start, this.end - this.start);
+        } else {
+            JSONObject.writeValue(writer, this.get(), indentFactor, indent);
+        }
+    }
+
+    /**
+     * Get a view of the entries of a map that holds LazyValues, which gives the
+     * decoded values without changing the map. Setting the value of an entry,
+     * and removing an entry, change the map.
+     * @param entries the entries of the map
+     * @return the view
+     */
+    static Set<Entry<String, Object>> decoded(final Set<Entry<String, Object>> entries) {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                final Iterator<Entry<String, Object>> iterator = entries.iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        return new DecodedEntry(iterator.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    /**
+     * @param value a value of a map that holds LazyValues
+     * @return the decoded value
+     */
+    static Object decoded(Object value) {
+        return value instanceof LazyValue ? ((LazyValue) value).get() : value;
+    }
+
+    /**
+     * An entry of a map that holds LazyValues, with its value decoded.
+     */
+    private static final class DecodedEntry extends AbstractMap.SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Entry<String, Object> entry;
+
+        DecodedEntry(Entry<String, Object> entry) {
+            super(entry.getKey(), decoded(entry.getValue()));
+            this.entry = entry;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            super.setValue(value);
+            return decoded(this.entry.setValue(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.source.substring(this.start, this.end);
+    }
+}
@@ -0,0 +1,162 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A buffered Reader with mark support, for a {@link JSONTokener} reading from a
+ * Reader that has none. Unlike a BufferedReader, its source can be replaced, so
+ * that a tokener that is reset keeps its buffer.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class MarkableReader extends Reader {
+
+    /** Size of the buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** A buffer grown past this for a mark is not kept for the next source. */
+    private static final int MAX_KEPT_SIZE = 1 << 16;
+
+    /** The source. */
+    private Reader source;
+
+    /** The characters read from the source, from position to limit. */
+    private char[] buffer = new char[BUFFER_SIZE];
+
+    /** Index of the next character. */
+    private int position;
+
+    /** Index after the last character read. */
+    private int limit;
+
+    /** Index of the mark, or -1 if there is none. */
+    private int markPosition = -1;
+
+    /** Number of characters that may be read after the mark while keeping it. */
+    private int readAheadLimit;
+
+    /**
+     * @param source the source characters
+     */
+    MarkableReader(Reader source) {
+        this.source = source;
+    }
+
+    /**
+     * Forget everything read so far and the mark, and read from another source.
+     * @param newSource the source characters
+     */
+    void setSource(Reader newSource) {
+        this.source = newSource;
+        this.position = 0;
+        this.limit = 0;
+        this.markPosition = -1;
+        if (this.buffer.length > MAX_KEPT_SIZE) {
+            this.buffer = new char[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Read more characters into the buffer, keeping those from a valid mark on.
+     * @return false at the end of the source
+     */
+    private boolean fill() throws IOException {
+        if (this.markPosition >= 0 && this.position - this.markPosition > this.readAheadLimit) {
+            this.markPosition = -1;
+        }
+        int keep = this.markPosition >= 0 ? this.markPosition : this.position;
+        if (keep > 0) {
+            System.arraycopy(this.buffer, keep, this.buffer, 0, this.limit - keep);
+            this.position -= keep;
+            this.limit -= keep;
+            if (this.markPosition >= 0) {
+                this.markPosition = 0;
+            }
+        }
+        if (this.limit == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+        int n;
+        do {
+            n = this.source.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        this.limit += n;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position++];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        int n = Math.min(len, this.limit - this.position);
+        System.arraycopy(this.buffer, this.position, cbuf, off, n);
+        this.position += n;
+        return n;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int limit) {
+        this.markPosition = this.position;
+        this.readAheadLimit = limit;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (this.markPosition < 0) {
+            throw new IOException("Stream not marked");
+        }
+        this.position = this.markPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.source.close();
+    }
+}
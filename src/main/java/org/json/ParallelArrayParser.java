@@ -0,0 +1,496 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parses the elements of a UTF-8 encoded JSON array text on the threads of the
+ * common ForkJoinPool. The text is cut into chunks at arbitrary bytes, and the
+ * array is found in three passes:
+ * <ol>
+ * <li>In parallel, each chunk is scanned once for its quotes and brackets. As
+ * it is not known whether a chunk starts inside a string, the scan speculates
+ * both ways: the nesting depth is counted once for brackets outside strings if
+ * the chunk starts outside one, and once for those outside strings if it starts
+ * inside one.</li>
+ * <li>In order, the state at the end of each chunk is taken from the summary
+ * of the right speculation, which validates that the text is an array whose
+ * strings are all double quoted.</li>
+ * <li>In parallel, each chunk, starting in its now known state, finds the
+ * commas between the elements of the array, and parses each element that
+ * starts in it with a JSONTokener of its own.</li>
+ * </ol>
+ * Whenever the speculation does not hold, for single quoted strings, elements
+ * that are missing or do not parse, or anything that is not an array, null is
+ * returned and the caller parses the text sequentially, which gives the
+ * lenient values and the syntax errors of {@link JSONArray#JSONArray(JSONTokener)}.
+ * <p>
+ * The text is held in windows of 2^30 bytes, addressed by long offsets, so a
+ * file larger than a single ByteBuffer can hold is mapped and parsed in
+ * parallel too. Chunks and elements may span windows.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class ParallelArrayParser {
+
+    /** Texts smaller than this are not worth splitting. */
+    static final int MIN_PARALLEL = 1 << 20;
+
+    /** Chunks are not made smaller than this. */
+    private static final int MIN_CHUNK = 1 << 18;
+
+    /** Log2 of the size of the windows a text is held in. */
+    private static final int WINDOW_BITS = 30;
+
+    /**
+     * The text, read only with absolute gets. Each window starts at position
+     * 0, and all but the last hold exactly 2^windowBits bytes.
+     */
+    private final ByteBuffer[] windows;
+
+    /** Log2 of the size of the windows. */
+    private final int windowBits;
+
+    /** Offset of the first byte after the opening bracket. */
+    private final long start;
+
+    /** Offset of the closing bracket. */
+    private final long end;
+
+    /** Offset of the first byte of each chunk, and the end. */
+    private final long[] bounds;
+
+    /** Whether each chunk starts inside a string, found by the second pass. */
+    private final boolean[] inString;
+
+    /** The nesting depth at the start of each chunk, found by the second pass. */
+    private final int[] depth;
+
+    private ParallelArrayParser(ByteBuffer[] windows, int windowBits, long start, long end, int chunks) {
+        this.windows = windows;
+        this.windowBits = windowBits;
+        this.start = start;
+        this.end = end;
+        this.bounds = new long[chunks + 1];
+        long length = end - start;
+        for (int i = 0; i <= chunks; i++) {
+            this.bounds[i] = start + length * i / chunks;
+        }
+        this.inString = new boolean[chunks];
+        this.depth = new int[chunks];
+    }
+
+    /**
+     * Parse the elements of an array text in parallel.
+     *
+     * @param buffer the UTF-8 encoded text, from its position to its limit
+     * @return the elements in order, or null if the text has to be parsed
+     *  sequentially
+     */
+    static List<Object> parse(ByteBuffer buffer) {
+        return parse(split(buffer, WINDOW_BITS), WINDOW_BITS);
+    }
+
+    /**
+     * Parse the elements of an array file in parallel. The file is memory
+     * mapped in windows, so it may be larger than 2 GB.
+     *
+     * @param path the UTF-8 encoded file
+     * @return the elements in order, or null if the file has to be parsed
+     *  sequentially
+     * @throws JSONException if the file cannot be mapped
+     */
+    static List<Object> parse(Path path) throws JSONException {
+        long windowSize = 1L << WINDOW_BITS;
+        ByteBuffer[] windows;
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                windows = new ByteBuffer[(int) ((size + windowSize - 1) / windowSize)];
+                for (int i = 0; i < windows.length; i++) {
+                    long offset = i * windowSize;
+                    windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(windowSize, size - offset));
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return parse(windows, WINDOW_BITS);
+    }
+
+    /**
+     * Split a buffer into windows.
+     *
+     * @param buffer the text, from its position to its limit
+     * @param windowBits log2 of the size of the windows
+     * @return the windows, sharing the content of the buffer
+     */
+    static ByteBuffer[] split(ByteBuffer buffer, int windowBits) {
+        int windowSize = 1 << windowBits;
+        int length = buffer.remaining();
+        ByteBuffer[] windows = new ByteBuffer[(int) ((length + (long) windowSize - 1) >> windowBits)];
+        for (int i = 0; i < windows.length; i++) {
+            ByteBuffer window = buffer.duplicate();
+            int from = buffer.position() + (int) ((long) i << windowBits);
+            window.limit(from + Math.min(windowSize, buffer.limit() - from)).position(from);
+            windows[i] = window.slice();
+        }
+        return windows;
+    }
+
+    /**
+     * Parse the elements of an array text held in windows in parallel.
+     *
+     * @param windows the text; each window starts at position 0, and all but
+     *  the last hold exactly 2^windowBits bytes
+     * @param windowBits log2 of the size of the windows
+     * @return the elements in order, or null if the text has to be parsed
+     *  sequentially
+     */
+    static List<Object> parse(ByteBuffer[] windows, int windowBits) {
+        long first = 0;
+        long last = windows.length == 0 ? -1
+                : ((long) (windows.length - 1) << windowBits) + windows[windows.length - 1].limit() - 1;
+        while (first <= last && isWhitespace(get(windows, windowBits, first))) {
+            first++;
+        }
+        while (last > first && isWhitespace(get(windows, windowBits, last))) {
+            last--;
+        }
+        if (last <= first || get(windows, windowBits, first) != '['
+                || get(windows, windowBits, last) != ']') {
+            return null;
+        }
+        int chunks = (int) Math.min(ForkJoinPool.getCommonPoolParallelism() * 4,
+                Math.max(1, (last - first) / MIN_CHUNK));
+        return new ParallelArrayParser(windows, windowBits, first + 1, last, chunks).parse();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static byte get(ByteBuffer[] windows, int windowBits, long offset) {
+        return windows[(int) (offset >>> windowBits)].get((int) (offset & ((1L << windowBits) - 1)));
+    }
+
+    /**
+     * @return the byte at an offset
+     */
+    private byte get(long offset) {
+        return get(this.windows, this.windowBits, offset);
+    }
+
+    private long windowMask() {
+        return (1L << this.windowBits) - 1;
+    }
+
+    private List<Object> parse() {
+        int chunks = this.inString.length;
+        long[] summaries = IntStream.range(0, chunks).parallel()
+                .mapToLong(this::summarize).toArray();
+        boolean quoted = false;
+        int level = 1;
+        for (int i = 0; i < chunks; i++) {
+            this.inString[i] = quoted;
+            this.depth[i] = level;
+            long summary = summaries[i];
+            if (quoted) {
+                summary >>>= 32;
+            }
+            if ((summary & SINGLE_QUOTE) != 0 || level + minDepth(summary) < 1) {
+                return null;
+            }
+            level += netDepth(summary);
+            quoted ^= (summary & QUOTED) != 0;
+        }
+        if (quoted || level != 1) {
+            return null;
+        }
+        List<List<Object>> parts = new ArrayList<List<Object>>(chunks);
+        try {
+            IntStream.range(0, chunks).parallel().mapToObj(this::elements)
+                    .forEachOrdered(parts::add);
+        } catch (JSONException e) {
+            return null;
+        }
+        int size = 0;
+        for (List<Object> part : parts) {
+            if (part == null) {
+                return null;
+            }
+            size += part.size();
+        }
+        List<Object> values = new ArrayList<Object>(size);
+        for (List<Object> part : parts) {
+            values.addAll(part);
+        }
+        return values;
+    }
+
+    /*
+     * A chunk is summarized for each speculation in 32 bits: the change in
+     * depth and the least depth reached, relative to the start, in 12 bits each
+     * after an offset, whether the chunk ends with the other string state than
+     * it started with, and whether a single quote was seen outside a string.
+     * The speculation that the chunk starts outside a string is in the low bits.
+     */
+
+    private static final int DEPTH_BITS = 12;
+    private static final int DEPTH_OFFSET = 1 << (DEPTH_BITS - 1);
+    private static final int DEPTH_MASK = (1 << DEPTH_BITS) - 1;
+    private static final long QUOTED = 1L << (2 * DEPTH_BITS);
+    private static final long SINGLE_QUOTE = QUOTED << 1;
+
+    private static int netDepth(long summary) {
+        return (int) (summary & DEPTH_MASK) - DEPTH_OFFSET;
+    }
+
+    private static int minDepth(long summary) {
+        return (int) ((summary >>> DEPTH_BITS) & DEPTH_MASK) - DEPTH_OFFSET;
+    }
+
+    /**
+     * @return whether the byte at the offset is escaped, if it is in a string
+     */
+    private boolean isEscaped(long index) {
+        long i = index;
+        while (i > this.start && this.get(i - 1) == '\\') {
+            i--;
+        }
+        return ((index - i) & 1) != 0;
+    }
+
+    /**
+     * The first pass, over one chunk.
+     * @return the summaries of the chunk for both speculations, or one that
+     *  makes the second pass fail if the depth cannot be summarized
+     */
+    private long summarize(int chunk) {
+        long i = this.bounds[chunk];
+        long limit = this.bounds[chunk + 1];
+        // the depth and the least depth if the chunk starts outside a string
+        // (index 0) or inside one (index 1), and the quotes seen so far
+        int depth0 = 0, min0 = 0, depth1 = 0, min1 = 0, parity = 0;
+        boolean single0 = false, single1 = false;
+        if (this.isEscaped(i)) {
+            i++;
+        }
+        while (i < limit) {
+            // the part of the chunk in one window
+            ByteBuffer b = this.windows[(int) (i >>> this.windowBits)];
+            long base = i & ~this.windowMask();
+            int j = (int) (i - base);
+            int stop = (int) Math.min(b.limit(), limit - base);
+            for (; j < stop; j++) {
+                byte c = b.get(j);
+                switch (c) {
+                case '\\':
+                    // skips the next byte, which may be in the next window
+                    j++;
+                    break;
+                case '"':
+                    parity ^= 1;
+                    break;
+                case '[':
+                case '{':
+                    if (parity == 0) {
+                        depth0++;
+                    } else {
+                        depth1++;
+                    }
+                    break;
+                case ']':
+                case '}':
+                    if (parity == 0) {
+                        min0 = Math.min(min0, --depth0);
+                    } else {
+                        min1 = Math.min(min1, --depth1);
+                    }
+                    break;
+                case '\'':
+                    if (parity == 0) {
+                        single0 = true;
+                    } else {
+                        single1 = true;
+                    }
+                    break;
+                default:
+                }
+            }
+            i = base + j;
+        }
+        return summary(depth0, min0, parity != 0, single0)
+                | summary(depth1, min1, parity != 0, single1) << 32;
+    }
+
+    private static long summary(int depth, int min, boolean quoted, boolean single) {
+        if (depth >= DEPTH_OFFSET || min < -DEPTH_OFFSET) {
+            // deeper than the summary can tell; parse sequentially
+            single = true;
+            depth = 0;
+            min = 0;
+        }
+        return (depth + DEPTH_OFFSET) | (long) (min + DEPTH_OFFSET) << DEPTH_BITS
+                | (quoted ? QUOTED : 0) | (single ? SINGLE_QUOTE : 0);
+    }
+
+    /**
+     * The third pass, over one chunk: parse the elements that start in it.
+     * @return the elements, or null if the speculation does not hold
+     */
+    private List<Object> elements(int chunk) {
+        long i = this.bounds[chunk];
+        long limit = this.bounds[chunk + 1];
+        boolean quoted = this.inString[chunk];
+        int level = this.depth[chunk];
+        // offset of the first byte of the element being found, or -1
+        long element = chunk == 0 ? this.start : -1;
+        List<Object> values = new ArrayList<Object>();
+        if (quoted && this.isEscaped(i)) {
+            i++;
+        }
+        while (i < this.end) {
+            // the part of the text in one window
+            ByteBuffer b = this.windows[(int) (i >>> this.windowBits)];
+            long base = i & ~this.windowMask();
+            int j = (int) (i - base);
+            int stop = (int) Math.min(b.limit(), this.end - base);
+            for (; j < stop; j++) {
+                if (element < 0 && base + j >= limit) {
+                    // no element starts in this chunk
+                    return values;
+                }
+                byte c = b.get(j);
+                if (quoted) {
+                    if (c == '\\') {
+                        j++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == '[' || c == '{') {
+                    level++;
+                } else if (c == ']' || c == '}') {
+                    level--;
+                } else if (c == ',' && level == 1) {
+                    long comma = base + j;
+                    if (element >= 0 && !this.parseElement(element, comma, values)) {
+                        return null;
+                    }
+                    if (comma >= limit) {
+                        return values;
+                    }
+                    element = comma + 1;
+                }
+            }
+            i = base + j;
+        }
+        if (element >= 0) {
+            if (chunk == 0 && values.isEmpty() && this.isBlank(element, this.end)) {
+                // the empty array
+                return values;
+            }
+            if (!this.parseElement(element, this.end, values)) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    private boolean isBlank(long from, long to) {
+        for (long i = from; i < to; i++) {
+            if (!isWhitespace(this.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the element between two offsets.
+     * @return false if it is not a single value
+     */
+    private boolean parseElement(long from, long to, List<Object> values) {
+        JSONTokener x;
+        int window = (int) (from >>> this.windowBits);
+        if ((to - 1) >>> this.windowBits == window) {
+            ByteBuffer slice = this.windows[window].duplicate();
+            long base = (long) window << this.windowBits;
+            slice.limit((int) (to - base)).position((int) (from - base));
+            x = new JSONTokener(slice);
+        } else {
+            x = new JSONTokener(null, new Windows(from, to));
+        }
+        if (x.nextClean() == 0) {
+            return false;
+        }
+        x.back();
+        values.add(x.nextValue());
+        return x.nextClean() == 0;
+    }
+
+    /**
+     * The bytes between two offsets that span windows, read a window at a time.
+     */
+    private final class Windows extends UTF8Source {
+        /** Offset of the next bytes. */
+        private long offset;
+        private final long end;
+
+        Windows(long from, long to) {
+            this.offset = from;
+            this.end = to;
+        }
+
+        @Override
+        ByteBuffer nextSource() {
+            if (this.offset >= this.end) {
+                return null;
+            }
+            int window = (int) (this.offset >>> ParallelArrayParser.this.windowBits);
+            long base = (long) window << ParallelArrayParser.this.windowBits;
+            ByteBuffer bytes = ParallelArrayParser.this.windows[window].duplicate();
+            bytes.limit((int) Math.min(bytes.limit(), this.end - base)).position((int) (this.offset - base));
+            this.offset = base + bytes.limit();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Writes the text of a large JSONObject or JSONArray with the threads of the
+ * common ForkJoinPool. The tree is first planned as a list of pieces: the
+ * brackets, keys and separators of the large containers, which are written
+ * in order, and parts, each a run of the members of a container that together
+ * hold about {@link #PART_WEIGHT} values. The parts are written into buffers
+ * of their own by the tasks of the pool, a bounded number of them ahead, and
+ * copied into the destination in order, so the text is exactly that of the
+ * sequential write.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class ParallelWriter {
+
+    /** Trees with fewer values than this are written sequentially. */
+    static final int MIN_PARALLEL = 1 << 16;
+
+    /** The number of values a part is made to hold. */
+    private static final int PART_WEIGHT = 1 << 12;
+
+    private final int indentFactor;
+
+    /** The destination, if it is a Writer. */
+    private final Writer writer;
+
+    /** The destination, if it is an OutputStream. */
+    private final OutputStream stream;
+
+    /** The pieces, each a String or a Part. */
+    private final List<Object> pieces = new ArrayList<Object>();
+
+    /** The text since the last part. */
+    private final StringBuilder text = new StringBuilder();
+
+    private ParallelWriter(Writer writer, OutputStream stream, int indentFactor) {
+        this.writer = writer;
+        this.stream = stream;
+        this.indentFactor = indentFactor;
+    }
+
+    /**
+     * Write the text of a JSONObject or JSONArray, in parallel if it is large
+     * enough.
+     *
+     * @param value the JSONObject or JSONArray
+     * @param writer the destination, or null to write to the stream
+     * @param stream the destination of the UTF-8 encoded text, if the writer
+     *  is null
+     * @param indentFactor the number of spaces to add to each level of indentation
+     * @param indent the indentation of the top level
+     * @return false if the value is too small to be written in parallel, in
+     *  which case nothing has been written
+     * @throws JSONException if the value cannot be written
+     */
+    static boolean write(Object value, Writer writer, OutputStream stream,
+            int indentFactor, int indent) throws JSONException {
+        if (weight(value, MIN_PARALLEL) < MIN_PARALLEL) {
+            return false;
+        }
+        ParallelWriter parallelWriter = new ParallelWriter(writer, stream, indentFactor);
+        parallelWriter.plan(value, indent);
+        parallelWriter.pieces.add(parallelWriter.text.toString());
+        parallelWriter.write();
+        return true;
+    }
+
+    /**
+     * Count the values of a tree, up to a limit.
+     * @return the number of values, or the limit if there are as many
+     */
+    private static int weight(Object value, int limit) {
+        int weight = 1;
+        if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            for (int i = 0, length = jsonArray.length(); i < length && weight < limit; i++) {
+                weight += weight(jsonArray.opt(i), limit - weight);
+            }
+        } else if (value instanceof JSONObject) {
+            for (Entry<String, Object> entry : ((JSONObject) value).entrySet()) {
+                if (weight >= limit) {
+                    break;
+                }
+                weight += weight(entry.getValue(), limit - weight);
+            }
+        }
+        return Math.min(weight, limit);
+    }
+
+    /**
+     * Plan a value: a small one becomes a part, a large container is opened.
+     */
+    private void plan(Object value, int indent) {
+        if (value instanceof JSONArray && weight(value, PART_WEIGHT) == PART_WEIGHT) {
+            this.planArray((JSONArray) value, indent);
+        } else if (value instanceof JSONObject && weight(value, PART_WEIGHT) == PART_WEIGHT) {
+            this.planObject((JSONObject) value, indent);
+        } else {
+            this.addPart(new Part(value, indent));
+        }
+    }
+
+    private void planArray(JSONArray jsonArray, int indent) {
+        int length = jsonArray.length();
+        this.text.append('[');
+        if (length == 1) {
+            this.plan(jsonArray.opt(0), indent);
+        } else if (length != 0) {
+            int newIndent = indent + this.indentFactor;
+            int from = 0;
+            int weight = 0;
+            for (int i = 0; i < length; i++) {
+                int w = weight(jsonArray.opt(i), PART_WEIGHT);
+                if (w == PART_WEIGHT) {
+                    if (from < i) {
+                        this.addPart(new Part(jsonArray, from, i, newIndent));
+                    }
+                    this.separator(i > 0, newIndent);
+                    this.plan(jsonArray.opt(i), newIndent);
+                    from = i + 1;
+                    weight = 0;
+                } else if ((weight += w) >= PART_WEIGHT) {
+                    this.addPart(new Part(jsonArray, from, i + 1, newIndent));
+                    from = i + 1;
+                    weight = 0;
+                }
+            }
+            if (from < length) {
+                this.addPart(new Part(jsonArray, from, length, newIndent));
+            }
+            this.close(indent);
+        }
+        this.text.append(']');
+    }
+
+    private void planObject(JSONObject jsonObject, int indent) {
+        List<Entry<String, Object>> entries = new ArrayList<Entry<String, Object>>(jsonObject.entrySet());
+        int length = entries.size();
+        this.text.append('{');
+        if (length == 1) {
+            this.key(entries.get(0).getKey());
+            this.plan(entries.get(0).getValue(), indent);
+        } else if (length != 0) {
+            int newIndent = indent + this.indentFactor;
+            int from = 0;
+            int weight = 0;
+            for (int i = 0; i < length; i++) {
+                Entry<String, Object> entry = entries.get(i);
+                int w = weight(entry.getValue(), PART_WEIGHT);
+                if (w == PART_WEIGHT) {
+                    if (from < i) {
+                        this.addPart(new Part(entries, from, i, newIndent));
+                    }
+                    this.separator(i > 0, newIndent);
+                    this.key(entry.getKey());
+                    this.plan(entry.getValue(), newIndent);
+                    from = i + 1;
+                    weight = 0;
+                } else if ((weight += w) >= PART_WEIGHT) {
+                    this.addPart(new Part(entries, from, i + 1, newIndent));
+                    from = i + 1;
+                    weight = 0;
+                }
+            }
+            if (from < length) {
+                this.addPart(new Part(entries, from, length, newIndent));
+            }
+            this.close(indent);
+        }
+        this.text.append('}');
+    }
+
+    /** The text before a member, as the sequential write puts it. */
+    private void separator(boolean needsComma, int indent) {
+        if (needsComma) {
+            this.text.append(',');
+        }
+        if (this.indentFactor > 0) {
+            this.text.append('\n');
+        }
+        for (int i = 0; i < indent; i++) {
+            this.text.append(' ');
+        }
+    }
+
+    /** The text before the closing bracket of a container of several members. */
+    private void close(int indent) {
+        if (this.indentFactor > 0) {
+            this.text.append('\n');
+        }
+        for (int i = 0; i < indent; i++) {
+            this.text.append(' ');
+        }
+    }
+
+    private void key(String key) {
+        this.text.append(JSONObject.quote(key)).append(':');
+        if (this.indentFactor > 0) {
+            this.text.append(' ');
+        }
+    }
+
+    private void addPart(Part part) {
+        if (this.text.length() > 0) {
+            this.pieces.add(this.text.toString());
+            this.text.setLength(0);
+        }
+        this.pieces.add(part);
+    }
+
+    /**
+     * Write the pieces in order, with the parts written ahead by the pool.
+     */
+    private void write() throws JSONException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int ahead = pool.getParallelism() * 4;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[this.pieces.size()];
+        int submitted = 0;
+        JSONOutput output = this.writer != null ? JSONOutput.acquire(this.writer)
+                : JSONOutput.acquire(this.stream);
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                for (; submitted < tasks.length && submitted <= i + ahead; submitted++) {
+                    Object piece = this.pieces.get(submitted);
+                    if (piece instanceof Part) {
+                        tasks[submitted] = pool.submit((Part) piece);
+                    }
+                }
+                Object piece = this.pieces.get(i);
+                if (piece instanceof String) {
+                    output.write((String) piece);
+                    continue;
+                }
+                tasks[i].join();
+                tasks[i] = null;
+                Part part = (Part) piece;
+                if (part.error != null) {
+                    throw part.error;
+                }
+                output.drain();
+                part.copyTo(this.writer, this.stream);
+            }
+            output.drain();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        } finally {
+            for (ForkJoinTask<?> task : tasks) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+            output.release();
+        }
+    }
+
+    /**
+     * A value, or a run of the members of a container, written by a task of
+     * the pool into a buffer of its own.
+     */
+    private final class Part implements Runnable {
+        /** A value, a JSONArray to write elements of, or a list of entries. */
+        private final Object source;
+        /** Index of the first member, or -1 for a value. */
+        private final int from;
+        /** Index after the last member. */
+        private final int to;
+        private final int indent;
+        /** The text, if the destination is a Writer. */
+        private CharArrayWriter chars;
+        /** The text, if the destination is an OutputStream. */
+        private byte[] bytes;
+        /** The error writing the part, thrown when it is copied. */
+        RuntimeException error;
+
+        Part(Object value, int indent) {
+            this(value, -1, 0, indent);
+        }
+
+        Part(Object source, int from, int to, int indent) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.indent = indent;
+        }
+
+        @Override
+        public void run() {
+            JSONOutput output;
+            if (ParallelWriter.this.writer != null) {
+                this.chars = new CharArrayWriter(PART_WEIGHT * 4);
+                output = JSONOutput.acquire(this.chars);
+            } else {
+                output = JSONOutput.acquire();
+            }
+            try {
+                this.write(output);
+                output.drain();
+                if (this.chars == null) {
+                    this.bytes = output.toByteArray();
+                }
+            } catch (RuntimeException e) {
+                this.error = e;
+            } catch (IOException e) {
+                this.error = new JSONException(e);
+            } finally {
+                output.release();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void write(Writer output) throws IOException {
+            int indentFactor = ParallelWriter.this.indentFactor;
+            if (this.from < 0) {
+                JSONObject.writeValue(output, this.source, indentFactor, this.indent);
+            } else if (this.source instanceof JSONArray) {
+                JSONArray jsonArray = (JSONArray) this.source;
+                for (int i = this.from; i < this.to; i++) {
+                    this.separator(output, i > 0);
+                    try {
+                        JSONObject.writeValue(output, jsonArray.opt(i), indentFactor, this.indent);
+                    } catch (Exception e) {
+                        throw new JSONException("Unable to write JSONArray value at index: " + i, e);
+                    }
+                }
+            } else {
+                List<Entry<String, Object>> entries = (List<Entry<String, Object>>) this.source;
+                for (int i = this.from; i < this.to; i++) {
+                    this.separator(output, i > 0);
+                    String key = entries.get(i).getKey();
+                    output.write(JSONObject.quote(key));
+                    output.write(':');
+                    if (indentFactor > 0) {
+                        output.write(' ');
+                    }
+                    try {
+                        JSONObject.writeValue(output, entries.get(i).getValue(), indentFactor, this.indent);
+                    } catch (Exception e) {
+                        throw new JSONException("Unable to write JSONObject value for key: " + key, e);
+                    }
+                }
+            }
+        }
+
+        private void separator(Writer output, boolean needsComma) throws IOException {
+            if (needsComma) {
+                output.write(',');
+            }
+            if (ParallelWriter.this.indentFactor > 0) {
+                output.write('\n');
+            }
+            JSONObject.indent(output, this.indent);
+        }
+
+        void copyTo(Writer writer, OutputStream stream) throws IOException {
+            if (writer != null) {
+                this.chars.writeTo(writer);
+            } else {
+                stream.write(this.bytes);
+            }
+            // copied parts are not kept until the end
+            this.chars = null;
+            this.bytes = null;
+        }
+    }
+}
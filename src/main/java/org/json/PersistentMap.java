@@ -0,0 +1,347 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map of a JSONObject made by {@link JSONObject#with(String, Object)}: a
+ * hash array mapped trie. Each node has a slot for each of the 32 values of 5
+ * bits of the hash of the keys below it, and a bitmap of the slots in use, so
+ * that only those are stored. A changed copy of the map copies only the nodes
+ * on the path to the key, at most 7, and shares all of the others with the
+ * map it was made from.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class PersistentMap extends FrozenMap {
+
+    /** The map with no entries. */
+    static final PersistentMap EMPTY = new PersistentMap(new Node(0, new Object[0]), 0);
+
+    /** Bits of the hash used at each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The shift past the last level, where keys whose hashes are equal are kept in a list. */
+    private static final int MAX_SHIFT = 35;
+
+    /** An entry. */
+    private static final class Leaf {
+        final int hash;
+        final String key;
+        final Object value;
+
+        Leaf(int hash, String key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A node of the trie. Each slot holds a Leaf or a Node, or, past the last
+     * level, every slot holds a Leaf of the same hash.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private final Node root;
+
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static Object[] copyWith(Object[] slots, int index, Object slot) {
+        Object[] copy = slots.clone();
+        copy[index] = slot;
+        return copy;
+    }
+
+    private static Object[] copyInserting(Object[] slots, int index, Object slot) {
+        Object[] copy = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, copy, 0, index);
+        copy[index] = slot;
+        System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+        return copy;
+    }
+
+    private static Object[] copyRemoving(Object[] slots, int index) {
+        Object[] copy = new Object[slots.length - 1];
+        System.arraycopy(slots, 0, copy, 0, index);
+        System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    private Leaf find(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int hash = hash(key);
+        Node node = this.root;
+        for (int shift = 0; shift < MAX_SHIFT; shift += BITS) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.hash == hash && key.equals(leaf.key) ? leaf : null;
+            }
+            node = (Node) slot;
+        }
+        for (Object slot : node.slots) {
+            if (key.equals(((Leaf) slot).key)) {
+                return (Leaf) slot;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Leaf leaf = this.find(key);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    PersistentMap toPersistent() {
+        return this;
+    }
+
+    /**
+     * Make a copy of the map with a key set to a value.
+     * @param key the key
+     * @param value the value, which must be frozen already
+     * @return the copy, or this map if the key has the value already
+     */
+    PersistentMap with(String key, Object value) {
+        Leaf leaf = new Leaf(hash(key), key, value);
+        boolean[] added = new boolean[1];
+        Node root = with(this.root, 0, leaf, added);
+        return root == this.root ? this : new PersistentMap(root, added[0] ? this.size + 1 : this.size);
+    }
+
+    private static Node with(Node node, int shift, Leaf leaf, boolean[] added) {
+        if (shift >= MAX_SHIFT) {
+            for (int i = 0; i < node.slots.length; i++) {
+                Leaf old = (Leaf) node.slots[i];
+                if (old.key.equals(leaf.key)) {
+                    return old.value == leaf.value ? node : new Node(0, copyWith(node.slots, i, leaf));
+                }
+            }
+            added[0] = true;
+            return new Node(0, copyInserting(node.slots, node.slots.length, leaf));
+        }
+        int bit = bit(leaf.hash, shift);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            return new Node(node.bitmap | bit, copyInserting(node.slots, index, leaf));
+        }
+        Object slot = node.slots[index];
+        if (slot instanceof Node) {
+            Node child = with((Node) slot, shift + BITS, leaf, added);
+            return child == slot ? node : new Node(node.bitmap, copyWith(node.slots, index, child));
+        }
+        Leaf old = (Leaf) slot;
+        if (old.hash == leaf.hash && old.key.equals(leaf.key)) {
+            return old.value == leaf.value ? node : new Node(node.bitmap, copyWith(node.slots, index, leaf));
+        }
+        added[0] = true;
+        return new Node(node.bitmap, copyWith(node.slots, index, pair(old, leaf, shift + BITS)));
+    }
+
+    /**
+     * @return a node holding two leaves whose hashes agree below the shift
+     */
+    private static Node pair(Leaf a, Leaf b, int shift) {
+        if (shift >= MAX_SHIFT) {
+            return new Node(0, new Object[] {a, b});
+        }
+        int bitA = bit(a.hash, shift);
+        int bitB = bit(b.hash, shift);
+        if (bitA == bitB) {
+            return new Node(bitA, new Object[] {pair(a, b, shift + BITS)});
+        }
+        return new Node(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0
+                ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    /**
+     * Make a copy of the map without a key.
+     * @param key the key
+     * @return the copy, or this map if it does not have the key
+     */
+    PersistentMap without(String key) {
+        if (this.find(key) == null) {
+            return this;
+        }
+        Node root = (Node) without(this.root, 0, hash(key), key);
+        return root == null ? EMPTY : new PersistentMap(root, this.size - 1);
+    }
+
+    /**
+     * @return the node without the key, the Leaf left if only one is left in
+     *  a node below the root, or null if none are left
+     */
+    private static Object without(Node node, int shift, int hash, String key) {
+        if (shift >= MAX_SHIFT) {
+            for (int i = 0; i < node.slots.length; i++) {
+                if (((Leaf) node.slots[i]).key.equals(key)) {
+                    return node.slots.length == 2 ? node.slots[1 - i] : new Node(0, copyRemoving(node.slots, i));
+                }
+            }
+            return node;
+        }
+        int bit = bit(hash, shift);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[index];
+        Object child = slot instanceof Node ? without((Node) slot, shift + BITS, hash, key) : null;
+        if (child == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            if (node.slots.length == 2 && shift > 0 && node.slots[1 - index] instanceof Leaf) {
+                return node.slots[1 - index];
+            }
+            return new Node(node.bitmap & ~bit, copyRemoving(node.slots, index));
+        }
+        if (child instanceof Leaf && node.slots.length == 1 && shift > 0) {
+            return child;
+        }
+        return new Node(node.bitmap, copyWith(node.slots, index, child));
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator(PersistentMap.this.root);
+            }
+
+            @Override
+            public int size() {
+                return PersistentMap.this.size;
+            }
+        };
+    }
+
+    /**
+     * Visits the leaves depth first, with a stack of the nodes being visited
+     * and the index of the next slot of each.
+     */
+    private static final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private final Deque<Node> nodes = new ArrayDeque<Node>();
+        private int[] indexes = new int[8];
+        private Leaf next;
+
+        EntryIterator(Node root) {
+            this.nodes.push(root);
+            this.advance();
+        }
+
+        private void advance() {
+            this.next = null;
+            while (!this.nodes.isEmpty()) {
+                Node node = this.nodes.peek();
+                int depth = this.nodes.size() - 1;
+                int i = this.indexes[depth];
+                if (i == node.slots.length) {
+                    this.nodes.pop();
+                    continue;
+                }
+                this.indexes[depth] = i + 1;
+                Object slot = node.slots[i];
+                if (slot instanceof Leaf) {
+                    this.next = (Leaf) slot;
+                    return;
+                }
+                this.nodes.push((Node) slot);
+                if (depth + 1 == this.indexes.length) {
+                    this.indexes = Arrays.copyOf(this.indexes, this.indexes.length * 2);
+                }
+                this.indexes[depth + 1] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            Leaf leaf = this.next;
+            if (leaf == null) {
+                throw new NoSuchElementException();
+            }
+            this.advance();
+            return new SimpleImmutableEntry<String, Object>(leaf.key, leaf.value);
+        }
+
+        @Override
+        public void remove() {
+            throw frozen();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * The list of a JSONArray made by {@link JSONArray#with(Object)} or
+ * {@link JSONArray#with(int, Object)}: a trie of arrays of 32 elements, with
+ * the last, partly filled array kept apart as the tail. Appending copies only
+ * the tail until it fills, and setting an element copies only the arrays on
+ * the path to it, so a changed copy shares almost everything with the vector
+ * it was made from.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+final class PersistentVector extends FrozenList {
+
+    /** Bits of the index used at each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The number of slots in each array. */
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    /** The vector with no elements. */
+    static final PersistentVector EMPTY = new PersistentVector(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+
+    /** The shift of the level of the root. */
+    private final int shift;
+
+    /** The trie of the full arrays before the tail. */
+    private final Object[] root;
+
+    /** The last elements, at most 32. */
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * @return the index of the first element of the tail
+     */
+    private int tailOffset() {
+        return this.size < WIDTH ? 0 : ((this.size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * @return the array holding the element at the index
+     */
+    private Object[] arrayFor(int index) {
+        if (index >= this.tailOffset()) {
+            return this.tail;
+        }
+        Object[] node = this.root;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.arrayFor(index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    PersistentVector toPersistent() {
+        return this;
+    }
+
+    /**
+     * Make a copy of the vector with an element appended.
+     * @param value the element, which must be frozen already
+     * @return the copy
+     */
+    PersistentVector with(Object value) {
+        int tailLength = this.size - this.tailOffset();
+        if (tailLength < WIDTH) {
+            Object[] tail = new Object[tailLength + 1];
+            System.arraycopy(this.tail, 0, tail, 0, tailLength);
+            tail[tailLength] = value;
+            return new PersistentVector(this.size + 1, this.shift, this.root, tail);
+        }
+        // the tail is full: push it into the trie, growing a level when the trie is full
+        Object[] root;
+        int shift = this.shift;
+        if ((this.size >>> BITS) > (1 << this.shift)) {
+            root = new Object[WIDTH];
+            root[0] = this.root;
+            root[1] = newPath(this.shift, this.tail);
+            shift += BITS;
+        } else {
+            root = pushTail(this.shift, this.root, this.tail);
+        }
+        return new PersistentVector(this.size + 1, shift, root, new Object[] {value});
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tail) {
+        int index = ((this.size - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[index] = tail;
+        } else {
+            Object[] child = (Object[]) parent[index];
+            node[index] = child == null ? newPath(level - BITS, tail) : this.pushTail(level - BITS, child, tail);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] tail) {
+        if (level == 0) {
+            return tail;
+        }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, tail);
+        return node;
+    }
+
+    /**
+     * Make a copy of the vector with the element at an index replaced.
+     * @param index the index, which must be less than the size
+     * @param value the element, which must be frozen already
+     * @return the copy, or this vector if the element is the value already
+     */
+    PersistentVector with(int index, Object value) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        if (this.arrayFor(index)[index & MASK] == value) {
+            return this;
+        }
+        if (index >= this.tailOffset()) {
+            Object[] tail = this.tail.clone();
+            tail[index & MASK] = value;
+            return new PersistentVector(this.size, this.shift, this.root, tail);
+        }
+        return new PersistentVector(this.size, this.shift, with(this.shift, this.root, index, value), this.tail);
+    }
+
+    private static Object[] with(int level, Object[] parent, int index, Object value) {
+        Object[] node = parent.clone();
+        if (level == 0) {
+            node[index & MASK] = value;
+        } else {
+            int slot = (index >>> level) & MASK;
+            node[slot] = with(level - BITS, (Object[]) parent[slot], index, value);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,354 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * UTF-8 encoded input for a {@link JSONTokener}. Characters are decoded one at a
+ * time straight from the bytes, without a Reader in between, and runs of plain
+ * string content are decoded in bulk. Characters outside the Basic Multilingual
+ * Plane are returned as two surrogates, as a Reader would, and malformed bytes
+ * are returned as U+FFFD. The input is always read as UTF-8, whatever the
+ * platform's default charset.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+class UTF8Source {
+
+    /** Size of the buffer used to read from a channel. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The bytes, read from position to limit. */
+    private byte[] bytes;
+
+    /** Index of the next byte to read. */
+    private int position;
+
+    /** Index after the last byte available. */
+    private int limit;
+
+    /** Bytes that have not been copied into the buffer yet, or null. */
+    private ByteBuffer source;
+
+    /** Source of more bytes, or null. */
+    private final ReadableByteChannel channel;
+
+    /** Low surrogate to return from the next read, or 0. */
+    private char pendingLow;
+
+    /** Position of the mark, or -1 if there is none. */
+    private int markPosition = -1;
+
+    /** Value of pendingLow when the mark was set. */
+    private char markPendingLow;
+
+    /**
+     * @param buffer the bytes to read, from its position to its limit. Bytes of a
+     *      heap buffer are read in place; those of a direct buffer are copied a
+     *      block at a time. The position of the buffer is not changed.
+     */
+    UTF8Source(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.bytes = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+            this.source = null;
+        } else {
+            this.bytes = new byte[Math.min(BUFFER_SIZE, buffer.remaining())];
+            this.source = buffer.slice();
+        }
+        this.channel = null;
+    }
+
+    /**
+     * @param channel the source of the bytes. The caller must close it.
+     */
+    UTF8Source(ReadableByteChannel channel) {
+        this.bytes = new byte[BUFFER_SIZE];
+        this.source = null;
+        this.channel = channel;
+    }
+
+    /**
+     * For sources that provide their bytes through {@link #nextSource()}.
+     */
+    UTF8Source() {
+        this.bytes = new byte[BUFFER_SIZE];
+        this.source = null;
+        this.channel = null;
+    }
+
+    /**
+     * Called when the bytes of the current source have all been copied.
+     * @return the next block of bytes, or null if there are no more
+     * @throws IOException if the bytes cannot be read
+     */
+    ByteBuffer nextSource() throws IOException {
+        return null;
+    }
+
+    /**
+     * Read the next character.
+     * @return the character, or -1 at the end of the input
+     * @throws IOException if the channel cannot be read
+     */
+    int read() throws IOException {
+        if (this.pendingLow != 0) {
+            char low = this.pendingLow;
+            this.pendingLow = 0;
+            return low;
+        }
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        int b = this.bytes[this.position++] & 0xFF;
+        if (b < 0x80) {
+            return b;
+        }
+        int count;
+        int codePoint;
+        int min;
+        if ((b & 0xE0) == 0xC0) {
+            count = 1;
+            codePoint = b & 0x1F;
+            min = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+            count = 2;
+            codePoint = b & 0x0F;
+            min = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+            count = 3;
+            codePoint = b & 0x07;
+            min = 0x10000;
+        } else {
+            return 0xFFFD;
+        }
+        for (int i = 0; i < count; i++) {
+            if (this.position == this.limit && !this.fill()) {
+                return 0xFFFD;
+            }
+            int next = this.bytes[this.position] & 0xFF;
+            if ((next & 0xC0) != 0x80) {
+                return 0xFFFD;
+            }
+            this.position++;
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return 0xFFFD;
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            this.pendingLow = Character.lowSurrogate(codePoint);
+            return Character.highSurrogate(codePoint);
+        }
+        return codePoint;
+    }
+
+    /**
+     * Read the characters up to, but not including, the first quote, backslash,
+     * line break or NUL, as long as they are already in the buffer. This is the
+     * plain content of a string, which is decoded in one go.
+     * @param quote the quote that ends the string
+     * @return the characters, which may be none
+     */
+    String readRun(char quote) {
+        if (this.pendingLow != 0) {
+            return "";
+        }
+        byte[] bytes = this.bytes;
+        int start = this.position;
+        int limit = this.limit;
+        int end = start;
+        boolean ascii = true;
+        while (end < limit) {
+            int b = bytes[end] & 0xFF;
+            if (b == quote || b == '\\' || b == '\n' || b == '\r' || b == 0) {
+                break;
+            }
+            if (b >= 0x80) {
+                int count = (b & 0xE0) == 0xC0 ? 1 : (b & 0xF0) == 0xE0 ? 2 : (b & 0xF8) == 0xF0 ? 3 : 0;
+                if (count == 0 || end + count >= limit || !isContinuation(bytes, end + 1, count)) {
+                    // malformed, or the rest of the character is not in the buffer yet
+                    break;
+                }
+                ascii = false;
+                end += count;
+            }
+            end++;
+        }
+        if (end == start) {
+            return "";
+        }
+        this.position = end;
+        return new String(bytes, start, end - start, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    private static boolean isContinuation(byte[] bytes, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            if ((bytes[i] & 0xC0) != 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if there is a character to read that is not NUL
+     * @throws IOException if the channel cannot be read
+     */
+    boolean more() throws IOException {
+        if (this.pendingLow != 0) {
+            return true;
+        }
+        if (this.position == this.limit && !this.fill()) {
+            return false;
+        }
+        return this.bytes[this.position] != 0;
+    }
+
+    /**
+     * Remember the current position, so that {@link #reset()} can return to it.
+     * Bytes are kept from the mark on until {@link #unmark()} is called.
+     */
+    void mark() {
+        this.markPosition = this.position;
+        this.markPendingLow = this.pendingLow;
+    }
+
+    /**
+     * Return to the position of the last mark.
+     */
+    void reset() {
+        this.position = this.markPosition;
+        this.pendingLow = this.markPendingLow;
+    }
+
+    /**
+     * Forget the mark.
+     */
+    void unmark() {
+        this.markPosition = -1;
+    }
+
+    /**
+     * Read more bytes into the buffer, keeping the bytes from the mark on.
+     * @return false if there are no more bytes
+     * @throws IOException if the channel cannot be read
+     */
+    private boolean fill() throws IOException {
+        if (this.channel == null && (this.source == null || !this.source.hasRemaining())) {
+            this.source = this.nextSource();
+            if (this.source == null) {
+                return false;
+            }
+        }
+        int keep = this.markPosition >= 0 ? this.markPosition : this.position;
+        if (keep > 0) {
+            System.arraycopy(this.bytes, keep, this.bytes, 0, this.limit - keep);
+            this.position -= keep;
+            this.limit -= keep;
+            if (this.markPosition >= 0) {
+                this.markPosition = 0;
+            }
+        }
+        if (this.limit == this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(BUFFER_SIZE, this.bytes.length * 2));
+        }
+        int n;
+        if (this.source != null) {
+            n = Math.min(this.source.remaining(), this.bytes.length - this.limit);
+            this.source.get(this.bytes, this.limit, n);
+        } else {
+            ByteBuffer target = ByteBuffer.wrap(this.bytes, this.limit, this.bytes.length - this.limit);
+            do {
+                n = this.channel.read(target);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+        }
+        this.limit += n;
+        return true;
+    }
+
+    /**
+     * A file read through memory mapped windows. Each window is copied into the
+     * buffer a block at a time, so the file is never read into the heap as a whole
+     * and its bytes are not copied through the kernel. The file is opened again to
+     * map each window and closed right away; a mapping stays valid once its channel
+     * is closed, until the window is no longer referenced.
+     */
+    static final class MappedFile extends UTF8Source {
+        /** Size of each mapped window. */
+        private static final long WINDOW_SIZE = 1L << 26;
+
+        private final Path path;
+        /** Size of the file when it was first opened. */
+        private final long size;
+        /** Offset in the file of the next window. */
+        private long offset;
+
+        /**
+         * @param path the file to read
+         * @throws IOException if the file cannot be opened
+         */
+        MappedFile(Path path) throws IOException {
+            this.path = path;
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.size = channel.size();
+            } finally {
+                channel.close();
+            }
+        }
+
+        @Override
+        ByteBuffer nextSource() throws IOException {
+            if (this.offset >= this.size) {
+                return null;
+            }
+            long length = Math.min(WINDOW_SIZE, this.size - this.offset);
+            FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ);
+            try {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, this.offset, length);
+                this.offset += length;
+                return window;
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
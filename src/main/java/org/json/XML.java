@@ -29,12 +29,20 @@ import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This provides static methods to convert an XML text into a JSONObject, and to
@@ -291,22 +299,27 @@ public class XML {
 
     /**
      * Scan the content following the named tag, attaching it to the context.
+     * This is the only XML parse loop; key transformation, value conversion
+     * and sub-object extraction are all done through the handler.
      *
      * @param x       The XMLTokener containing the source string.
      * @param context The JSONObject that will include the new material.
      * @param name    The tag name.
+     * @param config  Configuration options for the parser.
+     * @param handler Per-parse hooks.
      * @return true if the close tag is processed.
      * @throws JSONException
      */
-    private static boolean parse(XMLTokener x, JSONObject context, String name, XMLParserConfiguration config)
-            throws JSONException {
+    private static boolean parse(XMLTokener x, JSONObject context, String name, XMLParserConfiguration config,
+            XMLParseHandler handler) throws JSONException {
         char c;
         int i;
-        JSONObject jsonObject = null;
         String string;
-        String tagName;
         Object token;
-        XMLXsiTypeConverter<?> xmlXsiTypeConverter;
+
+        if (handler.stop(context)) {
+            return true;
+        }
 
         // Test for and skip past these forms:
         // <!-- ... -->
@@ -371,6 +384,7 @@ public class XML {
             if (x.nextToken() != GT) {
                 throw x.syntaxError("Misshaped close tag");
             }
+            handler.endElement(handler.key(name));
             return true;
 
         } else if (token instanceof Character) {
@@ -379,692 +393,142 @@ public class XML {
             // Open tag <
 
         } else {
-            tagName = (String) token;
-            token = null;
-            jsonObject = new JSONObject();
-            boolean nilAttributeFound = false;
-            xmlXsiTypeConverter = null;
-            for (; ; ) {
-                if (token == null) {
-                    token = x.nextToken();
-                }
-                // attribute = value
-                if (token instanceof String) {
-                    string = (String) token;
-                    token = x.nextToken();
-                    if (token == EQ) {
-                        token = x.nextToken();
-                        if (!(token instanceof String)) {
-                            throw x.syntaxError("Missing value");
-                        }
-
-                        if (config.isConvertNilAttributeToNull()
-                                && NULL_ATTR.equals(string)
-                                && Boolean.parseBoolean((String) token)) {
-                            nilAttributeFound = true;
-                        } else if (config.getXsiTypeMap() != null && !config.getXsiTypeMap().isEmpty()
-                                && TYPE_ATTR.equals(string)) {
-                            xmlXsiTypeConverter = config.getXsiTypeMap().get(token);
-                        } else if (!nilAttributeFound) {
-                            jsonObject.accumulate(string,
-                                    config.isKeepStrings()
-                                            ? ((String) token)
-                                            : stringToValue((String) token));
-
-                        }
-                        token = null;
-                    } else {
-                        jsonObject.accumulate(string, "");
-                    }
-
-
-                } else if (token == SLASH) {
-                    // Empty tag <.../>
-                    if (x.nextToken() != GT) {
-                        throw x.syntaxError("Misshaped tag");
-                    }
-                    if (nilAttributeFound) {
-                        context.accumulate(tagName, JSONObject.NULL);
-                    } else if (jsonObject.length() > 0) {
-                        context.accumulate(tagName, jsonObject);
-                    } else {
-                        context.accumulate(tagName, "");
-                    }
-                    return false;
-
-                } else if (token == GT) {
-                    // Content, between <...> and </...>
-                    for (; ; ) {
-                        token = x.nextContent();
-                        if (token == null) {
-                            if (tagName != null) {
-                                throw x.syntaxError("Unclosed tag " + tagName);
-                            }
-                            return false;
-                        } else if (token instanceof String) {
-                            string = (String) token;
-                            if (string.length() > 0) {
-                                if (xmlXsiTypeConverter != null) {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            stringToValue(string, xmlXsiTypeConverter));
-                                } else {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            config.isKeepStrings() ? string : stringToValue(string));
-                                }
-                            }
-                        } else if (token == LT) {
-                            // Nested element
-                            if (parse(x, jsonObject, tagName, config)) {
-                                if (jsonObject.length() == 0) {
-                                    context.accumulate(tagName, "");
-                                } else if (jsonObject.length() == 1
-                                        && jsonObject.opt(config.getcDataTagName()) != null) {
-                                    context.accumulate(tagName, jsonObject.opt(config.getcDataTagName()));
-                                } else {
-                                    context.accumulate(tagName, jsonObject);
-                                }
-
-                                return false;
-                            }
-                        }
-                    }
-                } else {
-                    throw x.syntaxError("Misshaped tag");
-                }
-            }
+            parseElement(x, context, (String) token, config, handler);
+            return false;
         }
     }
 
-    /*
-        Specialized parse written for MileStone3 applies the keyTransformer function on keys during parse
+    /**
+     * Scan an element whose open tag name has just been read: its attributes,
+     * content and close tag. The element is attached to the context.
+     *
+     * @param x       The XMLTokener containing the source string.
+     * @param context The JSONObject that will include the new material.
+     * @param tagName The name of the element.
+     * @param config  Configuration options for the parser.
+     * @param handler Per-parse hooks.
+     * @throws JSONException
      */
-    private static boolean parseRenameKey(XMLTokener x, JSONObject context, String name, XMLParserConfiguration config, Function keyTransformer)
-            throws JSONException {
-        char c;
-        int i;
+    static void parseElement(XMLTokener x, JSONObject context, String tagName, XMLParserConfiguration config,
+            XMLParseHandler handler) throws JSONException {
         JSONObject jsonObject = null;
         String string;
-        String tagName;
+        String key;
         Object token;
         XMLXsiTypeConverter<?> xmlXsiTypeConverter;
 
-        // Test for and skip past these forms:
-        // <!-- ... -->
-        // <! ... >
-        // <![ ... ]]>
-        // <? ... ?>
-        // Report errors for these forms:
-        // <>
-        // <=
-        // <<
-
-        token = x.nextToken();
-
-        // <!
-        if (token == BANG) {
-            c = x.next();
-            if (c == '-') {
-                if (x.next() == '-') {
-                    x.skipPast("-->");
-                    return false;
-                }
-                x.back();
-            } else if (c == '[') {
+        if (!handler.enter(tagName)) {
+            x.skipElement(tagName);
+            handler.exit();
+            return;
+        }
+        key = handler.key(tagName);
+        token = null;
+        jsonObject = new JSONObject();
+        boolean nilAttributeFound = false;
+        xmlXsiTypeConverter = null;
+        for (; ; ) {
+            if (token == null) {
                 token = x.nextToken();
-                if ("CDATA".equals(token)) {
-                    if (x.next() == '[') {
-                        string = x.nextCDATA();
-                        if (string.length() > 0) {
-                            context.accumulate((String) keyTransformer.apply(config.getcDataTagName()), string);
-                        }
-                        return false;
-                    }
-                }
-                throw x.syntaxError("Expected 'CDATA['");
-            }
-            i = 1;
-            do {
-                token = x.nextMeta();
-                if (token == null) {
-                    throw x.syntaxError("Missing '>' after '<!'.");
-                } else if (token == LT) {
-                    i += 1;
-                } else if (token == GT) {
-                    i -= 1;
-                }
-            } while (i > 0);
-            return false;
-        } else if (token == QUEST) {
-            // <?
-            x.skipPast("?>");
-            return false;
-        } else if (token == SLASH) {
-
-            // Close tag </
-            token = x.nextToken();
-            if (name == null) {
-                throw x.syntaxError("Mismatched close tag " + token);
-            }
-            if (!token.equals(name)) {
-                throw x.syntaxError("Mismatched " + name + " and " + token);
-            }
-            if (x.nextToken() != GT) {
-                throw x.syntaxError("Misshaped close tag");
             }
-            return true;
-
-        } else if (token instanceof Character) {
-            throw x.syntaxError("Misshaped tag");
-
-            // Open tag <
-        } else {
-            tagName = (String) token;
-
-            token = null;
-            jsonObject = new JSONObject();
-            boolean nilAttributeFound = false;
-            xmlXsiTypeConverter = null;
-
-            for (; ; ) {
-                if (token == null) {
-                    token = x.nextToken();
-                }
-                // attribute = value
-                if (token instanceof String) {
-                    string = (String) token;
+            // attribute = value
+            if (token instanceof String) {
+                string = (String) token;
+                token = x.nextToken();
+                if (token == EQ) {
                     token = x.nextToken();
-                    if (token == EQ) {
-                        token = x.nextToken();
-                        if (!(token instanceof String)) {
-                            throw x.syntaxError("Missing value");
-                        }
-
-                        if (config.isConvertNilAttributeToNull()
-                                && NULL_ATTR.equals(string)
-                                && Boolean.parseBoolean((String) token)) {
-                            nilAttributeFound = true;
-                        } else if (config.getXsiTypeMap() != null && !config.getXsiTypeMap().isEmpty()
-                                && TYPE_ATTR.equals(string)) {
-                            xmlXsiTypeConverter = config.getXsiTypeMap().get(token);
-                        } else if (!nilAttributeFound) {
-                            jsonObject.accumulate((String) keyTransformer.apply(string),
-                                    config.isKeepStrings()
-                                            ? ((String) token)
-                                            : stringToValue((String) token));
-                        }
-                        token = null;
-                    } else {
-                        jsonObject.accumulate((String) keyTransformer.apply(string), "");
-                    }
-                } else if (token == SLASH) {
-                    // Empty tag <.../>
-                    if (x.nextToken() != GT) {
-                        throw x.syntaxError("Misshaped tag");
-                    }
-                    if (nilAttributeFound) {
-                        context.accumulate((String) keyTransformer.apply(tagName), JSONObject.NULL);
-                    } else if (jsonObject.length() > 0) {
-                        context.accumulate((String) keyTransformer.apply(tagName), jsonObject);
-                    } else {
-                        context.accumulate((String) keyTransformer.apply(tagName), "");
+                    if (!(token instanceof String)) {
+                        throw x.syntaxError("Missing value");
                     }
-                    ;
-                    return false;
 
-                } else if (token == GT) {
-                    // Content, between <...> and </...>
-                    for (; ; ) {
-                        token = x.nextContent();
-                        if (token == null) {
-                            if (tagName != null) {
-                                throw x.syntaxError("Unclosed tag " + tagName);
-                            }
-                            return false;
-                        } else if (token instanceof String) {
-                            string = (String) token;
-                            if (string.length() > 0) {
-                                if (xmlXsiTypeConverter != null) {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            stringToValue(string, xmlXsiTypeConverter));
-                                } else {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            config.isKeepStrings() ? string : stringToValue(string));
-                                }
-                            }
-                        } else if (token == LT) {
-                            // Nested element
-                            if (parseRenameKey(x, jsonObject, tagName, config, keyTransformer)) {
-                                if (jsonObject.length() == 0) {
-                                    context.accumulate((String) keyTransformer.apply(tagName), "");
-                                } else if (jsonObject.length() == 1
-                                        && jsonObject.opt(config.getcDataTagName()) != null) {
-                                    context.accumulate((String) keyTransformer.apply(tagName), jsonObject.opt(config.getcDataTagName()));
-                                } else {
-                                    context.accumulate((String) keyTransformer.apply(tagName), jsonObject);
-                                }
-
-                                return false;
-                            }
-                        }
+                    if (config.isConvertNilAttributeToNull()
+                            && NULL_ATTR.equals(string)
+                            && Boolean.parseBoolean((String) token)) {
+                        nilAttributeFound = true;
+                    } else if (config.getXsiTypeMap() != null && !config.getXsiTypeMap().isEmpty()
+                            && TYPE_ATTR.equals(string)) {
+                        xmlXsiTypeConverter = config.getXsiTypeMap().get(token);
+                    } else if (!nilAttributeFound && handler.includeAttribute(string)) {
+                        jsonObject.accumulate(handler.key(string),
+                                handler.value((String) token, null, config));
+
                     }
-                } else {
-                    throw x.syntaxError("Misshaped tag");
+                    token = null;
+                } else if (handler.includeAttribute(string)) {
+                    jsonObject.accumulate(handler.key(string), "");
                 }
-            }
-        }
-    }//end parseRenameKey
-
-
-    /*
-        Global variables whose values are used to determine when the key to replace is found in parsePathReplace
-        Reset values to default at the end your method
-        stop prevents replace after the first time in case of recursive calls
-     */
-    private static boolean foundReplace = false;
-    private static int indexReplace = -1;
-    private static boolean stop = false;
 
-    private static boolean parsePathReplace(XMLTokener x, JSONObject context, String name, XMLParserConfiguration config, String tokenKey, JSONObject replacement, int index)
 
-            throws JSONException {
-
-        char c;
-        int i;
-        JSONObject jsonObject = null;
-        String string;
-        String tagName;
-        Object token;
-        XMLXsiTypeConverter<?> xmlXsiTypeConverter;
-
-        // Test for and skip past these forms:
-        // <!-- ... -->
-        // <! ... >
-        // <![ ... ]]>
-        // <? ... ?>
-        // Report errors for these forms:
-        // <>
-        // <=
-        // <<
-        if (foundReplace) {
-            if (indexReplace > -1) {
-                //  do nothing continue parse we still need to get to object in array
-            } else {
-                if (!stop) {
-                    //exact object with key to replace is found, value of key has to be JSONObject or JSONArray
-                    //no action is taken if value is not one of these 2 object types
-                    if (context.get(tokenKey) instanceof JSONObject)
-                        replace(context, tokenKey, replacement);
-                    else if (context.get(tokenKey) instanceof JSONArray)
-                        replaceInArray((JSONArray) context.get(tokenKey), index, replacement);
-                    //change globals to prevent another replace in case of recursion
-                    foundReplace = false;
-                    indexReplace = -1;
-                    stop = true;
+            } else if (token == SLASH) {
+                // Empty tag <.../>
+                if (x.nextToken() != GT) {
+                    throw x.syntaxError("Misshaped tag");
                 }
-            }
-        }
-
-        token = x.nextToken();
-
-        // <!
-        if (token == BANG) {
-            c = x.next();
-            if (c == '-') {
-                if (x.next() == '-') {
-                    x.skipPast("-->");
-                    return false;
+                if (nilAttributeFound) {
+                    context.accumulate(key, JSONObject.NULL);
+                } else if (jsonObject.length() > 0) {
+                    context.accumulate(key, jsonObject);
+                } else {
+                    context.accumulate(key, "");
                 }
-                x.back();
-            } else if (c == '[') {
-                token = x.nextToken();
-                if ("CDATA".equals(token)) {
-                    if (x.next() == '[') {
-                        string = x.nextCDATA();
+                handler.exit();
+                return;
+
+            } else if (token == GT) {
+                // Content, between <...> and </...>
+                for (; ; ) {
+                    token = x.nextContent();
+                    if (token == null) {
+                        throw x.syntaxError("Unclosed tag " + tagName);
+                    } else if (token instanceof String) {
+                        string = (String) token;
                         if (string.length() > 0) {
-                            context.accumulate(config.getcDataTagName(), string);
-                        }
-                        return false;
-                    }
-                }
-                throw x.syntaxError("Expected 'CDATA['");
-            }
-            i = 1;
-            do {
-                token = x.nextMeta();
-                if (token == null) {
-                    throw x.syntaxError("Missing '>' after '<!'.");
-                } else if (token == LT) {
-                    i += 1;
-                } else if (token == GT) {
-                    i -= 1;
-                }
-            } while (i > 0);
-            return false;
-        } else if (token == QUEST) {
-            // <?
-            x.skipPast("?>");
-            return false;
-        } else if (token == SLASH) {
-            // Close tag </
-            token = x.nextToken();
-            if (name == null) {
-                throw x.syntaxError("Mismatched close tag " + token);
-            }
-            if (!token.equals(name)) {
-                throw x.syntaxError("Mismatched " + name + " and " + token);
-            }
-            if (x.nextToken() != GT) {
-                throw x.syntaxError("Misshaped close tag");
-            }
-            //found the closing tag of key we are looking for - our needed object is created
-            // update global variables
-            if (tokenKey.equals(token)) {
-                if (!stop) {
-                    foundReplace = true;
-                    indexReplace--;
-                }
-            }
-
-            return true;
-
-        } else if (token instanceof Character) {
-            throw x.syntaxError("Misshaped tag");
-
-            // Open tag <
-        } else {
-
-            tagName = (String) token;
-            token = null;
-            jsonObject = new JSONObject();
-            boolean nilAttributeFound = false;
-            xmlXsiTypeConverter = null;
-
-            for (; ; ) {
-                if (token == null) {
-                    token = x.nextToken();
-                }
-                // attribute = value
-                if (token instanceof String) {
-                    string = (String) token;
-                    token = x.nextToken();
-                    if (token == EQ) {
-                        token = x.nextToken();
-                        if (!(token instanceof String)) {
-                            throw x.syntaxError("Missing value");
-                        }
-
-                        if (config.isConvertNilAttributeToNull()
-                                && NULL_ATTR.equals(string)
-                                && Boolean.parseBoolean((String) token)) {
-                            nilAttributeFound = true;
-                        } else if (config.getXsiTypeMap() != null && !config.getXsiTypeMap().isEmpty()
-                                && TYPE_ATTR.equals(string)) {
-                            xmlXsiTypeConverter = config.getXsiTypeMap().get(token);
-                        } else if (!nilAttributeFound) {
-                            jsonObject.accumulate(string,
-                                    config.isKeepStrings()
-                                            ? ((String) token)
-                                            : stringToValue((String) token));
+                            jsonObject.accumulate(config.getcDataTagName(),
+                                    handler.value(string, xmlXsiTypeConverter, config));
                         }
-                        token = null;
-                    } else {
-                        jsonObject.accumulate(string, "");
-                    }
-                } else if (token == SLASH) {
-                    // Empty tag <.../>
-                    if (x.nextToken() != GT) {
-                        throw x.syntaxError("Misshaped tag");
-                    }
-                    if (nilAttributeFound) {
-                        context.accumulate(tagName, JSONObject.NULL);
-                    } else if (jsonObject.length() > 0) {
-                        context.accumulate(tagName, jsonObject);
-                    } else {
-                        context.accumulate(tagName, "");
-                    }
-                    return false;
-
-                } else if (token == GT) {
-                    // Content, between <...> and </...>
-                    for (; ; ) {
-                        token = x.nextContent();
-                        if (token == null) {
-                            if (tagName != null) {
-                                throw x.syntaxError("Unclosed tag " + tagName);
-                            }
-                            return false;
-                        } else if (token instanceof String) {
-                            string = (String) token;
-                            if (string.length() > 0) {
-                                if (xmlXsiTypeConverter != null) {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            stringToValue(string, xmlXsiTypeConverter));
-                                } else {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            config.isKeepStrings() ? string : stringToValue(string));
-                                }
-                            }
-                        } else if (token == LT) {
-                            // Nested element
-                            if (parsePathReplace(x, jsonObject, tagName, config, tokenKey, replacement, index)) {
-                                if (jsonObject.length() == 0) {
-                                    context.accumulate(tagName, "");
-                                } else if (jsonObject.length() == 1
-                                        && jsonObject.opt(config.getcDataTagName()) != null) {
-                                    context.accumulate(tagName, jsonObject.opt(config.getcDataTagName()));
-                                } else {
-                                    context.accumulate(tagName, jsonObject);
-                                }
-
-                                return false;
+                    } else if (token == LT) {
+                        // Nested element
+                        if (parse(x, jsonObject, tagName, config, handler)) {
+                            if (jsonObject.length() == 0) {
+                                context.accumulate(key, "");
+                            } else if (jsonObject.length() == 1
+                                    && jsonObject.opt(config.getcDataTagName()) != null) {
+                                context.accumulate(key, jsonObject.opt(config.getcDataTagName()));
+                            } else {
+                                context.accumulate(key, jsonObject);
                             }
+                            handler.exit();
+                            return;
                         }
                     }
-                } else {
-                    throw x.syntaxError("Misshaped tag");
                 }
+            } else {
+                throw x.syntaxError("Misshaped tag");
             }
         }
-    }//end parsePathReplace
-
+    }
 
-    /*
-        Global variables whose values are used to determine when to stop parsing in parsePath
-        Reset values to default at the end your method
+    /**
+     * Read XML tokens from the tokener until the source is exhausted or the
+     * handler reports that nothing more is needed.
+     *
+     * @param x       The XMLTokener containing the source.
+     * @param config  Configuration options for the parser.
+     * @param handler Per-parse hooks.
+     * @return A JSONObject containing the structured data read.
+     * @throws JSONException Thrown if there is an errors while parsing the source
      */
-    private static boolean found = false;
-    private static int index = -1;
-
-    private static boolean parsePath(XMLTokener x, JSONObject context, String name, XMLParserConfiguration config, String tokenKey)
+    private static JSONObject parse(XMLTokener x, XMLParserConfiguration config, XMLParseHandler handler)
             throws JSONException {
-
-        char c;
-        int i;
-        JSONObject jsonObject = null;
-        String string;
-        String tagName;
-        Object token;
-        XMLXsiTypeConverter<?> xmlXsiTypeConverter;
-
-        // Test for and skip past these forms:
-        // <!-- ... -->
-        // <! ... >
-        // <![ ... ]]>
-        // <? ... ?>
-        // Report errors for these forms:
-        // <>
-        // <=
-        // <<
-
-        if (found) {
-            if (index > -1) {
-                //  do nothing continue parse we still need to get to object in array
-            } else {
-                return true;
-            }
-        }
-
-        token = x.nextToken();
-
-        // <!
-        if (token == BANG) {
-            c = x.next();
-            if (c == '-') {
-                if (x.next() == '-') {
-                    x.skipPast("-->");
-                    return false;
-                }
-                x.back();
-            } else if (c == '[') {
-                token = x.nextToken();
-                if ("CDATA".equals(token)) {
-                    if (x.next() == '[') {
-                        string = x.nextCDATA();
-                        if (string.length() > 0) {
-                            context.accumulate(config.getcDataTagName(), string);
-                        }
-                        return false;
-                    }
-                }
-                throw x.syntaxError("Expected 'CDATA['");
-            }
-            i = 1;
-            do {
-                token = x.nextMeta();
-                if (token == null) {
-                    throw x.syntaxError("Missing '>' after '<!'.");
-                } else if (token == LT) {
-                    i += 1;
-                } else if (token == GT) {
-                    i -= 1;
-                }
-            } while (i > 0);
-            return false;
-        } else if (token == QUEST) {
-            // <?
-            x.skipPast("?>");
-            return false;
-        } else if (token == SLASH) {
-
-            // Close tag </
-            token = x.nextToken();
-            if (name == null) {
-                throw x.syntaxError("Mismatched close tag " + token);
-            }
-            if (!token.equals(name)) {
-                throw x.syntaxError("Mismatched " + name + " and " + token);
-            }
-            if (x.nextToken() != GT) {
-                throw x.syntaxError("Misshaped close tag");
-            }
-            //found the closing tag of key we are looking for - our needed object is created
-            // update global variables
-            if (tokenKey.equals(token)) {
-                found = true;
-                index--;
-                return true;
-            }
-
-            return true;
-
-        } else if (token instanceof Character) {
-            throw x.syntaxError("Misshaped tag");
-
-            // Open tag <
-        } else {
-            tagName = (String) token;
-            token = null;
-            jsonObject = new JSONObject();
-            boolean nilAttributeFound = false;
-            xmlXsiTypeConverter = null;
-
-            for (; ; ) {
-                if (token == null) {
-                    token = x.nextToken();
-                }
-                // attribute = value
-                if (token instanceof String) {
-                    string = (String) token;
-                    token = x.nextToken();
-                    if (token == EQ) {
-                        token = x.nextToken();
-                        if (!(token instanceof String)) {
-                            throw x.syntaxError("Missing value");
-                        }
-
-                        if (config.isConvertNilAttributeToNull()
-                                && NULL_ATTR.equals(string)
-                                && Boolean.parseBoolean((String) token)) {
-                            nilAttributeFound = true;
-                        } else if (config.getXsiTypeMap() != null && !config.getXsiTypeMap().isEmpty()
-                                && TYPE_ATTR.equals(string)) {
-                            xmlXsiTypeConverter = config.getXsiTypeMap().get(token);
-                        } else if (!nilAttributeFound) {
-                            jsonObject.accumulate(string,
-                                    config.isKeepStrings()
-                                            ? ((String) token)
-                                            : stringToValue((String) token));
-                        }
-                        token = null;
-                    } else {
-                        jsonObject.accumulate(string, "");
-                    }
-                } else if (token == SLASH) {
-                    // Empty tag <.../>
-                    if (x.nextToken() != GT) {
-                        throw x.syntaxError("Misshaped tag");
-                    }
-                    if (nilAttributeFound) {
-                        context.accumulate(tagName, JSONObject.NULL);
-                    } else if (jsonObject.length() > 0) {
-                        context.accumulate(tagName, jsonObject);
-                    } else {
-                        context.accumulate(tagName, "");
-                    }
-                    return false;
-
-                } else if (token == GT) {
-                    // Content, between <...> and </...>
-                    for (; ; ) {
-                        token = x.nextContent();
-                        if (token == null) {
-                            if (tagName != null) {
-                                throw x.syntaxError("Unclosed tag " + tagName);
-                            }
-                            return false;
-                        } else if (token instanceof String) {
-                            string = (String) token;
-                            if (string.length() > 0) {
-                                if (xmlXsiTypeConverter != null) {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            stringToValue(string, xmlXsiTypeConverter));
-                                } else {
-                                    jsonObject.accumulate(config.getcDataTagName(),
-                                            config.isKeepStrings() ? string : stringToValue(string));
-                                }
-                            }
-                        } else if (token == LT) {
-                            // Nested element
-                            if (parsePath(x, jsonObject, tagName, config, tokenKey)) {
-                                if (jsonObject.length() == 0) {
-                                    context.accumulate(tagName, "");
-                                } else if (jsonObject.length() == 1
-                                        && jsonObject.opt(config.getcDataTagName()) != null) {
-                                    context.accumulate(tagName, jsonObject.opt(config.getcDataTagName()));
-                                } else {
-                                    context.accumulate(tagName, jsonObject);
-                                }
-
-                                return false;
-                            }
-                        }
-                    }
-                } else {
-                    throw x.syntaxError("Misshaped tag");
-                }
+        JSONObject jo = new JSONObject();
+        while (x.more() && !handler.done()) {
+            x.skipPast("<");
+            if (x.more()) {
+                parse(x, jo, null, config, handler);
             }
         }
-    }//end parsePath
+        return jo;
+    }
 
     /**
      * Add an overloaded static method to the XML with an additional param function (or "functional" in Java) that takes as input a String
@@ -1075,20 +539,14 @@ public class XML {
      * @param reader         The XML source reader
      * @param keyTransformer Function provided by client code that transforms the key string as needed
      * @return A JSONObject corresponding to the XML with keys transformed as per function
+     * @see XMLParserConfiguration#withKeyTransformer(Function)
      */
+    @SuppressWarnings("unchecked")
     public static JSONObject toJSONObject(Reader reader, Function keyTransformer) {
-        JSONObject jo = new JSONObject();
-        XMLTokener x = new XMLTokener(reader);
         if (keyTransformer == null) {
             return null;
         }
-        while (x.more()) {
-            x.skipPast("<");
-            if (x.more()) {
-                parseRenameKey(x, jo, null, XMLParserConfiguration.ORIGINAL, keyTransformer);
-            }
-        }
-        return jo;
+        return toJSONObject(reader, XMLParserConfiguration.ORIGINAL.withKeyTransformer(keyTransformer));
     }//end of milestone3
 
     /**
@@ -1306,15 +764,22 @@ public class XML {
      * @throws JSONException Thrown if there is an errors while parsing the string
      */
     public static JSONObject toJSONObject(Reader reader, XMLParserConfiguration config) throws JSONException {
-        JSONObject jo = new JSONObject();
-        XMLTokener x = new XMLTokener(reader);
-        while (x.more()) {
-            x.skipPast("<");
-            if (x.more()) {
-                parse(x, jo, null, config);
-            }
-        }
-        return jo;
+        return parse(new XMLTokener(reader), config, XMLParseHandler.of(config));
+    }
+
+    /**
+     * Convert a well-formed (but not necessarily valid) XML read by the given
+     * tokener into a JSONObject. This allows reading UTF-8 encoded bytes directly,
+     * as in <code>toJSONObject(new XMLTokener(channel), config)</code>.
+     *
+     * @param x The XML source tokener.
+     * @param config Configuration options for the parser
+     * @return A JSONObject containing the structured data from the XML.
+     * @throws JSONException Thrown if there is an errors while parsing the XML
+     * @see #toJSONObject(Reader, XMLParserConfiguration)
+     */
+    public static JSONObject toJSONObject(XMLTokener x, XMLParserConfiguration config) throws JSONException {
+        return parse(x, config, XMLParseHandler.of(config));
     }
 
     /**
@@ -1329,13 +794,27 @@ public class XML {
      * @return A JSONObject containing the subObject at the specified path
      */
     public static JSONObject toJSONObject(Reader reader, JSONPointer path) {
-        JSONObject jo = new JSONObject();
+        return toJSONObject(reader, path, XMLParserConfiguration.ORIGINAL);
+    }
+
+    /**
+     * Read an XML file into a JSON object using the given parser configuration, and
+     * extract the sub-object at the given path. Parsing stops as soon as the object
+     * in question has been read.
+     *
+     * @param reader The XML source reader
+     * @param path   Valid JSONPointer path that returns a JSONObject, caller has to ensure correctness
+     * @param config Configuration options for the parser
+     * @return A JSONObject containing the subObject at the specified path
+     */
+    public static JSONObject toJSONObject(Reader reader, JSONPointer path, XMLParserConfiguration config) {
         String pointerPath = path.toString();
         //determine from JSONPointer path the exact key we need to be looking for
         String keyPath[] = path.toString().split("/");
         String lastKey = keyPath[keyPath.length - 1];
 
         String tokenKey = "";
+        int index = -1;
         if (lastKey.matches("-?\\d+(.\\d+)?")) {
             index = Integer.parseInt(lastKey);
             tokenKey = keyPath[keyPath.length - 2];
@@ -1347,23 +826,13 @@ public class XML {
         }
 
         //parse document until the needed subobject for the specified key is created
-        XMLTokener x = new XMLTokener(reader);
-
-        while (x.more()) {
-            x.skipPast("<");
-            //stop read of document once stopping criteria is reached
-            if (x.more() && !found && (index >= -1)) {
-                parsePath(x, jo, null, XMLParserConfiguration.ORIGINAL, tokenKey);
-            }
-        }
-        //reset globals for next operation
-        found = false;
-        index = -1;
+        JSONObject jo = parse(new XMLTokener(reader), config,
+                new XMLParseHandler.Path(config, tokenKey, index));
 
         //Use JSONPointer on the returned object to get the exact sub-object for specified path
 
         Map<String, Object> map = null;
-        if (lastKey.matches("-?\\d+(.\\d+)?") && Integer.parseInt(lastKey) != 0) {
+        if (lastKey.matches("-?\\d+(.\\d+)?") && index != 0) {
             map = ((JSONObject) path.queryFrom(jo)).toMap();
         } else {
             JSONPointer newPath = new JSONPointer(pointerPath);
@@ -1371,31 +840,59 @@ public class XML {
         }
 
         //remove junk content present due to premature termination of parse
-        map.remove("content");
+        map.remove(config.getcDataTagName());
         return new JSONObject(map);
     }
 
-    /*
-     * method      : replace
-     * input       : JSONObject - generated from file, String - key whose value should be replaced,
-     * 				 JSONObject - new value for given key
-     * output      : void
-     * desc        : org.json library method used to update value of given key in given object
+    /**
+     * Read an XML file once and extract the values at several paths. Parsing stops as
+     * soon as every path has been resolved, and elements that none of the paths can
+     * reach are skipped without being converted.
+     * <p>
+     * As with {@link #toJSONObject(Reader, JSONPointer)}, a value is taken as soon as the
+     * element holding it has been closed. A numeric token selects the n-th element with
+     * that name under the same parent, so <code>/catalog/book/0</code> finds the first book
+     * whether or not there are others, and a path without a number selects the first one.
+     *
+     * @param reader The XML source reader
+     * @param paths  The paths to extract
+     * @return the value found at each path, in the order of the given paths. Paths with
+     *      no value are left out.
      */
-    private static void replace(JSONObject json, String key, JSONObject newValue) {
-        json.put(key, newValue);
-    }//end replace
-
-    /*
-     * method      : replaceInArray
-     * input       : JSONArray - array, Integer - index within array, JSONObject object
-     * output      : void
-     * desc        : org.json library method used to insert given JSONObject
-     * 				 at specified index in array
+    public static Map<JSONPointer, Object> toJSONObject(Reader reader, Collection<JSONPointer> paths) {
+        return toJSONObject(reader, paths, XMLParserConfiguration.ORIGINAL);
+    }
+
+    /**
+     * Read an XML file once using the given parser configuration and extract the values
+     * at several paths.
+     *
+     * @param reader The XML source reader
+     * @param paths  The paths to extract, in terms of the (transformed) keys of the result
+     * @param config Configuration options for the parser
+     * @return the value found at each path, in the order of the given paths. Paths with
+     *      no value are left out.
+     * @see #toJSONObject(Reader, Collection)
      */
-    private static void replaceInArray(JSONArray array, int index, JSONObject json) {
-        array.put(index, json);
-    }//end replaceInArray
+    public static Map<JSONPointer, Object> toJSONObject(Reader reader, Collection<JSONPointer> paths,
+            XMLParserConfiguration config) {
+        List<List<String>> tokens = new ArrayList<List<String>>(paths.size());
+        for (JSONPointer path : paths) {
+            tokens.add(path.getRefTokens());
+        }
+        XMLParseHandler.Paths handler = new XMLParseHandler.Paths(config, tokens);
+        JSONObject jo = parse(new XMLTokener(reader), config, handler);
+
+        Map<JSONPointer, Object> values = new LinkedHashMap<JSONPointer, Object>();
+        int p = 0;
+        for (JSONPointer path : paths) {
+            Object value = handler.valueOf(p++, jo);
+            if (value != null) {
+                values.put(path, value);
+            }
+        }
+        return values;
+    }
 
     /**
      * Read an XML file into a JSON object, replace a sub-object on a certain key path with another JSON object that you construct,
@@ -1409,48 +906,79 @@ public class XML {
      * @return JSONObject for input XML containing the replaced object
      */
     public static JSONObject toJSONObject(Reader reader, JSONPointer path, JSONObject replacement) {
+        return toJSONObject(reader, path, replacement, XMLParserConfiguration.ORIGINAL);
+    }
 
-        //resetting globals in case of exceptions thrown in previous runs
-        foundReplace = false;
-        indexReplace = -1;
-        stop = false;
-
-        String pointerPath = path.toString();
+    /**
+     * Read an XML file into a JSON object using the given parser configuration, replacing
+     * the sub-object at the given path with another JSON object while the document is read.
+     *
+     * @param reader      The XML source reader
+     * @param path        Valid JSONPointer path that returns a JSONObject, caller has to ensure correctness
+     * @param replacement JSONObject that needs to inserted at the specified path
+     * @param config      Configuration options for the parser
+     * @return JSONObject for input XML containing the replaced object, or null if the path was not found
+     */
+    public static JSONObject toJSONObject(Reader reader, JSONPointer path, JSONObject replacement,
+            XMLParserConfiguration config) {
         //determine from JSONPointer path the exact key we need to be looking for
         String keyPath[] = path.toString().split("/");
         String lastKey = keyPath[keyPath.length - 1];
 
         String tokenKey = "";
+        int index = -1;
         if (lastKey.matches("-?\\d+(.\\d+)?")) {
-            indexReplace = Integer.parseInt(lastKey);
+            index = Integer.parseInt(lastKey);
             tokenKey = keyPath[keyPath.length - 2];
-            if (indexReplace == 0) {
-                pointerPath = pointerPath.substring(0, pointerPath.lastIndexOf("/"));
-            }
         } else {
             tokenKey = lastKey;
         }
 
-        JSONObject jo = new JSONObject();
-        XMLTokener x = new XMLTokener(reader);
-        while (x.more()) {
-            x.skipPast("<");
-            if (x.more()) {
-                parsePathReplace(x, jo, null, XMLParserConfiguration.ORIGINAL, tokenKey, replacement, indexReplace);
-            }
-        }
+        XMLParseHandler.Replace handler = new XMLParseHandler.Replace(config, tokenKey, index, replacement);
+        JSONObject jo = parse(new XMLTokener(reader), config, handler);
 
         //after parse the needed key was never found return null
-        if (!stop) {
+        if (!handler.isReplaced()) {
             return null;
         }
+        return jo;
+    }
 
-        //replace globals for next run
-        foundReplace = false;
-        indexReplace = -1;
-        stop = false;
+    /**
+     * Stream the elements found at a given path of an XML document, such as every
+     * <code>book</code> in <code>&lt;catalog&gt;&lt;book&gt;...&lt;/book&gt;...&lt;/catalog&gt;</code>.
+     * Each element is converted to a JSONObject as soon as its close tag has been read,
+     * and is not kept once it has been passed on, so arbitrarily large record files can
+     * be processed in constant memory. Elements that are not on the way to the path are
+     * skipped without being converted.
+     * <p>
+     * The document is read lazily as the stream is consumed; parse errors are thrown as
+     * JSONExceptions from the stream operation that reaches them. The caller must close
+     * the Reader.
+     *
+     * @param reader      The XML source reader
+     * @param elementPath Slash separated tag names from the root, such as <code>/catalog/book</code>
+     * @param config      Configuration options for the parser
+     * @return a sequential, ordered stream of the elements at the path
+     * @throws IllegalArgumentException if the element path does not start with '/'
+     */
+    public static Stream<JSONObject> streamElements(Reader reader, String elementPath, XMLParserConfiguration config) {
+        XMLElementIterator iterator = new XMLElementIterator(new XMLTokener(reader), elementPath, config);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-        return jo;
+    /**
+     * Stream the elements found at a given path of an XML document using the
+     * original parser configuration.
+     *
+     * @param reader      The XML source reader
+     * @param elementPath Slash separated tag names from the root, such as <code>/catalog/book</code>
+     * @return a sequential, ordered stream of the elements at the path
+     * @see #streamElements(Reader, String, XMLParserConfiguration)
+     */
+    public static Stream<JSONObject> streamElements(Reader reader, String elementPath) {
+        return streamElements(reader, elementPath, XMLParserConfiguration.ORIGINAL);
     }
 
     /**
@@ -0,0 +1,234 @@
+package org.json;
+
+/*
+Copyright (c) 2015 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads an XML document one element at a time, returning each element found
+ * at a given path as soon as its close tag has been read. Only the element
+ * being returned and the names of the elements enclosing it are held in
+ * memory. Elements that are not on the way to the path are skipped without
+ * being converted.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+class XMLElementIterator implements Iterator<JSONObject> {
+
+    /** The source. */
+    private final XMLTokener x;
+
+    /** Tag names, or keys, from the root to the wanted elements. */
+    private final String[] target;
+
+    /** True if the target holds keys given by the key transformer rather than tag names. */
+    private final boolean byKey;
+
+    /** Configuration options for the parser. */
+    private final XMLParserConfiguration config;
+
+    /** Per-parse hooks, shared by all elements returned. */
+    private final XMLParseHandler handler;
+
+    /** Names of the elements that are currently open. */
+    private final List<String> open = new ArrayList<String>();
+
+    /** The converted element to be returned by the next call to next(), or null. */
+    private Object next;
+
+    /**
+     * @param x the source
+     * @param elementPath slash separated tag names from the root, such as <code>/catalog/book</code>
+     * @param config configuration options for the parser
+     */
+    XMLElementIterator(XMLTokener x, String elementPath, XMLParserConfiguration config) {
+        if (!elementPath.startsWith("/") || elementPath.length() == 1) {
+            throw new IllegalArgumentException("an element path should start with '/' and name at least one element");
+        }
+        this.x = x;
+        this.target = elementPath.substring(1).split("/");
+        this.byKey = false;
+        this.config = config;
+        this.handler = XMLParseHandler.of(config);
+    }
+
+    /**
+     * @param x the source
+     * @param keys the keys of the elements from the root, as the key transformer
+     *  of the configuration gives them
+     * @param config configuration options for the parser
+     */
+    XMLElementIterator(XMLTokener x, String[] keys, XMLParserConfiguration config) {
+        this.x = x;
+        this.target = keys;
+        this.byKey = true;
+        this.config = config;
+        this.handler = XMLParseHandler.of(config);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            this.next = this.read();
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        return toJSONObject(this.nextValue(), this.config);
+    }
+
+    /**
+     * Returns the next element as the parser converted it, which is a plain
+     * value rather than a JSONObject for elements with only text content.
+     * @return the converted element
+     * @throws NoSuchElementException if there are no more elements
+     */
+    Object nextValue() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = this.next;
+        this.next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Read up to the close tag of the next wanted element.
+     * @return the converted element, or null at the end of the document
+     * @throws JSONException if the XML is not well formed
+     */
+    private Object read() throws JSONException {
+        char c;
+        int i;
+        Object token;
+        for (;;) {
+            token = this.x.nextContent();
+            if (token == null) {
+                if (!this.open.isEmpty()) {
+                    throw this.x.syntaxError("Unclosed tag " + this.open.get(this.open.size() - 1));
+                }
+                return null;
+            }
+            if (token != XML.LT) {
+                // text outside of the wanted elements
+                continue;
+            }
+            token = this.x.nextToken();
+            if (token == XML.BANG) {
+                c = this.x.next();
+                if (c == '-') {
+                    if (this.x.next() == '-') {
+                        this.x.skipPast("-->");
+                        continue;
+                    }
+                    this.x.back();
+                } else if (c == '[') {
+                    token = this.x.nextToken();
+                    if ("CDATA".equals(token) && this.x.next() == '[') {
+                        this.x.nextCDATA();
+                        continue;
+                    }
+                    throw this.x.syntaxError("Expected 'CDATA['");
+                }
+                i = 1;
+                do {
+                    token = this.x.nextMeta();
+                    if (token == XML.LT) {
+                        i += 1;
+                    } else if (token == XML.GT) {
+                        i -= 1;
+                    }
+                } while (i > 0);
+            } else if (token == XML.QUEST) {
+                this.x.skipPast("?>");
+            } else if (token == XML.SLASH) {
+                token = this.x.nextToken();
+                if (this.open.isEmpty()) {
+                    throw this.x.syntaxError("Mismatched close tag " + token);
+                }
+                String name = this.open.remove(this.open.size() - 1);
+                if (!token.equals(name)) {
+                    throw this.x.syntaxError("Mismatched " + name + " and " + token);
+                }
+                if (this.x.nextToken() != XML.GT) {
+                    throw this.x.syntaxError("Misshaped close tag");
+                }
+                this.handler.exit();
+            } else if (token instanceof Character) {
+                throw this.x.syntaxError("Misshaped tag");
+            } else {
+                String tagName = (String) token;
+                int depth = this.open.size();
+                if (depth >= this.target.length
+                        || !this.target[depth].equals(this.byKey ? this.handler.key(tagName) : tagName)) {
+                    this.x.skipElement(tagName);
+                } else if (depth == this.target.length - 1) {
+                    JSONObject holder = new JSONObject();
+                    XML.parseElement(this.x, holder, tagName, this.config, this.handler);
+                    if (!holder.isEmpty()) {
+                        return holder.opt(this.handler.key(tagName));
+                    }
+                } else if (!this.handler.enter(tagName)) {
+                    this.x.skipElement(tagName);
+                    this.handler.exit();
+                } else if (!this.x.skipTag()) {
+                    // attributes of enclosing elements are not kept
+                    this.open.add(tagName);
+                } else {
+                    this.handler.exit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Elements with no attributes or child elements are converted to a plain
+     * value by the parser. Wrap those so every element is returned as a JSONObject.
+     * @param value the converted element
+     * @param config configuration options for the parser
+     * @return the element as a JSONObject
+     */
+    static JSONObject toJSONObject(Object value, XMLParserConfiguration config) {
+        if (value instanceof JSONObject) {
+            return (JSONObject) value;
+        }
+        JSONObject jo = new JSONObject();
+        if (!"".equals(value) && config.getcDataTagName() != null) {
+            jo.put(config.getcDataTagName(), value);
+        }
+        return jo;
+    }
+}
@@ -0,0 +1,506 @@
+package org.json;
+
+/*
+Copyright (c) 2015 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Per-parse hooks for the XML parse engine. A single instance is created for
+ * each call to one of the <code>XML.toJSONObject</code> methods and is handed
+ * down through every level of the recursive parse, so any state it keeps is
+ * private to that parse.
+ * <p>
+ * The base handler converts XML to JSON exactly as {@link XML#toJSONObject(java.io.Reader)}
+ * always has. Subclasses override individual events to extract or replace a
+ * sub-object while the document is being read.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+class XMLParseHandler {
+
+    /** Handler used when no per-parse hooks are needed. It holds no state. */
+    static final XMLParseHandler DEFAULT = new XMLParseHandler(XMLParserConfiguration.ORIGINAL);
+
+    /**
+     * Upper bound on the number of transformed keys remembered during a parse.
+     * Documents normally use a small set of names, so this is only reached by
+     * unusual input; names seen after that are transformed on every occurrence.
+     */
+    private static final int KEY_CACHE_SIZE = 1024;
+
+    /** Transformation applied to tag and attribute names, or null for none. */
+    private final Function<String, String> keyTransformer;
+
+    /** Transformed keys seen so far in this parse, created on first use. */
+    private Map<String, String> keyCache;
+
+    /** Projection filter on element and attribute paths, or null to keep everything. */
+    private final Predicate<String> elementFilter;
+
+    /** Path of the element being parsed, only maintained when there is a filter. */
+    private final StringBuilder path;
+
+    /**
+     * Create a handler.
+     * @param config the parser configuration that supplies the key transformer
+     *      and element filter
+     */
+    XMLParseHandler(XMLParserConfiguration config) {
+        this.keyTransformer = config.getKeyTransformer();
+        this.elementFilter = config.getElementFilter();
+        this.path = this.elementFilter == null ? null : new StringBuilder();
+    }
+
+    /**
+     * Create a handler for the given configuration.
+     * @param config the parser configuration
+     * @return a new handler, or {@link #DEFAULT} if the configuration needs no per-parse state
+     */
+    static XMLParseHandler of(XMLParserConfiguration config) {
+        if (config.getKeyTransformer() == null && config.getElementFilter() == null) {
+            return DEFAULT;
+        }
+        return new XMLParseHandler(config);
+    }
+
+    /**
+     * Key transform hook. Called for every tag and attribute name.
+     * @param name the name as it appears in the XML
+     * @return the key to use in the JSONObject
+     */
+    String key(String name) {
+        if (this.keyTransformer == null) {
+            return name;
+        }
+        if (this.keyCache == null) {
+            this.keyCache = new HashMap<String, String>();
+        }
+        String key = this.keyCache.get(name);
+        if (key == null) {
+            key = this.keyTransformer.apply(name);
+            if (this.keyCache.size() < KEY_CACHE_SIZE) {
+                this.keyCache.put(name, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Projection hook. Called when the name of an open tag has been read.
+     * Every call must be matched by a call to {@link #exit()} once the
+     * element is finished, whether it is included or not.
+     * @param tagName the name of the element as it appears in the XML
+     * @return false if the element and everything inside it should be skipped
+     */
+    boolean enter(String tagName) {
+        if (this.path == null) {
+            return true;
+        }
+        this.path.append('/').append(tagName);
+        return this.elementFilter.test(this.path.toString());
+    }
+
+    /**
+     * Called when the element last passed to {@link #enter(String)} is finished.
+     */
+    void exit() {
+        if (this.path != null) {
+            this.path.setLength(this.path.lastIndexOf("/"));
+        }
+    }
+
+    /**
+     * Projection hook for attributes of the element being parsed.
+     * @param name the attribute name as it appears in the XML
+     * @return false if the attribute should be left out
+     */
+    boolean includeAttribute(String name) {
+        if (this.path == null) {
+            return true;
+        }
+        return this.elementFilter.test(this.path + "/@" + name);
+    }
+
+    /**
+     * Value conversion hook. Called for every attribute value and every
+     * piece of element content.
+     * @param string the text as it appears in the XML
+     * @param typeConverter the converter selected by an xsi:type attribute, or null
+     * @param config the parser configuration
+     * @return the value to store in the JSONObject
+     */
+    Object value(String string, XMLXsiTypeConverter<?> typeConverter, XMLParserConfiguration config) {
+        if (typeConverter != null) {
+            return XML.stringToValue(string, typeConverter);
+        }
+        return config.isKeepStrings() ? string : XML.stringToValue(string);
+    }
+
+    /**
+     * Called each time the parser is about to read the next markup inside an
+     * element.
+     * @param context the JSONObject that is being filled for the enclosing element
+     * @return true to finish the enclosing element as if its close tag had been read
+     */
+    boolean stop(JSONObject context) {
+        return false;
+    }
+
+    /**
+     * Called after a close tag has been matched to its open tag.
+     * @param key the transformed name of the element that was closed
+     */
+    void endElement(String key) {
+    }
+
+    /**
+     * @return true when the rest of the document does not need to be read
+     */
+    boolean done() {
+        return false;
+    }
+
+    /**
+     * Stops the parse once the n-th closing of a key has been read. Everything
+     * read up to that point is closed off normally, so the resulting
+     * JSONObject contains the requested sub-object at its usual location.
+     */
+    static class Path extends XMLParseHandler {
+        private final String target;
+        private int index;
+        private boolean found;
+
+        /**
+         * @param config the parser configuration
+         * @param target the (transformed) key whose closing tag is looked for
+         * @param index array position of the wanted element, or -1 when the key is not an array
+         */
+        Path(XMLParserConfiguration config, String target, int index) {
+            super(config);
+            this.target = target;
+            this.index = index;
+        }
+
+        @Override
+        boolean stop(JSONObject context) {
+            return this.found && this.index <= -1;
+        }
+
+        @Override
+        void endElement(String key) {
+            if (this.target.equals(key)) {
+                this.found = true;
+                this.index--;
+            }
+        }
+
+        @Override
+        boolean done() {
+            return this.found;
+        }
+    }
+
+    /**
+     * Replaces the value of a key with another JSONObject as soon as the
+     * n-th closing of that key has been read. The rest of the document is
+     * parsed as usual.
+     */
+    static class Replace extends XMLParseHandler {
+        private final String target;
+        private final int position;
+        private final JSONObject replacement;
+        private int index;
+        private boolean found;
+        private boolean replaced;
+
+        /**
+         * @param config the parser configuration
+         * @param target the (transformed) key whose value is replaced
+         * @param index array position of the element to replace, or -1 when the key is not an array
+         * @param replacement the new value
+         */
+        Replace(XMLParserConfiguration config, String target, int index, JSONObject replacement) {
+            super(config);
+            this.target = target;
+            this.position = index;
+            this.index = index;
+            this.replacement = replacement;
+        }
+
+        @Override
+        boolean stop(JSONObject context) {
+            if (this.found && this.index <= -1 && !this.replaced) {
+                // value of the key has to be a JSONObject or JSONArray,
+                // no action is taken for any other type
+                Object value = context.opt(this.target);
+                if (value instanceof JSONObject) {
+                    context.put(this.target, this.replacement);
+                } else if (value instanceof JSONArray) {
+                    ((JSONArray) value).put(this.position, this.replacement);
+                }
+                this.found = false;
+                this.replaced = true;
+            }
+            return false;
+        }
+
+        @Override
+        void endElement(String key) {
+            if (!this.replaced && this.target.equals(key)) {
+                this.found = true;
+                this.index--;
+            }
+        }
+
+        /**
+         * @return true if the replacement has been made
+         */
+        boolean isReplaced() {
+            return this.replaced;
+        }
+    }
+
+    /**
+     * Reads the document only as far as needed to resolve a set of JSONPointers.
+     * <p>
+     * Each pointer is seen as a list of levels, one per element name, where a
+     * numeric token following a name selects the n-th element of that name under
+     * the same parent. A level without a number selects the first one. Elements
+     * that no pointer can reach are skipped, and attributes are only kept where a
+     * pointer names them or they are inside a target. Pointers are still matched
+     * inside a target, so one pointer may target an ancestor of another's target.
+     * A pointer is resolved when the deepest element on its way has been closed;
+     * the parse stops once every pointer is resolved.
+     */
+    static class Paths extends XMLParseHandler {
+        private final String[][] names;
+        private final int[][] indexes;
+        /** Position of each matched level in the converted result, or -1. */
+        private final int[][] positions;
+        private final boolean[] resolved;
+        private int unresolved;
+        private final List<Frame> frames = new ArrayList<Frame>();
+
+        /** State of an open element. */
+        private static class Frame {
+            /** Pointers whose levels match every element from the root to this one. */
+            final List<Integer> alive = new ArrayList<Integer>();
+            /** True when a pointer targets this element or one of its ancestors. */
+            boolean inside;
+            /** Number of child elements read so far, by key. */
+            Map<String, Integer> counts;
+            /** Number of child elements kept in the result so far, by key. */
+            Map<String, Integer> kept;
+
+            int occurrence(String key) {
+                if (this.counts == null) {
+                    this.counts = new HashMap<String, Integer>();
+                }
+                return next(this.counts, key);
+            }
+
+            int keep(String key) {
+                if (this.kept == null) {
+                    this.kept = new HashMap<String, Integer>();
+                }
+                return next(this.kept, key);
+            }
+
+            private static int next(Map<String, Integer> counts, String key) {
+                Integer count = counts.get(key);
+                int next = count == null ? 0 : count.intValue();
+                counts.put(key, Integer.valueOf(next + 1));
+                return next;
+            }
+        }
+
+        /**
+         * @param config the parser configuration
+         * @param pointers the reference tokens of each pointer
+         */
+        Paths(XMLParserConfiguration config, List<List<String>> pointers) {
+            super(config);
+            int size = pointers.size();
+            this.names = new String[size][];
+            this.indexes = new int[size][];
+            this.positions = new int[size][];
+            this.resolved = new boolean[size];
+            this.unresolved = size;
+            Frame root = new Frame();
+            for (int p = 0; p < size; p++) {
+                List<String> names = new ArrayList<String>();
+                List<Integer> indexes = new ArrayList<Integer>();
+                for (String token : pointers.get(p)) {
+                    int index = toIndex(token);
+                    if (index >= 0 && !names.isEmpty() && indexes.get(indexes.size() - 1).intValue() < 0) {
+                        indexes.set(indexes.size() - 1, Integer.valueOf(index));
+                    } else {
+                        names.add(token);
+                        indexes.add(Integer.valueOf(-1));
+                    }
+                }
+                this.names[p] = names.toArray(new String[names.size()]);
+                this.indexes[p] = new int[indexes.size()];
+                for (int i = 0; i < this.indexes[p].length; i++) {
+                    this.indexes[p][i] = Math.max(0, indexes.get(i).intValue());
+                }
+                this.positions[p] = new int[this.names[p].length];
+                Arrays.fill(this.positions[p], -1);
+                if (this.names[p].length == 0) {
+                    root.inside = true;
+                } else {
+                    root.alive.add(Integer.valueOf(p));
+                }
+            }
+            this.frames.add(root);
+        }
+
+        /**
+         * @param token a reference token
+         * @return the token as an array index, or -1 if it is not one
+         */
+        static int toIndex(String token) {
+            int length = token.length();
+            if (length == 0 || length > 9) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+            }
+            return Integer.parseInt(token);
+        }
+
+        /**
+         * Looks up the value a pointer resolved to once the parse has finished. Only
+         * the elements that matched were kept, so the numeric tokens of the pointer are
+         * replaced by the positions those elements took in the result.
+         *
+         * @param p the index of the pointer
+         * @param document the result of the parse
+         * @return the value, or null if the pointer did not match
+         */
+        Object valueOf(int p, JSONObject document) {
+            Object current = document;
+            for (int depth = 0; depth < this.names[p].length; depth++) {
+                int position = this.positions[p][depth];
+                if (position < 0 || !(current instanceof JSONObject)) {
+                    return null;
+                }
+                current = ((JSONObject) current).opt(this.names[p][depth]);
+                if (current instanceof JSONArray) {
+                    current = ((JSONArray) current).opt(position);
+                } else if (position != 0) {
+                    return null;
+                }
+            }
+            return current;
+        }
+
+        @Override
+        boolean enter(String tagName) {
+            boolean include = super.enter(tagName);
+            Frame parent = this.frames.get(this.frames.size() - 1);
+            Frame frame = new Frame();
+            this.frames.add(frame);
+            if (!include) {
+                return false;
+            }
+            String key = this.key(tagName);
+            int occurrence = parent.occurrence(key);
+            // pointers are matched inside a target too, as one may target an ancestor of another
+            frame.inside = parent.inside;
+            int depth = this.frames.size() - 2;
+            for (Integer p : parent.alive) {
+                int i = p.intValue();
+                if (!this.resolved[i] && this.names[i].length > depth && this.names[i][depth].equals(key)
+                        && this.indexes[i][depth] == occurrence) {
+                    frame.alive.add(p);
+                    if (this.names[i].length == depth + 1) {
+                        frame.inside = true;
+                    }
+                }
+            }
+            if (frame.alive.isEmpty() && !frame.inside) {
+                return false;
+            }
+            int position = parent.keep(key);
+            for (Integer p : frame.alive) {
+                this.positions[p.intValue()][depth] = position;
+            }
+            return true;
+        }
+
+        @Override
+        void exit() {
+            super.exit();
+            Frame frame = this.frames.remove(this.frames.size() - 1);
+            for (Integer p : frame.alive) {
+                if (!this.resolved[p.intValue()]) {
+                    this.resolved[p.intValue()] = true;
+                    this.unresolved--;
+                }
+            }
+        }
+
+        @Override
+        boolean includeAttribute(String name) {
+            if (!super.includeAttribute(name)) {
+                return false;
+            }
+            Frame frame = this.frames.get(this.frames.size() - 1);
+            int depth = this.frames.size() - 1;
+            String key = this.key(name);
+            boolean include = frame.inside;
+            for (Integer p : frame.alive) {
+                int i = p.intValue();
+                if (this.names[i].length == depth + 1 && this.names[i][depth].equals(key)) {
+                    this.positions[i][depth] = 0;
+                    include = true;
+                }
+            }
+            return include;
+        }
+
+        @Override
+        boolean stop(JSONObject context) {
+            return this.unresolved == 0;
+        }
+
+        @Override
+        boolean done() {
+            return this.unresolved == 0;
+        }
+    }
+}
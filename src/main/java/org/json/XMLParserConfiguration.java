@@ -23,9 +23,12 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 
 /**
@@ -66,6 +69,18 @@ public class XMLParserConfiguration {
      */
     private Map<String, XMLXsiTypeConverter<?>> xsiTypeMap;
 
+    /**
+     * Transformation applied to every tag and attribute name before it is used as a
+     * JSONObject key. <code>null</code> leaves names unchanged.
+     */
+    private Function<String, String> keyTransformer;
+
+    /**
+     * Projection filter on element and attribute paths. Elements it rejects are skipped
+     * together with their content. <code>null</code> keeps everything.
+     */
+    private Predicate<String> elementFilter;
+
     /**
      * Default parser configuration. Does not keep strings (tries to implicitly convert
      * values), and the CDATA Tag Name is "content".
@@ -151,13 +166,18 @@ public class XMLParserConfiguration {
      *                                  <code>false</code> to parse values with attribute xsi:nil="true" as {"xsi:nil":true}.
      * @param xsiTypeMap  <code>new HashMap<String, XMLXsiTypeConverter<?>>()</code> to parse values with attribute
      *                   xsi:type="integer" as integer,  xsi:type="string" as string
+     * @param keyTransformer function applied to tag and attribute names, or <code>null</code>
+     * @param elementFilter projection filter on element and attribute paths, or <code>null</code>
      */
     private XMLParserConfiguration (final boolean keepStrings, final String cDataTagName,
-            final boolean convertNilAttributeToNull, final Map<String, XMLXsiTypeConverter<?>> xsiTypeMap ) {
+            final boolean convertNilAttributeToNull, final Map<String, XMLXsiTypeConverter<?>> xsiTypeMap,
+            final Function<String, String> keyTransformer, final Predicate<String> elementFilter) {
         this.keepStrings = keepStrings;
         this.cDataTagName = cDataTagName;
         this.convertNilAttributeToNull = convertNilAttributeToNull;
         this.xsiTypeMap = Collections.unmodifiableMap(xsiTypeMap);
+        this.keyTransformer = keyTransformer;
+        this.elementFilter = elementFilter;
     }
 
     /**
@@ -174,7 +194,9 @@ public class XMLParserConfiguration {
                 this.keepStrings,
                 this.cDataTagName,
                 this.convertNilAttributeToNull,
-                this.xsiTypeMap
+                this.xsiTypeMap,
+                this.keyTransformer,
+                this.elementFilter
         );
     }
     
@@ -283,4 +305,126 @@ public class XMLParserConfiguration {
         newConfig.xsiTypeMap = Collections.unmodifiableMap(cloneXsiTypeMap);
         return newConfig;
     }
+
+    /**
+     * When parsing the XML into JSON, specifies the transformation applied to every
+     * tag and attribute name before it is used as a key. The content key
+     * ({@link #getcDataTagName()}) is not transformed.
+     *
+     * @return {@link #keyTransformer} configuration value, or <code>null</code> if keys are not transformed.
+     */
+    public Function<String, String> getKeyTransformer() {
+        return this.keyTransformer;
+    }
+
+    /**
+     * When parsing the XML into JSON, specifies the transformation applied to every
+     * tag and attribute name before it is used as a key, for example
+     * <code>"foo" -&gt; "swe262_foo"</code>.
+     * <p>
+     * The function is expected to always return the same key for the same name.
+     * Results are remembered for the duration of a parse, so the function is called
+     * roughly once per distinct name rather than once per occurrence.
+     *
+     * @param newVal
+     *      new value to use for the {@link #keyTransformer} configuration option,
+     *      <code>null</code> to keep names unchanged.
+     *
+     * @return The existing configuration will not be modified. A new configuration is returned.
+     */
+    public XMLParserConfiguration withKeyTransformer(final Function<String, String> newVal) {
+        XMLParserConfiguration newConfig = this.clone();
+        newConfig.keyTransformer = newVal;
+        return newConfig;
+    }
+
+    /**
+     * When parsing the XML into JSON, specifies which elements and attributes are kept.
+     *
+     * @return {@link #elementFilter} configuration value, or <code>null</code> if everything is kept.
+     */
+    public Predicate<String> getElementFilter() {
+        return this.elementFilter;
+    }
+
+    /**
+     * When parsing the XML into JSON, specifies which elements and attributes are kept.
+     * The filter is given the path of every element as a string of slash separated tag
+     * names from the root, such as <code>/catalog/book/title</code>, and the path of every
+     * attribute of a kept element, such as <code>/catalog/book/@id</code>. Names are the
+     * ones in the XML, before any key transformation.
+     * <p>
+     * When the filter rejects an element, the rest of the element is skipped over in the
+     * source without being converted, so nothing inside it is seen by the filter and the
+     * skipped text is not checked for well-formedness.
+     *
+     * @param newVal
+     *      new value to use for the {@link #elementFilter} configuration option,
+     *      <code>null</code> to keep everything.
+     *
+     * @return The existing configuration will not be modified. A new configuration is returned.
+     */
+    public XMLParserConfiguration withElementFilter(final Predicate<String> newVal) {
+        XMLParserConfiguration newConfig = this.clone();
+        newConfig.elementFilter = newVal;
+        return newConfig;
+    }
+
+    /**
+     * When parsing the XML into JSON, only keep the elements at the given paths, the
+     * elements and attributes inside them, and the elements on the way to them.
+     * This replaces any previously configured {@link #withElementFilter(Predicate) element filter}.
+     *
+     * @param paths element paths such as <code>/catalog/book/title</code>
+     *
+     * @return The existing configuration will not be modified. A new configuration is returned.
+     */
+    public XMLParserConfiguration withIncludedPaths(final Collection<String> paths) {
+        final String[] included = paths.toArray(new String[paths.size()]);
+        return this.withElementFilter(new Predicate<String>() {
+            @Override
+            public boolean test(String path) {
+                for (String include : included) {
+                    if (isSameOrDescendant(path, include) || isSameOrDescendant(include, path)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * When parsing the XML into JSON, leave out the elements at the given paths
+     * together with everything inside them.
+     * This replaces any previously configured {@link #withElementFilter(Predicate) element filter}.
+     *
+     * @param paths element or attribute paths such as <code>/catalog/book/description</code>
+     *
+     * @return The existing configuration will not be modified. A new configuration is returned.
+     */
+    public XMLParserConfiguration withExcludedPaths(final Collection<String> paths) {
+        final String[] excluded = paths.toArray(new String[paths.size()]);
+        return this.withElementFilter(new Predicate<String>() {
+            @Override
+            public boolean test(String path) {
+                for (String exclude : excluded) {
+                    if (isSameOrDescendant(path, exclude)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @param path a path to test
+     * @param ancestor a possible ancestor
+     * @return true if <code>path</code> equals <code>ancestor</code> or is below it
+     */
+    private static boolean isSameOrDescendant(String path, String ancestor) {
+        return path.startsWith(ancestor)
+                && (path.length() == ancestor.length() || path.charAt(ancestor.length()) == '/');
+    }
 }
@@ -0,0 +1,591 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An XML parser that is pushed its input, rather than pulling it from a Reader.
+ * Chunks of UTF-8 encoded bytes or of characters are given to
+ * {@link #feed(ByteBuffer)} or {@link #feed(CharSequence)} as they arrive, from
+ * a socket or an AsynchronousFileChannel for example; feeding never blocks. Call
+ * {@link #endOfInput()} after the last chunk.
+ * <p>
+ * The input is scanned for the bounds of its elements as it arrives. Once an
+ * element is complete, it is converted as {@link XML#toJSONObject(java.io.Reader,
+ * XMLParserConfiguration)} would convert it, and its text is dropped. There are
+ * two ways to take the result:
+ * <ul>
+ * <li>Given an element path, such as <code>/catalog/book</code>, each element at
+ * the path is available from {@link #nextValue()} as soon as its close tag has
+ * been fed, as {@link XML#streamElements(java.io.Reader, String, XMLParserConfiguration)}
+ * would return it. Only the element being received is held in memory.</li>
+ * <li>Without one, the whole document is available from {@link #nextValue()}
+ * once the input has ended. Each top level element is converted as soon as it
+ * is complete.</li>
+ * </ul>
+ * An XMLPushParser is not thread safe, but it can be fed by different threads
+ * one after another, as an event loop would.
+ *
+ * @author JSON.org
+ * @version 2021-03-09
+ */
+public final class XMLPushParser {
+
+    /** In text content. */
+    private static final int CONTENT = 0;
+    /** After a '&lt;'. */
+    private static final int OPEN = 1;
+    /** In the name of an open tag. */
+    private static final int NAME = 2;
+    /** In the attributes of an open tag. */
+    private static final int ATTRIBUTES = 3;
+    /** In a quoted attribute value. */
+    private static final int QUOTED = 4;
+    /** In a close tag. */
+    private static final int CLOSE = 5;
+    /** After '&lt;!'. */
+    private static final int BANG = 6;
+    /** After '&lt;!-'. */
+    private static final int BANG_DASH = 7;
+    /** In a comment. */
+    private static final int COMMENT = 8;
+    /** In a CDATA section. */
+    private static final int CDATA = 9;
+    /** In a processing instruction. */
+    private static final int PI = 10;
+    /** In other '&lt;!' markup, such as a DOCTYPE. */
+    private static final int META = 11;
+    /** In a quoted string in '&lt;!' markup. */
+    private static final int META_QUOTED = 12;
+
+    /** Size of the buffers bytes are decoded through. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Tag names from the root to the wanted elements, or null for the whole document. */
+    private final String[] target;
+
+    /** Configuration options for the parser. */
+    private final XMLParserConfiguration config;
+
+    /** Per-parse hooks. */
+    private final XMLParseHandler handler;
+
+    /** The document, without an element path. */
+    private final JSONObject document;
+
+    /** What the next character is part of. */
+    private int state = CONTENT;
+
+    /** The quote of the quoted string being scanned. */
+    private char quote;
+
+    /** Dashes, brackets or question marks just before, ending a comment, CDATA or PI. */
+    private int run;
+
+    /** Nesting of '&lt;' and '&gt;' in '&lt;!' markup. */
+    private int metaDepth;
+
+    /** True if the last character of an open tag before '&gt;' was '/'. */
+    private boolean slash;
+
+    /** The name of the tag being scanned. */
+    private final StringBuilder name = new StringBuilder();
+
+    /** The open tag being scanned, outside of a wanted element. */
+    private final StringBuilder markup = new StringBuilder();
+
+    /** The text of the wanted element being received. */
+    private final StringBuilder element = new StringBuilder();
+
+    /** The name of the wanted element being received, or null. */
+    private String elementName;
+
+    /** Number of open elements around the wanted element being received. */
+    private int elementBase;
+
+    /** Names of the elements that are open. */
+    private final List<String> open = new ArrayList<String>();
+
+    /** Number of open elements that are on the way to the element path. */
+    private int matched;
+
+    /** Values that are complete, but have not been taken yet. */
+    private final ArrayDeque<JSONObject> values = new ArrayDeque<JSONObject>();
+
+    /** Decodes bytes, replacing malformed input. Made when needed. */
+    private CharsetDecoder decoder;
+
+    /** Bytes waiting to be decoded. */
+    private ByteBuffer bytes;
+
+    /** Characters decoded. */
+    private CharBuffer chars;
+
+    /** True once the input has ended or failed. */
+    private boolean ended;
+
+    /** The number of characters scanned so far. */
+    private long index;
+
+    /** The number of characters scanned so far on the current line. */
+    private long character = 1;
+
+    /** The number of lines so far. */
+    private long line = 1;
+
+    /** The previous character. */
+    private char previous;
+
+    /**
+     * Make a parser of a whole document, with the original configuration.
+     */
+    public XMLPushParser() {
+        this(XMLParserConfiguration.ORIGINAL);
+    }
+
+    /**
+     * Make a parser of a whole document.
+     * @param config configuration options for the parser
+     */
+    public XMLPushParser(XMLParserConfiguration config) {
+        this.target = null;
+        this.config = config;
+        this.handler = XMLParseHandler.of(config);
+        this.document = new JSONObject();
+    }
+
+    /**
+     * Make a parser of the elements at a path, with the original configuration.
+     * @param elementPath slash separated tag names from the root, such as <code>/catalog/book</code>
+     * @throws IllegalArgumentException if the element path does not start with '/'
+     */
+    public XMLPushParser(String elementPath) {
+        this(elementPath, XMLParserConfiguration.ORIGINAL);
+    }
+
+    /**
+     * Make a parser of the elements at a path.
+     * @param elementPath slash separated tag names from the root, such as <code>/catalog/book</code>
+     * @param config configuration options for the parser
+     * @throws IllegalArgumentException if the element path does not start with '/'
+     */
+    public XMLPushParser(String elementPath, XMLParserConfiguration config) {
+        if (!elementPath.startsWith("/") || elementPath.length() == 1) {
+            throw new IllegalArgumentException("an element path should start with '/' and name at least one element");
+        }
+        this.target = elementPath.substring(1).split("/");
+        this.config = config;
+        this.handler = XMLParseHandler.of(config);
+        this.document = null;
+    }
+
+    /**
+     * Scan the next chunk of the input. The bytes from the position to the limit
+     * of the chunk are all used, and the position is moved to the limit. A
+     * character may be split across chunks.
+     *
+     * @param chunk
+     *            UTF-8 encoded bytes of the XML text
+     * @throws JSONException
+     *             If the text is not valid, or if the input has ended
+     */
+    public void feed(ByteBuffer chunk) throws JSONException {
+        this.checkNotEnded();
+        if (this.decoder == null) {
+            this.decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            this.chars = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        try {
+            while (chunk.hasRemaining()) {
+                int n = Math.min(this.bytes.remaining(), chunk.remaining());
+                ByteBuffer slice = chunk.duplicate();
+                slice.limit(slice.position() + n);
+                this.bytes.put(slice);
+                chunk.position(chunk.position() + n);
+                this.decode(false);
+            }
+        } catch (JSONException e) {
+            this.ended = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Scan the next chunk of the input.
+     *
+     * @param chunk
+     *            characters of the XML text
+     * @throws JSONException
+     *             If the text is not valid, or if the input has ended
+     */
+    public void feed(CharSequence chunk) throws JSONException {
+        this.checkNotEnded();
+        try {
+            int length = chunk.length();
+            for (int i = 0; i < length; i++) {
+                this.accept(chunk.charAt(i));
+            }
+        } catch (JSONException e) {
+            this.ended = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Say that there is no more input. Without an element path, the document
+     * then becomes available from {@link #nextValue()}.
+     *
+     * @throws JSONException
+     *             If the input ends inside an element or markup
+     */
+    public void endOfInput() throws JSONException {
+        this.checkNotEnded();
+        this.ended = true;
+        if (this.decoder != null) {
+            this.decode(true);
+            this.decoder.flush(this.chars);
+            this.scanDecoded();
+        }
+        if (!this.open.isEmpty()) {
+            throw this.syntaxError("Unclosed tag " + this.open.get(this.open.size() - 1));
+        }
+        if (this.state != CONTENT) {
+            throw this.syntaxError("Unclosed markup");
+        }
+        if (this.document != null) {
+            this.values.add(this.document);
+        }
+    }
+
+    /**
+     * @return true if there is a complete value to take
+     */
+    public boolean hasValue() {
+        return !this.values.isEmpty();
+    }
+
+    /**
+     * Take the next complete value: the next element at the path, or the
+     * document once the input has ended.
+     *
+     * @return the JSONObject, or null if none is complete yet
+     */
+    public JSONObject nextValue() {
+        return this.values.poll();
+    }
+
+    private void checkNotEnded() throws JSONException {
+        if (this.ended) {
+            throw new JSONException("The input has already ended");
+        }
+    }
+
+    /**
+     * Decode the bytes waiting, keeping the start of a split character for the
+     * next chunk, and scan the characters.
+     */
+    private void decode(boolean endOfInput) throws JSONException {
+        this.bytes.flip();
+        for (;;) {
+            boolean overflow = this.decoder.decode(this.bytes, this.chars, endOfInput).isOverflow();
+            this.scanDecoded();
+            if (!overflow) {
+                break;
+            }
+        }
+        this.bytes.compact();
+    }
+
+    private void scanDecoded() throws JSONException {
+        this.chars.flip();
+        while (this.chars.hasRemaining()) {
+            this.accept(this.chars.get());
+        }
+        this.chars.clear();
+    }
+
+    /**
+     * Scan the next character.
+     */
+    private void accept(char c) throws JSONException {
+        this.index++;
+        if (c == '\r') {
+            this.line++;
+            this.character = 0;
+        } else if (c == '\n') {
+            if (this.previous != '\r') {
+                this.line++;
+            }
+            this.character = 0;
+        } else {
+            this.character++;
+        }
+        this.previous = c;
+
+        if (this.elementName != null) {
+            this.element.append(c);
+        }
+        switch (this.state) {
+        case CONTENT:
+            if (c == '<') {
+                this.state = OPEN;
+                this.markup.setLength(0);
+                this.markup.append(c);
+            }
+            break;
+        case OPEN:
+            this.markup.append(c);
+            if (c == '!') {
+                this.state = BANG;
+            } else if (c == '?') {
+                this.state = PI;
+                this.run = 0;
+            } else if (c == '/') {
+                this.state = CLOSE;
+                this.name.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+                this.state = NAME;
+                this.name.setLength(0);
+                this.name.append(c);
+                this.slash = false;
+            }
+            break;
+        case NAME:
+            this.markup.append(c);
+            if (c == '>') {
+                this.openTag(false);
+            } else if (c == '/') {
+                this.state = ATTRIBUTES;
+                this.slash = true;
+            } else if (Character.isWhitespace(c)) {
+                this.state = ATTRIBUTES;
+            } else {
+                this.name.append(c);
+            }
+            break;
+        case ATTRIBUTES:
+            this.markup.append(c);
+            if (c == '>') {
+                this.openTag(this.slash);
+            } else if (c == '"' || c == '\'') {
+                this.state = QUOTED;
+                this.quote = c;
+                this.slash = false;
+            } else if (!Character.isWhitespace(c)) {
+                this.slash = c == '/';
+            }
+            break;
+        case QUOTED:
+            this.markup.append(c);
+            if (c == this.quote) {
+                this.state = ATTRIBUTES;
+            }
+            break;
+        case CLOSE:
+            if (c == '>') {
+                this.closeTag(this.name.toString().trim());
+            } else {
+                this.name.append(c);
+            }
+            break;
+        case BANG:
+            if (c == '-') {
+                this.state = BANG_DASH;
+            } else if (c == '[') {
+                this.state = CDATA;
+                this.run = 0;
+            } else {
+                this.state = META;
+                this.metaDepth = 1;
+                this.meta(c);
+            }
+            break;
+        case BANG_DASH:
+            if (c == '-') {
+                this.state = COMMENT;
+                this.run = 0;
+            } else {
+                this.state = META;
+                this.metaDepth = 1;
+                this.meta(c);
+            }
+            break;
+        case COMMENT:
+            this.endAfter(c, '-', 2);
+            break;
+        case CDATA:
+            this.endAfter(c, ']', 2);
+            break;
+        case PI:
+            this.endAfter(c, '?', 1);
+            break;
+        case META:
+            this.meta(c);
+            break;
+        default:
+            if (c == this.quote) {
+                this.state = META;
+            }
+        }
+    }
+
+    /**
+     * Scan a character of markup that ends with '&gt;' after a run of a
+     * character, such as the "--&gt;" of a comment.
+     */
+    private void endAfter(char c, char repeated, int count) {
+        if (c == repeated) {
+            this.run++;
+        } else {
+            if (c == '>' && this.run >= count) {
+                this.state = CONTENT;
+            }
+            this.run = 0;
+        }
+    }
+
+    /**
+     * Scan a character of '&lt;!' markup, counting '&lt;' and '&gt;' outside of
+     * quotes as {@link XMLTokener#nextMeta()} does.
+     */
+    private void meta(char c) {
+        if (c == '"' || c == '\'') {
+            this.state = META_QUOTED;
+            this.quote = c;
+        } else if (c == '<') {
+            this.metaDepth++;
+        } else if (c == '>' && --this.metaDepth == 0) {
+            this.state = CONTENT;
+        }
+    }
+
+    /**
+     * An open tag has been scanned.
+     * @param empty true if the element is an empty tag, ending with "/&gt;"
+     */
+    private void openTag(boolean empty) throws JSONException {
+        this.state = CONTENT;
+        String tagName = this.name.toString();
+        int depth = this.open.size();
+        if (this.elementName != null) {
+            if (!empty) {
+                this.open.add(tagName);
+            }
+            return;
+        }
+        boolean wanted = this.target == null ? depth == 0
+                : this.matched == depth && depth == this.target.length - 1
+                        && this.target[depth].equals(tagName);
+        if (wanted) {
+            this.element.append(this.markup);
+            this.elementName = tagName;
+            this.elementBase = depth;
+            if (empty) {
+                this.convert();
+            } else {
+                this.open.add(tagName);
+            }
+        } else if (!empty) {
+            this.open.add(tagName);
+            if (this.matched == depth && depth < this.target.length - 1 && this.target[depth].equals(tagName)) {
+                if (this.handler.enter(tagName)) {
+                    this.matched++;
+                } else {
+                    this.handler.exit();
+                }
+            }
+        }
+    }
+
+    /**
+     * A close tag has been scanned.
+     * @param tagName the name in the tag
+     */
+    private void closeTag(String tagName) throws JSONException {
+        this.state = CONTENT;
+        if (this.open.isEmpty()) {
+            throw this.syntaxError("Mismatched close tag " + tagName);
+        }
+        String openName = this.open.remove(this.open.size() - 1);
+        if (!openName.equals(tagName)) {
+            throw this.syntaxError("Mismatched " + openName + " and " + tagName);
+        }
+        if (this.elementName != null) {
+            if (this.open.size() == this.elementBase) {
+                this.convert();
+            }
+        } else if (this.open.size() < this.matched) {
+            this.matched--;
+            this.handler.exit();
+        }
+    }
+
+    /**
+     * Convert the wanted element that has just been received, as the XML
+     * parser does.
+     */
+    private void convert() throws JSONException {
+        XMLTokener x = new XMLTokener(this.element.toString());
+        this.element.setLength(0);
+        this.elementName = null;
+        x.next();
+        String tagName = (String) x.nextToken();
+        if (this.document != null) {
+            XML.parseElement(x, this.document, tagName, this.config, this.handler);
+            return;
+        }
+        JSONObject holder = new JSONObject();
+        XML.parseElement(x, holder, tagName, this.config, this.handler);
+        if (!holder.isEmpty()) {
+            this.values.add(XMLElementIterator.toJSONObject(holder.opt(this.handler.key(tagName)), this.config));
+        }
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + this.toString());
+    }
+
+    /**
+     * Make a printable string of this XMLPushParser.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    @Override
+    public String toString() {
+        return " at " + this.index + " [character " + this.character + " line " +
+                this.line + "]";
+    }
+}
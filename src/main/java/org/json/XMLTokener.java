@@ -25,6 +25,9 @@ SOFTWARE.
 */
 
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 
 /**
  * The XMLTokener extends the JSONTokener to provide additional methods
@@ -65,6 +68,49 @@ public class XMLTokener extends JSONTokener {
         super(s);
     }
 
+    /**
+     * Construct an XMLTokener from UTF-8 encoded bytes, from the position of the
+     * buffer to its limit.
+     * @param buffer The source bytes.
+     * @see JSONTokener#JSONTokener(ByteBuffer)
+     */
+    public XMLTokener(ByteBuffer buffer) {
+        super(buffer);
+    }
+
+    /**
+     * Construct an XMLTokener from a channel of UTF-8 encoded bytes. The caller
+     * must close the channel.
+     * @param channel The source, which must be in blocking mode.
+     * @see JSONTokener#JSONTokener(ReadableByteChannel)
+     */
+    public XMLTokener(ReadableByteChannel channel) {
+        super(channel);
+    }
+
+    /**
+     * Construct an XMLTokener from a UTF-8 encoded file, which is memory mapped
+     * a window at a time.
+     * @param path The source file.
+     * @throws JSONException if the file cannot be opened.
+     * @see JSONTokener#JSONTokener(Path)
+     */
+    public XMLTokener(Path path) {
+        super(path);
+    }
+
+    /**
+     * Start over with another source, reusing this tokener's buffer.
+     * @param reader A source reader.
+     * @return this
+     * @see JSONTokener#reset(Reader)
+     */
+    @Override
+    public XMLTokener reset(Reader reader) {
+        super.reset(reader);
+        return this;
+    }
+
     /**
      * Get the text in the CDATA block.
      * @return The string up to the <code>]]&gt;</code>.
@@ -341,6 +387,80 @@ public class XMLTokener extends JSONTokener {
     }
 
 
+    /**
+     * Skip the rest of an element whose open tag name has just been read,
+     * including its attributes, its content and its close tag. Nothing is
+     * built for the skipped text, and it is only checked far enough to find
+     * where the element ends: nested tags are counted, quoted attribute
+     * values, comments, CDATA sections and processing instructions are
+     * stepped over, but names of close tags are not matched.
+     * @param tagName The name of the element, used for error messages.
+     * @throws JSONException If the end of the element is not found.
+     */
+    void skipElement(String tagName) throws JSONException {
+        char c;
+        int depth = skipTag() ? 0 : 1;
+        while (depth > 0) {
+            c = next();
+            if (c == 0) {
+                throw syntaxError("Unclosed tag " + tagName);
+            }
+            if (c != '<') {
+                continue;
+            }
+            c = next();
+            if (c == '/') {
+                skipTag();
+                depth -= 1;
+            } else if (c == '?') {
+                skipPast("?>");
+            } else if (c == '!') {
+                c = next();
+                if (c == '-') {
+                    skipPast("-->");
+                } else if (c == '[') {
+                    skipPast("]]>");
+                } else {
+                    skipTag();
+                }
+            } else if (!skipTag()) {
+                depth += 1;
+            }
+        }
+    }
+
+    /**
+     * Skip to the end of the tag being read, stepping over quoted values.
+     * @return true if the tag ended with <code>/&gt;</code>.
+     * @throws JSONException If the end of the tag is not found.
+     */
+    boolean skipTag() throws JSONException {
+        char c;
+        char q;
+        char previous = 0;
+        for (;;) {
+            c = next();
+            switch (c) {
+            case 0:
+                throw syntaxError("Misshaped tag");
+            case '"':
+            case '\'':
+                q = c;
+                do {
+                    c = next();
+                    if (c == 0) {
+                        throw syntaxError("Unterminated string");
+                    }
+                } while (c != q);
+                break;
+            case '>':
+                return previous == '/';
+            default:
+            }
+            previous = c;
+        }
+    }
+
     /**
      * Skip characters until past the requested string.
      * If it is not found, we are left at the end of the source with a result of false.
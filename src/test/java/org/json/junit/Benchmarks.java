@@ -0,0 +1,448 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.json.CBOR;
+import org.json.CDL;
+import org.json.JSONArray;
+import org.json.JSONColumns;
+import org.json.JSONLines;
+import org.json.JSONLinesWriter;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+import org.json.JSONPushParser;
+import org.json.JSONStringer;
+import org.json.JSONStructuralIndex;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
+import org.json.XML;
+import org.json.XMLPushParser;
+
+/**
+ * Times pieces of work against the slower ways of doing the same thing. The
+ * timings depend on the machine, so this is run by hand rather than with the
+ * unit tests, which check that both ways give the same results:
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/test:build/resources/test org.json.junit.Benchmarks [name...]
+ * </pre>
+ * The names are those of the static methods below; with no names, all of them
+ * are run. Each task is run {@value #WARMUP} times before it is timed
+ * {@value #RUNS} times, and the best and mean times are printed.
+ */
+public class Benchmarks {
+
+    /** Untimed runs of each task, so that the timed runs use compiled code. */
+    private static final int WARMUP = 5;
+
+    /** Timed runs of each task. */
+    private static final int RUNS = 10;
+
+    /** The benchmarks, in the order they are run by default. */
+    private static final String[] ALL = {"pointer", "lazyParse", "structuralIndex", "stringer", "write",
+            "toUTF8Bytes", "pushParser", "xmlPushParser", "jsonLines", "parseParallel", "writeParallel", "cbor",
+            "columns", "with"};
+
+    /** The last result of a task, kept so the work is not optimized away. */
+    private static volatile Object result;
+
+    /**
+     * A piece of work to time.
+     */
+    private interface Task {
+        Object run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String name : args.length == 0 ? ALL : args) {
+            Method method = Benchmarks.class.getDeclaredMethod(name);
+            System.out.println(name + ":");
+            method.invoke(null);
+        }
+    }
+
+    private static void time(String label, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            result = task.run();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long startTime = System.nanoTime();
+            result = task.run();
+            final long elapsedNano = System.nanoTime() - startTime;
+            best = Math.min(best, elapsedNano);
+            total += elapsedNano;
+        }
+        System.out.println("  " + label + " : best " + best / 1000000 + " ms, mean " + total / RUNS / 1000000 + " ms");
+    }
+
+    /**
+     * Parsing the pointer on every query, reusing a parsed one, and querying
+     * by string through the pointer cache.
+     */
+    static void pointer() throws Exception {
+        InputStream resourceAsStream = Benchmarks.class.getClassLoader().getResourceAsStream("jsonpointer-testdoc.json");
+        final JSONObject document = new JSONObject(new JSONTokener(resourceAsStream));
+        resourceAsStream.close();
+        final String[] pointers = {"/obj/key", "/foo/1", "/a~1b", "/m~0n", "/obj/other~0key/another~1key/0", "/c%d"};
+        final JSONPointer[] parsed = new JSONPointer[pointers.length];
+        for (int j = 0; j < pointers.length; j++) {
+            parsed[j] = new JSONPointer(pointers[j]);
+        }
+        final int iterations = 100000;
+
+        time("new JSONPointer(pointer).queryFrom(document)", () -> {
+            Object value = null;
+            for (int i = 0; i < iterations; i++) {
+                for (String pointer : pointers) {
+                    value = new JSONPointer(pointer).queryFrom(document);
+                }
+            }
+            return value;
+        });
+        time("parsed.queryFrom(document)", () -> {
+            Object value = null;
+            for (int i = 0; i < iterations; i++) {
+                for (JSONPointer pointer : parsed) {
+                    value = pointer.queryFrom(document);
+                }
+            }
+            return value;
+        });
+        time("document.query(pointer)", () -> {
+            Object value = null;
+            for (int i = 0; i < iterations; i++) {
+                for (String pointer : pointers) {
+                    value = document.query(pointer);
+                }
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Reading one member of a large object, parsed eagerly and lazily.
+     */
+    static void lazyParse() throws Exception {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"key").append(i).append("\":{\"id\":").append(i)
+                    .append(",\"name\":\"record number ").append(i).append("\",\"tags\":[\"a\",\"b\",\"c\"],\"score\":")
+                    .append(i * 1.5).append('}');
+        }
+        sb.append('}');
+        final String source = sb.toString();
+
+        time("new JSONObject(source)", () -> new JSONObject(source).getJSONObject("key1000").getString("name"));
+        time("new JSONObject(source, true)", () -> new JSONObject(source, true).getJSONObject("key1000").getString("name"));
+    }
+
+    /**
+     * Parsing a document against validating it and finding a field with the
+     * structural index.
+     */
+    static void structuralIndex() throws Exception {
+        StringBuilder sb = new StringBuilder("{\"records\":[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"record \\\"")
+                    .append(i).append("\\\"\",\"tags\":[\"a\",\"b\"],\"score\":").append(i * 1.5).append('}');
+        }
+        sb.append("],\"total\":20000}");
+        final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        time("new JSONObject(new JSONTokener(bytes))", () -> new JSONObject(new JSONTokener(bytes)));
+        time("new JSONStructuralIndex(bytes).validate()", () -> {
+            JSONStructuralIndex index = new JSONStructuralIndex(bytes);
+            index.validate();
+            return index.findField("total");
+        });
+    }
+
+    /**
+     * Writing many small objects with and without the writer's checks.
+     */
+    static void stringer() throws Exception {
+        time("new JSONStringer()", () -> writeRecords(new JSONStringer()).toString());
+        time("new JSONStringer(false)", () -> writeRecords(new JSONStringer(false)).toString());
+    }
+
+    private static JSONWriter writeRecords(JSONWriter writer) {
+        writer.array();
+        for (int i = 0; i < 100000; i++) {
+            writer.object().key("id").value(i).key("name").value("record").key("ok").value(true)
+                .key("score").value(i * 0.5).endObject();
+        }
+        return writer.endArray();
+    }
+
+    /**
+     * Pretty printing a large object through an OutputStreamWriter and straight
+     * to the stream.
+     */
+    static void write() throws Exception {
+        final JSONObject jsonObject = records(20000);
+
+        time("write(new OutputStreamWriter(...), 2, 0)", () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+            jsonObject.write(writer, 2, 0);
+            writer.flush();
+            return bytes;
+        });
+        time("write(OutputStream, 2, 0)", () -> jsonObject.write(new ByteArrayOutputStream(), 2, 0));
+    }
+
+    /**
+     * UTF-8 bytes of a large object through toString and from the pooled
+     * buffer of toUTF8Bytes.
+     */
+    static void toUTF8Bytes() throws Exception {
+        final JSONObject jsonObject = records(20000);
+
+        time("toString().getBytes(UTF_8)", () -> jsonObject.toString().getBytes(StandardCharsets.UTF_8));
+        time("toUTF8Bytes()", () -> jsonObject.toUTF8Bytes());
+    }
+
+    /**
+     * Parsing a large document in one buffer, and fed to the push parser in
+     * network sized chunks.
+     */
+    static void pushParser() throws Exception {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 50000; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"record ").append(i)
+                    .append("\",\"tags\":[\"a\",\"b\"],\"score\":").append(i * 0.5).append('}');
+        }
+        sb.append(']');
+        final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final int chunkSize = 1500;
+
+        time("new JSONArray(new JSONTokener(ByteBuffer))", () -> new JSONArray(new JSONTokener(ByteBuffer.wrap(bytes))));
+        time("JSONPushParser.feed(1500 byte chunks)", () -> {
+            JSONPushParser parser = new JSONPushParser();
+            ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                chunk.clear();
+                chunk.put(bytes, i, Math.min(chunkSize, bytes.length - i)).flip();
+                parser.feed(chunk);
+            }
+            parser.endOfInput();
+            return parser.nextValue();
+        });
+    }
+
+    /**
+     * Streaming the elements of a large XML document from a Reader, and
+     * feeding it to the XML push parser in network sized chunks.
+     */
+    static void xmlPushParser() throws Exception {
+        StringBuilder sb = new StringBuilder("<catalog>");
+        for (int i = 0; i < 30000; i++) {
+            sb.append("<book id=\"").append(i).append("\"><title>Title ").append(i)
+                    .append("</title><price>").append(i * 0.5).append("</price></book>");
+        }
+        sb.append("</catalog>");
+        final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final String xml = sb.toString();
+        final int chunkSize = 1500;
+
+        time("XML.streamElements(Reader, path)", () -> XML.streamElements(new StringReader(xml), "/catalog/book").count());
+        time("XMLPushParser.feed(1500 byte chunks)", () -> {
+            XMLPushParser parser = new XMLPushParser("/catalog/book");
+            long count = 0;
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                parser.feed(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)));
+                while (parser.hasValue()) {
+                    parser.nextValue();
+                    count++;
+                }
+            }
+            parser.endOfInput();
+            while (parser.hasValue()) {
+                parser.nextValue();
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Reading a file of JSON lines in order, and in parts on several threads.
+     */
+    static void jsonLines() throws Exception {
+        final File file = File.createTempFile("records", ".ndjson");
+        try {
+            try (JSONLinesWriter lines = new JSONLinesWriter(new FileOutputStream(file))) {
+                for (int i = 0; i < 100000; i++) {
+                    lines.write(new JSONObject().put("id", i).put("name", "record " + i + " caf\u00e9")
+                            .put("tags", new JSONArray().put("a").put("\ud83c\udf75")));
+                }
+            }
+
+            time("JSONLines.stream(Path)", () -> JSONLines.stream(file.toPath()).count());
+            time("JSONLines.parallelStream(Path)", () -> JSONLines.parallelStream(file.toPath()).count());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Parsing a large file of an array sequentially, and in parts on several
+     * threads.
+     */
+    static void parseParallel() throws Exception {
+        final File file = File.createTempFile("records", ".json");
+        try {
+            Files.write(file.toPath(), records(100000).getJSONArray("records").toString().getBytes(StandardCharsets.UTF_8));
+
+            time("new JSONArray(new JSONTokener(Path))", () -> new JSONArray(new JSONTokener(file.toPath())));
+            time("JSONArray.parseParallel(Path)", () -> JSONArray.parseParallel(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writing a large object as UTF-8, sequentially and in parts on several
+     * threads.
+     */
+    static void writeParallel() throws Exception {
+        final JSONObject jsonObject = records(100000);
+
+        time("JSONObject.toUTF8Bytes()", () -> jsonObject.toUTF8Bytes());
+        time("JSONObject.writeParallel(OutputStream)", () -> jsonObject.writeParallel(new ByteArrayOutputStream(), 0, 0));
+    }
+
+    /**
+     * Writing and reading a large object as JSON text and as CBOR, with the
+     * size of each.
+     */
+    static void cbor() throws Exception {
+        JSONArray records = new JSONArray();
+        for (int i = 0; i < 50000; i++) {
+            records.put(new JSONObject().put("id", i).put("name", "record " + i + " caf\u00e9")
+                    .put("price", i * 0.25).put("active", i % 2 == 0)
+                    .put("tags", new JSONArray().put("a").put("b")));
+        }
+        final JSONObject jsonObject = new JSONObject().put("records", records);
+        final String text = jsonObject.toString();
+        final byte[] bytes = CBOR.toBytes(jsonObject);
+        System.out.println("  " + text.getBytes(StandardCharsets.UTF_8).length + " bytes of text, "
+                + bytes.length + " bytes of CBOR");
+
+        time("toString()", () -> jsonObject.toString());
+        time("CBOR.toBytes(value)", () -> CBOR.toBytes(jsonObject));
+        time("new JSONObject(String)", () -> new JSONObject(text));
+        time("CBOR.read(bytes)", () -> CBOR.read(bytes));
+    }
+
+    /**
+     * Making a columnar copy of numeric records, and summing a field by reading
+     * it from every row and from the column.
+     */
+    static void columns() throws Exception {
+        StringBuilder sb = new StringBuilder("id,region,amount\n");
+        for (int i = 0; i < 200000; i++) {
+            sb.append(i).append(",region").append(i % 10).append(',').append(i % 1000).append('\n');
+        }
+        JSONArray rows = CDL.toJSONArray(sb.toString());
+        final JSONArray numbers = new JSONArray();
+        for (int i = 0; i < rows.length(); i++) {
+            numbers.put(new JSONObject().put("amount", rows.getJSONObject(i).getInt("amount")));
+        }
+        final JSONColumns columns = new JSONColumns(numbers);
+
+        time("new JSONColumns(JSONArray)", () -> new JSONColumns(numbers));
+        time("10 x JSONObject.getDouble per row", () -> {
+            double sum = 0;
+            for (int repeat = 0; repeat < 10; repeat++) {
+                for (int i = 0; i < numbers.length(); i++) {
+                    sum += numbers.getJSONObject(i).getDouble("amount");
+                }
+            }
+            return sum;
+        });
+        time("10 x JSONColumns.Column.sum()", () -> {
+            double sum = 0;
+            for (int repeat = 0; repeat < 10; repeat++) {
+                sum += columns.getColumn("amount").sum();
+            }
+            return sum;
+        });
+    }
+
+    /**
+     * Changing one member of a large JSONObject by copying it, and with with()
+     * on a frozen copy.
+     */
+    static void with() throws Exception {
+        final JSONObject jsonObject = new JSONObject();
+        for (int i = 0; i < 100000; i++) {
+            jsonObject.put("key" + i, i);
+        }
+        final String[] names = JSONObject.getNames(jsonObject);
+        final JSONObject frozen = jsonObject.freeze().with("key0", 0);
+
+        time("100 x JSONObject copy and put", () -> {
+            JSONObject copy = jsonObject;
+            for (int i = 0; i < 100; i++) {
+                copy = new JSONObject(copy, names).put("key" + i, -i);
+            }
+            return copy;
+        });
+        time("100 x JSONObject.with()", () -> {
+            JSONObject persistent = frozen;
+            for (int i = 0; i < 100; i++) {
+                persistent = persistent.with("key" + i, -i);
+            }
+            return persistent;
+        });
+    }
+
+    private static JSONObject records(int count) {
+        JSONArray records = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            records.put(new JSONObject().put("id", i).put("name", "record " + i)
+                    .put("tags", new JSONArray().put("a").put("b")));
+        }
+        return new JSONObject().put("records", records);
+    }
+}
@@ -0,0 +1,188 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.json.CBOR;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Tests for encoding and decoding CBOR.
+ */
+public class CBORTest {
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Examples from appendix A of RFC 8949.
+     */
+    @Test
+    public void rfcExamples() {
+        Object[] values = {
+            Integer.valueOf(0), Integer.valueOf(23), Integer.valueOf(24), Integer.valueOf(1000),
+            Integer.valueOf(1000000), Long.valueOf(1000000000000L), Integer.valueOf(-1), Integer.valueOf(-1000),
+            new BigInteger("18446744073709551615"), new BigInteger("-18446744073709551616"),
+            new BigInteger("18446744073709551616"), new BigInteger("-18446744073709551617"),
+            Double.valueOf(1.1), Double.valueOf(-4.1), Float.valueOf(100000.0f),
+            Boolean.FALSE, Boolean.TRUE, JSONObject.NULL, "", "a", "IETF", "\"\\", "ü", "水", "𐅑",
+        };
+        String[] encodings = {
+            "00", "17", "1818", "1903e8",
+            "1a000f4240", "1b000000e8d4a51000", "20", "3903e7",
+            "1bffffffffffffffff", "3bffffffffffffffff",
+            "c249010000000000000000", "c349010000000000000000",
+            "fb3ff199999999999a", "fbc010666666666666", "fa47c35000",
+            "f4", "f5", "f6", "60", "6161", "6449455446", "62225c", "62c3bc", "63e6b0b4", "64f0908591",
+        };
+        for (int i = 0; i < values.length; i++) {
+            assertArrayEquals(encodings[i], hex(encodings[i]), CBOR.toBytes(values[i]));
+            assertEquals(encodings[i], values[i], CBOR.read(hex(encodings[i])));
+        }
+        assertEquals(Double.valueOf(1.0), CBOR.read(hex("f93c00")));
+        assertEquals(Double.valueOf(5.960464477539063e-8), CBOR.read(hex("f90001")));
+        assertEquals(Double.valueOf(-4.0), CBOR.read(hex("f9c400")));
+        assertEquals(new BigDecimal("273.15"), CBOR.read(hex("c48221196ab3")));
+        assertEquals(JSONObject.NULL, CBOR.read(hex("f7")));
+        assertEquals("AQIDBA", CBOR.read(hex("4401020304")));
+        assertEquals("streaming", CBOR.read(hex("7f657374726561646d696e67ff")));
+        assertEquals("other tags are ignored", "2013-03-21T20:04:00Z",
+                CBOR.read(hex("c074323031332d30332d32315432303a30343a30305a")));
+
+        assertTrue(new JSONArray("[1,[2,3],[4,5]]").similar(CBOR.read(hex("8301820203820405"))));
+        assertTrue(new JSONArray("[1,[2,3],[4,5]]").similar(CBOR.read(hex("9f018202039f0405ffff"))));
+        assertTrue(new JSONObject("{\"a\":1,\"b\":[2,3]}").similar(CBOR.read(hex("a26161016162820203"))));
+        assertTrue(new JSONObject("{\"a\":1,\"b\":[2,3]}").similar(CBOR.read(hex("bf61610161629f0203ffff"))));
+        assertTrue(new JSONObject("{\"1\":2,\"3\":4}").similar(CBOR.read(hex("a201020304"))));
+        assertArrayEquals(hex("a161616161"), CBOR.toBytes(new JSONObject().put("a", "a")));
+        assertArrayEquals(hex("c48221196ab3"), CBOR.toBytes(new BigDecimal("273.15")));
+    }
+
+    @Test
+    public void roundTrip() {
+        JSONObject jsonObject = new JSONObject()
+                .put("int", 42).put("long", 1L << 40).put("double", 0.1).put("float", 2.5f)
+                .put("bigInteger", new BigInteger("123456789012345678901234567890"))
+                .put("negativeBigInteger", new BigInteger("-123456789012345678901234567890"))
+                .put("bigDecimal", new BigDecimal("-1234567890.0987654321"))
+                .put("string", "café \"🍵\"\n").put("true", true).put("null", JSONObject.NULL)
+                .put("array", new JSONArray().put(1).put("two").put(new JSONArray()).put(new JSONObject()))
+                .put("object", new JSONObject().put("nested", new JSONObject().put("deep", -7)))
+                .put("long string", new String(new char[70000]).replace('\0', 'é'));
+        byte[] bytes = CBOR.toBytes(jsonObject);
+        Object decoded = CBOR.read(bytes);
+        assertTrue(jsonObject.similar(decoded));
+        JSONObject copy = (JSONObject) decoded;
+        assertEquals(BigInteger.class, copy.get("bigInteger").getClass());
+        assertEquals(BigDecimal.class, copy.get("bigDecimal").getClass());
+        assertEquals(Long.class, copy.get("long").getClass());
+        assertEquals(Float.class, copy.get("float").getClass());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        CBOR.write(jsonObject, stream);
+        assertArrayEquals(bytes, stream.toByteArray());
+        assertTrue(jsonObject.similar(CBOR.read(new ByteArrayInputStream(bytes))));
+    }
+
+    /**
+     * Items written one after another are read one at a time.
+     */
+    @Test
+    public void sequenceOfItems() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        CBOR.write(new JSONObject().put("a", 1), stream);
+        CBOR.write(new JSONArray().put("b"), stream);
+        CBOR.write("c", stream);
+        InputStream in = new ByteArrayInputStream(stream.toByteArray());
+        assertTrue(new JSONObject().put("a", 1).similar(CBOR.read(in)));
+        assertTrue(new JSONArray().put("b").similar(CBOR.read(in)));
+        assertEquals("c", CBOR.read(in));
+        assertNull(CBOR.read(in));
+    }
+
+    @Test
+    public void errors() {
+        String[] invalid = {"", "82 01", "1c", "ff", "a1 01", "f8 20", "00 00", "7f 01 ff", "9f 01", "c2 01"};
+        String[] messages = {"Unexpected end of the CBOR data item at 0", "Unexpected end of the CBOR data item at 2",
+            "Reserved CBOR additional information 28 at 1", "Unsupported CBOR simple value 31 at 0",
+            "Unexpected end of the CBOR data item at 2", "Unsupported CBOR simple value 24 at 0",
+            "Expected the end of the CBOR data item at 1", "Expected a definite length chunk of a CBOR string at 2",
+            "Unexpected end of the CBOR data item at 2", "Expected a byte string in a CBOR bignum at 1"};
+        for (int i = 0; i < invalid.length; i++) {
+            try {
+                CBOR.read(hex(invalid[i].replace(" ", "")));
+                fail("Expected JSONException for " + invalid[i]);
+            } catch (JSONException e) {
+                assertEquals(invalid[i], messages[i], e.getMessage());
+            }
+        }
+        try {
+            CBOR.read(new ByteArrayInputStream(hex("8301")));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Unexpected end of the CBOR data item at 2", e.getMessage());
+        }
+    }
+
+    /**
+     * A large document read back from CBOR has the values of the JSON text,
+     * in fewer bytes. Timings are in Benchmarks.cbor().
+     */
+    @Test
+    public void largeDocument() {
+        JSONArray records = new JSONArray();
+        for (int i = 0; i < 50000; i++) {
+            records.put(new JSONObject().put("id", i).put("name", "record " + i + " café")
+                    .put("price", i * 0.25).put("active", i % 2 == 0)
+                    .put("tags", new JSONArray().put("a").put("b")));
+        }
+        JSONObject jsonObject = new JSONObject().put("records", records);
+
+        String text = jsonObject.toString();
+        byte[] bytes = CBOR.toBytes(jsonObject);
+        assertTrue(bytes.length < text.getBytes(StandardCharsets.UTF_8).length);
+        assertTrue(new JSONObject(text).similar(CBOR.read(bytes)));
+    }
+}
@@ -24,16 +24,23 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -47,6 +54,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONPointerException;
+import org.json.JSONTokener;
 import org.junit.Test;
 
 import com.jayway.jsonpath.Configuration;
@@ -1269,4 +1277,230 @@ public class JSONArrayTest {
 		assertTrue("expected jsonArray.length() == 0", jsonArray.length() == 0); //Check if its length is 0
 		jsonArray.getInt(0); //Should throws org.json.JSONException: JSONArray[0] not found
 	}
+
+    @Test
+    public void writeUTF8Stream() {
+        JSONArray jsonArray = new JSONArray("[\"café\", {\"k\": [\"🍵\", 2.5]}, null, true]");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        jsonArray.write(stream, 0, 0);
+        assertEquals(jsonArray.toString(), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+        stream.reset();
+        jsonArray.write(stream, 4, 0);
+        assertEquals(jsonArray.toString(4), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void toUTF8BytesAndWriteTo() {
+        JSONArray jsonArray = new JSONArray("[\"café\", {\"k\": [\"🍵\", 2.5]}, null, true]");
+        byte[] expected = jsonArray.toString().getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, jsonArray.toUTF8Bytes());
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        jsonArray.writeTo(stream);
+        assertArrayEquals(expected, stream.toByteArray());
+        ByteBuffer buffer = jsonArray.writeTo(ByteBuffer.allocate(expected.length));
+        assertArrayEquals(expected, buffer.array());
+        assertArrayEquals("[]".getBytes(StandardCharsets.UTF_8), new JSONArray().toUTF8Bytes());
+    }
+
+    /**
+     * A text of records whose strings hold escapes, quotes, brackets and commas,
+     * so that chunks are bound to start inside strings and escapes.
+     */
+    private static String records(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(i % 3 == 0 ? ",\n" : ",");
+            }
+            sb.append("{\"id\":").append(i)
+                    .append(",\"s\":\"a\\\"[{,\\\\").append(i % 7 == 0 ? "\\\\\\\\" : "").append("\"")
+                    .append(",\"n\":[").append(i * 0.5).append(",{\"x\":\"]},\"},[]]")
+                    .append(",\"u\":\"café 🍵 \\u0041\"}");
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * The parallel parse gives the elements of the sequential parse in order,
+     * wherever the text is cut into chunks.
+     */
+    @Test
+    public void parseParallelMatchesSequential() {
+        String text = records(20000);
+        JSONArray expected = new JSONArray(text);
+        for (int shift = 0; shift < 8; shift++) {
+            StringBuilder padding = new StringBuilder();
+            for (int i = 0; i < shift; i++) {
+                padding.append(' ');
+            }
+            byte[] bytes = (padding + text + padding).getBytes(StandardCharsets.UTF_8);
+            assertTrue(bytes.length > 1 << 20);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            JSONArray actual = JSONArray.parseParallel(buffer);
+            assertEquals(0, buffer.position());
+            assertEquals(expected.length(), actual.length());
+            assertTrue(expected.similar(actual));
+        }
+        assertEquals(0, JSONArray.parseParallel(ByteBuffer.wrap(" [ ] ".getBytes(StandardCharsets.UTF_8))).length());
+    }
+
+    /**
+     * Texts the speculation does not hold for are parsed sequentially, with the
+     * values and the errors of the sequential parse.
+     */
+    @Test
+    public void parseParallelFallsBack() {
+        String text = records(20000);
+        String[] lenient = {
+            text.substring(0, text.length() - 1) + ",'a \" ]'," + "]",
+            "[1,," + text.substring(1),
+            text.substring(0, text.length() - 1) + ",]",
+        };
+        for (String source : lenient) {
+            JSONArray actual = JSONArray.parseParallel(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+            assertTrue(new JSONArray(source).similar(actual));
+        }
+        String[] invalid = {
+            text.substring(0, text.length() - 1),
+            text + "]",
+            "{" + text.substring(1),
+            text.substring(0, text.length() / 2) + "]",
+            "[1]x",
+        };
+        for (String source : invalid) {
+            try {
+                JSONArray.parseParallel(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+                fail("Expected JSONException");
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+        }
+    }
+
+    /**
+     * A memory mapped file gives the values of a sequential parse. Timings are
+     * in Benchmarks.parseParallel().
+     */
+    @Test
+    public void parseParallelPath() throws IOException {
+        String text = records(100000);
+        File file = File.createTempFile("records", ".json");
+        try {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+            JSONArray sequential = new JSONArray(new JSONTokener(file.toPath()));
+            JSONArray parallel = JSONArray.parseParallel(file.toPath());
+            assertEquals(100000, parallel.length());
+            assertTrue(sequential.similar(parallel));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A large array is written in parts with the text of the sequential write.
+     */
+    @Test
+    public void writeParallel() {
+        JSONArray jsonArray = new JSONArray(records(30000));
+        for (int indentFactor : new int[] {0, 3}) {
+            String expected = jsonArray.toString(indentFactor);
+            assertEquals(expected, jsonArray.writeParallel(new StringWriter(), indentFactor, 0).toString());
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            jsonArray.writeParallel(stream, indentFactor, 0);
+            assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+        }
+        JSONArray single = new JSONArray().put(jsonArray);
+        assertEquals(single.toString(2), single.writeParallel(new StringWriter(), 2, 0).toString());
+    }
+
+    @Test
+    public void freeze() {
+        JSONArray jsonArray = new JSONArray("[1, \"two\", [3], {\"four\": 4}, null]");
+        JSONArray frozen = jsonArray.freeze();
+        assertTrue(frozen.isFrozen());
+        assertFalse(jsonArray.isFrozen());
+        assertTrue(jsonArray.similar(frozen));
+        assertEquals(jsonArray.toString(), frozen.toString());
+        assertTrue(frozen.getJSONArray(2).isFrozen());
+        assertTrue(frozen.getJSONObject(3).isFrozen());
+        assertEquals(Arrays.asList(1, "two", Arrays.asList(3), Collections.singletonMap("four", 4), null),
+                frozen.toList());
+        try {
+            frozen.put(6, "past the end");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The JSONArray is frozen", e.getMessage());
+        }
+        try {
+            Iterator<Object> iterator = frozen.iterator();
+            iterator.next();
+            iterator.remove();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The JSONArray is frozen", e.getMessage());
+        }
+        JSONArray copy = new JSONArray(frozen);
+        copy.put(6);
+        assertEquals(6, copy.length());
+        assertEquals(5, frozen.length());
+    }
+
+    /**
+     * Tests that with() makes changed copies that leave the JSONArray they
+     * were made from as it was.
+     */
+    @Test
+    public void with() {
+        JSONArray jsonArray = new JSONArray("[1, [2]]");
+        JSONArray changed = jsonArray.with(3).with(0, "one").with(5, Collections.singletonMap("six", 6));
+        assertTrue(changed.isFrozen());
+        assertFalse(jsonArray.isFrozen());
+        assertTrue(new JSONArray("[1, [2]]").similar(jsonArray));
+        assertTrue(new JSONArray("[\"one\", [2], 3, null, null, {\"six\": 6}]").similar(changed));
+        assertTrue(changed.getJSONArray(1).isFrozen());
+        assertTrue(changed.getJSONObject(5).isFrozen());
+        assertTrue(changed.getJSONArray(1) == changed.with(7).getJSONArray(1));
+        try {
+            changed.put(7);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The JSONArray is frozen", e.getMessage());
+        }
+        try {
+            changed.with(-1, 7);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONArray[-1] not found.", e.getMessage());
+        }
+
+        // enough elements for several levels of the trie
+        List<Object> expected = new ArrayList<Object>();
+        JSONArray persistent = new JSONArray();
+        List<JSONArray> versions = new ArrayList<JSONArray>();
+        List<List<Object>> expectedVersions = new ArrayList<List<Object>>();
+        for (int i = 0; i < 40000; i++) {
+            persistent = persistent.with(i);
+            expected.add(i);
+            if (i % 7 == 0) {
+                int index = (i * 31) % expected.size();
+                persistent = persistent.with(index, -i);
+                expected.set(index, -i);
+            }
+            if (i % 1500 == 0 || i == 32 || i == 1056) {
+                versions.add(persistent);
+                expectedVersions.add(new ArrayList<Object>(expected));
+            }
+        }
+        versions.add(persistent);
+        expectedVersions.add(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            JSONArray version = versions.get(v);
+            assertEquals(expectedVersions.get(v).size(), version.length());
+            for (int i = 0; i < version.length(); i++) {
+                assertEquals(expectedVersions.get(v).get(i), version.get(i));
+            }
+            assertEquals(expectedVersions.get(v), version.toList());
+        }
+    }
 }
@@ -0,0 +1,187 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.json.CDL;
+import org.json.JSONArray;
+import org.json.JSONColumns;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Tests for the columnar copy of a JSONArray of records.
+ */
+public class JSONColumnsTest {
+
+    private static final String RECORDS = "["
+            + "{\"id\":1,\"price\":9.99,\"ratio\":0.5,\"big\":1,\"name\":\"a\",\"ok\":true,\"mixed\":1,\"tags\":[1]},"
+            + "{\"id\":2,\"price\":10,\"name\":\"b\",\"ok\":false,\"mixed\":\"x\",\"extra\":null},"
+            + "{\"id\":3000000000,\"price\":null,\"ratio\":2,\"big\":12345678901234567890,\"name\":\"a\",\"ok\":null,\"mixed\":true}"
+            + "]";
+
+    private static JSONArray records() {
+        JSONArray rows = new JSONArray(RECORDS);
+        // a Double, as put by code rather than parsed
+        rows.getJSONObject(0).put("ratio", 0.5d);
+        return rows;
+    }
+
+    /**
+     * Every record made back into a JSONObject has the values it was made
+     * from, whatever kind of column holds them.
+     */
+    @Test
+    public void rowsRoundTrip() {
+        JSONArray rows = records();
+        JSONColumns columns = new JSONColumns(rows);
+        assertEquals(3, columns.length());
+        assertEquals(new HashSet<String>(Arrays.asList("id", "price", "ratio", "big", "name", "ok", "mixed", "tags",
+                "extra")), columns.keySet());
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject row = columns.getRow(i);
+            assertTrue(row.toString(), rows.getJSONObject(i).similar(row));
+            for (String key : row.keySet()) {
+                assertEquals(key, rows.getJSONObject(i).get(key).getClass(), row.get(key).getClass());
+            }
+        }
+        assertTrue(rows.similar(columns.toJSONArray()));
+
+        JSONColumns.Column ratio = columns.getColumn("ratio");
+        assertFalse(ratio.has(1));
+        assertTrue(ratio.isNull(1));
+        assertNull(ratio.opt(1));
+        assertEquals(Integer.valueOf(2), ratio.opt(2));
+        JSONColumns.Column extra = columns.getColumn("extra");
+        assertTrue(extra.has(1));
+        assertEquals(JSONObject.NULL, extra.opt(1));
+        assertEquals(0, extra.count());
+        assertNull(columns.optColumn("missing"));
+    }
+
+    @Test
+    public void scansAndAggregates() {
+        JSONColumns columns = new JSONColumns(records());
+        JSONColumns.Column id = columns.getColumn("id");
+        assertEquals(3000000003.0, id.sum(), 0);
+        assertEquals(3000000000L, id.getLong(2));
+        assertEquals(3, id.longs().count());
+        JSONColumns.Column price = columns.getColumn("price");
+        assertTrue(price.isNumeric());
+        assertEquals(2, price.count());
+        assertEquals(19.99, price.sum(), 1e-9);
+        assertEquals(9.99, price.min(), 0);
+        assertEquals(10, price.max(), 0);
+        assertEquals(9.995, price.average(), 1e-9);
+        assertEquals(new BigDecimal("9.99"), price.opt(0));
+        assertEquals(1.2345678901234567e19, columns.getColumn("big").max(), 1e5);
+        assertFalse(columns.getColumn("mixed").isNumeric());
+        assertTrue(Double.isNaN(columns.getColumn("extra").min()));
+
+        Map<Object, Integer> counts = columns.getColumn("name").valueCounts();
+        assertEquals(Integer.valueOf(2), counts.get("a"));
+        assertEquals(Integer.valueOf(1), counts.get("b"));
+        assertEquals(2, columns.getColumn("ok").valueCounts().size());
+        assertTrue(columns.getColumn("ok").getBoolean(0));
+        assertEquals("b", columns.getColumn("name").getString(1));
+    }
+
+    @Test
+    public void errors() {
+        JSONColumns columns = new JSONColumns(records());
+        try {
+            columns.getColumn("name").getDouble(0);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONColumns[\"name\"][0] is not a double.", e.getMessage());
+        }
+        try {
+            columns.getColumn("mixed").sum();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONColumns[\"mixed\"][1] is not a double.", e.getMessage());
+        }
+        try {
+            columns.getColumn("price").getDouble(2);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONColumns[\"price\"][2] is not a double.", e.getMessage());
+        }
+        try {
+            columns.getColumn("missing");
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONColumns[\"missing\"] not found.", e.getMessage());
+        }
+        try {
+            columns.getRow(3);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONColumns[3] not found.", e.getMessage());
+        }
+        try {
+            new JSONColumns(new JSONArray("[{}, 1]"));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSONArray[1] is not a JSONObject.", e.getMessage());
+        }
+    }
+
+    /**
+     * The sum of a column of CDL records is the sum of the field read from
+     * every row. Timings are in Benchmarks.columns().
+     */
+    @Test
+    public void sumLargeColumn() {
+        StringBuilder sb = new StringBuilder("id,region,amount\n");
+        for (int i = 0; i < 200000; i++) {
+            sb.append(i).append(",region").append(i % 10).append(',').append(i % 1000).append('\n');
+        }
+        JSONArray rows = CDL.toJSONArray(sb.toString());
+        JSONArray numbers = new JSONArray();
+        for (int i = 0; i < rows.length(); i++) {
+            numbers.put(new JSONObject().put("amount", rows.getJSONObject(i).getInt("amount")));
+        }
+
+        JSONColumns columns = new JSONColumns(numbers);
+        double rowSum = 0;
+        for (int i = 0; i < numbers.length(); i++) {
+            rowSum += numbers.getJSONObject(i).getDouble("amount");
+        }
+        assertEquals(rowSum, columns.getColumn("amount").sum(), 0);
+        assertEquals(10, new JSONColumns(rows).getColumn("region").valueCounts().size());
+    }
+}
@@ -0,0 +1,196 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONLines;
+import org.json.JSONLinesWriter;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for reading and writing JSON Lines.
+ */
+public class JSONLinesTest {
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private static JSONObject record(int i) {
+        return new JSONObject().put("id", i).put("name", "record " + i + " café")
+                .put("tags", new JSONArray().put("a").put("🍵"));
+    }
+
+    @Test
+    public void readLines() throws IOException {
+        String text = "{\"a\":1}\n\n  {\"a\":2}  \r\n{\"a\":{\"b\":[3]}}";
+        File file = this.testFolder.newFile("lines.ndjson");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        List<List<JSONObject>> results = Arrays.asList(
+                JSONLines.stream(new StringReader(text)).collect(Collectors.toList()),
+                JSONLines.stream(file.toPath()).collect(Collectors.toList()),
+                JSONLines.parallelStream(file.toPath()).collect(Collectors.toList()));
+        for (List<JSONObject> values : results) {
+            assertEquals(3, values.size());
+            assertEquals(1, values.get(0).getInt("a"));
+            assertEquals(2, values.get(1).getInt("a"));
+            assertEquals(3, values.get(2).getJSONObject("a").getJSONArray("b").getInt(0));
+        }
+        assertEquals(0, JSONLines.stream(new StringReader(" \n \n")).count());
+        Files.write(file.toPath(), new byte[0]);
+        assertEquals(0, JSONLines.parallelStream(file.toPath()).count());
+    }
+
+    @Test
+    public void readErrors() throws IOException {
+        String[] invalid = {"{\"a\":1} {\"b\":2}\n", "{\"a\":1}\n{\"b\"}\n", "[1]\n"};
+        File file = this.testFolder.newFile("invalid.ndjson");
+        for (String text : invalid) {
+            try {
+                JSONLines.stream(new StringReader(text)).count();
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            try {
+                JSONLines.parallelStream(file.toPath()).count();
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" in the line at offset "));
+            }
+        }
+    }
+
+    /**
+     * A JSONObject spread over several lines is rejected by every way of
+     * reading, as a record may not cross a line break.
+     */
+    @Test
+    public void recordAcrossLines() throws IOException {
+        String[] invalid = {"{\"a\":\n1}\n{\"b\":2}\n", "{\"a\":1}\n{\n\"b\":2}", "{\"a\":1,\r\n\"b\":2}\n"};
+        File file = this.testFolder.newFile("multiline.ndjson");
+        for (String text : invalid) {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            try {
+                JSONLines.stream(new StringReader(text)).count();
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" in line "));
+            }
+            try {
+                JSONLines.stream(file.toPath()).count();
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" in line "));
+            }
+            try {
+                JSONLines.parallelStream(file.toPath()).count();
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" in the line at offset "));
+            }
+        }
+        try {
+            JSONLines.stream(new StringReader("{\"a\":1}\n\n{\"b\"}\n")).count();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Expected a ':' after a key at 5 [character 6 line 1] in line 3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void writeLines() throws IOException {
+        JSONObject jsonObject = record(1);
+        JSONArray jsonArray = new JSONArray().put(1).put("café");
+        String expected = jsonObject.toString() + "\n" + jsonArray.toString() + "\n";
+
+        StringWriter writer = new StringWriter();
+        JSONLinesWriter lines = new JSONLinesWriter(writer);
+        lines.write(jsonObject).write(jsonArray);
+        assertEquals("nothing is handed on before a flush", "", writer.toString());
+        lines.flush();
+        assertEquals(expected, writer.toString());
+        lines.close();
+        lines.close();
+        try {
+            lines.write(jsonObject);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("The JSONLinesWriter is closed", e.getMessage());
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (JSONLinesWriter streamLines = new JSONLinesWriter(stream)) {
+            streamLines.write(jsonObject).write(jsonArray);
+        }
+        assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The parallel stream sees the lines in their order, whatever parts they
+     * were parsed in. Timings are in Benchmarks.jsonLines().
+     */
+    @Test
+    public void parallelMatchesSequential() throws IOException {
+        File file = this.testFolder.newFile("records.ndjson");
+        final int count = 100000;
+        try (JSONLinesWriter lines = new JSONLinesWriter(new FileOutputStream(file))) {
+            for (int i = 0; i < count; i++) {
+                lines.write(record(i));
+            }
+        }
+
+        List<JSONObject> sequential = JSONLines.stream(file.toPath()).collect(Collectors.toList());
+        List<JSONObject> parallel = JSONLines.parallelStream(file.toPath()).collect(Collectors.toList());
+
+        assertEquals(count, sequential.size());
+        assertEquals(count, parallel.size());
+        for (int i = 0; i < count; i += 997) {
+            assertTrue(record(i).similar(sequential.get(i)));
+            assertTrue(record(i).similar(parallel.get(i)));
+        }
+        assertEquals(count - 1, parallel.get(count - 1).getInt("id"));
+    }
+}
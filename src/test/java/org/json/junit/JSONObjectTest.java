@@ -24,6 +24,7 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
@@ -34,12 +35,19 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -48,6 +56,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -56,6 +65,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONPointerException;
+import org.json.JSONString;
 import org.json.JSONTokener;
 import org.json.XML;
 import org.json.junit.data.BrokenToString;
@@ -3230,4 +3240,592 @@ public class JSONObjectTest {
         assertTrue("expected jsonObject.length() == 0", jsonObject.length() == 0); //Check if its length is 0
         jsonObject.getInt("key1"); //Should throws org.json.JSONException: JSONObject["asd"] not found
     }
+
+    /**
+     * A lazily parsed JSONObject has the same values as one parsed eagerly.
+     */
+    @Test
+    public void lazyParseMatchesEager() {
+        String source = "{\"name\":\"caf\\u00e9 \\\"bar\\\"\", 'single': 'quoted', unquoted: hello world,"
+                + " \"int\": 42, \"decimal\": -1.5e3, \"flag\" : true, \"none\": null,"
+                + " \"nested\": {\"deeper\": {\"list\": [1, \"two\", {\"three\": 3}]}, \"empty\": {}},"
+                + " \"array\": [[], [\"]\", \"}\"], {\"k\": \"v\"}]; \"last\": 'x',}";
+        JSONObject eager = new JSONObject(source);
+        JSONObject lazy = new JSONObject(source, true);
+        assertEquals(eager.keySet(), lazy.keySet());
+        assertEquals("café \"bar\"", lazy.getString("name"));
+        assertEquals("quoted", lazy.getString("single"));
+        assertEquals("hello world", lazy.getString("unquoted"));
+        assertEquals(42, lazy.get("int"));
+        assertEquals(eager.get("decimal"), lazy.get("decimal"));
+        assertEquals(Boolean.TRUE, lazy.get("flag"));
+        assertEquals(JSONObject.NULL, lazy.get("none"));
+        assertEquals(3, lazy.query("/nested/deeper/list/2/three"));
+        assertEquals("}", lazy.getJSONArray("array").getJSONArray(1).getString(1));
+        assertEquals("x", lazy.remove("last"));
+        eager.remove("last");
+        assertTrue(eager.similar(lazy));
+        assertTrue(lazy.similar(eager));
+        assertTrue(new JSONObject(source).similar(new JSONObject(source, false)));
+        assertTrue(new JSONObject(source).toMap().equals(new JSONObject(source, true).toMap()));
+    }
+
+    /**
+     * Values that have not been asked for are written as they appear in the
+     * source when they are strict JSON, and as JSONObject writes them otherwise.
+     */
+    @Test
+    public void lazyParseToString() {
+        JSONObject lazy = new JSONObject("{\"a\": {\"x\" : 1.50, \"y\": [true, null]}}", true);
+        assertEquals("{\"a\":{\"x\" : 1.50, \"y\": [true, null]}}", lazy.toString());
+        assertEquals("{\"a\": {\n  \"x\": 1.50,\n  \"y\": [\n    true,\n    null\n  ]\n}}", lazy.toString(2));
+        lazy.getJSONObject("a").put("z", 1);
+        assertTrue(new JSONObject("{\"a\":{\"x\":1.50,\"y\":[true,null],\"z\":1}}").similar(new JSONObject(lazy.toString())));
+
+        lazy = new JSONObject("{\"a\": 'single', \"b\": [1,], \"c\": {d: 1}, \"e\": \"\\u00e9\\n\", \"f\": 01}", true);
+        JSONObject reparsed = new JSONObject(lazy.toString());
+        assertEquals("single", reparsed.getString("a"));
+        assertEquals("[1]", reparsed.getJSONArray("b").toString());
+        assertEquals("{\"d\":1}", reparsed.getJSONObject("c").toString());
+        assertTrue(lazy.toString().contains("\"e\":\"\\u00e9\\n\""));
+        assertEquals("01", reparsed.get("f"));
+    }
+
+    @Test
+    public void lazyParseErrors() {
+        String[] malformed = {"[]", "{\"a\" 1}", "{\"a\": 1, \"a\": 2}", "{\"a\": [1, 2}", "{\"a\": \"b}",
+            "{\"a\": {\"b\": 1}", "{\"a\":}"};
+        for (String source : malformed) {
+            try {
+                new JSONObject(source, true);
+                fail("Expected JSONException for " + source);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+        }
+        // errors inside a value are found when it is decoded
+        JSONObject lazy = new JSONObject("{\"ok\": 1, \"bad\": [1 : 2], \"dup\": {\"x\": 1, \"x\": 2}}", true);
+        assertEquals(1, lazy.getInt("ok"));
+        try {
+            lazy.get("bad");
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Expected a ',' or ']' at 4 [character 5 line 1]", e.getMessage());
+        }
+        try {
+            lazy.get("dup");
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Duplicate key \"x\" at 46 [character 47 line 1]", e.getMessage());
+        }
+        // an untouched value with a duplicate key is not copied out as it is
+        String[] duplicates = {"{\"dup\": {\"x\": 1, \"x\": 2}}", "{\"dup\": [{\"y\": {\"x\": 1, \"x\": 2}}]}",
+            "{\"dup\": {\"\\u0078\": 1, \"x\": 2}}"};
+        for (String source : duplicates) {
+            lazy = new JSONObject(source, true);
+            try {
+                lazy.write(new StringWriter());
+                fail("Expected JSONException for " + source);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("dup"));
+            }
+            assertNull(lazy.toString());
+        }
+        lazy = new JSONObject("{\"a\": {\"\\u0078\": 1, \"y\": {\"x\":1}}}", true);
+        assertEquals("{\"a\":{\"x\":1,\"y\":{\"x\":1}}}", lazy.toString());
+    }
+
+    /**
+     * Reading a lazy object decodes its values without changing its map, so
+     * several threads may read it at once, and all of them get the same
+     * decoded values.
+     */
+    @Test
+    public void lazyParseSharedByThreads() throws InterruptedException {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 500; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"key").append(i).append("\":{\"id\":").append(i).append('}');
+        }
+        final JSONObject lazy = new JSONObject(sb.append('}').toString(), true);
+        final JSONObject[] first = new JSONObject[500];
+        final AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 125;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int k = (i + offset) % 500;
+                    JSONObject value = lazy.getJSONObject("key" + k);
+                    synchronized (first) {
+                        if (first[k] == null) {
+                            first[k] = value;
+                        } else if (first[k] != value) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                    if (value.getInt("id") != k) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+        assertTrue(lazy.getJSONObject("key7") == lazy.getJSONObject("key7"));
+        lazy.getJSONObject("key7").put("changed", true);
+        assertTrue(lazy.toMap().toString().contains("changed=true"));
+        assertTrue(new JSONObject(lazy.toString()).getJSONObject("key7").getBoolean("changed"));
+    }
+
+    /**
+     * Reading a few members of a large object decodes them as an eager parse
+     * would, and the untouched members are written out unchanged. Timings are
+     * in Benchmarks.lazyParse().
+     */
+    @Test
+    public void lazyParseLargeObject() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"key").append(i).append("\":{\"id\":").append(i)
+                    .append(",\"name\":\"record number ").append(i).append("\",\"tags\":[\"a\",\"b\",\"c\"],\"score\":")
+                    .append(i * 1.5).append('}');
+        }
+        sb.append('}');
+        String source = sb.toString();
+
+        String eagerName = new JSONObject(source).getJSONObject("key1000").getString("name");
+        String lazyName = new JSONObject(source, true).getJSONObject("key1000").getString("name");
+        assertEquals("record number 1000", lazyName);
+        assertEquals(eagerName, lazyName);
+        assertEquals(source.length(), new JSONObject(source, true).toString().length());
+    }
+
+    /**
+     * When a write fails and the destination then fails too, the error of the
+     * write is thrown, with that of the destination suppressed.
+     */
+    @Test
+    public void writeFailureKeepsError() {
+        JSONObject jsonObject = new JSONObject().put("a", 1).put("broken", new JSONString() {
+            @Override
+            public String toJSONString() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        Writer writer = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        OutputStream stream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("closed");
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                if (i == 0) {
+                    jsonObject.write(writer, 0, 0);
+                } else {
+                    jsonObject.write(stream, 0, 0);
+                }
+                fail("Expected JSONException");
+            } catch (JSONException e) {
+                assertEquals("Unable to write JSONObject value for key: broken", e.getMessage());
+                assertEquals(1, e.getSuppressed().length);
+                assertEquals("closed", e.getSuppressed()[0].getCause().getMessage());
+            }
+        }
+        JSONArray jsonArray = new JSONArray().put(jsonObject);
+        try {
+            jsonArray.write(writer, 0, 0);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+    }
+
+    /**
+     * Writing UTF-8 to a stream gives the bytes of toString, with surrogate pairs
+     * falling across the blocks the text is encoded in.
+     */
+    @Test
+    public void writeUTF8Stream() throws IOException {
+        for (int pad = 8180; pad < 8200; pad++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < pad; i++) {
+                sb.append('x');
+            }
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("a", sb.toString() + "🍵 café 漢 lone \ud83c x \udf75");
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            assertTrue(stream == jsonObject.write(stream, 0, 0));
+            assertArrayEquals(jsonObject.toString().getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+        }
+        JSONObject nested = new JSONObject("{\"a\":{\"b\":[1,{\"c\":\"é\"}],\"d\":true}}");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        nested.write(stream, 3, 2);
+        assertEquals(nested.toString(3).replace("\n", "\n  "), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * UTF-8 bytes made in a pooled buffer are those of toString(), including
+     * texts longer than a block and nested calls that need a second buffer.
+     */
+    @Test
+    public void toUTF8Bytes() {
+        for (int pad = 8180; pad < 8200; pad++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < pad; i++) {
+                sb.append('x');
+            }
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("a", sb.toString() + "🍵 café 漢 lone \ud83c x \udf75");
+            assertArrayEquals(jsonObject.toString().getBytes(StandardCharsets.UTF_8), jsonObject.toUTF8Bytes());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            sb.append("é漢");
+        }
+        JSONObject large = new JSONObject().put("large", sb.toString()).put("n", 1);
+        assertArrayEquals(large.toString().getBytes(StandardCharsets.UTF_8), large.toUTF8Bytes());
+        assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8), new JSONObject().toUTF8Bytes());
+
+        final JSONObject inner = new JSONObject().put("inner", "🍵");
+        JSONObject outer = new JSONObject().put("outer", new JSONString() {
+            @Override
+            public String toJSONString() {
+                return new String(inner.toUTF8Bytes(), StandardCharsets.UTF_8);
+            }
+        });
+        assertEquals("{\"outer\":{\"inner\":\"🍵\"}}", new String(outer.toUTF8Bytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeToStreamAndBuffer() {
+        JSONObject jsonObject = new JSONObject("{\"a\":{\"b\":[1,{\"c\":\"é\"}],\"d\":true}}");
+        byte[] expected = jsonObject.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        assertTrue(stream == jsonObject.writeTo(stream));
+        assertArrayEquals(expected, stream.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.put((byte) '!');
+        assertTrue(buffer == jsonObject.writeTo(buffer));
+        assertEquals(1 + expected.length, buffer.position());
+        byte[] written = new byte[expected.length];
+        buffer.flip();
+        buffer.get();
+        buffer.get(written);
+        assertArrayEquals(expected, written);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+        jsonObject.writeTo(direct);
+        assertFalse(direct.hasRemaining());
+
+        ByteBuffer small = ByteBuffer.allocate(expected.length - 1);
+        try {
+            jsonObject.writeTo(small);
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+            assertEquals("nothing should be put", 0, small.position());
+        }
+    }
+
+    /**
+     * Indentation deeper than the block of spaces it is copied from.
+     */
+    @Test
+    public void writeDeepIndentation() {
+        JSONObject jsonObject = new JSONObject();
+        JSONObject inner = jsonObject;
+        for (int i = 0; i < 40; i++) {
+            JSONObject next = new JSONObject();
+            inner.put("k", next);
+            inner.put("v", i);
+            inner = next;
+        }
+        String text = jsonObject.toString(10);
+        assertTrue(text.contains("\n" + new String(new char[400]).replace('\0', ' ') + "\"v\": 39"));
+        assertTrue(jsonObject.similar(new JSONObject(text)));
+    }
+
+    /**
+     * Pretty printing a large object to a stream gives the bytes written through
+     * a Writer, and toUTF8Bytes gives the bytes of toString. Timings are in
+     * Benchmarks.write() and Benchmarks.toUTF8Bytes().
+     */
+    @Test
+    public void writeLargeObject() throws IOException {
+        JSONArray records = new JSONArray();
+        for (int i = 0; i < 20000; i++) {
+            records.put(new JSONObject().put("id", i).put("name", "record " + i)
+                    .put("tags", new JSONArray().put("a").put("b")));
+        }
+        JSONObject jsonObject = new JSONObject().put("records", records);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        jsonObject.write(writer, 2, 0);
+        writer.flush();
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        jsonObject.write(direct, 2, 0);
+        assertArrayEquals(bytes.toByteArray(), direct.toByteArray());
+
+        assertArrayEquals(jsonObject.toString().getBytes(StandardCharsets.UTF_8), jsonObject.toUTF8Bytes());
+    }
+
+    /**
+     * The parallel write gives the text of the sequential write, for large
+     * members of objects, large elements of arrays and single member
+     * containers. Timings are in Benchmarks.writeParallel().
+     */
+    @Test
+    public void writeParallel() throws IOException {
+        JSONArray data = new JSONArray();
+        for (int i = 0; i < 50000; i++) {
+            data.put(new JSONObject().put("id", i).put("name", "record " + i + " café 🍵")
+                    .put("values", new JSONArray().put(i * 0.5).put(true).put(JSONObject.NULL)));
+        }
+        JSONObject index = new JSONObject();
+        for (int i = 0; i < 10000; i++) {
+            index.put("key" + i, new JSONArray().put(i));
+        }
+        JSONArray nested = new JSONArray().put(new JSONArray(Collections.nCopies(10000, 1))).put("small")
+                .put(new JSONObject().put("only", new JSONArray(Collections.nCopies(10000, "x"))));
+        JSONObject jsonObject = new JSONObject().put("data", data).put("index", index)
+                .put("nested", nested).put("empty", new JSONArray()).put("name", "value");
+
+        for (int indentFactor : new int[] {0, 2}) {
+            String expected = jsonObject.toString(indentFactor);
+            assertEquals(expected, jsonObject.writeParallel(new StringWriter(), indentFactor, 0).toString());
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            jsonObject.writeParallel(stream, indentFactor, 0);
+            assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+        }
+        JSONObject small = new JSONObject().put("a", new JSONArray().put(1));
+        assertEquals(small.toString(), small.writeParallel(new StringWriter(), 0, 0).toString());
+
+        JSONObject broken = new JSONObject().put("data", data).put("broken", new JSONString() {
+            @Override
+            public String toJSONString() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        try {
+            broken.writeParallel(new StringWriter(), 0, 0);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Unable to write JSONObject value for key: broken", e.getMessage());
+        }
+
+        byte[] sequential = jsonObject.toUTF8Bytes();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(sequential.length);
+        jsonObject.writeParallel(stream, 0, 0);
+        assertArrayEquals(sequential, stream.toByteArray());
+    }
+
+    /**
+     * A frozen copy has the values of the original, refuses every change, and
+     * is not affected by changes to the original.
+     */
+    @Test
+    public void freeze() throws InterruptedException {
+        Map<String, Object> rawMap = new HashMap<String, Object>();
+        rawMap.put("raw", Arrays.asList(1, 2));
+        JSONObject jsonObject = new JSONObject("{\"a\":[1,{\"b\":2}],\"c\":\"d\",\"e\":null}")
+                .put("map", (Object) rawMap).put("ints", (Object) new int[] {3, 4});
+        for (int i = 0; i < 100; i++) {
+            jsonObject.put("key" + i, i);
+        }
+        JSONObject frozen = jsonObject.freeze();
+        assertFalse(jsonObject.isFrozen());
+        assertTrue(frozen.isFrozen());
+        assertTrue(frozen == frozen.freeze());
+        assertTrue(jsonObject.optJSONArray("a").similar(frozen.getJSONArray("a")));
+        assertEquals("Maps and arrays are made JSON values with the same text",
+                jsonObject.toString(), frozen.toString());
+        assertTrue("the text is kept", frozen.toString() == frozen.toString());
+        assertEquals(jsonObject.length(), frozen.length());
+        assertEquals(99, frozen.getInt("key99"));
+        assertFalse(frozen.has("key100"));
+        assertNull(frozen.opt("missing"));
+        assertTrue(frozen.getJSONArray("a").isFrozen());
+        assertTrue(frozen.getJSONArray("a").getJSONObject(1).isFrozen());
+        assertTrue(frozen.getJSONObject("map").getJSONArray("raw").isFrozen());
+        assertEquals(4, frozen.getJSONArray("ints").getInt(1));
+
+        jsonObject.put("c", "changed");
+        jsonObject.getJSONArray("a").put(5);
+        assertEquals("d", frozen.getString("c"));
+        assertEquals(2, frozen.getJSONArray("a").length());
+
+        Runnable[] changes = {
+            () -> frozen.put("c", 1),
+            () -> frozen.put("new", "value"),
+            () -> frozen.remove("c"),
+            () -> frozen.clear(),
+            () -> frozen.increment("key1"),
+            () -> frozen.increment("c"),
+            () -> frozen.increment("a"),
+            () -> frozen.increment("missing"),
+            () -> frozen.with("n", 1).increment("n"),
+            () -> frozen.keySet().remove("c"),
+            () -> frozen.getJSONArray("a").put(1),
+            () -> frozen.getJSONArray("a").remove(0),
+            () -> frozen.getJSONArray("a").getJSONObject(1).put("b", 3),
+        };
+        for (Runnable change : changes) {
+            try {
+                change.run();
+                fail("Expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith(" is frozen"));
+            }
+        }
+        assertFalse(jsonObject.freeze().similar(frozen));
+
+        JSONObject copy = new JSONObject(frozen, JSONObject.getNames(frozen));
+        copy.put("c", "copy");
+        assertFalse(copy.isFrozen());
+        assertEquals("d", frozen.getString("c"));
+
+        final String expected = frozen.toString();
+        final AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (frozen.getInt("key" + (i % 100)) != i % 100 || !expected.equals(frozen.toString())) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+    }
+
+    /**
+     * Tests that with() and without() make changed copies that leave the
+     * JSONObject they were made from as it was.
+     */
+    @Test
+    public void with() {
+        JSONObject jsonObject = new JSONObject("{\"a\":1,\"b\":{\"c\":2}}");
+        JSONObject changed = jsonObject.with("a", 3).with("d", Arrays.asList(4, 5));
+        assertTrue(changed.isFrozen());
+        assertFalse(jsonObject.isFrozen());
+        assertEquals(1, jsonObject.getInt("a"));
+        assertFalse(jsonObject.has("d"));
+        assertEquals(3, changed.getInt("a"));
+        assertTrue(changed.getJSONArray("d").isFrozen());
+        assertTrue(changed.getJSONObject("b").isFrozen());
+        assertEquals(3, changed.length());
+        assertTrue(new JSONObject("{\"a\":3,\"b\":{\"c\":2},\"d\":[4,5]}").similar(changed));
+        JSONObject removed = changed.without("b").with("a", null);
+        assertEquals(1, removed.length());
+        assertEquals(3, changed.length());
+        assertTrue(changed.getJSONObject("b") == changed.with("e", true).getJSONObject("b"));
+        try {
+            changed.put("a", 1);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The JSONObject is frozen", e.getMessage());
+        }
+        try {
+            changed.with(null, 1);
+            fail("Expected NullPointerException");
+        } catch (NullPointerException e) {
+            assertEquals("Null key.", e.getMessage());
+        }
+        try {
+            changed.with("nan", Double.NaN);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("JSON does not allow non-finite numbers.", e.getMessage());
+        }
+
+        // keys whose hashes are equal, and enough keys for several levels of the trie
+        String[] keys = new String[3000];
+        for (int i = 0; i < 16; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 4; bit++) {
+                key.append((i & (1 << bit)) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = key.toString();
+        }
+        for (int i = 16; i < keys.length; i++) {
+            keys[i] = "key" + i;
+        }
+        Random random = new Random(42);
+        Map<String, Object> expected = new HashMap<String, Object>();
+        JSONObject persistent = new JSONObject();
+        List<JSONObject> versions = new ArrayList<JSONObject>();
+        List<Map<String, Object>> expectedVersions = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 20000; i++) {
+            String key = keys[random.nextInt(i < 5000 ? 16 : keys.length)];
+            if (random.nextInt(4) == 0) {
+                persistent = persistent.without(key);
+                expected.remove(key);
+            } else {
+                persistent = persistent.with(key, i);
+                expected.put(key, i);
+            }
+            if (i % 1000 == 0) {
+                versions.add(persistent);
+                expectedVersions.add(new HashMap<String, Object>(expected));
+            }
+        }
+        versions.add(persistent);
+        expectedVersions.add(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            assertEquals(expectedVersions.get(v), versions.get(v).toMap());
+            assertEquals(expectedVersions.get(v).size(), versions.get(v).length());
+            for (String key : keys) {
+                assertEquals(expectedVersions.get(v).get(key), versions.get(v).opt(key));
+            }
+        }
+        for (String key : keys) {
+            persistent = persistent.without(key);
+        }
+        assertTrue(persistent.isEmpty());
+        assertEquals("{}", persistent.toString());
+    }
+
+    /**
+     * Changing members of a large JSONObject with with() gives the values of
+     * a copy changed with put(). Timings are in Benchmarks.with().
+     */
+    @Test
+    public void withLargeObject() {
+        JSONObject jsonObject = new JSONObject();
+        for (int i = 0; i < 100000; i++) {
+            jsonObject.put("key" + i, i);
+        }
+        JSONObject copy = new JSONObject(jsonObject, JSONObject.getNames(jsonObject));
+        JSONObject persistent = jsonObject.freeze();
+        for (int i = 0; i < 100; i++) {
+            copy.put("key" + i, -i);
+            persistent = persistent.with("key" + i, -i);
+        }
+        assertTrue(copy.similar(persistent));
+        assertEquals(1, jsonObject.getInt("key1"));
+    }
 }
@@ -0,0 +1,262 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONPath;
+import org.json.JSONTokener;
+import org.json.XMLParserConfiguration;
+import org.junit.Test;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Tests for JSONPath queries on documents, tokeners and XML.
+ */
+public class JSONPathTest {
+
+    private static final String STORE = "{\"store\":{"
+            + "\"book\":["
+            + "{\"category\":\"reference\",\"author\":\"Nigel Rees\",\"title\":\"Sayings of the Century\",\"price\":8.95},"
+            + "{\"category\":\"fiction\",\"author\":\"Evelyn Waugh\",\"title\":\"Sword of Honour\",\"price\":12.99},"
+            + "{\"category\":\"fiction\",\"author\":\"Herman Melville\",\"title\":\"Moby Dick\",\"isbn\":\"0-553-21311-3\",\"price\":8.99},"
+            + "{\"category\":\"fiction\",\"author\":\"J. R. R. Tolkien\",\"title\":\"The Lord of the Rings\",\"isbn\":\"0-395-19395-8\",\"price\":22.99}"
+            + "],"
+            + "\"bicycle\":{\"color\":\"red\",\"price\":19.95}"
+            + "},"
+            + "\"expensive\":10}";
+
+    private static final JSONObject document = new JSONObject(STORE);
+
+    private static JSONArray query(String path) {
+        return new JSONPath(path).queryFrom(document);
+    }
+
+    private static List<Object> stream(String path) {
+        return new JSONPath(path).stream(new JSONTokener(STORE)).collect(Collectors.toList());
+    }
+
+    /**
+     * Compares the number of results with those of the jayway implementation.
+     */
+    private static void assertSameCount(String path) {
+        Object doc = Configuration.defaultConfiguration().jsonProvider().parse(STORE);
+        List<?> expected = JsonPath.read(doc, path);
+        assertEquals(path, expected.size(), query(path).length());
+        assertEquals(path, expected.size(), stream(path).size());
+    }
+
+    @Test
+    public void rootAndNames() {
+        assertEquals(1, query("$").length());
+        assertTrue(document.similar(query("$").get(0)));
+        assertEquals("red", query("$.store.bicycle.color").get(0));
+        assertEquals("red", query("$['store']['bicycle']['color']").get(0));
+        assertEquals(0, query("$.store.car").length());
+        assertEquals(0, query("$.expensive.value").length());
+    }
+
+    @Test
+    public void arrays() {
+        assertEquals("Moby Dick", query("$.store.book[2].title").get(0));
+        assertEquals("The Lord of the Rings", query("$.store.book[-1].title").get(0));
+        assertEquals(new JSONArray("[\"Nigel Rees\",\"Herman Melville\"]").toString(),
+                query("$.store.book[0,2].author").toString());
+        assertEquals(new JSONArray("[\"Evelyn Waugh\",\"Herman Melville\"]").toString(),
+                query("$.store.book[1:3].author").toString());
+        assertEquals(new JSONArray("[\"Nigel Rees\",\"Herman Melville\"]").toString(),
+                query("$.store.book[::2].author").toString());
+        assertEquals(new JSONArray("[\"Herman Melville\",\"J. R. R. Tolkien\"]").toString(),
+                query("$.store.book[-2:].author").toString());
+        assertEquals(0, query("$.store.book[7]").length());
+    }
+
+    @Test
+    public void wildcardsAndDescendants() {
+        assertSameCount("$.store.book[*].author");
+        assertSameCount("$..author");
+        assertSameCount("$.store.*");
+        assertSameCount("$.store..price");
+        assertSameCount("$..book[2]");
+        assertSameCount("$..*");
+        assertEquals(new JSONArray("[\"Nigel Rees\",\"Evelyn Waugh\",\"Herman Melville\",\"J. R. R. Tolkien\"]")
+                .toString(), query("$..author").toString());
+    }
+
+    @Test
+    public void filters() {
+        assertEquals(new JSONArray("[\"Sayings of the Century\",\"Moby Dick\"]").toString(),
+                query("$..book[?(@.price < 10)].title").toString());
+        assertEquals(new JSONArray("[\"Moby Dick\",\"The Lord of the Rings\"]").toString(),
+                query("$..book[?(@.isbn)].title").toString());
+        assertEquals(new JSONArray("[\"Sayings of the Century\",\"Sword of Honour\"]").toString(),
+                query("$..book[?(!@.isbn)].title").toString());
+        assertEquals(new JSONArray("[\"Moby Dick\"]").toString(),
+                query("$..book[?(@.category == 'fiction' && @.price <= 8.99)].title").toString());
+        assertEquals(new JSONArray("[\"Sayings of the Century\",\"The Lord of the Rings\"]").toString(),
+                query("$..book[?(@.category != \"fiction\" || @.price > 20)].title").toString());
+        assertEquals("[12.99,22.99]", query("$.store.book[?(@.price >= 12.99)].price").toString());
+        assertEquals("[5,10]", new JSONPath("$[?(@ > 2)]").queryFrom(new JSONArray("[1,5,10]")).toString());
+        assertSameCount("$..book[?(@.price < 10)].title");
+        assertSameCount("$..book[?(@.isbn)]");
+    }
+
+    @Test
+    public void streamMatchesTree() {
+        String[] paths = {"$", "$.store.book[*].author", "$.store.book[-1]", "$..price", "$..book[1:]",
+            "$..book[?(@.price < 10)].title", "$.store.*", "$..*", "$.expensive"};
+        for (String path : paths) {
+            // members of a JSONObject are not kept in the order of the text
+            assertEquals(path, sorted(query(path)), sorted(stream(path)));
+        }
+    }
+
+    private static List<String> sorted(Iterable<Object> values) {
+        List<String> sorted = new ArrayList<String>();
+        for (Object value : values) {
+            // the text of a container depends on the order of its members
+            sorted.add(value instanceof JSONObject || value instanceof JSONArray
+                    ? "JSON of length " + value.toString().length() : String.valueOf(value));
+        }
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Streaming over a tokener only reads as far as the values consumed.
+     */
+    @Test
+    public void streamIsLazy() {
+        StringBuilder sb = new StringBuilder("{\"records\":[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"tags\":[\"a\",\"b\"],\"name\":\"record ").append(i).append("\"}");
+        }
+        sb.append("]}");
+        final AtomicInteger charsRead = new AtomicInteger();
+        Reader reader = new FilterReader(new StringReader(sb.toString())) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                if (n > 0) {
+                    charsRead.addAndGet(n);
+                }
+                return n;
+            }
+        };
+        Object name = new JSONPath("$.records[?(@.id == 3)].name").stream(new JSONTokener(reader))
+                .findFirst().get();
+        assertEquals("record 3", name);
+        assertTrue("only the start of the document should be read", charsRead.get() < sb.length() / 2);
+    }
+
+    @Test
+    public void streamXML() {
+        String xmlStr = "<catalog>"
+                + "<book id=\"bk101\"><author>Gambardella</author><price>44.95</price></book>"
+                + "<magazine><title>Monthly</title></magazine>"
+                + "<book id=\"bk102\"><author>Ralls</author><price>5.95</price></book>"
+                + "<book id=\"bk103\"><author>Corets</author><price>5.95</price></book>"
+                + "</catalog>";
+        assertEquals(3, new JSONPath("$.catalog.book").streamXML(new StringReader(xmlStr)).count());
+        assertEquals("[\"Gambardella\",\"Ralls\",\"Corets\"]", new JSONArray(new JSONPath("$.catalog.book.author")
+                .streamXML(new StringReader(xmlStr)).collect(Collectors.toList())).toString());
+        assertEquals("[\"Ralls\",\"Corets\"]", new JSONArray(new JSONPath("$.catalog.book[?(@.price < 10)].author")
+                .streamXML(new StringReader(xmlStr)).collect(Collectors.toList())).toString());
+        assertEquals("[\"bk102\"]", new JSONArray(new JSONPath("$.catalog.book[1].id")
+                .streamXML(new StringReader(xmlStr)).collect(Collectors.toList())).toString());
+        // counting from the end needs the whole document
+        assertEquals("[\"bk103\"]", new JSONArray(new JSONPath("$.catalog.book[-1].id")
+                .streamXML(new StringReader(xmlStr)).collect(Collectors.toList())).toString());
+        assertEquals("[\"Monthly\"]", new JSONArray(new JSONPath("$..title")
+                .streamXML(new StringReader(xmlStr)).collect(Collectors.toList())).toString());
+    }
+
+    /**
+     * A key transformer renames the members the expression matches, but the
+     * elements are still streamed one by one.
+     */
+    @Test
+    public void streamXMLWithKeyTransformer() {
+        String xmlStr = "<catalog>"
+                + "<book id=\"bk101\"><author>Gambardella</author><price>44.95</price></book>"
+                + "<magazine><title>Monthly</title></magazine>"
+                + "<book id=\"bk102\"><author>Ralls</author><price>5.95</price></book>"
+                + "</catalog>";
+        XMLParserConfiguration config = XMLParserConfiguration.ORIGINAL.withKeyTransformer(key -> "x_" + key);
+        List<Object> books = new JSONPath("$.x_catalog.x_book").streamXML(new StringReader(xmlStr), config)
+                .collect(Collectors.toList());
+        assertEquals(2, books.size());
+        assertEquals("Gambardella", ((JSONObject) books.get(0)).get("x_author"));
+        assertEquals("bk102", ((JSONObject) books.get(1)).get("x_id"));
+        assertEquals("[\"Ralls\"]", new JSONArray(new JSONPath("$.x_catalog.x_book[?(@.x_price < 10)].x_author")
+                .streamXML(new StringReader(xmlStr), config).collect(Collectors.toList())).toString());
+        assertEquals("[\"bk102\"]", new JSONArray(new JSONPath("$.x_catalog.x_book[1].x_id")
+                .streamXML(new StringReader(xmlStr), config).collect(Collectors.toList())).toString());
+        assertEquals(0, new JSONPath("$.catalog.book").streamXML(new StringReader(xmlStr), config).count());
+    }
+
+    @Test
+    public void invalidExpressions() {
+        String[] paths = {"store", "$.", "$[", "$[?(@.a <)]", "$['a'", "$[::0]", "$.a b"};
+        for (String path : paths) {
+            try {
+                new JSONPath(path);
+                fail("Expected IllegalArgumentException for " + path);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith("in JSONPath " + path));
+            }
+        }
+    }
+
+    @Test
+    public void streamSyntaxError() {
+        try {
+            new JSONPath("$.b").stream(new JSONTokener("{\"a\":[1,2")).count();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Unclosed value at 9 [character 10 line 1]", e.getMessage());
+        }
+    }
+}
@@ -381,4 +381,222 @@ public class JSONPointerTest {
         obj = jsonArray.optQuery(new JSONPointer("/a/b/c"));
         assertTrue("Expected null", obj == null);
     }
+
+    /**
+     * Queries by string go through the pointer cache and must give the same
+     * results, including errors, as a freshly parsed pointer.
+     */
+    @Test
+    public void queryByStringRepeated() {
+        for (int i = 0; i < 3; i++) {
+            assertSame(document.getJSONArray("foo").get(0), document.query("/foo/0"));
+            assertSame(document.get("m~n"), document.query("/m~0n"));
+            assertSame(document.get("foo"), document.optQuery("#/foo"));
+            assertEquals(null, document.optQuery("/nonexistent"));
+            try {
+                document.query("/foo/a");
+                fail("Expected JSONPointerException");
+            } catch (JSONPointerException e) {
+                assertEquals("a is not an array index", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queries by string keep giving the right results once more distinct
+     * pointers have been used than the cache holds.
+     */
+    @Test
+    public void queryByStringAfterManyPointers() {
+        JSONObject jsonObject = new JSONObject();
+        for (int i = 0; i < 1000; i++) {
+            jsonObject.put("key" + i, i);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(Integer.valueOf(i), jsonObject.query("/key" + i));
+                assertSame(document.getJSONArray("foo").get(1), document.query("/foo/1"));
+            }
+        }
+    }
+
+    /**
+     * Reference tokens are array indexes where Integer.parseInt would read
+     * them as one, and keys otherwise.
+     */
+    @Test
+    public void queryByIndexTokens() {
+        JSONArray jsonArray = new JSONArray("[\"zero\", \"one\"]");
+        assertEquals("one", new JSONPointer("/1").queryFrom(jsonArray));
+        assertEquals("one", new JSONPointer("/+1").queryFrom(jsonArray));
+        assertEquals("one", new JSONPointer("/0001").queryFrom(jsonArray));
+        String[] notIndexes = {"", "-", "+", "1a", " 1", "2147483648", "-2147483649", "99999999999999999999"};
+        for (String token : notIndexes) {
+            try {
+                new JSONPointer("/" + token).queryFrom(jsonArray);
+                fail("Expected JSONPointerException");
+            } catch (JSONPointerException e) {
+                assertEquals(token + " is not an array index", e.getMessage());
+            }
+        }
+        try {
+            new JSONPointer("/2147483647").queryFrom(jsonArray);
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("index 2147483647 is out of bounds - the array has 2 elements", e.getMessage());
+        }
+        try {
+            new JSONPointer("/-1").queryFrom(jsonArray);
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("Error reading value at index position -1", e.getMessage());
+        }
+        JSONObject jsonObject = new JSONObject().put("12", "twelve").put("x", "ex");
+        assertEquals("twelve", new JSONPointer("/12").queryFrom(jsonObject));
+        assertEquals("ex", new JSONPointer("/x").queryFrom(jsonObject));
+    }
+
+    /**
+     * A parsed pointer, a new one and a query by string through the cache find
+     * the same values. Timings are in Benchmarks.pointer().
+     */
+    @Test
+    public void queryParsedOrByString() {
+        final String[] pointers = {"/obj/key", "/foo/1", "/a~1b", "/m~0n", "/obj/other~0key/another~1key/0", "/c%d"};
+        for (String pointer : pointers) {
+            JSONPointer parsed = new JSONPointer(pointer);
+            assertSame(parsed.queryFrom(document), document.query(pointer));
+            assertSame(query(pointer), document.query(pointer));
+        }
+    }
+
+    @Test
+    public void addSetRemoveOnObject() {
+        JSONObject jo = new JSONObject("{\"a\":{\"b\":1}}");
+        new JSONPointer("/a/c").add(jo, "x");
+        assertEquals("x", jo.query("/a/c"));
+        assertEquals(Integer.valueOf(1), new JSONPointer("/a/b").set(jo, Integer.valueOf(2)));
+        assertEquals(Integer.valueOf(2), jo.query("/a/b"));
+        assertEquals("x", new JSONPointer("/a/c").remove(jo));
+        assertTrue(new JSONObject("{\"a\":{\"b\":2}}").similar(jo));
+        try {
+            new JSONPointer("/a/c").remove(jo);
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("key c not found", e.getMessage());
+        }
+        try {
+            new JSONPointer("/x/y").add(jo, "z");
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("value [null] is not an array or object therefore its key y cannot be resolved",
+                    e.getMessage());
+        }
+        try {
+            new JSONPointer("").set(jo, "z");
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("the root of the document cannot be changed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void addSetRemoveOnArray() {
+        JSONObject jo = new JSONObject("{\"a\":[1,2,3]}");
+        new JSONPointer("/a/1").add(jo, "x");
+        new JSONPointer("/a/-").add(jo, "end");
+        assertTrue(new JSONArray("[1,\"x\",2,3,\"end\"]").similar(jo.get("a")));
+        assertEquals(Integer.valueOf(2), new JSONPointer("/a/2").set(jo, "y"));
+        assertEquals(Integer.valueOf(1), new JSONPointer("/a/0").remove(jo));
+        assertTrue(new JSONArray("[\"x\",\"y\",3,\"end\"]").similar(jo.get("a")));
+        try {
+            new JSONPointer("/a/5").add(jo, "z");
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("index 5 is out of bounds - the array has 4 elements", e.getMessage());
+        }
+        try {
+            new JSONPointer("/a/4").remove(jo);
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("index 4 is out of bounds - the array has 4 elements", e.getMessage());
+        }
+        try {
+            new JSONPointer("/a/b").set(jo, "z");
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("b is not an array index", e.getMessage());
+        }
+    }
+
+    @Test
+    public void applyPatch() {
+        JSONObject jo = new JSONObject("{\"foo\":{\"bar\":\"baz\",\"waldo\":\"fred\"},"
+                + "\"qux\":{\"corge\":\"grault\"},\"list\":[1,2]}");
+        JSONArray patch = new JSONArray("["
+                + "{\"op\":\"test\",\"path\":\"/foo/bar\",\"value\":\"baz\"},"
+                + "{\"op\":\"add\",\"path\":\"/foo/added\",\"value\":{\"n\":1}},"
+                + "{\"op\":\"replace\",\"path\":\"/foo/bar\",\"value\":\"boo\"},"
+                + "{\"op\":\"remove\",\"path\":\"/foo/waldo\"},"
+                + "{\"op\":\"move\",\"from\":\"/qux/corge\",\"path\":\"/foo/thud\"},"
+                + "{\"op\":\"copy\",\"from\":\"/foo/added\",\"path\":\"/list/1\"},"
+                + "{\"op\":\"add\",\"path\":\"/list/-\",\"value\":3},"
+                + "{\"op\":\"test\",\"path\":\"/list/2\",\"value\":2.0}"
+                + "]");
+        JSONPointer.applyPatch(jo, patch);
+        assertTrue(jo.toString(), new JSONObject("{\"foo\":{\"bar\":\"boo\",\"added\":{\"n\":1},"
+                + "\"thud\":\"grault\"},\"qux\":{},\"list\":[1,{\"n\":1},2,3]}").similar(jo));
+        // values are copied from the patch and between locations
+        jo.getJSONObject("foo").getJSONObject("added").put("n", 2);
+        assertEquals(Integer.valueOf(1), jo.query("/list/1/n"));
+        assertEquals(Integer.valueOf(1), patch.getJSONObject(1).query("/value/n"));
+    }
+
+    @Test
+    public void applyPatchFailures() {
+        JSONObject jo = new JSONObject("{\"a\":{\"b\":1}}");
+        try {
+            JSONPointer.applyPatch(jo, new JSONArray("[{\"op\":\"test\",\"path\":\"/a/b\",\"value\":2}]"));
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("test of /a/b failed: value is [1]", e.getMessage());
+        }
+        try {
+            JSONPointer.applyPatch(jo, new JSONArray("[{\"op\":\"move\",\"from\":\"/a\",\"path\":\"/a/c\"}]"));
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("cannot move /a into one of its children /a/c", e.getMessage());
+        }
+        try {
+            JSONPointer.applyPatch(jo, new JSONArray("[{\"op\":\"replace\",\"path\":\"/a/c\",\"value\":2}]"));
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("key c not found", e.getMessage());
+        }
+        try {
+            JSONPointer.applyPatch(jo, new JSONArray("[{\"op\":\"merge\",\"path\":\"/a\"}]"));
+            fail("Expected JSONPointerException");
+        } catch (JSONPointerException e) {
+            assertEquals("unknown patch operation merge", e.getMessage());
+        }
+        assertTrue(new JSONObject("{\"a\":{\"b\":1}}").similar(jo));
+    }
+
+    /**
+     * Operations that share a parent reuse the containers resolved for the
+     * previous operation, which must still see changes made along the way.
+     */
+    @Test
+    public void applyPatchSharedPrefixes() {
+        JSONObject jo = new JSONObject("{\"a\":{\"b\":{\"c\":[]}}}");
+        JSONArray patch = new JSONArray();
+        for (int i = 0; i < 100; i++) {
+            patch.put(new JSONObject().put("op", "add").put("path", "/a/b/c/-").put("value", i));
+        }
+        patch.put(new JSONObject().put("op", "replace").put("path", "/a/b").put("value", new JSONObject("{\"c\":[\"new\"]}")));
+        patch.put(new JSONObject().put("op", "add").put("path", "/a/b/c/0").put("value", "first"));
+        patch.put(new JSONObject().put("op", "remove").put("path", "/a/b/c/1"));
+        JSONPointer.applyPatch(jo, patch);
+        assertTrue(jo.toString(), new JSONObject("{\"a\":{\"b\":{\"c\":[\"first\"]}}}").similar(jo));
+    }
 }
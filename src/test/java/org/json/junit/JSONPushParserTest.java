@@ -0,0 +1,256 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONPushParser;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+/**
+ * Tests for parsing JSON pushed in chunks.
+ */
+public class JSONPushParserTest {
+
+    private static final String[] DOCUMENTS = {"{}", "[]", "{\"a\":1}", "[1,2.5,-3e2,true,false,null]",
+        "{\"caf\u00e9\":\"\ud83c\udf75 \u6f22 \\u00e9\\t\\\"\\\\\\/\"}",
+        "{'a':'b \"c\"', b : text with spaces , c:[,1,,2,], d:1; e:{}}",
+        "[\"a\",{\"b\":[{\"c\":[[]]}]},\"\\ud83c\\udf75\"]",
+        "\n\t{ \"a\" : 1 ,\r\n \"b\" : [ ] }\n", "\"plain\"", "{1:2, {\"x\":1}:3}"};
+
+    /**
+     * Feed a text in chunks of the given size, as heap or direct buffers.
+     */
+    private static List<Object> parse(byte[] bytes, int chunkSize, boolean direct) {
+        JSONPushParser parser = new JSONPushParser();
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            int n = Math.min(chunkSize, bytes.length - i);
+            ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(n) : ByteBuffer.allocate(n);
+            chunk.put(bytes, i, n).flip();
+            parser.feed(chunk);
+            assertFalse(chunk.hasRemaining());
+            while (parser.hasValue()) {
+                values.add(parser.nextValue());
+            }
+        }
+        parser.endOfInput();
+        while (parser.hasValue()) {
+            values.add(parser.nextValue());
+        }
+        assertNull(parser.nextValue());
+        return values;
+    }
+
+    private static List<Object> parse(String text, int chunkSize) {
+        return parse(text.getBytes(StandardCharsets.UTF_8), chunkSize, false);
+    }
+
+    private static void assertSameValue(Object expected, Object actual) {
+        if (expected instanceof JSONObject) {
+            assertTrue(actual.toString(), ((JSONObject) expected).similar(actual));
+        } else if (expected instanceof JSONArray) {
+            assertTrue(actual.toString(), ((JSONArray) expected).similar(actual));
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Every way of splitting a text into chunks, including inside characters
+     * encoded in several bytes, gives the value JSONTokener gives.
+     */
+    @Test
+    public void matchesTokener() {
+        for (String document : DOCUMENTS) {
+            Object expected = new JSONTokener(document).nextValue();
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+                List<Object> values = parse(bytes, chunkSize, chunkSize % 2 == 0);
+                assertEquals(document, 1, values.size());
+                assertSameValue(expected, values.get(0));
+            }
+        }
+    }
+
+    @Test
+    public void severalValues() {
+        List<Object> values = parse("{\"a\":1} [2]\"s\"\n3\ttrue", 3);
+        assertEquals(5, values.size());
+        assertTrue(new JSONObject("{\"a\":1}").similar(values.get(0)));
+        assertTrue(new JSONArray("[2]").similar(values.get(1)));
+        assertEquals("s", values.get(2));
+        assertEquals(3, values.get(3));
+        assertEquals(Boolean.TRUE, values.get(4));
+        assertEquals(0, parse(" \n ", 1).size());
+    }
+
+    /**
+     * A value is available as soon as it is complete, before the input ends.
+     */
+    @Test
+    public void valuesAsTheyComplete() {
+        JSONPushParser parser = new JSONPushParser();
+        parser.feed(ByteBuffer.wrap("{\"a\":[1,2]".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(parser.hasValue());
+        parser.feed(ByteBuffer.wrap("} {\"b\"".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(parser.hasValue());
+        assertEquals("{\"a\":[1,2]}", parser.nextValue().toString());
+        assertFalse(parser.hasValue());
+        parser.feed(ByteBuffer.wrap(":2} 42".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("{\"b\":2}", parser.nextValue().toString());
+        // unquoted text might go on
+        assertNull(parser.nextValue());
+        parser.endOfInput();
+        assertEquals(42, parser.nextValue());
+    }
+
+    @Test
+    public void malformedUTF8() {
+        byte[] bytes = {'"', 'a', (byte) 0xC3, 'b', (byte) 0xFF, (byte) 0xE6, (byte) 0xBC, (byte) 0xA2, '"'};
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            assertEquals("a\ufffdb\ufffd\u6f22", parse(bytes, chunkSize, false).get(0));
+        }
+    }
+
+    @Test
+    public void syntaxErrors() {
+        String[] invalid = {"{\"a\" 1}", "{\"a\":1 \"b\":2}", "[1 : 2]", "{\"a\":1,\"a\":2}", "\"a\nb\"",
+            "\"\\x\"", "\"\\u12G4\"", "[}", ":", "{\"a\":}"};
+        for (String json : invalid) {
+            String expected = null;
+            try {
+                new JSONTokener(json).nextValue();
+                fail("Expected JSONException for " + json);
+            } catch (JSONException e) {
+                expected = e.getMessage();
+            }
+            for (int chunkSize = 1; chunkSize <= json.length(); chunkSize++) {
+                try {
+                    parse(json, chunkSize);
+                    fail("Expected JSONException for " + json);
+                } catch (JSONException e) {
+                    assertEquals(json, expected, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Input that ends inside a value gives the error, and the position, that
+     * JSONTokener gives when it reads the end of the same text.
+     */
+    @Test
+    public void truncatedInput() {
+        String[] truncated = {"{", "{\"a\"", "{\"a\":", "{\"a\":1", "[", "[1", "[1,", "\"abc", "\"\\u00",
+            "\"a\\", "{\"a\":1,", "{\"a\":1;", "{\"a\":1, ", "[1, "};
+        String[] messages = {"A JSONObject text must end with '}'", "Expected a ':' after a key", "Missing value",
+            "Expected a ',' or '}'", "Expected a ',' or ']'", "Expected a ',' or ']'", "Expected a ',' or ']'",
+            "Unterminated string", "Substring bounds error", "Illegal escape.", "Missing value", "Missing value",
+            "A JSONObject text must end with '}'", "Expected a ',' or ']'"};
+        for (int i = 0; i < truncated.length; i++) {
+            String expected = null;
+            try {
+                new JSONTokener(truncated[i]).nextValue();
+                fail("Expected JSONException for " + truncated[i]);
+            } catch (JSONException e) {
+                expected = e.getMessage();
+            }
+            assertTrue(expected, expected.startsWith(messages[i] + " at "));
+            for (int chunkSize = 1; chunkSize <= truncated[i].length(); chunkSize++) {
+                try {
+                    parse(truncated[i], chunkSize);
+                    fail("Expected JSONException for " + truncated[i]);
+                } catch (JSONException e) {
+                    assertEquals(truncated[i], expected, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void endedParser() {
+        JSONPushParser parser = new JSONPushParser();
+        parser.endOfInput();
+        try {
+            parser.feed(ByteBuffer.wrap(new byte[] {'1'}));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("The input has already ended", e.getMessage());
+        }
+        parser = new JSONPushParser();
+        try {
+            parser.feed(ByteBuffer.wrap(new byte[] {']'}));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Missing value at 0 [character 1 line 1]", e.getMessage());
+        }
+        try {
+            parser.endOfInput();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("The input has already ended", e.getMessage());
+        }
+    }
+
+    /**
+     * A large document in network sized chunks gives the value JSONTokener
+     * gives. Timings are in Benchmarks.pushParser().
+     */
+    @Test
+    public void largeDocument() {
+        byte[] bytes = records(50000);
+        JSONArray expected = new JSONArray(new JSONTokener(ByteBuffer.wrap(bytes)));
+        List<Object> values = parse(bytes, 1500, false);
+        assertEquals(1, values.size());
+        assertTrue(expected.similar(values.get(0)));
+    }
+
+    private static byte[] records(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"record ").append(i)
+                    .append("\",\"tags\":[\"a\",\"b\"],\"score\":").append(i * 0.5).append('}');
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -374,4 +374,103 @@ public class JSONStringerTest {
         assertTrue("expected 4", Integer.valueOf(4).equals(jsonObject.query("/object2/array1/4")));
     }
 
+    /**
+     * Numbers, booleans and strings written directly give the same text as
+     * going through JSONWriter.valueToString.
+     */
+    @Test
+    public void directValues() {
+        Object[] values = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -7, Integer.valueOf(42), Short.valueOf((short) -3),
+            Byte.valueOf((byte) 9), 1.5, -0.0, 1e-7, 100.0, Boolean.TRUE, "q\"u\\o</te>\u2028", "", null,
+            JSONObject.NULL, new BigDecimal("1.50"), 2.5f};
+        JSONStringer direct = new JSONStringer();
+        StringBuilder expected = new StringBuilder("[");
+        direct.array();
+        for (Object value : values) {
+            direct.value(value);
+            expected.append(expected.length() > 1 ? "," : "").append(JSONWriter.valueToString(value));
+        }
+        direct.value(12L).value(false).value(0.25);
+        expected.append(",12,false,0.25]");
+        direct.endArray();
+        assertEquals(expected.toString(), direct.toString());
+
+        StringBuilder sb = new StringBuilder();
+        new JSONWriter(sb).object().key("min").value(Long.MIN_VALUE).key("n").value(-12).endObject();
+        assertEquals("{\"min\":-9223372036854775808,\"n\":-12}", sb.toString());
+        try {
+            new JSONStringer().array().value(Double.NaN);
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("JSON does not allow non-finite numbers.", e.getMessage());
+        }
+    }
+
+    /**
+     * Objects at the same depth may repeat each other's keys, but not their own.
+     */
+    @Test
+    public void keysCheckedPerObject() {
+        JSONStringer stringer = new JSONStringer();
+        stringer.array();
+        for (int i = 0; i < 3; i++) {
+            stringer.object().key("a").value(i).key("b").object().key("a").value(i).endObject().endObject();
+        }
+        stringer.endArray();
+        assertEquals(3, new JSONArray(stringer.toString()).length());
+        try {
+            new JSONStringer().array().object().key("x").value(1).endObject().object().key("x").value(1).key("x");
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("Duplicate key \"x\"", e.getMessage());
+        }
+    }
+
+    /**
+     * Without key checking, duplicate keys are written and there is no limit on
+     * the nesting depth.
+     */
+    @Test
+    public void uncheckedKeys() {
+        JSONStringer stringer = new JSONStringer(false);
+        stringer.object().key("a").value(1).key("a").value(2).endObject();
+        assertEquals("{\"a\":1,\"a\":2}", stringer.toString());
+
+        stringer = new JSONStringer(false);
+        for (int i = 0; i < 1000; i++) {
+            stringer.array();
+        }
+        for (int i = 0; i < 1000; i++) {
+            stringer.endArray();
+        }
+        assertEquals(2000, stringer.toString().length());
+        try {
+            new JSONStringer(false).object().endArray();
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("Misplaced endArray.", e.getMessage());
+        }
+    }
+
+    /**
+     * Many small objects written with and without checks give the same text.
+     * Timings are in Benchmarks.stringer().
+     */
+    @Test
+    public void smallObjectsUnchecked() {
+        JSONStringer checked = new JSONStringer();
+        writeRecords(checked);
+        JSONStringer unchecked = new JSONStringer(false);
+        writeRecords(unchecked);
+        assertEquals(checked.toString(), unchecked.toString());
+    }
+
+    private static void writeRecords(JSONWriter writer) {
+        writer.array();
+        for (int i = 0; i < 100000; i++) {
+            writer.object().key("id").value(i).key("name").value("record").key("ok").value(true)
+                .key("score").value(i * 0.5).endObject();
+        }
+        writer.endArray();
+    }
 }
@@ -0,0 +1,172 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStructuralIndex;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+/**
+ * Tests for validating and skipping through JSON with a structural index.
+ */
+public class JSONStructuralIndexTest {
+
+    @Test
+    public void validDocuments() {
+        String[] valid = {"{}", "[]", " 1 ", "-0.5e+10", "true", "null", "\"\"", "\"caf\u00e9 \ud83c\udf75\"",
+            "{\"a\":[1,2,{\"b\":null}],\"c\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\"}",
+            "[ [ ] , { } , \"]\" , \"}\" , \"\\\\\" ]", "\n\t{ \"a\" : 1 ,\r\n \"b\" : [ ] }\n"};
+        for (String json : valid) {
+            new JSONStructuralIndex(json).validate();
+        }
+    }
+
+    @Test
+    public void invalidDocuments() {
+        String[] invalid = {"", " ", "{", "}", "[1,]", "[,1]", "{\"a\":1,}", "{\"a\" 1}", "{a:1}", "{'a':1}",
+            "[1 2]", "[01]", "[1.]", "[.5]", "[-]", "[1e]", "[tru]", "[nul]", "[True]", "\"a", "\"\\x\"",
+            "\"\\u12G4\"", "\"a\tb\"", "[1]]", "[1]x", "{\"a\":1}{}", "[}", "{]", "{\"a\"}", "{\"a\":}", "[\"a\" \"b\"]",
+            "{\"a\":1 \"b\":2}", "\\\"a\\\""};
+        for (String json : invalid) {
+            try {
+                new JSONStructuralIndex(json).validate();
+                fail("Expected JSONException for " + json);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+        }
+        byte[][] badUTF8 = {{'"', (byte) 0xC3, '"'}, {'"', (byte) 0xC0, (byte) 0x80, '"'},
+            {'"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"'}, {'"', (byte) 0xFF, '"'}};
+        for (byte[] json : badUTF8) {
+            try {
+                new JSONStructuralIndex(json).validate();
+                fail("Expected JSONException");
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid UTF-8"));
+            }
+        }
+        try {
+            new JSONStructuralIndex("{\"a\":[1,2],\n\"b\":[1 2]}").validate();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Invalid value at 17", e.getMessage());
+        }
+    }
+
+    /**
+     * Escaped quotes and runs of backslashes are placed across the boundaries
+     * of the 64 byte blocks that are indexed at a time.
+     */
+    @Test
+    public void escapesAcrossBlocks() {
+        for (int pad = 0; pad < 140; pad++) {
+            StringBuilder sb = new StringBuilder("{\"pad\":\"");
+            for (int i = 0; i < pad; i++) {
+                sb.append('x');
+            }
+            sb.append("\\\\\\\"},\\\\\",\"k\\\"\":[\"\\\\\",{\"}\":\"[\"}],\"z\":\"found\"}");
+            String json = sb.toString();
+            JSONStructuralIndex index = new JSONStructuralIndex(json);
+            index.validate();
+            int offset = index.findField("z");
+            assertEquals(json, json.indexOf("\"found\""), offset);
+            assertEquals(json.length() - 1, index.skipValue(offset));
+            int k = index.findField("k\"");
+            assertEquals(json, new JSONObject(json).get("k\"").toString(),
+                    new JSONArray(json.substring(k, index.skipValue(k))).toString());
+            assertEquals(-1, index.findField("missing"));
+        }
+    }
+
+    @Test
+    public void skipValueAndFindField() {
+        String json = "{\"id\": 7, \"name\": \"caf\u00e9\", \"tags\": [\"a\", {\"b\": [1, 2]}], \"caf\u00e9\" : true ,"
+                + " \"nested\": {\"id\": 8}, \"last\": null}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        JSONStructuralIndex index = new JSONStructuralIndex(bytes);
+        int id = index.findField("id");
+        assertEquals("7", text(bytes, id, index.skipValue(id)));
+        int tags = index.findField("tags");
+        assertEquals("[\"a\", {\"b\": [1, 2]}]", text(bytes, tags, index.skipValue(tags)));
+        assertEquals("true", text(bytes, index.findField("caf\u00e9"), index.skipValue(index.findField("caf\u00e9"))));
+        int nested = index.findField("nested");
+        assertEquals(8, new JSONObject(new JSONTokener(text(bytes, nested, index.skipValue(nested)))).get("id"));
+        assertEquals("null", text(bytes, index.findField("last"), index.skipValue(index.findField("last"))));
+        assertEquals(-1, index.findField("b"));
+        assertEquals(bytes.length, index.skipValue(0));
+        assertEquals(-1, new JSONStructuralIndex("{ }").findField("a"));
+
+        String[] notObjects = {"[1]", "1", "", "{\"a\":1", "{\"a\" 1}", "{\"a\":[1}"};
+        for (String text : notObjects) {
+            try {
+                new JSONStructuralIndex(text).findField("b");
+                fail("Expected JSONException for " + text);
+            } catch (JSONException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+        }
+        try {
+            new JSONStructuralIndex("[1, ]").skipValue(4);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Missing value at 4", e.getMessage());
+        }
+    }
+
+    private static String text(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A large document with escaped quotes is valid, and a field found through
+     * the index has the value the parser reads. Timings are in
+     * Benchmarks.structuralIndex().
+     */
+    @Test
+    public void validateLargeDocument() {
+        StringBuilder sb = new StringBuilder("{\"records\":[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"record \\\"")
+                    .append(i).append("\\\"\",\"tags\":[\"a\",\"b\"],\"score\":").append(i * 1.5).append('}');
+        }
+        sb.append("],\"total\":20000}");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        JSONObject parsed = new JSONObject(new JSONTokener(bytes));
+        JSONStructuralIndex index = new JSONStructuralIndex(bytes);
+        index.validate();
+        int total = index.findField("total");
+        assertEquals(parsed.getInt("total"), Integer.parseInt(text(bytes, total, index.skipValue(total))));
+    }
+}
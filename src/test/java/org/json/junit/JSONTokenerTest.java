@@ -35,12 +35,27 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import org.json.XML;
+import org.json.XMLParserConfiguration;
+import org.json.XMLTokener;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Test specific to the {@link org.json.JSONTokener} class.
@@ -49,6 +64,9 @@ import org.junit.Test;
  */
 public class JSONTokenerTest {
 
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
     /**
      * verify that back() fails as expected.
      * @throws IOException thrown if something unexpected happens.
@@ -333,4 +351,247 @@ public class JSONTokenerTest {
         assertEquals(0, t2.next());
         assertFalse(t2.more());
    }
+
+    /**
+     * A channel that returns at most a few bytes per read, so characters and
+     * strings are split across reads.
+     */
+    private static ReadableByteChannel trickle(final byte[] bytes) {
+        return new ReadableByteChannel() {
+            private int position;
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (this.position == bytes.length) {
+                    return -1;
+                }
+                int n = Math.min(Math.min(3, dst.remaining()), bytes.length - this.position);
+                dst.put(bytes, this.position, n);
+                this.position += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * UTF-8 bytes read directly give the same result as the decoded string.
+     */
+    @Test
+    public void utf8Bytes() {
+        String json = "{\"ascii\":\"plain text\",\"latin\":\"caf\u00e9\",\"cjk\":\"\u6f22\u5b57\","
+                + "\"emoji\":\"\ud83d\ude00 smile\",\"escaped\":\"a\\\"b\\u00e9\\n\",\"\u00e9\":[1,2.5,true,null]}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        JSONObject expected = new JSONObject(json);
+        assertEquals("caf\u00e9", expected.getString("latin"));
+        assertTrue(expected.similar(new JSONObject(new JSONTokener(bytes))));
+        assertTrue(expected.similar(new JSONObject(new JSONTokener(trickle(bytes)))));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertTrue(expected.similar(new JSONObject(new JSONTokener(direct))));
+        assertEquals(bytes.length, direct.remaining());
+    }
+
+    /**
+     * Positions count characters, as they do for a Reader.
+     */
+    @Test
+    public void utf8BytesPositions() {
+        String json = "[\"\u00e9\ud83d\ude00\",\n x]";
+        JSONTokener expected = new JSONTokener(json);
+        JSONTokener actual = new JSONTokener(trickle(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected.next(), actual.next());
+        assertEquals(expected.next(), actual.next());
+        assertEquals(expected.nextString('"'), actual.nextString('"'));
+        assertEquals(expected.toString(), actual.toString());
+        while (expected.more()) {
+            assertTrue(actual.more());
+            assertEquals(expected.next(), actual.next());
+            assertEquals(expected.toString(), actual.toString());
+        }
+        assertFalse(actual.more());
+    }
+
+    @Test
+    public void utf8BytesErrors() {
+        String json = "[\"\u00e9\ud83d\ude00\",\n x";
+        String expected = null;
+        try {
+            new JSONArray(json);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            expected = e.getMessage();
+        }
+        try {
+            new JSONArray(new JSONTokener(json.getBytes(StandardCharsets.UTF_8)));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals(expected, e.getMessage());
+        }
+        // malformed bytes become U+FFFD, as they would through a Reader
+        byte[] malformed = {'"', 'a', (byte) 0xC3, '"', (byte) 0xFF, '"'};
+        JSONTokener tokener = new JSONTokener(malformed);
+        assertEquals("a\ufffd", tokener.nextValue());
+        assertEquals("\ufffd", tokener.nextTo('"'));
+    }
+
+    @Test
+    public void utf8BytesSkipToAndMore() {
+        JSONTokener tokener = new JSONTokener(trickle("abc\u00e9def".getBytes(StandardCharsets.UTF_8)));
+        assertEquals('a', tokener.next());
+        assertEquals(0, tokener.skipTo('x'));
+        assertEquals('b', tokener.next());
+        assertEquals('e', tokener.skipTo('e'));
+        assertEquals('e', tokener.next());
+        assertEquals('f', tokener.next());
+        assertFalse(tokener.more());
+        assertEquals(0, tokener.next());
+    }
+
+    /**
+     * Parsing UTF-8 bytes directly gives the same values as parsing them
+     * through a Reader, for input larger than the tokener's buffer.
+     */
+    @Test
+    public void utf8BytesMatchReader() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i)
+                    .append(",\"name\":\"record \u00e9 \ud83c\udf75 ").append(i).append("\",\"ok\":true}");
+        }
+        sb.append(']');
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        JSONArray fromReader = new JSONArray(new JSONTokener(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)));
+        JSONArray fromBytes = new JSONArray(new JSONTokener(Channels.newChannel(new ByteArrayInputStream(bytes))));
+        assertTrue(fromReader.similar(fromBytes));
+        assertEquals("record \u00e9 \ud83c\udf75 19999", fromBytes.getJSONObject(19999).getString("name"));
+    }
+
+    /**
+     * Parses a file that is larger than the tokener's buffer, with multi-byte
+     * characters falling across its boundaries.
+     */
+    @Test
+    public void mappedFile() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i)
+                    .append(",\"name\":\"caf\u00e9 \u6f22 \ud83c\udf75 ").append(i).append("\"}");
+        }
+        sb.append(']');
+        Path path = this.testFolder.newFile("mapped.json").toPath();
+        Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        JSONArray actual = new JSONArray(new JSONTokener(path));
+        assertTrue(new JSONArray(sb.toString()).similar(actual));
+        assertEquals("caf\u00e9 \u6f22 \ud83c\udf75 4999", actual.getJSONObject(4999).getString("name"));
+    }
+
+    @Test
+    public void mappedFileEmptyOrMissing() throws IOException {
+        Path empty = this.testFolder.newFile("empty.json").toPath();
+        JSONTokener tokener = new JSONTokener(empty);
+        assertFalse(tokener.more());
+        assertEquals(0, tokener.next());
+        try {
+            new JSONTokener(empty.resolveSibling("missing.json"));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void concatenatedValues() {
+        JSONTokener tokener = new JSONTokener("{\"a\":1}{\"b\":2} [3]\n\"four\"\n5\ntrue\n");
+        List<Object> values = new ArrayList<Object>();
+        for (Iterator<Object> it = tokener.values(); it.hasNext();) {
+            values.add(it.next());
+        }
+        assertEquals(6, values.size());
+        assertEquals(1, ((JSONObject) values.get(0)).getInt("a"));
+        assertEquals(2, ((JSONObject) values.get(1)).getInt("b"));
+        assertEquals(3, ((JSONArray) values.get(2)).getInt(0));
+        assertEquals("four", values.get(3));
+        assertEquals(5, values.get(4));
+        assertEquals(Boolean.TRUE, values.get(5));
+
+        // a JSON text sequence, RFC 7464
+        Iterator<Object> sequence = new JSONTokener("\u001e{\"a\":1}\n\u001e42\u001e\"x\"\n").values();
+        assertTrue(sequence.hasNext());
+        assertTrue(sequence.hasNext());
+        assertEquals(1, ((JSONObject) sequence.next()).getInt("a"));
+        assertEquals(42, sequence.next());
+        assertEquals("x", sequence.next());
+        assertFalse(sequence.hasNext());
+        try {
+            sequence.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+
+        Iterator<Object> invalid = new JSONTokener("{\"a\":1} {\"b\" 2}").values();
+        invalid.next();
+        try {
+            invalid.next();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertEquals("Expected a ':' after a key at 14 [character 15 line 1]", e.getMessage());
+        }
+    }
+
+    /**
+     * A tokener that is reset reads the new source from its start, whatever
+     * state it was left in.
+     */
+    @Test
+    public void resetReader() {
+        JSONTokener tokener = new JSONTokener(new StringReader("{\"a\":[1,"));
+        try {
+            new JSONObject(tokener);
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            // left at the end of the source
+        }
+        assertTrue(tokener == tokener.reset(new StringReader("{\"b\":\n2}")));
+        assertEquals(2, new JSONObject(tokener).getInt("b"));
+        assertFalse(tokener.more());
+
+        // readers without mark support are wrapped in a buffer that is reused
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"value ").append(i).append('"');
+        }
+        sb.append(']');
+        for (int i = 0; i < 3; i++) {
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(
+                    sb.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+            assertEquals(5000, new JSONArray(tokener.reset(reader)).length());
+            tokener.reset(new InputStreamReader(new ByteArrayInputStream(
+                    "  [1] x".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+            tokener.nextValue();
+            assertEquals('x', tokener.skipTo('x'));
+            assertEquals(" at 6 [character 7 line 1]", tokener.toString());
+        }
+
+        // from bytes to characters
+        tokener = new JSONTokener("[1]".getBytes(StandardCharsets.UTF_8));
+        tokener.nextValue();
+        assertEquals("ok", tokener.reset(new StringReader("\"ok\"")).nextValue());
+
+        XMLTokener xmlTokener = new XMLTokener("<a>1</a>");
+        assertEquals("b", XML.toJSONObject(xmlTokener.reset(new StringReader("<b>2</b>")),
+                XMLParserConfiguration.ORIGINAL).keys().next());
+    }
 }
@@ -35,10 +35,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONPointer;
 import org.json.XML;
 import org.json.XMLParserConfiguration;
 import org.junit.Rule;
@@ -905,6 +908,105 @@ public class XMLConfigurationTest {
     }
     
     
+    /**
+     * Confirm that the key transformer is applied to tag and attribute names,
+     * but not to the content key, and that it is called once per distinct name.
+     */
+    @Test
+    public void testKeyTransformer() {
+        StringBuilder sb = new StringBuilder("<catalog>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<book id=\"").append(i).append("\"><title>t</title>text</book>");
+        }
+        sb.append("</catalog>");
+        final AtomicInteger calls = new AtomicInteger();
+        XMLParserConfiguration config = new XMLParserConfiguration()
+                .withKeyTransformer(key -> {
+                    calls.incrementAndGet();
+                    return "k_" + key;
+                });
+        JSONObject jsonObject = XML.toJSONObject(sb.toString(), config);
+        JSONArray books = jsonObject.getJSONObject("k_catalog").getJSONArray("k_book");
+        assertEquals(100, books.length());
+        assertEquals(99, books.getJSONObject(99).get("k_id"));
+        assertEquals("t", books.getJSONObject(99).get("k_title"));
+        assertEquals("text", books.getJSONObject(99).get("content"));
+        // catalog, book, id, title
+        assertEquals(4, calls.get());
+    }
+
+    /**
+     * Confirm that the key transformer can be combined with path extraction.
+     * The path refers to the transformed keys.
+     */
+    @Test
+    public void testKeyTransformerWithPath() {
+        String xmlStr = "<catalog><book id=\"1\"/><book id=\"2\"/></catalog>";
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS
+                .withKeyTransformer(key -> "x_" + key);
+        JSONObject jsonObject = XML.toJSONObject(new StringReader(xmlStr),
+                new JSONPointer("/x_catalog/x_book/1"), config);
+        Util.compareActualVsExpectedJsonObjects(jsonObject, new JSONObject("{\"x_id\":\"2\"}"));
+    }
+
+    /**
+     * Confirm that only included paths, their ancestors and their content are kept.
+     */
+    @Test
+    public void testIncludedPaths() {
+        String xmlStr =
+                "<catalog version=\"2\">\n"+
+                "   <book id=\"bk101\">\n"+
+                "      <title>XML Developer's Guide</title>\n"+
+                "      <description>An in-depth look <b>at</b> creating applications\n"+
+                "      <![CDATA[ with <XML> ]]><!-- <book> --></description>\n"+
+                "      <price>44.95</price>\n"+
+                "   </book>\n"+
+                "   <magazine><title>Not a book</title></magazine>\n"+
+                "</catalog>";
+        String expectedStr =
+                "{\"catalog\":{\"book\":{\"id\":\"bk101\",\"title\":\"XML Developer's Guide\"}}}";
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS
+                .withIncludedPaths(Arrays.asList("/catalog/book/title", "/catalog/book/@id"));
+        compareStringToJSONObject(xmlStr, expectedStr, config);
+    }
+
+    /**
+     * Confirm that excluded paths are skipped, including nested elements of the same name.
+     */
+    @Test
+    public void testExcludedPaths() {
+        String xmlStr =
+                "<catalog>\n"+
+                "   <book id=\"bk101\">\n"+
+                "      <notes a=\"/>\"><notes>nested</notes><notes/></notes>\n"+
+                "      <price>44.95</price>\n"+
+                "   </book>\n"+
+                "</catalog>";
+        String expectedStr = "{\"catalog\":{\"book\":{\"price\":44.95}}}";
+        XMLParserConfiguration config = new XMLParserConfiguration()
+                .withExcludedPaths(Arrays.asList("/catalog/book/notes", "/catalog/book/@id"));
+        compareStringToJSONObject(xmlStr, expectedStr, config);
+    }
+
+    /**
+     * Confirm that a missing close tag is still reported when an element is skipped.
+     */
+    @Test
+    public void testElementFilterUnclosedTag() {
+        String xmlStr = "<catalog><book><title>t</title></catalog>";
+        XMLParserConfiguration config = new XMLParserConfiguration()
+                .withElementFilter(path -> !path.startsWith("/catalog/book"));
+        try {
+            XML.toJSONObject(xmlStr, config);
+            fail("Expecting a JSONException");
+        } catch (JSONException e) {
+            assertEquals("Expecting an exception message",
+                    "Unclosed tag catalog at 41 [character 42 line 1]",
+                    e.getMessage());
+        }
+    }
+
     /**
      * Convenience method, given an input string and expected result,
      * convert to JSONObject and compare actual to expected result.
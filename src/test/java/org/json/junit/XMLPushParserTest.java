@@ -0,0 +1,205 @@
+package org.json.junit;
+
+/*
+Copyright (c) 2020 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.XML;
+import org.json.XMLParserConfiguration;
+import org.json.XMLPushParser;
+import org.junit.Test;
+
+/**
+ * Tests for converting XML pushed in chunks.
+ */
+public class XMLPushParserTest {
+
+    private static final String CATALOG =
+            "<?xml version=\"1.0\"?>\n" +
+            "<!DOCTYPE catalog [ <!ELEMENT catalog ANY> <!ATTLIST book id CDATA \"<none>\"> ]>\n" +
+            "<catalog>\n" +
+            "   <!-- <book id=\"commented\"/> -- still a comment -->\n" +
+            "   <book id=\"bk101\" note='a > b'><title>XML Developer's Guide</title><price>44.95</price></book>\n" +
+            "   <magazine><book id=\"not a record\"/></magazine>\n" +
+            "   <book id=\"bk102\"/>\n" +
+            "   <book>Café 🍵 <![CDATA[<not a tag>]]> &amp; more</book>\n" +
+            "   <book><title>漢</title><?pi <book/> ?></book>\n" +
+            "</catalog>";
+
+    /**
+     * Feed a text in chunks of the given size, as bytes or characters, and take
+     * every value.
+     */
+    private static List<JSONObject> parse(XMLPushParser parser, String text, int chunkSize, boolean asBytes) {
+        List<JSONObject> values = new ArrayList<JSONObject>();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = asBytes ? bytes.length : text.length();
+        for (int i = 0; i < length; i += chunkSize) {
+            int end = Math.min(length, i + chunkSize);
+            if (asBytes) {
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, i, end - i);
+                parser.feed(chunk);
+                assertFalse(chunk.hasRemaining());
+            } else {
+                parser.feed(text.substring(i, end));
+            }
+            while (parser.hasValue()) {
+                values.add(parser.nextValue());
+            }
+        }
+        parser.endOfInput();
+        while (parser.hasValue()) {
+            values.add(parser.nextValue());
+        }
+        assertNull(parser.nextValue());
+        return values;
+    }
+
+    /**
+     * Every way of splitting the document, including inside characters encoded
+     * in several bytes, converts it as XML.toJSONObject does.
+     */
+    @Test
+    public void documentMatchesToJSONObject() {
+        JSONObject expected = XML.toJSONObject(CATALOG);
+        for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+            for (boolean asBytes : new boolean[] {false, true}) {
+                List<JSONObject> values = parse(new XMLPushParser(), CATALOG, chunkSize, asBytes);
+                assertEquals(1, values.size());
+                Util.compareActualVsExpectedJsonObjects(values.get(0), expected);
+            }
+        }
+        String twoRoots = "<a>1</a> text <b x=\"2\"/><a>3</a>";
+        Util.compareActualVsExpectedJsonObjects(parse(new XMLPushParser(), twoRoots, 3, true).get(0),
+                XML.toJSONObject(twoRoots));
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS.withcDataTagName("text");
+        Util.compareActualVsExpectedJsonObjects(parse(new XMLPushParser(config), CATALOG, 7, false).get(0),
+                XML.toJSONObject(CATALOG, config));
+    }
+
+    @Test
+    public void elementsMatchStreamElements() {
+        List<JSONObject> expected = XML.streamElements(new StringReader(CATALOG), "/catalog/book")
+                .collect(Collectors.toList());
+        assertEquals(4, expected.size());
+        for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+            List<JSONObject> values = parse(new XMLPushParser("/catalog/book"), CATALOG, chunkSize, chunkSize % 2 == 0);
+            assertEquals(expected.size(), values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Util.compareActualVsExpectedJsonObjects(values.get(i), expected.get(i));
+            }
+        }
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS.withKeyTransformer(key -> "x_" + key);
+        List<JSONObject> transformed = parse(new XMLPushParser("/catalog/book", config), CATALOG, 5, true);
+        assertEquals("44.95", transformed.get(0).getString("x_price"));
+        assertEquals(0, parse(new XMLPushParser("/catalog/missing"), CATALOG, 5, true).size());
+    }
+
+    /**
+     * An element is available as soon as its close tag has been fed.
+     */
+    @Test
+    public void elementsAsTheyComplete() {
+        XMLPushParser parser = new XMLPushParser("/catalog/book");
+        parser.feed("<catalog><book id=\"1\"><title>One</ti");
+        assertFalse(parser.hasValue());
+        parser.feed("tle></book><book id=\"2\">");
+        assertTrue(parser.hasValue());
+        Util.compareActualVsExpectedJsonObjects(parser.nextValue(), new JSONObject("{\"id\":1,\"title\":\"One\"}"));
+        assertFalse(parser.hasValue());
+        parser.feed(ByteBuffer.wrap("</book></catalog>".getBytes(StandardCharsets.UTF_8)));
+        Util.compareActualVsExpectedJsonObjects(parser.nextValue(), new JSONObject("{\"id\":2}"));
+        parser.endOfInput();
+        assertNull(parser.nextValue());
+
+        XMLPushParser document = new XMLPushParser();
+        document.feed("<a>1</a>");
+        assertFalse("the document is only complete at the end of the input", document.hasValue());
+        document.endOfInput();
+        assertEquals(1, document.nextValue().getInt("a"));
+    }
+
+    @Test
+    public void errors() {
+        String[] invalid = {"<a><b></a>", "<catalog><book>", "<catalog></book>", "</a>", "<a", "<a><!-- </a>",
+            "<catalog><book></catalog>"};
+        String[] messages = {"Mismatched b and a", "Unclosed tag book", "Mismatched catalog and book",
+            "Mismatched close tag a", "Unclosed", "Unclosed tag a", "Mismatched book and catalog"};
+        for (int i = 0; i < invalid.length; i++) {
+            XMLPushParser parser = invalid[i].startsWith("<catalog>")
+                    ? new XMLPushParser("/catalog/book/title") : new XMLPushParser();
+            try {
+                parse(parser, invalid[i], 2, true);
+                fail("Expected JSONException for " + invalid[i]);
+            } catch (JSONException e) {
+                assertTrue(invalid[i] + ": " + e.getMessage(), e.getMessage().startsWith(messages[i]));
+            }
+            try {
+                parser.feed("<a/>");
+                fail("Expected JSONException");
+            } catch (JSONException e) {
+                assertEquals("The input has already ended", e.getMessage());
+            }
+        }
+        try {
+            new XMLPushParser("catalog/book");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("an element path"));
+        }
+    }
+
+    /**
+     * A large document in network sized chunks gives as many elements as
+     * streaming it from a Reader. Timings are in Benchmarks.xmlPushParser().
+     */
+    @Test
+    public void largeDocument() {
+        StringBuilder sb = new StringBuilder("<catalog>");
+        for (int i = 0; i < 30000; i++) {
+            sb.append("<book id=\"").append(i).append("\"><title>Title ").append(i)
+                    .append("</title><price>").append(i * 0.5).append("</price></book>");
+        }
+        sb.append("</catalog>");
+        String xml = sb.toString();
+
+        long expected = XML.streamElements(new StringReader(xml), "/catalog/book").count();
+        List<JSONObject> values = parse(new XMLPushParser("/catalog/book"), xml, 1500, true);
+        assertEquals(expected, values.size());
+    }
+}
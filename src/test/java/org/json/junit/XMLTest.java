@@ -25,10 +25,16 @@ SOFTWARE.
 */
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -1996,6 +2002,44 @@ public class XMLTest {
         }
     }
 
+    @Test
+    public void testToJSONObjectGetSubObjectWithConfig(){
+        String xmlStr =
+                "<catalog>\n" +
+                "   <book id=\"bk101\"><price>44.95</price></book>\n" +
+                "   <book id=\"bk102\"><price xsi:type=\"integer\">5</price></book>\n" +
+                "   <book id=\"bk103\"><price>5.95</price></book>\n" +
+                "</catalog>";
+        Map<String, XMLXsiTypeConverter<?>> xsiTypeMap = new HashMap<String, XMLXsiTypeConverter<?>>();
+        xsiTypeMap.put("integer", new XMLXsiTypeConverter<Integer>() {
+            @Override public Integer convert(final String value) {
+                return Integer.valueOf(value);
+            }
+        });
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS.withXsiTypeMap(xsiTypeMap);
+
+        JSONObject first = XML.toJSONObject(new StringReader(xmlStr), new JSONPointer("/catalog/book/0"), config);
+        Util.compareActualVsExpectedJsonObjects(first, new JSONObject("{\"id\":\"bk101\",\"price\":\"44.95\"}"));
+
+        JSONObject second = XML.toJSONObject(new StringReader(xmlStr), new JSONPointer("/catalog/book/1"), config);
+        Util.compareActualVsExpectedJsonObjects(second, new JSONObject("{\"id\":\"bk102\",\"price\":5}"));
+    }
+
+    @Test
+    public void testToJSONObjectReplaceWithConfig(){
+        String xmlStr =
+                "<catalog>\n" +
+                "   <book id=\"bk101\"><price>44.95</price></book>\n" +
+                "   <book id=\"bk102\"><price>5.95</price></book>\n" +
+                "</catalog>";
+        JSONObject newObject = new JSONObject().put("University", "UCI");
+        JSONObject actualJson = XML.toJSONObject(new StringReader(xmlStr), new JSONPointer("/catalog/book/1"),
+                newObject, XMLParserConfiguration.KEEP_STRINGS);
+        JSONObject expectedJson = new JSONObject("{\"catalog\":{\"book\":[" +
+                "{\"id\":\"bk101\",\"price\":\"44.95\"},{\"University\":\"UCI\"}]}}");
+        Util.compareActualVsExpectedJsonObjects(actualJson, expectedJson);
+    }
+
     @Test
     public void testToJSONObjectRenameKeySimple(){
         String xmlStr =
@@ -2924,4 +2968,181 @@ public class XMLTest {
         }
     }
 
+    @Test
+    public void testStreamElements(){
+        String xmlStr =
+                "<?xml version=\"1.0\"?>\n" +
+                "<catalog>\n" +
+                "   <!-- <book id=\"commented\"/> -->\n" +
+                "   <book id=\"bk101\"><title>XML Developer's Guide</title><price>44.95</price></book>\n" +
+                "   <magazine><book id=\"not a record\"/></magazine>\n" +
+                "   <book id=\"bk102\"/>\n" +
+                "   <book>Midnight Rain</book>\n" +
+                "</catalog>";
+        List<JSONObject> books = XML.streamElements(new StringReader(xmlStr), "/catalog/book")
+                .collect(Collectors.toList());
+        assertEquals(3, books.size());
+        Util.compareActualVsExpectedJsonObjects(books.get(0),
+                new JSONObject("{\"id\":\"bk101\",\"title\":\"XML Developer's Guide\",\"price\":44.95}"));
+        Util.compareActualVsExpectedJsonObjects(books.get(1), new JSONObject("{\"id\":\"bk102\"}"));
+        Util.compareActualVsExpectedJsonObjects(books.get(2), new JSONObject("{\"content\":\"Midnight Rain\"}"));
+    }
+
+    /**
+     * @param count the number of books
+     * @return a catalog of books, each with an id attribute and a title
+     */
+    private static String catalog(int count) {
+        StringBuilder sb = new StringBuilder("<catalog>");
+        for (int i = 0; i < count; i++) {
+            sb.append("<book id=\"").append(i).append("\"><title>Title ").append(i).append("</title></book>");
+        }
+        return sb.append("</catalog>").toString();
+    }
+
+    /**
+     * @param source the characters to read
+     * @param charsRead counts the characters read
+     * @return a reader of the source that counts the characters read from it
+     */
+    private static Reader countingReader(String source, final AtomicInteger charsRead) {
+        return new FilterReader(new StringReader(source)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                if (n > 0) {
+                    charsRead.addAndGet(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    @Test
+    public void testStreamElementsIsLazy(){
+        final int count = 10000;
+        String catalog = catalog(count);
+        AtomicInteger charsRead = new AtomicInteger();
+        Reader reader = countingReader(catalog, charsRead);
+        XMLParserConfiguration config = XMLParserConfiguration.KEEP_STRINGS.withKeyTransformer(key -> "x_" + key);
+        JSONObject first = XML.streamElements(reader, "/catalog/book", config).findFirst().get();
+        assertEquals("0", first.get("x_id"));
+        assertEquals("Title 0", first.get("x_title"));
+        assertTrue("only the start of the document should be read", charsRead.get() < catalog.length() / 2);
+
+        long total = XML.streamElements(new StringReader(catalog), "/catalog/book").count();
+        assertEquals(count, total);
+    }
+
+    @Test
+    public void testToJSONObjectMultiplePaths(){
+        String xmlStr = "<catalog>"
+                + "<book id=\"bk101\"><author>Gambardella</author><title>XML Guide</title><price>44.95</price></book>"
+                + "<book id=\"bk102\"><author>Ralls</author><title>Midnight Rain</title><price>5.95</price></book>"
+                + "<magazine><title>Monthly</title></magazine>"
+                + "</catalog>";
+        JSONPointer firstAuthor = new JSONPointer("/catalog/book/0/author");
+        JSONPointer secondTitle = new JSONPointer("/catalog/book/1/title");
+        JSONPointer secondId = new JSONPointer("/catalog/book/1/id");
+        JSONPointer magazine = new JSONPointer("/catalog/magazine");
+        JSONPointer missing = new JSONPointer("/catalog/book/1/isbn");
+        Map<JSONPointer, Object> values = XML.toJSONObject(new StringReader(xmlStr),
+                Arrays.asList(firstAuthor, secondTitle, secondId, magazine, missing));
+
+        assertEquals(4, values.size());
+        assertEquals("Gambardella", values.get(firstAuthor));
+        assertEquals("Midnight Rain", values.get(secondTitle));
+        assertEquals("bk102", values.get(secondId));
+        Util.compareActualVsExpectedJsonObjects((JSONObject) values.get(magazine),
+                new JSONObject("{\"title\":\"Monthly\"}"));
+        assertFalse(values.containsKey(missing));
+        assertEquals(Arrays.asList(firstAuthor, secondTitle, secondId, magazine),
+                new ArrayList<JSONPointer>(values.keySet()));
+    }
+
+    @Test
+    public void testToJSONObjectNestedPaths(){
+        String xmlStr = "<catalog>"
+                + "<book id=\"bk101\"><author>Gambardella</author><title>XML Guide</title></book>"
+                + "<book id=\"bk102\"><author>Ralls</author><title>Midnight Rain</title></book>"
+                + "</catalog>";
+        JSONPointer catalog = new JSONPointer("/catalog");
+        JSONPointer firstBook = new JSONPointer("/catalog/book/0");
+        JSONPointer firstTitle = new JSONPointer("/catalog/book/0/title");
+        JSONPointer secondTitle = new JSONPointer("/catalog/book/1/title");
+        JSONPointer secondId = new JSONPointer("/catalog/book/1/id");
+        JSONPointer missing = new JSONPointer("/catalog/book/2/title");
+        JSONObject expected = XML.toJSONObject(xmlStr);
+
+        Map<JSONPointer, Object> values = XML.toJSONObject(new StringReader(xmlStr),
+                Arrays.asList(firstBook, firstTitle));
+        assertEquals(2, values.size());
+        Util.compareActualVsExpectedJsonObjects((JSONObject) values.get(firstBook),
+                (JSONObject) expected.query("/catalog/book/0"));
+        assertEquals("XML Guide", values.get(firstTitle));
+
+        values = XML.toJSONObject(new StringReader(xmlStr),
+                Arrays.asList(secondTitle, catalog, firstTitle, secondId, missing));
+        assertEquals(Arrays.asList(secondTitle, catalog, firstTitle, secondId),
+                new ArrayList<JSONPointer>(values.keySet()));
+        assertEquals("Midnight Rain", values.get(secondTitle));
+        assertEquals("XML Guide", values.get(firstTitle));
+        assertEquals("bk102", values.get(secondId));
+        Util.compareActualVsExpectedJsonObjects((JSONObject) values.get(catalog),
+                expected.getJSONObject("catalog"));
+    }
+
+    @Test
+    public void testToJSONObjectMultiplePathsStopsEarly(){
+        final int count = 10000;
+        String catalog = catalog(count);
+        AtomicInteger charsRead = new AtomicInteger();
+        Reader reader = countingReader(catalog, charsRead);
+        JSONPointer first = new JSONPointer("/catalog/book/0/title");
+        JSONPointer third = new JSONPointer("/catalog/book/2/id");
+        Map<JSONPointer, Object> values = XML.toJSONObject(reader, Arrays.asList(first, third),
+                XMLParserConfiguration.KEEP_STRINGS);
+        assertEquals("Title 0", values.get(first));
+        assertEquals("2", values.get(third));
+        assertTrue("only the start of the document should be read", charsRead.get() < catalog.length() / 2);
+    }
+
+    @Test
+    public void testToJSONObjectFromUTF8Bytes(){
+        String xmlStr = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<menu lang=\"fr\"><item price=\"3.5\">caf\u00e9 cr\u00e8me</item>"
+                + "<item price=\"4\"><![CDATA[th\u00e9 \u6f22 \ud83c\udf75]]></item></menu>";
+        JSONObject expected = XML.toJSONObject(xmlStr);
+        byte[] bytes = xmlStr.getBytes(StandardCharsets.UTF_8);
+        JSONObject actual = XML.toJSONObject(new XMLTokener(ByteBuffer.wrap(bytes)), XMLParserConfiguration.ORIGINAL);
+        Util.compareActualVsExpectedJsonObjects(actual, expected);
+        actual = XML.toJSONObject(new XMLTokener(Channels.newChannel(new ByteArrayInputStream(bytes))),
+                XMLParserConfiguration.ORIGINAL);
+        Util.compareActualVsExpectedJsonObjects(actual, expected);
+        assertEquals("caf\u00e9 cr\u00e8me", actual.query("/menu/item/0/content"));
+    }
+
+    @Test
+    public void testToJSONObjectFromMappedFile() throws IOException {
+        String xmlStr = "<menu lang=\"fr\"><item price=\"3.5\">caf\u00e9 cr\u00e8me</item>"
+                + "<item price=\"4\"><![CDATA[th\u00e9 \u6f22 \ud83c\udf75]]></item></menu>";
+        File file = this.testFolder.newFile("mapped.xml");
+        java.nio.file.Files.write(file.toPath(), xmlStr.getBytes(StandardCharsets.UTF_8));
+        JSONObject actual = XML.toJSONObject(new XMLTokener(file.toPath()), XMLParserConfiguration.ORIGINAL);
+        Util.compareActualVsExpectedJsonObjects(actual, XML.toJSONObject(xmlStr));
+    }
+
+    @Test
+    public void testStreamElementsUnclosedTag(){
+        String xmlStr = "<catalog><book id=\"bk101\"/><book id=\"bk102\"/>";
+        try {
+            XML.streamElements(new StringReader(xmlStr), "/catalog/book").count();
+            fail("Expecting a JSONException");
+        } catch (JSONException e) {
+            assertEquals("Expecting an exception message",
+                    "Unclosed tag catalog at 45 [character 46 line 1]",
+                    e.getMessage());
+        }
+    }
+
 }//end XMLTest class